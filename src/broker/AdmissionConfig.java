@@ -0,0 +1,64 @@
+package broker;
+
+import util.yaml.YamlMap;
+
+/**
+ * Limits of admission control, see {@link server.AdmissionControl}.
+ */
+public class AdmissionConfig {
+
+	public static class EndpointConfig {
+		public final int concurrency;
+		public final int queue;
+		public final int queue_timeout; // seconds
+
+		public EndpointConfig(int concurrency, int queue, int queue_timeout) {
+			this.concurrency = Math.max(1, concurrency);
+			this.queue = Math.max(0, queue);
+			this.queue_timeout = Math.max(0, queue_timeout);
+		}
+
+		public static EndpointConfig ofYAML(YamlMap yamlMap, EndpointConfig def) {
+			int concurrency = yamlMap.optInt("concurrency", def.concurrency);
+			int queue = yamlMap.optInt("queue", def.queue);
+			int queue_timeout = yamlMap.optInt("queue_timeout", def.queue_timeout);
+			return new EndpointConfig(concurrency, queue, queue_timeout);
+		}
+	}
+
+	private static final int CPUS = Runtime.getRuntime().availableProcessors();
+	private static final long MAX_MEMORY = Runtime.getRuntime().maxMemory();
+
+	private static final EndpointConfig DEFAULT_INTERACTIVE = new EndpointConfig(Math.max(8, CPUS * 2), 256, 30);
+	private static final EndpointConfig DEFAULT_EXPORT = new EndpointConfig(Math.max(2, CPUS / 2), 32, 120);
+	private static final EndpointConfig DEFAULT_TASK = new EndpointConfig(2, 16, 300);
+	private static final long DEFAULT_MEMORY_BUDGET = MAX_MEMORY / 2;
+	private static final long DEFAULT_REQUEST_MEMORY_MAX = MAX_MEMORY / 4;
+
+	public final EndpointConfig interactive;
+	public final EndpointConfig export;
+	public final EndpointConfig task;
+	public final long memory_budget; // bytes
+	public final long request_memory_max; // bytes
+
+	public AdmissionConfig() {
+		this(DEFAULT_INTERACTIVE, DEFAULT_EXPORT, DEFAULT_TASK, DEFAULT_MEMORY_BUDGET, DEFAULT_REQUEST_MEMORY_MAX);
+	}
+
+	public AdmissionConfig(EndpointConfig interactive, EndpointConfig export, EndpointConfig task, long memory_budget, long request_memory_max) {
+		this.interactive = interactive;
+		this.export = export;
+		this.task = task;
+		this.memory_budget = memory_budget;
+		this.request_memory_max = Math.min(request_memory_max, memory_budget);
+	}
+
+	public static AdmissionConfig ofYAML(YamlMap yamlMap) {
+		EndpointConfig interactive = yamlMap.funMap("interactive", m -> EndpointConfig.ofYAML(m, DEFAULT_INTERACTIVE), () -> DEFAULT_INTERACTIVE);
+		EndpointConfig export = yamlMap.funMap("export", m -> EndpointConfig.ofYAML(m, DEFAULT_EXPORT), () -> DEFAULT_EXPORT);
+		EndpointConfig task = yamlMap.funMap("task", m -> EndpointConfig.ofYAML(m, DEFAULT_TASK), () -> DEFAULT_TASK);
+		long memory_budget = yamlMap.optLong("memory_budget_mb", DEFAULT_MEMORY_BUDGET >> 20) << 20;
+		long request_memory_max = yamlMap.optLong("request_memory_max_mb", DEFAULT_REQUEST_MEMORY_MAX >> 20) << 20;
+		return new AdmissionConfig(interactive, export, task, memory_budget, request_memory_max);
+	}
+}
@@ -6,6 +6,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NavigableSet;
@@ -59,6 +61,7 @@ public class Broker implements AutoCloseable {
 	private static final Path pointcloud_root = Paths.get("pointcloud");
 	private static final Path vectordb_root = Paths.get("vectordb");
 	private static final Path voxeldb_root = Paths.get("voxeldb");
+	private static final Path backup_root = Paths.get("backup");
 
 	private static final Path REALM_PROPERTIES_PATH = Paths.get("realm.properties");
 
@@ -100,7 +103,11 @@ public class Broker implements AutoCloseable {
 	
 	public Path getRasterDBRoot() {
 		return rasterdb_root;
-	}	
+	}
+
+	public Path getBackupRoot() {
+		return backup_root;
+	}
 
 	public synchronized void refreshPoiGroupMap() {
 		TreeMap<String, PoiGroup> map = new TreeMap<String, PoiGroup>();
@@ -492,11 +499,23 @@ public class Broker implements AutoCloseable {
 	public synchronized void deleteRasterdb(String name) {
 		Util.checkStrictID(name);
 		log.info("check " + name + "   " + rasterdbMap.get(name));
+		List<Path> segmentFiles = Collections.emptyList();
+		if(hasRasterdb(name)) {
+			try {
+				segmentFiles = getRasterdb(name).getStorageSegmentFiles();
+			} catch(Exception e) {
+				log.warn("could not get segment files of " + name + "  " + e);
+			}
+		}
 		closeRasterdb(name);
 		Path rasterdbPath = rasterdb_root.resolve(name);
 		if(Files.exists(rasterdbPath)) {
 			log.info("delete RasterDB: " + name);
 			try {
+				//StripedTileStorage, segments may be placed outside of rasterdbPath
+				for(Path segmentFile : segmentFiles) {
+					Files.deleteIfExists(segmentFile);
+				}
 				//RasterUnit
 				Files.deleteIfExists(rasterdbPath.resolve("raster"));
 				Files.deleteIfExists(rasterdbPath.resolve("raster1"));
@@ -0,0 +1,36 @@
+package broker;
+
+import util.yaml.YamlMap;
+
+/**
+ * Limits of the cache of evaluated raster products, see {@link rasterdb.ProductCache}.
+ */
+public class ProductCacheConfig {
+
+	private static final long MAX_MEMORY = Runtime.getRuntime().maxMemory();
+
+	private static final long DEFAULT_MEMORY = MAX_MEMORY / 16;
+	private static final String DEFAULT_SPILL_PATH = ""; // no spill
+	private static final long DEFAULT_SPILL = 4096L << 20;
+
+	public final long memory; // bytes, 0 disables the cache
+	public final String spill_path; // directory of spilled entries, empty if entries are not spilled to disk
+	public final long spill; // bytes
+
+	public ProductCacheConfig() {
+		this(DEFAULT_MEMORY, DEFAULT_SPILL_PATH, DEFAULT_SPILL);
+	}
+
+	public ProductCacheConfig(long memory, String spill_path, long spill) {
+		this.memory = Math.max(0, memory);
+		this.spill_path = spill_path == null ? "" : spill_path;
+		this.spill = Math.max(0, spill);
+	}
+
+	public static ProductCacheConfig ofYAML(YamlMap yamlMap) {
+		long memory = yamlMap.optLong("memory_mb", DEFAULT_MEMORY >> 20) << 20;
+		String spill_path = yamlMap.optString("spill_path", DEFAULT_SPILL_PATH);
+		long spill = yamlMap.optLong("spill_mb", DEFAULT_SPILL >> 20) << 20;
+		return new ProductCacheConfig(memory, spill_path, spill);
+	}
+}
@@ -16,18 +16,26 @@ public class ServerConfig {
 	public final boolean login;	
 	public final int jws_port;
 	public final String keystore_password;
+	public final AdmissionConfig admission;
+	public final ProductCacheConfig product_cache;
 	
 	public ServerConfig() {
 		this(DEFAULT_PORT, DEFAULT_SECURE_PORT, false, 0, DEFAULT_KEYSTORE_PASSWORD, DEFAULT_HTTP_AUTHENTICATION);
 	}
 	
 	public ServerConfig(int port, int secure_port, boolean login, int jws_port, String keystore_password, String http_authentication) {
+		this(port, secure_port, login, jws_port, keystore_password, http_authentication, new AdmissionConfig(), new ProductCacheConfig());
+	}
+	
+	public ServerConfig(int port, int secure_port, boolean login, int jws_port, String keystore_password, String http_authentication, AdmissionConfig admission, ProductCacheConfig product_cache) {
 		this.port = port;
 		this.secure_port = secure_port;
 		this.login = login;
 		this.jws_port = jws_port;
 		this.keystore_password = keystore_password;
 		this.http_authentication = http_authentication;
+		this.admission = admission;
+		this.product_cache = product_cache;
 	}
 	
 	public static ServerConfig ofYAML(YamlMap yamlMap) {
@@ -37,7 +45,9 @@ public class ServerConfig {
 		int jws_port = yamlMap.optInt("jws_port", 0);
 		String keystore_password = yamlMap.optString("keystore_password", DEFAULT_KEYSTORE_PASSWORD);
 		String http_authentication = yamlMap.optString("http_authentication", DEFAULT_HTTP_AUTHENTICATION);
-		return new ServerConfig(port, secure_port, login, jws_port, keystore_password, http_authentication);
+		AdmissionConfig admission = yamlMap.funMap("admission", AdmissionConfig::ofYAML, AdmissionConfig::new);
+		ProductCacheConfig product_cache = yamlMap.funMap("product_cache", ProductCacheConfig::ofYAML, ProductCacheConfig::new);
+		return new ServerConfig(port, secure_port, login, jws_port, keystore_password, http_authentication, admission, product_cache);
 	}
 	
 	public boolean useJwsPort() {
@@ -46,8 +46,11 @@ import pointdb.base.PdbConst;
 import rasterdb.GeoReference;
 import rasterdb.RasterDB;
 import rasterdb.tile.TilePixel;
+import rasterunit.RasterUnitStorage;
 import rasterunit.TileKey;
+import rasterunit.TileValid;
 import util.Range2d;
+import util.Revision;
 import util.Timer;
 import vectordb.VectorDB;
 import voxeldb.VoxelDB;
@@ -65,6 +68,7 @@ public class Catalog {
 
 	private final Broker broker;
 	private Map<CatalogKey, CatalogEntry> map = new LinkedHashMap<>();
+	private volatile long revision = Revision.next(); // set after changes of map
 
 	public Catalog(Broker broker) {
 		this.broker = broker;
@@ -110,14 +114,31 @@ public class Catalog {
 						double pymin = ref.pixelYToGeo(localRange.ymin);
 						double pxmax = ref.pixelXToGeo(localRange.xmax);
 						double pymax = ref.pixelYToGeo(localRange.ymax);
-						Set<TileKey> keys = rasterdb.rasterUnit().tileKeysReadonly();
+						RasterUnitStorage rasterUnit = rasterdb.rasterUnit();
+						Set<TileKey> keys = rasterUnit.tileKeysReadonly();
+						int tileLen = rasterdb.getTilePixelLen();
 						Coordinate[] coordinates = new Coordinate[keys.size() * 4];
 						int i = 0;
 						for(TileKey key:keys) {
-							double xmin = ref.pixelXToGeo(TilePixel.tileToPixel(key.x));
-							double ymin = ref.pixelYToGeo(TilePixel.tileToPixel(key.y));
-							double xmax = ref.pixelXToGeo(TilePixel.tileToPixelMax(key.x));
-							double ymax = ref.pixelYToGeo(TilePixel.tileToPixelMax(key.y));
+							TileValid valid = rasterUnit.getTileValid(key);
+							if(valid.isEmpty()) {
+								continue;
+							}
+							double xmin;
+							double ymin;
+							double xmax;
+							double ymax;
+							if(valid.isUnknown()) {
+								xmin = ref.pixelXToGeo(TilePixel.tileToPixel(key.x));
+								ymin = ref.pixelYToGeo(TilePixel.tileToPixel(key.y));
+								xmax = ref.pixelXToGeo(TilePixel.tileToPixelMax(key.x));
+								ymax = ref.pixelYToGeo(TilePixel.tileToPixelMax(key.y));
+							} else { // valid pixel box from tile index
+								xmin = ref.pixelXToGeo(key.x * tileLen + valid.xmin);
+								ymin = ref.pixelYToGeo(key.y * tileLen + valid.ymin);
+								xmax = ref.pixelXToGeo(key.x * tileLen + valid.xmax);
+								ymax = ref.pixelYToGeo(key.y * tileLen + valid.ymax);
+							}
 							if(xmin < pxmin) {
 								xmin = pxmin;
 							}
@@ -136,6 +157,9 @@ public class Catalog {
 							coordinates[i++] = new Coordinate(xmin, ymax);
 							coordinates[i++] = new Coordinate(xmax, ymax);
 						}
+						if(i < coordinates.length) {
+							coordinates = Arrays.copyOf(coordinates, i);
+						}
 						points = generateConvexHullPoints(coordinates);
 					}
 					break;
@@ -455,6 +479,7 @@ public class Catalog {
 		}
 
 		this.map = map;
+		revision = Revision.next();
 		writeToFile();
 	}
 
@@ -571,6 +596,7 @@ public class Catalog {
 
 		if(changed) {
 			this.map = map;
+			revision = Revision.next();
 			writeToFile();
 			log.info("catalog updated");
 		}
@@ -623,12 +649,21 @@ public class Catalog {
 				map.put(catalogEntry.toKey(), catalogEntry);
 			}
 			this.map = map;
+			revision = Revision.next();
 		} catch(Exception e) {
 			e.printStackTrace();
 			log.warn(e);
 		}
 	}
 
+	/**
+	 * 
+	 * @return revision of catalog, changes with every update of catalog entries
+	 */
+	public long getRevision() {
+		return revision;
+	}
+
 	public String[] getRoles() {
 		HashSet<String> collector = new HashSet<String>();
 		for(CatalogEntry e:map.values()) {
@@ -720,6 +755,7 @@ public class Catalog {
 		Map<CatalogKey, CatalogEntry> map = new LinkedHashMap<>(this.map);
 		map.put(catalogEntry.toKey(), catalogEntry);
 		this.map = map;
+		revision = Revision.next();
 		writeToFile();
 		log.info("catalog updated");
 	}
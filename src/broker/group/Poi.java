@@ -59,4 +59,28 @@ public class Poi {
 		}
 	}
 
+	/**
+	 * Parses list of points separated by ',' or ';' with coordinates separated by whitespace: "x y" or "name x y".
+	 * Unnamed points get names p1, p2, ...
+	 * @param text
+	 * @return
+	 */
+	public static Poi[] parsePoiList(String text) {
+		ArrayList<Poi> poiList = new ArrayList<Poi>();
+		for(String pointText:text.split("[,;]")) {
+			String[] e = pointText.trim().split("\\s+");
+			switch(e.length) {
+			case 2:
+				poiList.add(new Poi("p" + (poiList.size() + 1), Double.parseDouble(e[0]), Double.parseDouble(e[1])));
+				break;
+			case 3:
+				poiList.add(new Poi(e[0], Double.parseDouble(e[1]), Double.parseDouble(e[2])));
+				break;
+			default:
+				throw new RuntimeException("could not parse point: " + pointText);
+			}
+		}
+		return poiList.toArray(new Poi[0]);
+	}
+
 }
@@ -29,8 +29,10 @@ import rasterunit.Tile;
 import rasterunit.TileCollection;
 import rasterunit.TileKey;
 import rasterunit.TileStorage;
+import rasterunit.TileStorageBackup;
 import rasterunit.TileStorageConfig;
 import util.Range2d;
+import util.CancellationToken;
 import util.collections.ReadonlyNavigableSetView;
 import util.collections.vec.ReadonlyVecView;
 import util.collections.vec.Vec;
@@ -110,6 +112,21 @@ public class GridDB implements AutoCloseable {
 		return storage;
 	}
 
+	/**
+	 * Consistent copy of meta and tile storage into targetDir while the layer keeps serving.
+	 * @param targetDir
+	 * @param tileStorageBackup
+	 * @throws IOException
+	 */
+	public void backup(Path targetDir, TileStorageBackup tileStorageBackup) throws IOException {
+		targetDir.toFile().mkdirs();
+		synchronized (this) {
+			writeMeta();
+			Files.copy(metaPath, targetDir.resolve(metaPath.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+		}
+		tileStorageBackup.backup(storage(), targetDir, name);
+	}
+
 	public void setExtendedMeta(ExtendedMeta extendedMeta) {
 		this.extendedMeta = extendedMeta;
 	}
@@ -177,7 +194,11 @@ public class GridDB implements AutoCloseable {
 		Stream<Cell> stream = StreamSupport.stream(spliterator, true).map(tile -> tileToCell(tile));*/
 		/*Spliterator<Tile> spliterator = new TileSpliterator<Tile>(tiles.iterator(), tiles.size(), 0);
 		Stream<Cell> stream = StreamSupport.stream(spliterator, true).map(tile -> tileToCell(tile));*/
-		Stream<Cell> stream = tiles.parallelStream().map(tile -> tileToCell(tile));
+		CancellationToken token = CancellationToken.current();
+		Stream<Cell> stream = tiles.parallelStream().map(tile -> {
+			CancellationToken.check(token);
+			return tileToCell(tile);
+		});
 		//Stream<Cell> stream = tiles.stream().map(tile -> tileToCell(tile));
 		return stream;
 	}
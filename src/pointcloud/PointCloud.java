@@ -2,6 +2,7 @@ package pointcloud;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.stream.Stream;
@@ -27,6 +28,7 @@ import rasterunit.BandKey;
 import rasterunit.Tile;
 import rasterunit.TileCollection;
 import rasterunit.TileKey;
+import util.CancellationToken;
 import util.Range2d;
 import util.collections.ReadonlyNavigableSetView;
 import util.yaml.YamlMap;
@@ -419,6 +421,45 @@ public class PointCloud implements AutoCloseable {
 	}
 
 
+	/**
+	 * Estimates count of points in extent from count of cells and points of up to sampleCount cells spread over the extent.
+	 * @param xmin
+	 * @param ymin
+	 * @param xmax
+	 * @param ymax
+	 * @param sampleCount
+	 * @return
+	 */
+	public long estimatePointCount(double xmin, double ymin, double xmax, double ymax, int sampleCount) {
+		TileCollection tiles = getTiles(xmin, ymin, xmax, ymax);
+		if(tiles == null || attr_x == null) {
+			return 0;
+		}
+		int cellCount = tiles.size();
+		if(cellCount == 0) {
+			return 0;
+		}
+		int stride = Math.max(1, cellCount / sampleCount);
+		long sampledPoints = 0;
+		int sampledCells = 0;
+		Iterator<TileKey> it = tiles.keyIterator();
+		for (int i = 0; it.hasNext(); i++) {
+			TileKey tileKey = it.next();
+			if(i % stride == 0) {
+				try {
+					Tile tile = griddb.storage().readTile(tileKey);
+					sampledPoints += GridDB.tileToCell(tile).getInt(attr_x).length;
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+				if(++sampledCells == sampleCount) {
+					break;
+				}
+			}
+		}
+		return sampledPoints * cellCount / sampledCells;
+	}
+
 	public CellTable getCellTable(int cx, int cy, int cz) throws IOException {
 		Cell cell = griddb.getCell(cx, cy, cz);
 		if(cell == null) {
@@ -499,7 +540,9 @@ public class PointCloud implements AutoCloseable {
 		//log.info("selector " + selector); 
 		//log.info("loadSelector " + loadSelector); 
 		Stream<CellTable> cellTables = getCellTables(xmin, ymin, xmax, ymax, loadSelector);
+		CancellationToken token = CancellationToken.current();
 		Stream<PointTable> pointTables = cellTables.map(cellTable -> {
+			CancellationToken.check(token);
 
 			/*if(cellTable.returnNumber != null && cellTable.returnNumber.length > 0) {
 				log.info("cellTable.returnNumber" + cellTable.returnNumber[0]);
@@ -5,6 +5,7 @@ import java.util.Iterator;
 import pointdb.base.PdbConst;
 import pointdb.base.Tile;
 import pointdb.base.TileKey;
+import util.CancellationToken;
 
 public class TileIterator implements Iterator<Tile> {
 
@@ -15,9 +16,11 @@ public class TileIterator implements Iterator<Tile> {
 	
 	private int next_tile_y;
 	private Iterator<Tile> currIt;
+	private final CancellationToken token; // nullable
 
 	public TileIterator(PointDB pointdb, int utm_min_x, int utm_min_y, int utm_max_x, int utm_max_y) {			
 		this.pointdb = pointdb;
+		this.token = CancellationToken.current();
 		this.tile_min_x = utm_min_x - (utm_min_x % PdbConst.UTM_TILE_SIZE);
 		this.next_tile_y = utm_min_y - (utm_min_y % PdbConst.UTM_TILE_SIZE);
 		this.tile_max_x = utm_max_x - (utm_max_x % PdbConst.UTM_TILE_SIZE);
@@ -47,10 +50,11 @@ public class TileIterator implements Iterator<Tile> {
 	}
 	@Override
 	public Tile next() {
+		CancellationToken.check(token);
 		if(currIt.hasNext()) {
 			return currIt.next();
 		}
 		nextRow();
 		return currIt.next();
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
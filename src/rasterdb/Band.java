@@ -158,11 +158,11 @@ public class Band {
 	}
 	
 	public boolean isPixelTypeInt16OrExactConvertible() {
-		return isPixelTypeInt16();
+		return isPixelTypeInt16() || type == CellType.UINT8;
 	}
 	
 	public boolean isPixelTypeFloat32OrExactConvertible() {
-		return isPixelTypeFloat32() || isPixelTypeInt16();
+		return isPixelTypeFloat32() || isPixelTypeInt16() || type == CellType.UINT8;
 	}
 	
 	public boolean isPixelTypeInt16() {
@@ -170,13 +170,21 @@ public class Band {
 	}
 	
 	public boolean isPixelTypeFloat32() {
-		return type == TilePixel.TYPE_FLOAT;
+		return type == TilePixel.TYPE_FLOAT || type == CellType.FLOAT32;
 	}
 	
 	public short getInt16NA() {
 		return 0;
 	}
 	
+	public byte getUint8NA() {
+		return 0;
+	}
+	
+	public int getInt32NA() {
+		return 0;
+	}
+	
 	public String getPixelTypeName() {
 		switch (type) {
 		case TilePixel.TYPE_SHORT:
@@ -185,6 +193,12 @@ public class Band {
 			return "float32";
 		case CellType.INT16:
 			return "int16";
+		case CellType.FLOAT32:
+			return "float32";
+		case CellType.UINT8:
+			return "uint8";
+		case CellType.INT32:
+			return "int32";
 		default:
 			return "unknown";
 		}
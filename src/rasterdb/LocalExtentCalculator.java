@@ -3,13 +3,18 @@ package rasterdb;
 import java.io.IOException;
 import java.util.Set;
 
+import rasterdb.cell.CellFloat32;
 import rasterdb.cell.CellInt16;
+import rasterdb.cell.CellInt32;
 import rasterdb.cell.CellType;
+import rasterdb.cell.CellUint8;
 import rasterdb.tile.TileFloat;
 import rasterdb.tile.TilePixel;
 import rasterdb.tile.TileShort;
 import rasterunit.RasterUnitStorage;
+import rasterunit.Tile;
 import rasterunit.TileKey;
+import rasterunit.TileValid;
 import util.Range2d;
 
 public class LocalExtentCalculator {
@@ -28,9 +33,13 @@ public class LocalExtentCalculator {
 			int bandMaxIndex = keys.stream().mapToInt(i->i).max().getAsInt();
 			int[] bandTypes = new int[bandMaxIndex + 1];
 			short[] bandShortNAs = new short[bandMaxIndex + 1];
+			byte[] bandUint8NAs = new byte[bandMaxIndex + 1];
+			int[] bandInt32NAs = new int[bandMaxIndex + 1];
 			for(Band band : rasterdb.bandMapReadonly.values()) {
 				bandTypes[band.index] = band.type;
 				bandShortNAs[band.index] = band.getInt16NA();
+				bandUint8NAs[band.index] = band.getUint8NA();
+				bandInt32NAs[band.index] = band.getInt32NA();
 			}
 
 			RasterUnitStorage rasterUnit = rasterdb.rasterUnit();
@@ -44,13 +53,34 @@ public class LocalExtentCalculator {
 			int lymax = 0;
 
 			for(TileKey tileKey:rasterUnit.tileKeysReadonly()) {
+				if(tileRange.xmin != tileKey.x && tileRange.ymin != tileKey.y && tileRange.xmax != tileKey.x && tileRange.ymax != tileKey.y) {
+					continue;
+				}
+				TileValid valid = rasterUnit.getTileValid(tileKey);
+				if(!valid.isUnknown()) { // valid pixel box from tile index, no tile read
+					if(!valid.isEmpty()) {
+						if(tileRange.xmin == tileKey.x && valid.xmin < lxmin) {
+							lxmin = valid.xmin;
+						}
+						if(tileRange.ymin == tileKey.y && valid.ymin < lymin) {
+							lymin = valid.ymin;
+						}
+						if(tileRange.xmax == tileKey.x && valid.xmax > lxmax) {
+							lxmax = valid.xmax;
+						}
+						if(tileRange.ymax == tileKey.y && valid.ymax > lymax) {
+							lymax = valid.ymax;
+						}
+					}
+					continue;
+				}
 				switch(bandTypes[tileKey.b]) {
 				case TilePixel.TYPE_SHORT: {
 					short na = (short) bandShortNAs[tileKey.b];
 					short[][] pixels = null;
 					if(lxmin > 0 && tileRange.xmin == tileKey.x) {
 						if(pixels == null) {
-							pixels = TileShort.decode(rasterUnit.readTile(tileKey).data);
+							pixels = TileShort.decode(rasterUnit.readTile(tileKey));
 						}
 						int cxmin = getXmin(pixels, na);
 						if(cxmin < lxmin) {
@@ -59,7 +89,7 @@ public class LocalExtentCalculator {
 					}
 					if(lymin > 0 && tileRange.ymin == tileKey.y) {
 						if(pixels == null) {
-							pixels = TileShort.decode(rasterUnit.readTile(tileKey).data);
+							pixels = TileShort.decode(rasterUnit.readTile(tileKey));
 						}
 						int cymin = getYmin(pixels, na);
 						if(cymin < lymin) {
@@ -68,7 +98,7 @@ public class LocalExtentCalculator {
 					}
 					if(lxmax < TilePixel.PIXELS_PER_ROW_1 && tileRange.xmax == tileKey.x) {
 						if(pixels == null) {
-							pixels = TileShort.decode(rasterUnit.readTile(tileKey).data);
+							pixels = TileShort.decode(rasterUnit.readTile(tileKey));
 						}
 						int cxmax = getXmax(pixels, na);
 						if(cxmax > lxmax) {
@@ -77,7 +107,7 @@ public class LocalExtentCalculator {
 					}
 					if(lymax < TilePixel.PIXELS_PER_ROW_1 && tileRange.ymax == tileKey.y) {
 						if(pixels == null) {
-							pixels = TileShort.decode(rasterUnit.readTile(tileKey).data);
+							pixels = TileShort.decode(rasterUnit.readTile(tileKey));
 						}
 						int cymax = getYmax(pixels, na);
 						if(cymax > lymax) {
@@ -90,7 +120,7 @@ public class LocalExtentCalculator {
 					float[][] pixels = null;
 					if(lxmin > 0 && tileRange.xmin == tileKey.x) {
 						if(pixels == null) {
-							pixels = TileFloat.decode(rasterUnit.readTile(tileKey).data);
+							pixels = TileFloat.decode(rasterUnit.readTile(tileKey));
 						}
 						int cxmin = getXmin(pixels);
 						if(cxmin < lxmin) {
@@ -99,7 +129,7 @@ public class LocalExtentCalculator {
 					}
 					if(lymin > 0 && tileRange.ymin == tileKey.y) {
 						if(pixels == null) {
-							pixels = TileFloat.decode(rasterUnit.readTile(tileKey).data);
+							pixels = TileFloat.decode(rasterUnit.readTile(tileKey));
 						}
 						int cymin = getYmin(pixels);
 						if(cymin < lymin) {
@@ -108,7 +138,7 @@ public class LocalExtentCalculator {
 					}
 					if(lxmax < TilePixel.PIXELS_PER_ROW_1 && tileRange.xmax == tileKey.x) {
 						if(pixels == null) {
-							pixels = TileFloat.decode(rasterUnit.readTile(tileKey).data);
+							pixels = TileFloat.decode(rasterUnit.readTile(tileKey));
 						}
 						int cxmax = getXmax(pixels);
 						if(cxmax > lxmax) {
@@ -117,7 +147,7 @@ public class LocalExtentCalculator {
 					}
 					if(lymax < TilePixel.PIXELS_PER_ROW_1 && tileRange.ymax == tileKey.y) {
 						if(pixels == null) {
-							pixels = TileFloat.decode(rasterUnit.readTile(tileKey).data);
+							pixels = TileFloat.decode(rasterUnit.readTile(tileKey));
 						}
 						int cymax = getYmax(pixels);
 						if(cymax > lymax) {
@@ -169,6 +199,52 @@ public class LocalExtentCalculator {
 					}
 					break;
 				}
+				case CellType.FLOAT32:
+				case CellType.UINT8:
+				case CellType.INT32: {
+					int pixel_len = rasterdb.getTilePixelLen();
+					int bandType = bandTypes[tileKey.b];
+					int na = bandType == CellType.UINT8 ? (bandUint8NAs[tileKey.b] & 0xff) : bandInt32NAs[tileKey.b];
+					float[][] pixels = null;
+					if(lxmin > 0 && tileRange.xmin == tileKey.x) {
+						if(pixels == null) {
+							pixels = decodeCellAsFloat(bandType, pixel_len, na, rasterUnit.readTile(tileKey));
+						}
+						int cxmin = getXmin(pixels);
+						if(cxmin < lxmin) {
+							lxmin = cxmin;
+						}
+					}
+					if(lymin > 0 && tileRange.ymin == tileKey.y) {
+						if(pixels == null) {
+							pixels = decodeCellAsFloat(bandType, pixel_len, na, rasterUnit.readTile(tileKey));
+						}
+						int cymin = getYmin(pixels);
+						if(cymin < lymin) {
+							lymin = cymin;
+						}
+					}
+					int PIXELS_PER_ROW_1 = pixel_len - 1;
+					if(lxmax < PIXELS_PER_ROW_1 && tileRange.xmax == tileKey.x) {
+						if(pixels == null) {
+							pixels = decodeCellAsFloat(bandType, pixel_len, na, rasterUnit.readTile(tileKey));
+						}
+						int cxmax = getXmax(pixels);
+						if(cxmax > lxmax) {
+							lxmax = cxmax;
+						}
+					}
+					if(lymax < PIXELS_PER_ROW_1 && tileRange.ymax == tileKey.y) {
+						if(pixels == null) {
+							pixels = decodeCellAsFloat(bandType, pixel_len, na, rasterUnit.readTile(tileKey));
+						}
+						int cymax = getYmax(pixels);
+						if(cymax > lymax) {
+							lymax = cymax;
+						}
+					}
+					break;
+				}
 				default:
 					throw new RuntimeException("unknown type " + bandTypes[tileKey.b]);
 				}
@@ -179,6 +255,41 @@ public class LocalExtentCalculator {
 		}
 	}
 
+	/**
+	 * Decodes a cell of type float32, uint8 or int32 to float pixels with NA as NaN.
+	 * @param na NA value of uint8 (unsigned) or int32 band, not used for float32
+	 */
+	private static float[][] decodeCellAsFloat(int bandType, int pixel_len, int na, Tile tile) {
+		switch(bandType) {
+		case CellType.FLOAT32:
+			return new CellFloat32(pixel_len).decodeCell(tile);
+		case CellType.UINT8: {
+			byte[][] src = new CellUint8(pixel_len).decodeCell(tile);
+			float[][] dst = new float[pixel_len][pixel_len];
+			for(int y = 0; y < pixel_len; y++) {
+				for(int x = 0; x < pixel_len; x++) {
+					int v = src[y][x] & 0xff;
+					dst[y][x] = v == na ? Float.NaN : v;
+				}
+			}
+			return dst;
+		}
+		case CellType.INT32: {
+			int[][] src = new CellInt32(pixel_len).decodeCell(tile);
+			float[][] dst = new float[pixel_len][pixel_len];
+			for(int y = 0; y < pixel_len; y++) {
+				for(int x = 0; x < pixel_len; x++) {
+					int v = src[y][x];
+					dst[y][x] = v == na ? Float.NaN : v;
+				}
+			}
+			return dst;
+		}
+		default:
+			throw new RuntimeException("unknown type " + bandType);
+		}
+	}
+
 	public static int getXmin(short[][] pixels, short na) { // no check for all na
 		int w1 = pixels[0].length - 1;
 		int h = pixels.length;
@@ -0,0 +1,232 @@
+package rasterdb;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import broker.group.Poi;
+import rasterdb.tile.TilePixel;
+import util.Range2d;
+import util.TimeUtil;
+import util.rdat.RdatDataFrame;
+
+/**
+ * Extracts pixel values at a set of points for multiple bands and timestamps.
+ * Points are grouped by tile, so each touched tile is read and decoded once per timestamp and band.
+ * Point groups are processed in parallel.
+ */
+public class PixelExtractor {
+	private static final Logger log = LogManager.getLogger();
+
+	/**
+	 * Number of point groups that are processed in parallel before results are passed on.
+	 */
+	private static final int GROUPS_PER_BATCH = 64;
+
+	public static class PixelValue {
+		public final Poi poi;
+		public final int t;
+		public final int b;
+		public final double value;
+
+		public PixelValue(Poi poi, int t, int b, double value) {
+			this.poi = poi;
+			this.t = t;
+			this.b = b;
+			this.value = value;
+		}
+	}
+
+	private final RasterDB rasterdb;
+	private final Band[] bands;
+	private final int[] timestamps;
+	private final int pointCount;
+	private final ArrayList<Poi[]> groups = new ArrayList<Poi[]>();
+
+	public PixelExtractor(RasterDB rasterdb, Poi[] pois, Band[] bands, int[] timestamps) {
+		this.rasterdb = rasterdb;
+		this.bands = bands;
+		this.timestamps = timestamps;
+		this.pointCount = pois.length;
+		int tileLen = 1;
+		for(Band band:bands) {
+			int len = (band.type == TilePixel.TYPE_SHORT || band.type == TilePixel.TYPE_FLOAT) ? TilePixel.PIXELS_PER_ROW : rasterdb.getTilePixelLen();
+			if(tileLen < len) {
+				tileLen = len;
+			}
+		}
+		GeoReference ref = rasterdb.ref();
+		TreeMap<Long, ArrayList<Poi>> tileMap = new TreeMap<Long, ArrayList<Poi>>();
+		for(Poi poi:pois) {
+			long ty = Math.floorDiv(ref.geoYToPixel(poi.y), tileLen);
+			long tx = Math.floorDiv(ref.geoXToPixel(poi.x), tileLen);
+			long key = (ty << 32) | (tx & 0xFFFFFFFFL);
+			tileMap.computeIfAbsent(key, k -> new ArrayList<Poi>()).add(poi);
+		}
+		for(ArrayList<Poi> group:tileMap.values()) {
+			groups.add(group.toArray(new Poi[0]));
+		}
+		log.info("points " + pointCount + " in tiles " + groups.size() + " of tile size " + tileLen);
+	}
+
+	/**
+	 *
+	 * @param rasterdb
+	 * @param band_numbers null for all bands
+	 * @return
+	 */
+	public static Band[] getBands(RasterDB rasterdb, int[] band_numbers) {
+		if(band_numbers == null) {
+			return rasterdb.bandMapReadonly.values().toArray(new Band[0]);
+		}
+		Band[] bands = new Band[band_numbers.length];
+		for (int i = 0; i < band_numbers.length; i++) {
+			Band band = rasterdb.getBandByNumber(band_numbers[i]);
+			if(band == null) {
+				throw new RuntimeException("band not found: " + band_numbers[i]);
+			}
+			bands[i] = band;
+		}
+		return bands;
+	}
+
+	/**
+	 *
+	 * @param rasterdb
+	 * @param timeText time range text, null for all timestamps
+	 * @return
+	 */
+	public static int[] getTimestamps(RasterDB rasterdb, String timeText) {
+		Collection<Integer> timestamps = rasterdb.rasterUnit().timeKeysReadonly();
+		if(timeText != null) {
+			int[] timestampRange = TimeUtil.getTimestampRangeOrNull(timeText);
+			if(timestampRange == null) {
+				throw new RuntimeException("could not parse time parameter: " + timeText);
+			}
+			timestamps = rasterdb.rasterUnit().timeKeysReadonly().subSet(timestampRange[0], true, timestampRange[1], true);
+		}
+		return timestamps.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 *
+	 * @return number of resulting pixel values
+	 */
+	public long getValueCount() {
+		return ((long) pointCount) * bands.length * timestamps.length;
+	}
+
+	public int getGroupCount() {
+		return groups.size();
+	}
+
+	/**
+	 * Extracts all pixel values. Values are passed to consumer in order of point groups from a single thread.
+	 * @param consumer
+	 */
+	public void run(Consumer<PixelValue> consumer) {
+		int groupCount = groups.size();
+		for(int batchStart = 0; batchStart < groupCount; batchStart += GROUPS_PER_BATCH) {
+			int batchEnd = Math.min(batchStart + GROUPS_PER_BATCH, groupCount);
+			List<ArrayList<PixelValue>> results = IntStream.range(batchStart, batchEnd).parallel().mapToObj(i -> processGroup(groups.get(i))).collect(Collectors.toList());
+			for(ArrayList<PixelValue> result:results) {
+				result.forEach(consumer);
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return all pixel values
+	 */
+	public ArrayList<PixelValue> run() {
+		ArrayList<PixelValue> values = new ArrayList<PixelValue>();
+		run(values::add);
+		return values;
+	}
+
+	private ArrayList<PixelValue> processGroup(Poi[] group) {
+		GeoReference ref = rasterdb.ref();
+		int len = group.length;
+		int[] px = new int[len];
+		int[] py = new int[len];
+		int xmin = Integer.MAX_VALUE;
+		int ymin = Integer.MAX_VALUE;
+		int xmax = Integer.MIN_VALUE;
+		int ymax = Integer.MIN_VALUE;
+		for (int i = 0; i < len; i++) {
+			int x = ref.geoXToPixel(group[i].x);
+			int y = ref.geoYToPixel(group[i].y);
+			px[i] = x;
+			py[i] = y;
+			if(x < xmin) xmin = x;
+			if(y < ymin) ymin = y;
+			if(x > xmax) xmax = x;
+			if(y > ymax) ymax = y;
+		}
+		Range2d range2d = new Range2d(xmin, ymin, xmax, ymax);
+		TimeBandProcessor processor = new TimeBandProcessor(rasterdb, range2d);
+		ArrayList<PixelValue> result = new ArrayList<PixelValue>(len * timestamps.length * bands.length);
+		for(int t:timestamps) {
+			for(Band band:bands) {
+				if(processor.mayHavePixels(t, band)) {
+					double[][] data = processor.getDoubleFrame(t, band).data;
+					for (int i = 0; i < len; i++) {
+						result.add(new PixelValue(group[i], t, band.index, data[py[i] - ymin][px[i] - xmin]));
+					}
+				} else {
+					for (int i = 0; i < len; i++) {
+						result.add(new PixelValue(group[i], t, band.index, Double.NaN));
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Extracts all pixel values and writes them as CSV with header, NaN values are written as NA.
+	 * @param out
+	 */
+	public void writeCsv(PrintWriter out) {
+		out.println("name,x,y,t,b,value");
+		run(v -> writeCsvRow(out, v));
+	}
+
+	private static void writeCsvRow(PrintWriter out, PixelValue v) {
+		out.print(v.poi.name);
+		out.print(',');
+		out.print(v.poi.x);
+		out.print(',');
+		out.print(v.poi.y);
+		out.print(',');
+		out.print(v.t);
+		out.print(',');
+		out.print(v.b);
+		out.print(',');
+		if(Double.isFinite(v.value)) {
+			out.println(v.value);
+		} else {
+			out.println("NA");
+		}
+	}
+
+	public static RdatDataFrame<PixelValue> createRdatDataFrame() {
+		RdatDataFrame<PixelValue> df = new RdatDataFrame<PixelValue>(Collection::size);
+		df.addString("name", v -> v.poi.name);
+		df.addDouble("x", v -> v.poi.x);
+		df.addDouble("y", v -> v.poi.y);
+		df.addInt("t", v -> v.t);
+		df.addInt("b", v -> v.b);
+		df.addDouble("value", v -> v.value);
+		return df;
+	}
+}
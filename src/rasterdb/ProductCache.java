@@ -0,0 +1,392 @@
+package rasterdb;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONWriter;
+
+import broker.ProductCacheConfig;
+import rasterdb.ast.AST;
+import rasterdb.dsl.DSL;
+import rasterdb.dsl.ErrorCollector;
+import rasterdb.node.ProcessorNode;
+import util.CancellationToken;
+import util.frame.DoubleFrame;
+
+/**
+ * Cache of evaluated DSL products, keyed by layer, revision of the read content, normalised product AST, timestamp, pixel range and scale.
+ * The revision is taken from the storage the processor reads, so products of pinned snapshots are cached with the revision of the snapshot.
+ * Entries of a layer become stale when the revision of the layer changes, stale entries are removed at the first access of the new revision.
+ * Least recently used entries are evicted from memory to the optional spill directory, and removed from the spill directory if its limit is reached.
+ * Spill files are valid for the server instance only, the spill directory is cleared at configuration.
+ * Cached frames are shared by requests and must not be modified.
+ */
+public final class ProductCache {
+	private static final Logger log = LogManager.getLogger();
+
+	private static final long FRAME_OVERHEAD_BYTES = 256;
+	private static final int MAX_ENTRY_FRACTION = 8; // maximum entry size relative to memory limit
+	private static final String SPILL_FILE_SUFFIX = ".frames";
+
+	private static class Entry {
+		final String key;
+		final String layer;
+		final long revision;
+		final long bytes;
+		DoubleFrame[] frames; // synchronized, null if spill file is written
+		File file; // null if not spilled
+
+		Entry(String key, String layer, long revision, long bytes, DoubleFrame[] frames) {
+			this.key = key;
+			this.layer = layer;
+			this.revision = revision;
+			this.bytes = bytes;
+			this.frames = frames;
+		}
+	}
+
+	private static volatile ProductCacheConfig config = new ProductCacheConfig();
+	private static volatile File spillDirectory = null;
+
+	private static final LinkedHashMap<String, Entry> memoryMap = new LinkedHashMap<String, Entry>(16, 0.75f, true); // synchronized
+	private static final LinkedHashMap<String, Entry> spillMap = new LinkedHashMap<String, Entry>(16, 0.75f, true); // synchronized
+	private static long memoryBytes = 0; // synchronized
+	private static long spillBytes = 0; // synchronized
+	private static final ConcurrentHashMap<String, Long> layerRevisionMap = new ConcurrentHashMap<String, Long>();
+
+	private static final LongAdder hitCount = new LongAdder();
+	private static final LongAdder spillHitCount = new LongAdder();
+	private static final LongAdder missCount = new LongAdder();
+	private static final LongAdder staleCount = new LongAdder();
+
+	private ProductCache() {}
+
+	/**
+	 * Sets limits and spill directory, existing entries are removed.
+	 * @param productCacheConfig
+	 */
+	public static void configure(ProductCacheConfig productCacheConfig) {
+		File dir = null;
+		if(!productCacheConfig.spill_path.isEmpty() && productCacheConfig.spill > 0) {
+			dir = new File(productCacheConfig.spill_path);
+			dir.mkdirs();
+			File[] files = dir.listFiles((d, name) -> name.endsWith(SPILL_FILE_SUFFIX));
+			if(files != null) {
+				for(File file : files) {
+					file.delete();
+				}
+			}
+		}
+		synchronized (memoryMap) {
+			memoryMap.clear();
+			memoryBytes = 0;
+			for(Entry e : spillMap.values()) {
+				e.file.delete();
+			}
+			spillMap.clear();
+			spillBytes = 0;
+			config = productCacheConfig;
+			spillDirectory = dir;
+		}
+		log.info("product cache " + (productCacheConfig.memory >> 20) + " MB" + (dir == null ? "" : ", spill " + (productCacheConfig.spill >> 20) + " MB in " + dir));
+	}
+
+	/**
+	 * Evaluates a product or gets it from cache, see {@link DSL#process(String, ErrorCollector, BandProcessor)}.
+	 * @param script
+	 * @param errorCollector
+	 * @param processor
+	 * @return frames, shared with other requests, not to be modified
+	 */
+	public static DoubleFrame[] process(String script, ErrorCollector errorCollector, BandProcessor processor) {
+		AST astBound = DSL.bind(DSL.parse_unify(script, errorCollector), processor.rasterdb);
+		String layer = processor.rasterdb.config.getName();
+		long revision = processor.getRevision();
+		String key = getKey(layer, revision, DSL.toString(astBound), processor);
+		DoubleFrame[] frames = config.memory > 0 ? get(key, layer, revision) : null;
+		if(frames != null) {
+			return frames;
+		}
+		ProcessorNode processorNode = DSL.compileToProcessorNode(astBound, processor);
+		CancellationToken.checkCurrent();
+		frames = processorNode.process(processor);
+		if(config.memory > 0 && errorCollector.lines.isEmpty() && processor.getRevision() == revision) { // not cached if read content changed while processing
+			put(new Entry(key, layer, revision, getBytes(frames), frames));
+		}
+		return frames;
+	}
+
+	private static String getKey(String layer, long revision, String ast, BandProcessor processor) {
+		return layer + '\n' + revision + '\n' + ast + '\n' + processor.timestamp + '\n' + processor.getSrcRange() + '\n' + processor.getDstRange() + '\n' + processor.getScale();
+	}
+
+	private static long getBytes(DoubleFrame[] frames) {
+		long bytes = 0;
+		for(DoubleFrame frame : frames) {
+			bytes += FRAME_OVERHEAD_BYTES + ((long) frame.width) * frame.height * Double.BYTES;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Removes entries of older revisions of the layer at the first access of a new revision.
+	 * @param layer
+	 * @param revision
+	 * @return false if revision is older than the current revision of the layer
+	 */
+	private static boolean checkRevision(String layer, long revision) {
+		Long prev = layerRevisionMap.get(layer);
+		if(prev != null && prev >= revision) {
+			return prev == revision;
+		}
+		layerRevisionMap.merge(layer, revision, Math::max);
+		ArrayList<File> staleFiles = new ArrayList<File>();
+		synchronized (memoryMap) {
+			Iterator<Entry> it = memoryMap.values().iterator();
+			while(it.hasNext()) {
+				Entry e = it.next();
+				if(e.layer.equals(layer) && e.revision < revision) {
+					it.remove();
+					memoryBytes -= e.bytes;
+					staleCount.increment();
+				}
+			}
+			it = spillMap.values().iterator();
+			while(it.hasNext()) {
+				Entry e = it.next();
+				if(e.layer.equals(layer) && e.revision < revision) {
+					it.remove();
+					spillBytes -= e.bytes;
+					staleFiles.add(e.file);
+					staleCount.increment();
+				}
+			}
+		}
+		for(File file : staleFiles) {
+			file.delete();
+		}
+		return true;
+	}
+
+	private static DoubleFrame[] get(String key, String layer, long revision) {
+		if(!checkRevision(layer, revision)) {
+			missCount.increment();
+			return null;
+		}
+		Entry spilled;
+		DoubleFrame[] frames;
+		synchronized (memoryMap) {
+			Entry e = memoryMap.get(key);
+			if(e != null) {
+				hitCount.increment();
+				return e.frames;
+			}
+			spilled = spillMap.get(key);
+			frames = spilled == null ? null : spilled.frames; // not null if spill file is not written yet
+		}
+		if(spilled == null) {
+			missCount.increment();
+			return null;
+		}
+		if(frames == null) {
+			try {
+				frames = readFrames(spilled.file);
+			} catch(IOException e) { // removed concurrently
+				log.warn("could not read spilled product " + e);
+				missCount.increment();
+				return null;
+			}
+		}
+		spillHitCount.increment();
+		synchronized (memoryMap) {
+			if(spillMap.get(key) == spilled) {
+				spillMap.remove(key);
+				spillBytes -= spilled.bytes;
+				spilled.file.delete();
+			}
+		}
+		put(new Entry(key, layer, revision, spilled.bytes, frames));
+		return frames;
+	}
+
+	private static void put(Entry entry) {
+		ProductCacheConfig cfg = config;
+		if(entry.bytes > cfg.memory / MAX_ENTRY_FRACTION || !checkRevision(entry.layer, entry.revision)) {
+			return;
+		}
+		ArrayList<Entry> evicted = new ArrayList<Entry>();
+		synchronized (memoryMap) {
+			Entry prev = memoryMap.put(entry.key, entry);
+			if(prev != null) {
+				memoryBytes -= prev.bytes;
+			}
+			memoryBytes += entry.bytes;
+			Iterator<Entry> it = memoryMap.values().iterator();
+			while(memoryBytes > cfg.memory && it.hasNext()) {
+				Entry eldest = it.next();
+				it.remove();
+				memoryBytes -= eldest.bytes;
+				if(spill(eldest)) {
+					evicted.add(eldest);
+				}
+			}
+		}
+		File dir = spillDirectory;
+		if(dir != null) {
+			for(Entry e : evicted) {
+				writeSpill(dir, e);
+			}
+		}
+	}
+
+	/**
+	 * Reserves spill space for an evicted entry, needs lock. The file is written outside of the lock.
+	 * @param entry
+	 * @return true if the spill file needs to be written
+	 */
+	private static boolean spill(Entry entry) {
+		ProductCacheConfig cfg = config;
+		File dir = spillDirectory;
+		if(dir == null || entry.bytes > cfg.spill) {
+			return false;
+		}
+		entry.file = new File(dir, hash(entry.key) + SPILL_FILE_SUFFIX);
+		ArrayList<File> removed = new ArrayList<File>();
+		Entry prev = spillMap.put(entry.key, entry);
+		if(prev != null) {
+			spillBytes -= prev.bytes;
+		}
+		spillBytes += entry.bytes;
+		Iterator<Entry> it = spillMap.values().iterator();
+		while(spillBytes > cfg.spill && it.hasNext()) {
+			Entry eldest = it.next();
+			it.remove();
+			spillBytes -= eldest.bytes;
+			removed.add(eldest.file);
+		}
+		for(File file : removed) {
+			file.delete();
+		}
+		return true;
+	}
+
+	private static void writeSpill(File dir, Entry entry) {
+		DoubleFrame[] frames;
+		synchronized (memoryMap) {
+			frames = entry.frames;
+		}
+		File tempFile = new File(dir, entry.file.getName() + ".tmp");
+		try {
+			try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+				out.writeInt(frames.length);
+				for(DoubleFrame frame : frames) {
+					out.writeInt(frame.local_min_x);
+					out.writeInt(frame.local_min_y);
+					out.writeInt(frame.local_max_x);
+					out.writeInt(frame.local_max_y);
+					out.writeInt(frame.width);
+					out.writeInt(frame.height);
+					for(double[] row : frame.data) {
+						for(double v : row) {
+							out.writeDouble(v);
+						}
+					}
+				}
+			}
+			synchronized (memoryMap) {
+				if(spillMap.get(entry.key) == entry) {
+					if(!tempFile.renameTo(entry.file)) {
+						throw new IOException("could not rename " + tempFile);
+					}
+					entry.frames = null;
+					return;
+				}
+			}
+			tempFile.delete(); // removed while writing
+		} catch(IOException e) {
+			log.warn("could not spill product " + e);
+			tempFile.delete();
+			synchronized (memoryMap) {
+				if(spillMap.get(entry.key) == entry) {
+					spillMap.remove(entry.key);
+					spillBytes -= entry.bytes;
+				}
+			}
+		}
+	}
+
+	private static DoubleFrame[] readFrames(File file) throws IOException {
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			int count = in.readInt();
+			DoubleFrame[] frames = new DoubleFrame[count];
+			for (int i = 0; i < count; i++) {
+				int local_min_x = in.readInt();
+				int local_min_y = in.readInt();
+				int local_max_x = in.readInt();
+				int local_max_y = in.readInt();
+				int width = in.readInt();
+				int height = in.readInt();
+				double[][] data = new double[height][width];
+				for(double[] row : data) {
+					for (int x = 0; x < width; x++) {
+						row[x] = in.readDouble();
+					}
+				}
+				frames[i] = new DoubleFrame(data, local_min_x, local_min_y, local_max_x, local_max_y);
+			}
+			return frames;
+		}
+	}
+
+	private static String hash(String key) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < 16; i++) {
+				sb.append(String.format("%02x", hash[i]));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public static void writeStatsJSON(JSONWriter json) {
+		json.object();
+		synchronized (memoryMap) {
+			json.key("memory_entries");
+			json.value(memoryMap.size());
+			json.key("memory_bytes");
+			json.value(memoryBytes);
+			json.key("spill_entries");
+			json.value(spillMap.size());
+			json.key("spill_bytes");
+			json.value(spillBytes);
+		}
+		json.key("hits");
+		json.value(hitCount.sum());
+		json.key("spill_hits");
+		json.value(spillHitCount.sum());
+		json.key("misses");
+		json.value(missCount.sum());
+		json.key("stale");
+		json.value(staleCount.sum());
+		json.endObject();
+	}
+}
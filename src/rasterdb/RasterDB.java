@@ -10,6 +10,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -18,6 +19,7 @@ import java.util.Map.Entry;
 import java.util.NavigableMap;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -33,9 +35,14 @@ import rasterdb.tile.Processing;
 import rasterdb.tile.TilePixel;
 import rasterunit.RasterUnit;
 import rasterunit.RasterUnitStorage;
+import rasterunit.SharedTileCache;
+import rasterunit.StripedTileStorage;
 import rasterunit.TileStorage;
+import rasterunit.TileStorageBackup;
 import rasterunit.TileStorageConfig;
+import rasterunit.TileStorageOption;
 import util.Range2d;
+import util.Revision;
 import util.yaml.YamlMap;
 
 public class RasterDB implements AutoCloseable {
@@ -46,11 +53,11 @@ public class RasterDB implements AutoCloseable {
 	private final ConcurrentSkipListMap<Integer, Band> bandMap;
 	public final  NavigableMap<Integer, Band> bandMapReadonly;
 
-	private RasterUnitStorage rasterUnit = null;
-	private RasterUnitStorage rasterPyr1Unit = null;
-	private RasterUnitStorage rasterPyr2Unit = null;
-	private RasterUnitStorage rasterPyr3Unit = null;
-	private RasterUnitStorage rasterPyr4Unit = null;
+	private volatile RasterUnitStorage rasterUnit = null;
+	private volatile RasterUnitStorage rasterPyr1Unit = null;
+	private volatile RasterUnitStorage rasterPyr2Unit = null;
+	private volatile RasterUnitStorage rasterPyr3Unit = null;
+	private volatile RasterUnitStorage rasterPyr4Unit = null;
 
 	private GeoReference ref = GeoReference.EMPTY_DEFAULT;
 	public Associated associated = new Associated();
@@ -68,6 +75,19 @@ public class RasterDB implements AutoCloseable {
 	private final Path path;
 	private String storageType = null;
 	private int tilePixelLen = 0;
+	private boolean tileDedup = false;
+	private boolean tileSnapshots = false;
+	private final ThreadLocal<RasterUnitStorage[]> snapshotScope = new ThreadLocal<RasterUnitStorage[]>();
+	private final ArrayList<RasterUnitStorage> retiredStorages = new ArrayList<RasterUnitStorage>(); // replaced by storage migration, still read by running requests
+	private final AtomicLong revision = new AtomicLong(Revision.next()); // max of meta revision and revisions of closed or replaced storages
+
+	/**
+	 * Storage names of raster unit and pyramid levels 1 to 4.
+	 */
+	public static final String[] STORAGE_NAMES = new String[] {"raster", "raster1", "raster2", "raster3", "raster4"};
+	private int storageSegments = 4;
+	private String storagePartition = StripedTileStorage.PARTITION_HASH;
+	private List<String> storageSegmentPaths = new ArrayList<String>(0);
 
 	private static final CRSFactory CRS_FACTORY = new CRSFactory();
 
@@ -106,6 +126,7 @@ public class RasterDB implements AutoCloseable {
 	@Override
 	public synchronized void close() {
 		log.info("close rasterdb " + config.getName()+" ...");
+		keepRevision(); // revision of storages is reset on reopen
 		try {
 			if (rasterUnit != null) {
 				//log.info("close rasterUnit");
@@ -128,6 +149,10 @@ public class RasterDB implements AutoCloseable {
 				rasterPyr4Unit.close();
 				rasterPyr4Unit = null;
 			}
+			for(RasterUnitStorage storage:retiredStorages) {
+				storage.close();
+			}
+			retiredStorages.clear();
 		} catch(IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -166,6 +191,7 @@ public class RasterDB implements AutoCloseable {
 	}
 
 	public synchronized void writeMeta() {
+		revision.set(Revision.next());
 		try {
 			LinkedHashMap<String, Object> map = new LinkedHashMap<String, Object>();
 			map.put("type", TYPE);
@@ -189,6 +215,19 @@ public class RasterDB implements AutoCloseable {
 			}
 			map.put("storage_type", storageType);
 			map.put("tile_pixel_len", tilePixelLen);
+			if(tileDedup) {
+				map.put("tile_dedup", tileDedup);
+			}
+			if(tileSnapshots) {
+				map.put("tile_snapshots", tileSnapshots);
+			}
+			if(storageType.equals("StripedTileStorage")) {
+				map.put("storage_segments", storageSegments);
+				map.put("storage_partition", storagePartition);
+				if(!storageSegmentPaths.isEmpty()) {
+					map.put("storage_segment_paths", storageSegmentPaths);
+				}
+			}
 			Yaml yaml = new Yaml();
 			Path writepath = Paths.get(metaPath.toString()+"_temp");
 			PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(writepath.toFile())));
@@ -240,6 +279,11 @@ public class RasterDB implements AutoCloseable {
 				}
 				storageType = yamlMap.optString("storage_type", "RasterUnit");
 				tilePixelLen = yamlMap.optInt("tile_pixel_len", tilePixelLen);
+				tileDedup = yamlMap.optBoolean("tile_dedup", false);
+				tileSnapshots = yamlMap.optBoolean("tile_snapshots", false);
+				storageSegments = yamlMap.optInt("storage_segments", 4);
+				storagePartition = yamlMap.optString("storage_partition", StripedTileStorage.PARTITION_HASH);
+				storageSegmentPaths = yamlMap.optList("storage_segment_paths").asStrings();
 			}
 			//log.info("*** ref *** " + ref + "    of   " + metaPath);
 		} catch (Exception e) {
@@ -333,6 +377,155 @@ public class RasterDB implements AutoCloseable {
 		writeMeta();
 	}
 
+	/**
+	 * Content-addressed deduplication of identical tile data for following writes (TileStorage only).
+	 * @param tileDedup
+	 */
+	public synchronized void setTileDedup(boolean tileDedup) {
+		this.tileDedup = tileDedup;
+		for(RasterUnitStorage storage : new RasterUnitStorage[] {rasterUnit, rasterPyr1Unit, rasterPyr2Unit, rasterPyr3Unit, rasterPyr4Unit}) {
+			if(storage instanceof TileStorage) {
+				((TileStorage) storage).setDedup(tileDedup);
+			} else if(storage instanceof StripedTileStorage) {
+				((StripedTileStorage) storage).setDedup(tileDedup);
+			}
+		}
+		writeMeta();
+	}
+
+	public boolean isTileDedup() {
+		return tileDedup;
+	}
+
+	/**
+	 * Snapshot reads of tiles (TileStorage only), applied to storages opened afterwards.
+	 * @param tileSnapshots
+	 */
+	public synchronized void setTileSnapshots(boolean tileSnapshots) {
+		this.tileSnapshots = tileSnapshots;
+		writeMeta();
+	}
+
+	public boolean isTileSnapshots() {
+		return tileSnapshots;
+	}
+
+	/**
+	 * Pins published tile snapshots for reads of the current thread until the scope is closed.
+	 * Inside of the scope rasterUnit() and rasterPyrXUnit() return read only snapshots if tile snapshots are enabled.
+	 * Nested scopes use the outer scope.
+	 */
+	public class SnapshotScope implements AutoCloseable {
+		private final RasterUnitStorage[] pins;
+
+		private SnapshotScope(RasterUnitStorage[] pins) {
+			this.pins = pins;
+		}
+
+		@Override
+		public void close() {
+			if(pins == null) {
+				return;
+			}
+			snapshotScope.remove();
+			for(RasterUnitStorage pin:pins) {
+				if(pin != null) {
+					try {
+						pin.close();
+					} catch (Exception e) {
+						log.warn(e);
+					}
+				}
+			}
+		}
+	}
+
+	public SnapshotScope openSnapshotScope() {
+		if(!tileSnapshots || snapshotScope.get() != null) {
+			return new SnapshotScope(null);
+		}
+		RasterUnitStorage[] pins = new RasterUnitStorage[5];
+		snapshotScope.set(pins);
+		return new SnapshotScope(pins);
+	}
+
+	private RasterUnitStorage scoped(int level, RasterUnitStorage storage) {
+		RasterUnitStorage pinned = pinned(level, storage);
+		SharedTileCache tileCache = SharedTileCache.current();
+		return tileCache == null ? pinned : tileCache.view(storage, pinned);
+	}
+
+	private RasterUnitStorage pinned(int level, RasterUnitStorage storage) {
+		RasterUnitStorage[] pins = snapshotScope.get();
+		if(pins == null || !(storage instanceof TileStorage) || !((TileStorage) storage).isSnapshots()) {
+			return storage;
+		}
+		RasterUnitStorage pin = pins[level];
+		if(pin == null) {
+			pin = ((TileStorage) storage).pinSnapshot();
+			pins[level] = pin;
+		}
+		return pin;
+	}
+
+	/**
+	 * Layout of StripedTileStorage layers, applicable before tiles are written only.
+	 * @param segments count of segment files per storage
+	 * @param partition "hash" or "spatial"
+	 * @param segmentPaths directories of segments, relative to layer directory or absolute, empty for layer directory
+	 */
+	public synchronized void setStorageStriping(int segments, String partition, List<String> segmentPaths) {
+		if(!storageType.equals("StripedTileStorage")) {
+			throw new RuntimeException("storage_type is not StripedTileStorage");
+		}
+		if(hasRasterUnit()) {
+			throw new RuntimeException("striping can not be changed for existing tiles");
+		}
+		if(segments < 1) {
+			throw new RuntimeException("invalid segment count: " + segments);
+		}
+		if(!partition.equals(StripedTileStorage.PARTITION_HASH) && !partition.equals(StripedTileStorage.PARTITION_SPATIAL)) {
+			throw new RuntimeException("unknown partition: " + partition);
+		}
+		this.storageSegments = segments;
+		this.storagePartition = partition;
+		this.storageSegmentPaths = new ArrayList<String>(segmentPaths);
+		writeMeta();
+	}
+
+	private Path[] getStorageSegmentPaths() {
+		if(storageSegmentPaths.isEmpty()) {
+			return new Path[] {path};
+		}
+		Path[] paths = new Path[storageSegmentPaths.size()];
+		for (int i = 0; i < paths.length; i++) {
+			paths[i] = path.resolve(storageSegmentPaths.get(i));
+			paths[i].toFile().mkdirs();
+		}
+		return paths;
+	}
+
+	/**
+	 * Files of StripedTileStorage segments including segments placed outside of the layer directory, e.g. to delete the layer.
+	 * @return paths of segment files, possibly not existing, empty for other storage types
+	 */
+	public synchronized List<Path> getStorageSegmentFiles() {
+		ArrayList<Path> files = new ArrayList<Path>();
+		if(!storageType.equals("StripedTileStorage")) {
+			return files;
+		}
+		for(String name : STORAGE_NAMES) {
+			for (int i = 0; i < storageSegments; i++) {
+				Path segmentPath = storageSegmentPaths.isEmpty() ? path : path.resolve(storageSegmentPaths.get(i % storageSegmentPaths.size()));
+				String prefix = name + "_s" + i;
+				files.add(segmentPath.resolve(prefix + ".tst"));
+				files.add(segmentPath.resolve(prefix + ".idx"));
+				files.add(segmentPath.resolve(prefix + ".DIRTY"));
+			}
+		}
+		return files;
+	}
+
 	public void setCode(String code) {
 		ref = ref.withCode(code, GeoReference.code_wms_transposed.contains(code));
 		log.info(ref + "   " + GeoReference.code_wms_transposed.contains(code));
@@ -448,27 +641,27 @@ public class RasterDB implements AutoCloseable {
 
 	public RasterUnitStorage rasterUnit() {
 		RasterUnitStorage r = rasterUnit;
-		return r == null ? loadRasterUnit() : r;
+		return scoped(0, r == null ? loadRasterUnit() : r);
 	}
 
 	public RasterUnitStorage rasterPyr1Unit() {
 		RasterUnitStorage r = rasterPyr1Unit;
-		return r == null ? loadRasterPyr1Unit() : r;
+		return scoped(1, r == null ? loadRasterPyr1Unit() : r);
 	}
 
 	public RasterUnitStorage rasterPyr2Unit() {
 		RasterUnitStorage r = rasterPyr2Unit;
-		return r == null ? loadRasterPyr2Unit() : r;
+		return scoped(2, r == null ? loadRasterPyr2Unit() : r);
 	}
 
 	public RasterUnitStorage rasterPyr3Unit() {
 		RasterUnitStorage r = rasterPyr3Unit;
-		return r == null ? loadRasterPyr3Unit() : r;
+		return scoped(3, r == null ? loadRasterPyr3Unit() : r);
 	}
 
 	public RasterUnitStorage rasterPyr4Unit() {
 		RasterUnitStorage r = rasterPyr4Unit;
-		return r == null ? loadRasterPyr4Unit() : r;
+		return scoped(4, r == null ? loadRasterPyr4Unit() : r);
 	}
 
 	private RasterUnitStorage openStorage(String name) {
@@ -476,17 +669,111 @@ public class RasterDB implements AutoCloseable {
 		case "RasterUnit":
 			return new RasterUnit(path, name, config.is_fast_unsafe_import()); // 4^0 = 1
 		case "TileStorage":
-			TileStorageConfig tileStorageConfig = new TileStorageConfig(path, name);
+			TileStorageConfig tileStorageConfig = getTileStorageConfig(name, false);
 			try {
 				return new TileStorage(tileStorageConfig);
 			} catch (IOException e) {
 				throw new RuntimeException(e);
 			}
+		case "StripedTileStorage":
+			try {
+				StripedTileStorage storage = tileDedup ? new StripedTileStorage(getStorageSegmentPaths(), name, storageSegments, storagePartition, TileStorageOption.DEDUP) : new StripedTileStorage(getStorageSegmentPaths(), name, storageSegments, storagePartition);
+				log.info("opened " + name + " with " + storage.getSegmentCount() + " segments");
+				return storage;
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
 		default:
 			throw new RuntimeException("unknown storage_type");
 		}		
 	}
 
+	/**
+	 * 
+	 * @param name
+	 * @param create remove existing files
+	 * @return config of TileStorage with options of this layer
+	 */
+	public TileStorageConfig getTileStorageConfig(String name, boolean create) {
+		ArrayList<TileStorageOption> options = new ArrayList<TileStorageOption>();
+		if(create) {
+			options.add(TileStorageOption.CREATE);
+		}
+		if(tileDedup) {
+			options.add(TileStorageOption.DEDUP);
+		}
+		if(tileSnapshots) {
+			options.add(TileStorageOption.SNAPSHOTS);
+		}
+		return new TileStorageConfig(path, name, options.toArray(new TileStorageOption[0]));
+	}
+
+	public String getStorageType() {
+		return storageType;
+	}
+
+	/**
+	 * Replaces raster unit and pyramid storages by migrated storages of other storage type.
+	 * Replaced storages are kept open for running reads until this layer is closed.
+	 * @param storageType
+	 * @param storages raster unit and pyramid levels 1 to 4, null entries are opened on demand
+	 */
+	public synchronized void switchStorage(String storageType, RasterUnitStorage[] storages) {
+		if(storages.length != STORAGE_NAMES.length) {
+			throw new RuntimeException("wrong count of storages: " + storages.length);
+		}
+		keepRevision(); // keep revision of replaced storages
+		for(RasterUnitStorage storage : new RasterUnitStorage[] {rasterUnit, rasterPyr1Unit, rasterPyr2Unit, rasterPyr3Unit, rasterPyr4Unit}) {
+			if(storage != null) {
+				retiredStorages.add(storage);
+			}
+		}
+		this.storageType = storageType;
+		rasterUnit = storages[0];
+		rasterPyr1Unit = storages[1];
+		rasterPyr2Unit = storages[2];
+		rasterPyr3Unit = storages[3];
+		rasterPyr4Unit = storages[4];
+		writeMeta();
+	}
+
+	/**
+	 * Revision of raster content and meta data, changes with every write. Revisions are unique within the server instance.
+	 * Inside of a snapshot scope revisions of the pinned snapshots are used, so the revision matches the tiles read in the scope.
+	 * @return revision
+	 */
+	public long getRevision() {
+		long r = revision.get();
+		RasterUnitStorage[] storages = new RasterUnitStorage[] {rasterUnit, rasterPyr1Unit, rasterPyr2Unit, rasterPyr3Unit, rasterPyr4Unit};
+		for (int level = 0; level < storages.length; level++) {
+			if(storages[level] != null) {
+				r = Math.max(r, pinned(level, storages[level]).getRevision());
+			}
+		}
+		return r;
+	}
+
+	/**
+	 * Revision of meta data and of closed or replaced storages, without revisions of open storages.
+	 * @return revision
+	 */
+	public long getMetaRevision() {
+		return revision.get();
+	}
+
+	/**
+	 * Keeps current revision of storages before they are closed or replaced.
+	 */
+	private void keepRevision() {
+		long r = 0;
+		for(RasterUnitStorage storage : new RasterUnitStorage[] {rasterUnit, rasterPyr1Unit, rasterPyr2Unit, rasterPyr3Unit, rasterPyr4Unit}) {
+			if(storage != null) {
+				r = Math.max(r, storage.getRevision());
+			}
+		}
+		revision.accumulateAndGet(r, Math::max);
+	}
+
 	private synchronized RasterUnitStorage loadRasterUnit() {
 		if (rasterUnit == null) {
 			rasterUnit = openStorage("raster"); // 4^0 = 1			
@@ -523,17 +810,58 @@ public class RasterDB implements AutoCloseable {
 	}
 
 	public synchronized boolean hasRasterUnit() {
+		return hasStorage("raster");
+	}
+
+	private synchronized boolean hasStorage(String name) {
 		switch(storageType) {
 		case "RasterUnit":
-			return Files.exists(path.resolve("raster"));
+			return Files.exists(path.resolve(name));
 		case "TileStorage":
-			return Files.exists(path.resolve("raster.idx"));
+			return Files.exists(path.resolve(name + ".idx"));
+		case "StripedTileStorage":
+			return Files.exists(getStorageSegmentPaths()[0].resolve(name + "_s0.idx"));
 		default:
 			throw new RuntimeException("unknown storage_type");
 		}	
 
 	}
 
+	/**
+	 * Consistent copy of meta and tile storages including pyramid into targetDir while the layer keeps serving.
+	 * Segment files of StripedTileStorage are placed into targetDir.
+	 * @param targetDir
+	 * @param tileStorageBackup
+	 * @throws IOException
+	 */
+	public void backup(Path targetDir, TileStorageBackup tileStorageBackup) throws IOException {
+		targetDir.toFile().mkdirs();
+		Map<String, Object> meta;
+		synchronized (this) {
+			writeMeta();
+			try(InputStream in = new FileInputStream(metaPath.toFile())) {
+				meta = new Yaml().load(in);
+			}
+		}
+		meta.remove("storage_segment_paths");
+		Path writepath = targetDir.resolve("meta.yaml_temp");
+		try(PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(writepath.toFile())))) {
+			new Yaml().dump(meta, out);
+		}
+		Files.move(writepath, targetDir.resolve("meta.yaml"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		RasterUnitStorage[] storages = new RasterUnitStorage[] {rasterUnit(), null, null, null, null};
+		for (int level = 1; level < STORAGE_NAMES.length; level++) {
+			if(hasStorage(STORAGE_NAMES[level])) {
+				storages[level] = level == 1 ? rasterPyr1Unit() : level == 2 ? rasterPyr2Unit() : level == 3 ? rasterPyr3Unit() : rasterPyr4Unit();
+			}
+		}
+		for (int level = 0; level < STORAGE_NAMES.length; level++) {
+			if(storages[level] != null) {
+				tileStorageBackup.backup(storages[level], targetDir, STORAGE_NAMES[level]);
+			}
+		}
+	}
+
 	public int getTilePixelLen() {
 		return tilePixelLen;
 	}
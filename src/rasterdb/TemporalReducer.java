@@ -0,0 +1,166 @@
+package rasterdb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Per pixel aggregation of a stack of frames (e.g. one frame per timestamp).
+ * NA values (NaN) are skipped, pixels without any value result in NaN.
+ * mean, sd, min, max and count are calculated by running aggregates, median keeps the stack of frames.
+ */
+public class TemporalReducer {
+
+	public static final String[] FUNCTIONS = new String[] {"mean", "median", "min", "max", "count", "sd"};
+
+	private static final int MEAN = 0;
+	private static final int MEDIAN = 1;
+	private static final int MIN = 2;
+	private static final int MAX = 3;
+	private static final int COUNT = 4;
+	private static final int SD = 5;
+
+	private final int function;
+	private final int width;
+	private final int height;
+
+	private final int[][] count;
+	private final double[][] agg;
+	private final double[][] aggSq;
+	private final ArrayList<float[][]> stack;
+
+	public TemporalReducer(String function, int width, int height) {
+		this.function = Arrays.asList(FUNCTIONS).indexOf(function);
+		if(this.function < 0) {
+			throw new RuntimeException("unknown temporal function: " + function);
+		}
+		this.width = width;
+		this.height = height;
+		this.count = new int[height][width];
+		this.agg = this.function == MEAN || this.function == MIN || this.function == MAX || this.function == SD ? new double[height][width] : null;
+		this.aggSq = this.function == SD ? new double[height][width] : null;
+		this.stack = this.function == MEDIAN ? new ArrayList<float[][]>() : null;
+		if(this.function == MIN) {
+			for(double[] row:agg) {
+				Arrays.fill(row, Double.POSITIVE_INFINITY);
+			}
+		}
+		if(this.function == MAX) {
+			for(double[] row:agg) {
+				Arrays.fill(row, Double.NEGATIVE_INFINITY);
+			}
+		}
+	}
+
+	public static boolean isFunction(String function) {
+		return Arrays.asList(FUNCTIONS).contains(function);
+	}
+
+	public void add(double[][] data) {
+		float[][] stackFrame = stack == null ? null : new float[height][width];
+		for (int y = 0; y < height; y++) {
+			double[] row = data[y];
+			int[] countRow = count[y];
+			double[] aggRow = agg == null ? null : agg[y];
+			for (int x = 0; x < width; x++) {
+				double v = row[x];
+				if(Double.isFinite(v)) {
+					countRow[x]++;
+					switch(function) {
+					case MEAN:
+						aggRow[x] += v;
+						break;
+					case SD:
+						aggRow[x] += v;
+						aggSq[y][x] += v * v;
+						break;
+					case MIN:
+						if(v < aggRow[x]) {
+							aggRow[x] = v;
+						}
+						break;
+					case MAX:
+						if(v > aggRow[x]) {
+							aggRow[x] = v;
+						}
+						break;
+					}
+				}
+			}
+			if(stackFrame != null) {
+				float[] stackRow = stackFrame[y];
+				for (int x = 0; x < width; x++) {
+					stackRow[x] = (float) row[x];
+				}
+			}
+		}
+		if(stackFrame != null) {
+			stack.add(stackFrame);
+		}
+	}
+
+	/**
+	 *
+	 * @return true if at least one pixel has a value
+	 */
+	public boolean hasValues() {
+		for(int[] row:count) {
+			for(int c:row) {
+				if(c > 0) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	public double[][] result() {
+		double[][] r = new double[height][width];
+		float[] values = stack == null ? null : new float[stack.size()];
+		for (int y = 0; y < height; y++) {
+			int[] countRow = count[y];
+			double[] rRow = r[y];
+			for (int x = 0; x < width; x++) {
+				int c = countRow[x];
+				if(c == 0) {
+					rRow[x] = function == COUNT ? 0 : Double.NaN;
+					continue;
+				}
+				switch(function) {
+				case MEAN:
+					rRow[x] = agg[y][x] / c;
+					break;
+				case SD: {
+					if(c < 2) {
+						rRow[x] = Double.NaN;
+					} else {
+						double sum = agg[y][x];
+						rRow[x] = Math.sqrt(Math.max(0, (aggSq[y][x] - sum * sum / c) / (c - 1)));
+					}
+					break;
+				}
+				case MIN:
+				case MAX:
+					rRow[x] = agg[y][x];
+					break;
+				case COUNT:
+					rRow[x] = c;
+					break;
+				case MEDIAN: {
+					int len = 0;
+					for(float[][] frame:stack) {
+						float v = frame[y][x];
+						if(Float.isFinite(v)) {
+							values[len++] = v;
+						}
+					}
+					Arrays.sort(values, 0, len);
+					int mid = len >>> 1;
+					rRow[x] = (len & 1) == 1 ? values[mid] : (values[mid - 1] + values[mid]) / 2d;
+					break;
+				}
+				}
+			}
+		}
+		return r;
+	}
+}
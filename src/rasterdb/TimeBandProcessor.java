@@ -1,5 +1,6 @@
 package rasterdb;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
@@ -7,15 +8,20 @@ import java.util.List;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import rasterdb.cell.CellFloat32;
 import rasterdb.cell.CellInt16;
+import rasterdb.cell.CellInt32;
+import rasterdb.cell.CellUint8;
 import rasterdb.cell.CellType;
 import rasterdb.tile.Processing;
 import rasterdb.tile.ProcessingFloat;
 import rasterdb.tile.ProcessingQuery;
 import rasterdb.tile.ProcessingShort;
 import rasterdb.tile.TilePixel;
+import rasterdb.tile.TileShort;
 import rasterunit.BandKey;
 import rasterunit.RasterUnitStorage;
+import rasterunit.Tile;
 import util.Range2d;
 import util.frame.BooleanFrame;
 import util.frame.DoubleFrame;
@@ -247,12 +253,96 @@ public class TimeBandProcessor {
 		}		
 	}
 
+	/**
+	 * 
+	 * @return true if the processor covers one pixel of base level, the pixel is read without decoding full tiles
+	 */
+	private boolean isSinglePixel() {
+		return scale == 1 && pyramid == 0 && range2d.getWidth() == 1 && range2d.getHeight() == 1;
+	}
+
+	/**
+	 * Reads the pixel of a single pixel processor.
+	 * @param timestamp
+	 * @param band
+	 * @return value or NaN if NA
+	 */
+	private double readPixelValue(int timestamp, Band band) {
+		int t = Processing.getTFromPyramidTimestamp(pyramid, timestamp);
+		int x = range2d.xmin;
+		int y = range2d.ymin;
+		try {
+			switch(band.type) {
+			case TilePixel.TYPE_SHORT:
+			case TilePixel.TYPE_FLOAT: {
+				Tile tile = pyramid_rasterUnit.readTile(t, band.index, TilePixel.pixelToTile(y), TilePixel.pixelToTile(x));
+				if(tile == null) {
+					return Double.NaN;
+				}
+				int raw = TileShort.decode_raw_pixel(tile, TilePixel.pixelToTileOffset(y) * TilePixel.PIXELS_PER_ROW + TilePixel.pixelToTileOffset(x));
+				if(band.type == TilePixel.TYPE_FLOAT) {
+					return Float.intBitsToFloat(raw);
+				}
+				short v = (short) raw;
+				return v == band.getInt16NA() ? Double.NaN : v;
+			}
+			case CellType.INT16:
+			case CellType.UINT8:
+			case CellType.FLOAT32:
+			case CellType.INT32: {
+				CellInt32 cell = new CellInt32(rasterdb.getTilePixelLen()); // raw decoding is the same for all cell types
+				Tile tile = pyramid_rasterUnit.readTile(t, band.index, cell.pixelToCell(y), cell.pixelToCell(x));
+				if(tile == null) {
+					return Double.NaN;
+				}
+				int raw = cell.decPixel(tile, Math.floorMod(y, cell.pixel_len) * cell.pixel_len + Math.floorMod(x, cell.pixel_len));
+				switch(band.type) {
+				case CellType.INT16: {
+					short v = (short) raw;
+					return v == band.getInt16NA() ? Double.NaN : v;
+				}
+				case CellType.UINT8: {
+					int v = raw & 0xff;
+					return v == (band.getUint8NA() & 0xff) ? Double.NaN : v;
+				}
+				case CellType.FLOAT32:
+					return Float.intBitsToFloat(raw);
+				default:
+					return raw == band.getInt32NA() ? Double.NaN : raw;
+				}
+			}
+			default:
+				throw new RuntimeException("unknown tile type: " + band.type);
+			}
+		} catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	private short[][] readInt16(int timestamp, Band band) {
 		CellInt16 cellInt16 = new CellInt16(rasterdb.getTilePixelLen());
 		int t = Processing.getTFromPyramidTimestamp(pyramid, timestamp);
 		return cellInt16.read(pyramid_rasterUnit, t, band, pyramid_srcRange, pyramidDiv);	
 	}
 
+	private float[][] readFloat32(int timestamp, Band band) {
+		CellFloat32 cellFloat32 = new CellFloat32(rasterdb.getTilePixelLen());
+		int t = Processing.getTFromPyramidTimestamp(pyramid, timestamp);
+		return cellFloat32.read(pyramid_rasterUnit, t, band, pyramid_srcRange, pyramidDiv);	
+	}
+
+	private byte[][] readUint8(int timestamp, Band band) {
+		CellUint8 cellUint8 = new CellUint8(rasterdb.getTilePixelLen());
+		int t = Processing.getTFromPyramidTimestamp(pyramid, timestamp);
+		return cellUint8.read(pyramid_rasterUnit, t, band, pyramid_srcRange, pyramidDiv);	
+	}
+
+	private int[][] readInt32(int timestamp, Band band) {
+		CellInt32 cellInt32 = new CellInt32(rasterdb.getTilePixelLen());
+		int t = Processing.getTFromPyramidTimestamp(pyramid, timestamp);
+		return cellInt32.read(pyramid_rasterUnit, t, band, pyramid_srcRange, pyramidDiv);	
+	}
+
 
 	private short[][] readShort(int timestamp, Band band) {
 		log.info("get from pyramid " + pyramid + "   div " + pyramidDiv);
@@ -293,6 +383,19 @@ public class TimeBandProcessor {
 		case CellType.INT16: {
 			return ShortFrame.of(readInt16(timestamp, band), range2d);
 		}
+		case CellType.UINT8: {
+			return ShortFrame.of(CellUint8.toShort(readUint8(timestamp, band)), range2d);
+		}
+		case CellType.FLOAT32: {
+			log.warn("downcast float to short");
+			short na_target = 0;
+			return ShortFrame.ofFloats(FloatFrame.of(readFloat32(timestamp, band), range2d), na_target);
+		}
+		case CellType.INT32: {
+			log.warn("downcast int32 to short");
+			short na_target = 0;
+			return ShortFrame.ofFloats(FloatFrame.ofIntsWithNA(readInt32(timestamp, band), band.getInt32NA(), range2d), na_target);
+		}
 		default:
 			throw new RuntimeException("unknown tile type: "+tileType);
 		}
@@ -310,9 +413,19 @@ public class TimeBandProcessor {
 			short na = band.getInt16NA();			
 			return FloatFrame.ofShortsWithNA(getShortFrame(timestamp, band), na);
 		}
+		case CellType.UINT8: {
+			short na = band.getUint8NA();			
+			return FloatFrame.ofShortsWithNA(getShortFrame(timestamp, band), na);
+		}
 		case TilePixel.TYPE_FLOAT: {			
 			return FloatFrame.of(readFloat(timestamp, band), range2d);
 		}
+		case CellType.FLOAT32: {			
+			return FloatFrame.of(readFloat32(timestamp, band), range2d);
+		}
+		case CellType.INT32: {			
+			return FloatFrame.ofIntsWithNA(readInt32(timestamp, band), band.getInt32NA(), range2d);
+		}
 		default:
 			throw new RuntimeException("unknown tile type: "+tileType);
 		}
@@ -323,6 +436,10 @@ public class TimeBandProcessor {
 	}
 
 	public DoubleFrame getDoubleFrame(int timestamp, Band band) {
+		if(isSinglePixel()) {
+			double[][] data = new double[][] {{readPixelValue(timestamp, band)}};
+			return new DoubleFrame(data, range2d.xmin, range2d.ymin, range2d.xmax, range2d.ymax);
+		}
 		int tileType = band.type;
 		switch(tileType) {
 		case TilePixel.TYPE_SHORT:
@@ -330,9 +447,19 @@ public class TimeBandProcessor {
 			short na = band.getInt16NA();			
 			return DoubleFrame.ofShortsWithNA(getShortFrame(timestamp, band), na);
 		}
+		case CellType.UINT8: {
+			short na = band.getUint8NA();			
+			return DoubleFrame.ofShortsWithNA(getShortFrame(timestamp, band), na);
+		}
 		case TilePixel.TYPE_FLOAT: {			
 			return DoubleFrame.ofFloats(readFloat(timestamp, band), range2d);
 		}
+		case CellType.FLOAT32: {			
+			return DoubleFrame.ofFloats(readFloat32(timestamp, band), range2d);
+		}
+		case CellType.INT32: {			
+			return DoubleFrame.ofIntsWithNA(readInt32(timestamp, band), band.getInt32NA(), range2d);
+		}
 		default:
 			throw new RuntimeException("unknown tile type: "+tileType);
 		}
@@ -351,7 +478,14 @@ public class TimeBandProcessor {
 			ShortFrame shortFrame = getShortFrame(timestamp, band);
 			return shortFrame.toMask(na);
 		}
-		case TilePixel.TYPE_FLOAT: {
+		case CellType.UINT8: {
+			short na = band.getUint8NA();
+			ShortFrame shortFrame = getShortFrame(timestamp, band);
+			return shortFrame.toMask(na);
+		}
+		case TilePixel.TYPE_FLOAT:
+		case CellType.FLOAT32:
+		case CellType.INT32: {
 			FloatFrame floatFrame = getFloatFrame(timestamp, band);
 			return floatFrame.toMask();
 		}
@@ -379,6 +513,14 @@ public class TimeBandProcessor {
 		return rasterdb.bandMapReadonly.values();		
 	}
 
+	/**
+	 * Revision of the content read by this processor: meta data of the layer and tiles of the read storage, e.g. a pinned snapshot.
+	 * @return
+	 */
+	public long getRevision() {
+		return Math.max(rasterdb.getMetaRevision(), pyramid_rasterUnit.getRevision());
+	}
+
 	public List<TimeBand> getTimeBands(int timestamp) {
 		return toTimeBands(timestamp, getBands());
 	}
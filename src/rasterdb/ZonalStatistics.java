@@ -0,0 +1,325 @@
+package rasterdb;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import broker.group.Roi;
+import pointdb.base.PolygonUtil;
+import rasterdb.tile.TilePixel;
+import util.QuantileSketch;
+import util.Range2d;
+import util.rdat.RdatDataFrame;
+
+/**
+ * Statistics of pixel values inside of ROI polygons for multiple bands and timestamps.
+ * Each ROI is processed in tile aligned chunks, chunks that do not intersect the polygon are not read.
+ * ROIs and chunks are processed in parallel. Quantiles are approximated by sketches with bounded memory.
+ */
+public class ZonalStatistics {
+	private static final Logger log = LogManager.getLogger();
+
+	public static final double[] DEFAULT_PERCENTILES = new double[] {5, 25, 75, 95};
+
+	/**
+	 * Streaming statistics of one band at one timestamp.
+	 */
+	public static class Stats {
+		public long count = 0;
+		public double sum = 0;
+		public double sumSq = 0;
+		public double min = Double.POSITIVE_INFINITY;
+		public double max = Double.NEGATIVE_INFINITY;
+		public final QuantileSketch sketch = new QuantileSketch();
+
+		public void add(double v) {
+			count++;
+			sum += v;
+			sumSq += v * v;
+			if(v < min) {
+				min = v;
+			}
+			if(v > max) {
+				max = v;
+			}
+			sketch.add(v);
+		}
+
+		public void merge(Stats other) {
+			count += other.count;
+			sum += other.sum;
+			sumSq += other.sumSq;
+			if(other.min < min) {
+				min = other.min;
+			}
+			if(other.max > max) {
+				max = other.max;
+			}
+			sketch.merge(other.sketch);
+		}
+	}
+
+	/**
+	 * Resulting statistics of one ROI, timestamp and band.
+	 */
+	public static class Row {
+		public final Roi roi;
+		public final int t;
+		public final int b;
+		public final long count;
+		public final double mean;
+		public final double sd;
+		public final double min;
+		public final double max;
+		public final double median;
+		public final double[] percentiles;
+
+		public Row(Roi roi, int t, int b, Stats stats, double[] percentiles) {
+			this.roi = roi;
+			this.t = t;
+			this.b = b;
+			this.count = stats.count;
+			if(count == 0) {
+				this.mean = Double.NaN;
+				this.sd = Double.NaN;
+				this.min = Double.NaN;
+				this.max = Double.NaN;
+			} else {
+				this.mean = stats.sum / count;
+				this.sd = count < 2 ? Double.NaN : Math.sqrt(Math.max(0, (stats.sumSq - stats.sum * mean) / (count - 1)));
+				this.min = stats.min;
+				this.max = stats.max;
+			}
+			this.median = stats.sketch.quantile(0.5);
+			this.percentiles = new double[percentiles.length];
+			for (int i = 0; i < percentiles.length; i++) {
+				this.percentiles[i] = stats.sketch.quantile(percentiles[i] / 100d);
+			}
+		}
+	}
+
+	private final RasterDB rasterdb;
+	private final Roi[] rois;
+	private final Band[] bands;
+	private final int[] timestamps;
+	private final int scale;
+	private final double[] percentiles;
+	private final int chunkLen;
+
+	/**
+	 *
+	 * @param rasterdb
+	 * @param rois
+	 * @param bands
+	 * @param timestamps
+	 * @param scale pyramid scale, 1 for full resolution
+	 * @param percentiles in range 0 to 100
+	 */
+	public ZonalStatistics(RasterDB rasterdb, Roi[] rois, Band[] bands, int[] timestamps, int scale, double[] percentiles) {
+		this.rasterdb = rasterdb;
+		this.rois = rois;
+		this.bands = bands;
+		this.timestamps = timestamps;
+		this.scale = scale;
+		this.percentiles = percentiles;
+		int tileLen = 1;
+		for(Band band:bands) {
+			int len = (band.type == TilePixel.TYPE_SHORT || band.type == TilePixel.TYPE_FLOAT) ? TilePixel.PIXELS_PER_ROW : rasterdb.getTilePixelLen();
+			if(tileLen < len) {
+				tileLen = len;
+			}
+		}
+		this.chunkLen = tileLen * scale;
+	}
+
+	/**
+	 * Calculates statistics of all ROIs. Rows are ordered by ROI, timestamp and band.
+	 * @return
+	 */
+	public List<Row> run() {
+		List<List<Row>> roiRows = IntStream.range(0, rois.length).parallel().mapToObj(i -> processRoi(rois[i])).collect(Collectors.toList());
+		ArrayList<Row> rows = new ArrayList<Row>();
+		for(List<Row> r:roiRows) {
+			rows.addAll(r);
+		}
+		return rows;
+	}
+
+	private List<Row> processRoi(Roi roi) {
+		int len = roi.points.length;
+		double[] vx = new double[len];
+		double[] vy = new double[len];
+		double xmin = Double.POSITIVE_INFINITY;
+		double ymin = Double.POSITIVE_INFINITY;
+		double xmax = Double.NEGATIVE_INFINITY;
+		double ymax = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < len; i++) {
+			double x = roi.points[i].x;
+			double y = roi.points[i].y;
+			vx[i] = x;
+			vy[i] = y;
+			xmin = Math.min(xmin, x);
+			ymin = Math.min(ymin, y);
+			xmax = Math.max(xmax, x);
+			ymax = Math.max(ymax, y);
+		}
+		Range2d roiRange = rasterdb.ref().bboxToRange2d(xmin, ymin, xmax, ymax);
+		ArrayList<Range2d> chunks = new ArrayList<Range2d>();
+		int cyStart = Math.floorDiv(roiRange.ymin, chunkLen);
+		int cyEnd = Math.floorDiv(roiRange.ymax, chunkLen);
+		int cxStart = Math.floorDiv(roiRange.xmin, chunkLen);
+		int cxEnd = Math.floorDiv(roiRange.xmax, chunkLen);
+		for (int cy = cyStart; cy <= cyEnd; cy++) {
+			for (int cx = cxStart; cx <= cxEnd; cx++) {
+				chunks.add(new Range2d(
+						Math.max(cx * chunkLen, roiRange.xmin),
+						Math.max(cy * chunkLen, roiRange.ymin),
+						Math.min((cx + 1) * chunkLen - 1, roiRange.xmax),
+						Math.min((cy + 1) * chunkLen - 1, roiRange.ymax)));
+			}
+		}
+		Stats[] stats = chunks.parallelStream()
+				.map(chunk -> processChunk(chunk, vx, vy))
+				.reduce((a, b) -> {
+					for (int i = 0; i < a.length; i++) {
+						a[i].merge(b[i]);
+					}
+					return a;
+				})
+				.orElseGet(this::createStats);
+		ArrayList<Row> rows = new ArrayList<Row>(stats.length);
+		int i = 0;
+		for(int t:timestamps) {
+			for(Band band:bands) {
+				rows.add(new Row(roi, t, band.index, stats[i++], percentiles));
+			}
+		}
+		log.info("roi " + roi.name + " chunks " + chunks.size());
+		return rows;
+	}
+
+	private Stats[] createStats() {
+		Stats[] stats = new Stats[timestamps.length * bands.length];
+		for (int i = 0; i < stats.length; i++) {
+			stats[i] = new Stats();
+		}
+		return stats;
+	}
+
+	private Stats[] processChunk(Range2d chunk, double[] vx, double[] vy) {
+		Stats[] stats = createStats();
+		TimeBandProcessor processor = new TimeBandProcessor(rasterdb, chunk, scale);
+		Range2d dstRange = processor.getDstRange();
+		int width = dstRange.getWidth();
+		int height = dstRange.getHeight();
+		GeoReference ref = rasterdb.ref();
+		boolean[][] mask = new boolean[height][width];
+		int maskCount = 0;
+		for (int y = 0; y < height; y++) {
+			double geoY = ref.pixelYToGeo((dstRange.ymin + y + 0.5d) * scale);
+			boolean[] maskRow = mask[y];
+			for (int x = 0; x < width; x++) {
+				double geoX = ref.pixelXToGeo((dstRange.xmin + x + 0.5d) * scale);
+				if(PolygonUtil.wn_PnPolyDirectV2(geoX, geoY, vx, vy) != 0) {
+					maskRow[x] = true;
+					maskCount++;
+				}
+			}
+		}
+		if(maskCount == 0) {
+			return stats;
+		}
+		int i = 0;
+		for(int t:timestamps) {
+			for(Band band:bands) {
+				Stats s = stats[i++];
+				if(processor.mayHavePixels(t, band)) {
+					double[][] data = processor.getDoubleFrame(t, band).data;
+					for (int y = 0; y < height; y++) {
+						boolean[] maskRow = mask[y];
+						double[] row = data[y];
+						for (int x = 0; x < width; x++) {
+							if(maskRow[x]) {
+								double v = row[x];
+								if(Double.isFinite(v)) {
+									s.add(v);
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		return stats;
+	}
+
+	private static String percentileName(double p) {
+		return p == Math.rint(p) ? "p" + (long) p : "p" + Double.toString(p).replace('.', '_');
+	}
+
+	/**
+	 * Writes rows as CSV with header, NaN values are written as NA.
+	 * @param out
+	 * @param rows
+	 */
+	public void writeCsv(PrintWriter out, Collection<Row> rows) {
+		StringBuilder s = new StringBuilder("name,t,b,count,mean,sd,min,max,median");
+		for(double p:percentiles) {
+			s.append(',');
+			s.append(percentileName(p));
+		}
+		out.println(s);
+		for(Row row:rows) {
+			s.setLength(0);
+			s.append(row.roi.name);
+			s.append(',');
+			s.append(row.t);
+			s.append(',');
+			s.append(row.b);
+			s.append(',');
+			s.append(row.count);
+			appendCsvValue(s, row.mean);
+			appendCsvValue(s, row.sd);
+			appendCsvValue(s, row.min);
+			appendCsvValue(s, row.max);
+			appendCsvValue(s, row.median);
+			for(double v:row.percentiles) {
+				appendCsvValue(s, v);
+			}
+			out.println(s);
+		}
+	}
+
+	private static void appendCsvValue(StringBuilder s, double v) {
+		s.append(',');
+		if(Double.isFinite(v)) {
+			s.append(v);
+		} else {
+			s.append("NA");
+		}
+	}
+
+	public RdatDataFrame<Row> createRdatDataFrame() {
+		RdatDataFrame<Row> df = new RdatDataFrame<Row>(Collection::size);
+		df.addString("name", r -> r.roi.name);
+		df.addInt("t", r -> r.t);
+		df.addInt("b", r -> r.b);
+		df.addDouble("count", r -> r.count);
+		df.addDouble("mean", r -> r.mean);
+		df.addDouble("sd", r -> r.sd);
+		df.addDouble("min", r -> r.min);
+		df.addDouble("max", r -> r.max);
+		df.addDouble("median", r -> r.median);
+		for (int i = 0; i < percentiles.length; i++) {
+			int index = i;
+			df.addDouble(percentileName(percentiles[i]), r -> r.percentiles[index]);
+		}
+		return df;
+	}
+}
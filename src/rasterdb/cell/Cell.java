@@ -1,19 +1,25 @@
 package rasterdb.cell;
 
 import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.Collection;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import me.lemire.integercompression.FastPFOR;
+import me.lemire.integercompression.IntWrapper;
 import rasterdb.Band;
 import rasterdb.tile.Processing.Commiter;
 import rasterunit.BandKey;
 import rasterunit.RasterUnitStorage;
 import rasterunit.Tile;
 import rasterunit.TileKey;
+import rasterunit.TileValid;
+import util.BufferPool;
 import util.Range2d;
+import util.Serialisation;
 
 public abstract class Cell<T> {
 	private static final Logger log = LogManager.getLogger();
@@ -26,7 +32,25 @@ public abstract class Cell<T> {
 		this.cell_pixel_count = pixel_len * pixel_len;
 	}
 
-	public abstract byte[] encodeCell(T pixels);
+	/**
+	 * 
+	 * @return tile type of this cell, see {@link CellType}
+	 */
+	public abstract int getType();
+
+	/**
+	 * 
+	 * @param pixels
+	 * @return array of at least cell_pixel_count raw values, borrowed from {@link BufferPool}
+	 */
+	public abstract int[] toRaw(T pixels);
+
+	/**
+	 * 
+	 * @param band
+	 * @return raw value of NA pixels, as produced by toRaw
+	 */
+	public abstract int getRawNA(Band band);
 	public abstract T decodeCell(Tile tile);
 	public abstract void decodeCell(Tile tile, int xCellStart, int yCellStart, int xCellEnd, T target, int xTargetStart, int yTargetStart, int xTargetEnd, int yTargetEnd);
 	public abstract void decodeCellMerge(Tile tile, T cellPixels, Band band);
@@ -53,8 +77,7 @@ public abstract class Cell<T> {
 					decodeCellMerge(tile, cellPixels, band);
 				}
 			}
-			byte[] data = encodeCell(cellPixels);
-			storage.writeTile(new Tile(tileKey, band.type, data));
+			storage.writeTile(encodeTile(tileKey, cellPixels, band));
 			return true;
 		} else {
 			return false;
@@ -83,6 +106,8 @@ public abstract class Cell<T> {
 		return t * div_len + div_len - 1;
 	}
 
+	private static final int DECODER_BLOCK_SIZE = 256; // values per FastPFOR block
+
 	public static ThreadLocal<FastPFOR> threadLocal_fastPFOR = new ThreadLocal<FastPFOR>() {
 		@Override
 		protected FastPFOR initialValue() {
@@ -231,8 +256,7 @@ public abstract class Cell<T> {
 				for (int targetIndex = 0; targetIndex < target.length; targetIndex++) {
 					if(target[targetIndex] != null) {
 						TileKey tileKey = dstBandKey.toTileKey(y, x + targetIndex);
-						byte[] data = encodeCell(target[targetIndex]);
-						dstStorage.writeTile(new Tile(tileKey, CellType.INT16, data));
+						dstStorage.writeTile(encodeTile(tileKey, target[targetIndex], band));
 						tilesWrittenInRow++;
 					}
 				}
@@ -315,4 +339,136 @@ public abstract class Cell<T> {
 
 		decodeCellDiv(tile, xCellStart, yCellStart, div, target, band, xTargetStart, yTargetStart, xTargetEnd, yTargetEnd);
 	}
-}
\ No newline at end of file
+
+	public byte[] encodeCell(T pixels) {
+		int[] raw = toRaw(pixels);
+		byte[] data = enc(raw);
+		BufferPool.returnInts(raw);
+		return data;
+	}
+
+	/**
+	 * Encodes pixels to a tile, cells with all pixels of same value are stored as constant tile without encoding.
+	 * Valid (not NA) pixels are attached to the tile.
+	 * @param tileKey
+	 * @param pixels
+	 * @param band
+	 * @return
+	 */
+	public Tile encodeTile(TileKey tileKey, T pixels, Band band) {
+		int[] raw = toRaw(pixels);
+		int rawNA = getRawNA(band);
+		int v = raw[0];
+		boolean isConst = true;
+		for(int i = 1; i < cell_pixel_count; i++) {
+			if(raw[i] != v) {
+				isConst = false;
+				break;
+			}
+		}
+		if(isConst) {
+			BufferPool.returnInts(raw);
+			return Tile.ofConst(tileKey, getType(), v, TileValid.ofConst(pixel_len, v == rawNA));
+		}
+		TileValid valid = TileValid.ofRaw(raw, pixel_len, rawNA);
+		byte[] data = enc(raw);
+		BufferPool.returnInts(raw);
+		return new Tile(tileKey, getType(), data, valid);
+	}
+
+	/**
+	 * Encodes cell_pixel_count raw values with delta-zigzag and FastPFOR. Raw values are modified in place.
+	 * @param data
+	 * @return
+	 */
+	public byte[] enc(int[] data) {
+		Serialisation.encodeDeltaZigZag(data, cell_pixel_count);
+		IntWrapper inpos = new IntWrapper();
+		int[] compressed_raw = BufferPool.borrowInts(cell_pixel_count + 256);
+		IntWrapper outpos = new IntWrapper();
+		threadLocal_fastPFOR.get().headlessCompress(data, inpos, cell_pixel_count, compressed_raw, outpos);
+		byte[] transformed = Serialisation.intToByteArray(compressed_raw, outpos.get());
+		BufferPool.returnInts(compressed_raw);
+		return transformed;
+	}
+
+	/**
+	 * Decodes raw values of tile, constant tiles are filled without decoding.
+	 * @param tile
+	 * @return
+	 */
+	public int[] dec(Tile tile) {
+		int[] result = new int[cell_pixel_count];
+		dec(tile, result);
+		return result;
+	}
+
+	/**
+	 * Decodes raw values of tile into a target borrowed from {@link BufferPool}, caller should return it after use.
+	 * @param tile
+	 * @return array of at least cell_pixel_count raw values
+	 */
+	protected int[] decBorrow(Tile tile) {
+		int[] result = BufferPool.borrowInts(cell_pixel_count);
+		dec(tile, result);
+		return result;
+	}
+
+	/**
+	 * Decodes raw values of tile into target, constant tiles are filled without decoding.
+	 * @param tile
+	 * @param target array of at least cell_pixel_count values
+	 */
+	public void dec(Tile tile, int[] target) {
+		if(tile.isConst()) {
+			Arrays.fill(target, 0, cell_pixel_count, tile.getConstValue());
+		} else {
+			dec(tile.data, target);
+		}
+	}
+
+	/**
+	 * Decodes the raw value of one pixel. Only the blocks up to the pixel are unpacked and delta decoded.
+	 * @param tile
+	 * @param pos pixel position in cell: row * pixel_len + column
+	 * @return raw value
+	 */
+	public int decPixel(Tile tile, int pos) {
+		if(tile.isConst()) {
+			return tile.getConstValue();
+		}
+		byte[] data = tile.data;
+		int SIZE_INTS = data.length/4;
+		int[] inter2 = BufferPool.borrowInts(SIZE_INTS);
+		java.nio.ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(inter2, 0, SIZE_INTS);
+		int len = Math.min((pos / DECODER_BLOCK_SIZE + 1) * DECODER_BLOCK_SIZE, cell_pixel_count);
+		int[] raw = BufferPool.borrowInts(len);
+		IntWrapper inpos = new IntWrapper();
+		IntWrapper outpos = new IntWrapper();
+		threadLocal_fastPFOR.get().headlessUncompress(inter2, inpos, SIZE_INTS, raw, outpos, len);
+		BufferPool.returnInts(inter2);
+		int v = 0;
+		for (int i = 0; i <= pos; i++) {
+			v += Serialisation.decodeZigZag(raw[i]);
+		}
+		BufferPool.returnInts(raw);
+		return v;
+	}
+
+	public int[] dec(byte[] data) {
+		int[] result = new int[cell_pixel_count];
+		dec(data, result);
+		return result;
+	}
+
+	public void dec(byte[] data, int[] target) {
+		int SIZE_INTS = data.length/4;
+		int[] inter2 = BufferPool.borrowInts(SIZE_INTS);
+		java.nio.ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(inter2, 0, SIZE_INTS);
+		IntWrapper inpos = new IntWrapper();
+		IntWrapper outpos = new IntWrapper();
+		threadLocal_fastPFOR.get().headlessUncompress(inter2, inpos, SIZE_INTS, target, outpos, cell_pixel_count);
+		BufferPool.returnInts(inter2);
+		Serialisation.decodeDeltaZigZag(target, cell_pixel_count);
+	}
+}
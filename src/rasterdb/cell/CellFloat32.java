@@ -0,0 +1,150 @@
+package rasterdb.cell;
+
+import rasterdb.Band;
+import rasterunit.Tile;
+import util.BufferPool;
+
+public class CellFloat32 extends Cell<float[][]>{
+
+	public CellFloat32(int pixel_len) {
+		super(pixel_len);
+	}
+
+	@Override
+	public int getType() {
+		return CellType.FLOAT32;
+	}
+
+	@Override
+	public boolean isNotAllNaCellPixels(float[][] cellPixels, Band band) {
+		for(int i = 0; i < pixel_len; i++) {
+			float[] src = cellPixels[i];				
+			for(int c = 0; c < pixel_len; c++) {
+				if(Float.isFinite(src[c])) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public int getRawNA(Band band) {
+		return Float.floatToIntBits(Float.NaN);
+	}
+
+	@Override
+	public int[] toRaw(float[][] pixels) {		
+		int[] raw = BufferPool.borrowInts(cell_pixel_count);
+		int destPos = 0;
+		for(int i = 0; i < pixel_len; i++) {
+			float[] src = pixels[i];				
+			for(int c=0; c < pixel_len; c++) {
+				raw[destPos++] = Float.floatToIntBits(src[c]);
+			}
+		}
+		return raw;
+	}
+
+	@Override
+	public float[][] decodeCell(Tile tile) {
+		int[] raw = decBorrow(tile);
+		float[][] cellPixels = new float[pixel_len][pixel_len];
+		int srcPos = 0;
+		for(int i=0; i < pixel_len; i++) {
+			float[] dst = cellPixels[i];				
+			for(int c = 0; c < pixel_len; c++) {
+				dst[c] = Float.intBitsToFloat(raw[srcPos++]); 
+			}
+		}
+		BufferPool.returnInts(raw);
+		return cellPixels;
+	}
+
+	@Override
+	public void decodeCellDiv(Tile tile, int xCellStart, int yCellStart, int div, float[][] target, Band band, int xTargetStart, int yTargetStart, int xTargetEnd, int yTargetEnd) {
+		int[] raw = decBorrow(tile);
+		int posTargetRow = yCellStart * pixel_len + xCellStart;
+		for(int y = yTargetStart; y <= yTargetEnd; y++) {
+			int posTargetPixel = posTargetRow;
+			float[] dst = target[y];
+			for(int x = xTargetStart; x <= xTargetEnd; x++) {
+				float sum = 0;
+				int cnt = 0;
+				int posTileRow = posTargetPixel;
+				for(int py = 0; py < div; py++) {
+					int posTilePixel = posTileRow;
+					for(int px = 0; px < div; px++) {
+						float v = Float.intBitsToFloat(raw[posTilePixel++]);
+						if(Float.isFinite(v)) {
+							sum += v;
+							cnt++;
+						}
+					}
+					posTileRow += pixel_len;
+				}
+				dst[x] = cnt == 0 ? Float.NaN : sum / cnt;
+				posTargetPixel += div;
+			}
+			posTargetRow += pixel_len * div;
+		}		
+		BufferPool.returnInts(raw);
+	}
+
+	@Override	
+	public void decodeCellMerge(Tile tile, float[][] cellPixels, Band band) {
+		int[] raw = decBorrow(tile);
+		int srcPos = 0;
+		for(int i=0; i < pixel_len; i++) {
+			float[] dst = cellPixels[i];				
+			for(int c = 0; c < pixel_len; c++) {
+				if(!Float.isFinite(dst[c])) {
+					dst[c] = Float.intBitsToFloat(raw[srcPos]); 
+				}
+				srcPos++;
+			}
+		}
+		BufferPool.returnInts(raw);
+	}
+
+	@Override
+	public void decodeCell(Tile tile, int xCellStart, int yCellStart, int xCellEnd, float[][] target, int xTargetStart, int yTargetStart, int xTargetEnd, int yTargetEnd) {
+		int[] raw = decBorrow(tile);
+		int xCellSkip = xCellStart + ((pixel_len - 1) - xCellEnd);
+		int cellPos = (yCellStart * pixel_len) + xCellStart;
+		for(int y = yTargetStart; y <= yTargetEnd; y++) {
+			float[] dst = target[y];				
+			for(int x = xTargetStart; x <= xTargetEnd; x++) {
+				dst[x] = Float.intBitsToFloat(raw[cellPos++]);
+			}
+			cellPos += xCellSkip;
+		}
+		BufferPool.returnInts(raw);
+	}
+
+	@Override
+	public float[][] createEmptyUninitialized(int width, int height) {
+		return new float[height][width];
+	}
+
+	@Override
+	public float[][] createEmptyNA(int width, int height, Band band) {
+		float[][] data = new float[height][width];
+		for (int y = 0; y < height; y++) {
+			float[] row = data[y];
+			for (int x = 0; x < width; x++) {
+				row[x] = Float.NaN;
+			}
+		}
+		return data;
+	}
+
+	@Override
+	public void copy(float[][] pixels, int tx, int ty, float[][] tilePixels, int xStart, int txlen, int yStart, int yEnd) {
+		for(int y = yStart; y <= yEnd; y++) {
+			float[] targetRow = pixels[ty++];
+			float[] pixelRow = tilePixels[y];
+			System.arraycopy(targetRow, tx, pixelRow, xStart, txlen);
+		}		
+	}
+}
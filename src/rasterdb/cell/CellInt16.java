@@ -1,14 +1,11 @@
 package rasterdb.cell;
 
-import java.nio.ByteOrder;
-
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import me.lemire.integercompression.IntWrapper;
 import rasterdb.Band;
 import rasterunit.Tile;
-import util.Serialisation;
+import util.BufferPool;
 
 public class CellInt16 extends Cell<short[][]>{
 	private static final Logger log = LogManager.getLogger();
@@ -17,6 +14,11 @@ public class CellInt16 extends Cell<short[][]>{
 		super(pixel_len);
 	}
 
+	@Override
+	public int getType() {
+		return CellType.INT16;
+	}
+
 	@Override
 	public boolean isNotAllNaCellPixels(short[][] cellPixels, Band band) {
 		short na = band.getInt16NA();
@@ -32,8 +34,13 @@ public class CellInt16 extends Cell<short[][]>{
 	}
 
 	@Override
-	public byte[] encodeCell(short[][] pixels) {		
-		int[] raw = new int[cell_pixel_count];
+	public int getRawNA(Band band) {
+		return band.getInt16NA();
+	}
+
+	@Override
+	public int[] toRaw(short[][] pixels) {		
+		int[] raw = BufferPool.borrowInts(cell_pixel_count);
 		int destPos = 0;
 		for(int i = 0; i < pixel_len; i++) {
 			short[] src = pixels[i];				
@@ -41,12 +48,12 @@ public class CellInt16 extends Cell<short[][]>{
 				raw[destPos++] = src[c];
 			}
 		}
-		return enc(raw);
+		return raw;
 	}
 
 	@Override
 	public short[][] decodeCell(Tile tile) {
-		int[] raw = dec(tile.data);
+		int[] raw = decBorrow(tile);
 		short[][] cellPixels = new short[pixel_len][pixel_len];
 		int srcPos = 0;
 		for(int i=0; i < pixel_len; i++) {
@@ -55,13 +62,14 @@ public class CellInt16 extends Cell<short[][]>{
 				dst[c] = (short) raw[srcPos++]; 
 			}
 		}
+		BufferPool.returnInts(raw);
 		return cellPixels;
 	}
 
 	@Override
 	public void decodeCellDiv(Tile tile, int xCellStart, int yCellStart, int div, short[][] target, Band band, int xTargetStart, int yTargetStart, int xTargetEnd, int yTargetEnd) {
 		short na = band.getInt16NA();
-		int[] raw = dec(tile.data);
+		int[] raw = decBorrow(tile);
 		int posTargetRow = yCellStart * pixel_len + xCellStart;
 		for(int y = yTargetStart; y <= yTargetEnd; y++) {
 			int posTargetPixel = posTargetRow;
@@ -86,12 +94,13 @@ public class CellInt16 extends Cell<short[][]>{
 			}
 			posTargetRow += pixel_len * div;
 		}		
+		BufferPool.returnInts(raw);
 	}
 
 	@Override	
 	public void decodeCellMerge(Tile tile, short[][] cellPixels, Band band) {
 		short na = band.getInt16NA();
-		int[] raw = dec(tile.data);
+		int[] raw = decBorrow(tile);
 		int srcPos = 0;
 		for(int i=0; i < pixel_len; i++) {
 			short[] dst = cellPixels[i];				
@@ -102,11 +111,12 @@ public class CellInt16 extends Cell<short[][]>{
 				srcPos++;
 			}
 		}
+		BufferPool.returnInts(raw);
 	}
 	
 	@Override
 	public void decodeCell(Tile tile, int xCellStart, int yCellStart, int xCellEnd, short[][] target, int xTargetStart, int yTargetStart, int xTargetEnd, int yTargetEnd) {
-		int[] raw = dec(tile.data);
+		int[] raw = decBorrow(tile);
 		int xCellSkip = xCellStart + ((pixel_len - 1) - xCellEnd);
 		int cellPos = (yCellStart * pixel_len) + xCellStart;
 		for(int y = yTargetStart; y <= yTargetEnd; y++) {
@@ -116,6 +126,7 @@ public class CellInt16 extends Cell<short[][]>{
 			}
 			cellPos += xCellSkip;
 		}
+		BufferPool.returnInts(raw);
 	}
 
 	/*public static byte[] enc(short[] data) {
@@ -138,51 +149,6 @@ public class CellInt16 extends Cell<short[][]>{
 		return result;
 	}*/
 
-	public byte[] enc(int[] data) {
-		//int[] data2 = Serialisation.castShortToInt(data);		
-		Serialisation.encodeDeltaZigZag(data);
-		IntWrapper inpos = new IntWrapper();
-		int[] compressed_raw = new int[cell_pixel_count + 256];
-		IntWrapper outpos = new IntWrapper();
-		threadLocal_fastPFOR.get().headlessCompress(data, inpos, cell_pixel_count, compressed_raw, outpos);
-		byte[] transformed = Serialisation.intToByteArray(compressed_raw, outpos.get());
-		return transformed;
-		//byte[] result = Zstd.compress(transformed, 1);
-		/*try {
-			byte[] result = Snappy.rawCompress(compressed_raw, outpos.get() * 4);
-			return result;
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}*/
-		//return null;
-	}
-
-	public int[] dec(byte[] data) {
-		//int len = (int) Zstd.decompressedSize(data);
-		//byte[] inter = Zstd.decompress(data, len);
-		//int[] inter2 = Serialisation.byteToIntArray(inter);
-		//int[] inter2 = Serialisation.byteToIntArray(data);
-		int SIZE_INTS = data.length/4;
-		int[] inter2 = new int[SIZE_INTS];
-		java.nio.ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(inter2);
-		/*int[] inter2 = null;
-		try {
-			inter2 = Snappy.uncompressIntArray(data);
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}*/
-		IntWrapper inpos = new IntWrapper();
-		int[] result = new int[cell_pixel_count];
-		IntWrapper outpos = new IntWrapper();
-		threadLocal_fastPFOR.get().headlessUncompress(inter2, inpos, inter2.length, result, outpos, cell_pixel_count);
-		Serialisation.decodeDeltaZigZag(result);
-		return result;
-		//short[] result2 = Serialisation.castIntToShort(result);
-		//return result2;
-	}
-
 	@Override
 	public short[][] createEmptyUninitialized(int width, int height) {
 		return new short[height][width];
@@ -0,0 +1,149 @@
+package rasterdb.cell;
+
+import rasterdb.Band;
+import rasterunit.Tile;
+import util.BufferPool;
+
+public class CellInt32 extends Cell<int[][]>{
+
+	public CellInt32(int pixel_len) {
+		super(pixel_len);
+	}
+
+	@Override
+	public int getType() {
+		return CellType.INT32;
+	}
+
+	@Override
+	public boolean isNotAllNaCellPixels(int[][] cellPixels, Band band) {
+		int na = band.getInt32NA();
+		for(int i = 0; i < pixel_len; i++) {
+			int[] src = cellPixels[i];				
+			for(int c = 0; c < pixel_len; c++) {
+				if(src[c] != na) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public int getRawNA(Band band) {
+		return band.getInt32NA();
+	}
+
+	@Override
+	public int[] toRaw(int[][] pixels) {		
+		int[] raw = BufferPool.borrowInts(cell_pixel_count);
+		int destPos = 0;
+		for(int i = 0; i < pixel_len; i++) {
+			System.arraycopy(pixels[i], 0, raw, destPos, pixel_len);
+			destPos += pixel_len;
+		}
+		return raw;
+	}
+
+	@Override
+	public int[][] decodeCell(Tile tile) {
+		int[] raw = decBorrow(tile);
+		int[][] cellPixels = new int[pixel_len][pixel_len];
+		int srcPos = 0;
+		for(int i=0; i < pixel_len; i++) {
+			System.arraycopy(raw, srcPos, cellPixels[i], 0, pixel_len);
+			srcPos += pixel_len;
+		}
+		BufferPool.returnInts(raw);
+		return cellPixels;
+	}
+
+	@Override
+	public void decodeCellDiv(Tile tile, int xCellStart, int yCellStart, int div, int[][] target, Band band, int xTargetStart, int yTargetStart, int xTargetEnd, int yTargetEnd) {
+		int na = band.getInt32NA();
+		int[] raw = decBorrow(tile);
+		int posTargetRow = yCellStart * pixel_len + xCellStart;
+		for(int y = yTargetStart; y <= yTargetEnd; y++) {
+			int posTargetPixel = posTargetRow;
+			int[] dst = target[y];
+			for(int x = xTargetStart; x <= xTargetEnd; x++) {
+				long sum = 0;
+				int cnt = 0;
+				int posTileRow = posTargetPixel;
+				for(int py = 0; py < div; py++) {
+					int posTilePixel = posTileRow;
+					for(int px = 0; px < div; px++) {
+						int v = raw[posTilePixel++];
+						if(v != na) {
+							sum += v;
+							cnt++;
+						}
+					}
+					posTileRow += pixel_len;
+				}
+				dst[x] = cnt == 0 ? na : (int)(sum / cnt);
+				posTargetPixel += div;
+			}
+			posTargetRow += pixel_len * div;
+		}		
+		BufferPool.returnInts(raw);
+	}
+
+	@Override	
+	public void decodeCellMerge(Tile tile, int[][] cellPixels, Band band) {
+		int na = band.getInt32NA();
+		int[] raw = decBorrow(tile);
+		int srcPos = 0;
+		for(int i=0; i < pixel_len; i++) {
+			int[] dst = cellPixels[i];				
+			for(int c = 0; c < pixel_len; c++) {
+				if(dst[c] == na) {
+					dst[c] = raw[srcPos]; 
+				}
+				srcPos++;
+			}
+		}
+		BufferPool.returnInts(raw);
+	}
+
+	@Override
+	public void decodeCell(Tile tile, int xCellStart, int yCellStart, int xCellEnd, int[][] target, int xTargetStart, int yTargetStart, int xTargetEnd, int yTargetEnd) {
+		int[] raw = decBorrow(tile);
+		int cellPos = (yCellStart * pixel_len) + xCellStart;
+		int xlen = xTargetEnd - xTargetStart + 1;
+		for(int y = yTargetStart; y <= yTargetEnd; y++) {
+			System.arraycopy(raw, cellPos, target[y], xTargetStart, xlen);
+			cellPos += pixel_len;
+		}
+		BufferPool.returnInts(raw);
+	}
+
+	@Override
+	public int[][] createEmptyUninitialized(int width, int height) {
+		return new int[height][width];
+	}
+
+	@Override
+	public int[][] createEmptyNA(int width, int height, Band band) {
+		int na = band.getInt32NA();
+		int[][] data = new int[height][width];
+		if(na != 0) {
+			for (int y = 0; y < height; y++) {
+				int[] row = data[y];
+				for (int x = 0; x < width; x++) {
+					row[x] = na;
+				}
+			}
+		}
+		return data;
+	}
+
+	@Override
+	public void copy(int[][] pixels, int tx, int ty, int[][] tilePixels, int xStart, int txlen, int yStart, int yEnd) {
+		for(int y = yStart; y <= yEnd; y++) {
+			int[] targetRow = pixels[ty++];
+			int[] pixelRow = tilePixels[y];
+			System.arraycopy(targetRow, tx, pixelRow, xStart, txlen);
+		}		
+	}
+}
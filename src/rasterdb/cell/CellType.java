@@ -3,5 +3,8 @@ package rasterdb.cell;
 public class CellType {
 	
 	public final static int INT16 = 3; 
+	public final static int FLOAT32 = 4;
+	public final static int UINT8 = 5;
+	public final static int INT32 = 6;
 
 }
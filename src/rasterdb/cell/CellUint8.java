@@ -0,0 +1,173 @@
+package rasterdb.cell;
+
+import rasterdb.Band;
+import rasterunit.Tile;
+import util.BufferPool;
+
+/**
+ * Cell of unsigned 8 bit pixels. Pixels are stored in byte arrays, values need to be read with (v & 0xff).
+ */
+public class CellUint8 extends Cell<byte[][]>{
+
+	public CellUint8(int pixel_len) {
+		super(pixel_len);
+	}
+
+	@Override
+	public int getType() {
+		return CellType.UINT8;
+	}
+
+	@Override
+	public boolean isNotAllNaCellPixels(byte[][] cellPixels, Band band) {
+		byte na = band.getUint8NA();
+		for(int i = 0; i < pixel_len; i++) {
+			byte[] src = cellPixels[i];				
+			for(int c = 0; c < pixel_len; c++) {
+				if(src[c] != na) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public int getRawNA(Band band) {
+		return band.getUint8NA() & 0xff;
+	}
+
+	@Override
+	public int[] toRaw(byte[][] pixels) {		
+		int[] raw = BufferPool.borrowInts(cell_pixel_count);
+		int destPos = 0;
+		for(int i = 0; i < pixel_len; i++) {
+			byte[] src = pixels[i];				
+			for(int c=0; c < pixel_len; c++) {
+				raw[destPos++] = src[c] & 0xff;
+			}
+		}
+		return raw;
+	}
+
+	@Override
+	public byte[][] decodeCell(Tile tile) {
+		int[] raw = decBorrow(tile);
+		byte[][] cellPixels = new byte[pixel_len][pixel_len];
+		int srcPos = 0;
+		for(int i=0; i < pixel_len; i++) {
+			byte[] dst = cellPixels[i];				
+			for(int c = 0; c < pixel_len; c++) {
+				dst[c] = (byte) raw[srcPos++]; 
+			}
+		}
+		BufferPool.returnInts(raw);
+		return cellPixels;
+	}
+
+	@Override
+	public void decodeCellDiv(Tile tile, int xCellStart, int yCellStart, int div, byte[][] target, Band band, int xTargetStart, int yTargetStart, int xTargetEnd, int yTargetEnd) {
+		int na = band.getUint8NA() & 0xff;
+		int[] raw = decBorrow(tile);
+		int posTargetRow = yCellStart * pixel_len + xCellStart;
+		for(int y = yTargetStart; y <= yTargetEnd; y++) {
+			int posTargetPixel = posTargetRow;
+			byte[] dst = target[y];
+			for(int x = xTargetStart; x <= xTargetEnd; x++) {
+				int sum = 0;
+				int cnt = 0;
+				int posTileRow = posTargetPixel;
+				for(int py = 0; py < div; py++) {
+					int posTilePixel = posTileRow;
+					for(int px = 0; px < div; px++) {
+						int v = raw[posTilePixel++];
+						if(v != na) {
+							sum += v;
+							cnt++;
+						}
+					}
+					posTileRow += pixel_len;
+				}
+				dst[x] = (byte) (cnt == 0 ? na : (sum / cnt));
+				posTargetPixel += div;
+			}
+			posTargetRow += pixel_len * div;
+		}		
+		BufferPool.returnInts(raw);
+	}
+
+	@Override	
+	public void decodeCellMerge(Tile tile, byte[][] cellPixels, Band band) {
+		byte na = band.getUint8NA();
+		int[] raw = decBorrow(tile);
+		int srcPos = 0;
+		for(int i=0; i < pixel_len; i++) {
+			byte[] dst = cellPixels[i];				
+			for(int c = 0; c < pixel_len; c++) {
+				if(dst[c] == na) {
+					dst[c] = (byte) raw[srcPos]; 
+				}
+				srcPos++;
+			}
+		}
+		BufferPool.returnInts(raw);
+	}
+
+	@Override
+	public void decodeCell(Tile tile, int xCellStart, int yCellStart, int xCellEnd, byte[][] target, int xTargetStart, int yTargetStart, int xTargetEnd, int yTargetEnd) {
+		int[] raw = decBorrow(tile);
+		int xCellSkip = xCellStart + ((pixel_len - 1) - xCellEnd);
+		int cellPos = (yCellStart * pixel_len) + xCellStart;
+		for(int y = yTargetStart; y <= yTargetEnd; y++) {
+			byte[] dst = target[y];				
+			for(int x = xTargetStart; x <= xTargetEnd; x++) {
+				dst[x] = (byte) raw[cellPos++];
+			}
+			cellPos += xCellSkip;
+		}
+		BufferPool.returnInts(raw);
+	}
+
+	@Override
+	public byte[][] createEmptyUninitialized(int width, int height) {
+		return new byte[height][width];
+	}
+
+	@Override
+	public byte[][] createEmptyNA(int width, int height, Band band) {
+		byte na = band.getUint8NA();
+		byte[][] data = new byte[height][width];
+		if(na != 0) {
+			for (int y = 0; y < height; y++) {
+				byte[] row = data[y];
+				for (int x = 0; x < width; x++) {
+					row[x] = na;
+				}
+			}
+		}
+		return data;
+	}
+
+	@Override
+	public void copy(byte[][] pixels, int tx, int ty, byte[][] tilePixels, int xStart, int txlen, int yStart, int yEnd) {
+		for(int y = yStart; y <= yEnd; y++) {
+			byte[] targetRow = pixels[ty++];
+			byte[] pixelRow = tilePixels[y];
+			System.arraycopy(targetRow, tx, pixelRow, xStart, txlen);
+		}		
+	}
+
+	public static short[][] toShort(byte[][] pixels) {
+		int w = pixels[0].length;
+		int h = pixels.length;
+		short[][] result = new short[h][w];
+		for (int y = 0; y < h; y++) {
+			byte[] src = pixels[y];
+			short[] dst = result[y];
+			for (int x = 0; x < w; x++) {
+				dst[x] = (short) (src[x] & 0xff);
+			}
+		}
+		return result;
+	}
+}
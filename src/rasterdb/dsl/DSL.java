@@ -13,6 +13,7 @@ import rasterdb.ast.MacroVisitor;
 import rasterdb.ast.StringVisitor;
 import rasterdb.node.CompileVisitor;
 import rasterdb.node.ProcessorNode;
+import util.CancellationToken;
 import util.frame.DoubleFrame;
 
 public class DSL {
@@ -67,6 +68,7 @@ public class DSL {
 	
 	public static DoubleFrame[] process(String script, ErrorCollector errorCollector, BandProcessor processor) {
 		ProcessorNode processorNode = DSL.parse_unify_bind_compileToProcessorNode(script, errorCollector, processor);
+		CancellationToken.checkCurrent();
 		return processorNode.process(processor);
 	}
 	
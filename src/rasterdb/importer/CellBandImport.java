@@ -0,0 +1,140 @@
+package rasterdb.importer;
+
+import java.io.IOException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import rasterdb.Band;
+import rasterdb.RasterDB;
+import rasterdb.cell.CellInt32;
+import rasterdb.cell.CellType;
+import rasterdb.cell.CellUint8;
+import rasterunit.RasterUnitStorage;
+import util.Util;
+import util.raster.GdalReader;
+
+/**
+ * Import of uint8 and int32 bands in windows of file rows, used by RasterDBimporter and ImportRemoteTask.
+ */
+public class CellBandImport {
+	private static final Logger log = LogManager.getLogger();
+
+	private static final int MAX_WINDOW_PIXELS = 33_554_432;
+
+	/**
+	 * Imports all rows of file band, reads and writes one window of tile rows at a time.
+	 * @param noDataValue no data value of file band or null
+	 * @return count of written tiles
+	 */
+	public static int importBand(RasterDB rasterdb, RasterUnitStorage rasterUnit, GdalReader gdalreader, int fileBandIndex, int gdalRasterDataType, Double noDataValue, Band band, int timestamp, int pixelXmin, int pixelYmin) throws IOException {
+		int tileLen = rasterdb.getTilePixelLen();
+		int xRange = gdalreader.x_range;
+		int yRange = gdalreader.y_range;
+		int windowTileRows = Math.max(1, (MAX_WINDOW_PIXELS / Math.max(1, xRange)) / tileLen);
+		int cnt = 0;
+		int yoff = 0;
+		while(yoff < yRange) {
+			// window from file row yoff down to the first pixel row of a tile row, file rows are flipped
+			int windowPixelYmax = pixelYmin + (yRange - 1 - yoff);
+			int windowPixelYmin = Math.max(pixelYmin, (Math.floorDiv(windowPixelYmax, tileLen) - (windowTileRows - 1)) * tileLen);
+			int ysize = windowPixelYmax - windowPixelYmin + 1;
+			Object data = read(gdalreader, fileBandIndex, gdalRasterDataType, noDataValue, band, yoff, ysize);
+			cnt += write(rasterdb, rasterUnit, band, timestamp, data, pixelXmin, windowPixelYmin);
+			yoff += ysize;
+		}
+		return cnt;
+	}
+
+	/**
+	 * Reads window of file band and converts no data value to band NA, in RasterDB row order.
+	 * @param noDataValue no data value of file band or null
+	 * @return byte[][] or int[][]
+	 */
+	public static Object read(GdalReader gdalreader, int fileBandIndex, int gdalRasterDataType, Double noDataValue, Band band, int yoff, int ysize) throws IOException {
+		switch(band.type) {
+		case CellType.UINT8:
+			return readUint8(gdalreader, fileBandIndex, gdalRasterDataType, noDataValue, band, yoff, ysize);
+		case CellType.INT32:
+			return readInt32(gdalreader, fileBandIndex, gdalRasterDataType, noDataValue, band, yoff, ysize);
+		default:
+			throw new RuntimeException("band data type not implemented " + band.type);
+		}
+	}
+
+	/**
+	 * Merges window data of read into tiles of rasterUnit.
+	 * @return count of written tiles
+	 */
+	public static int write(RasterDB rasterdb, RasterUnitStorage rasterUnit, Band band, int timestamp, Object data, int pixelXmin, int pixelYmin) throws IOException {
+		switch(band.type) {
+		case CellType.UINT8: {
+			byte[][] dataByte = (byte[][]) data;
+			CellUint8 cellUint8 = new CellUint8(rasterdb.getTilePixelLen());
+			return cellUint8.writeMerge(rasterUnit, timestamp, band, dataByte, pixelYmin, pixelXmin, dataByte[0].length, dataByte.length);
+		}
+		case CellType.INT32: {
+			int[][] dataInt = (int[][]) data;
+			CellInt32 cellInt32 = new CellInt32(rasterdb.getTilePixelLen());
+			return cellInt32.writeMerge(rasterUnit, timestamp, band, dataInt, pixelYmin, pixelXmin, dataInt[0].length, dataInt.length);
+		}
+		default:
+			throw new RuntimeException("band data type not implemented " + band.type);
+		}
+	}
+
+	public static byte[][] readUint8(GdalReader gdalreader, int fileBandIndex, int gdalRasterDataType, Double noDataValue, Band band, int yoff, int ysize) throws IOException {
+		switch(gdalRasterDataType) {
+		case GdalReader.GDAL_BYTE: {
+			byte[][] dataByte = gdalreader.getDataByte(fileBandIndex, null, yoff, ysize);
+			if(noDataValue != null) {
+				byte bandNa = band.getUint8NA();
+				byte gdalNa = (byte) noDataValue.intValue();
+				if(gdalNa != bandNa) {
+					log.info("convert file no data value " + noDataValue + " to band uint8 " + (bandNa & 0xff));
+					for(byte[] row : dataByte) {
+						for (int x = 0; x < row.length; x++) {
+							if(row[x] == gdalNa) {
+								row[x] = bandNa;
+							}
+						}
+					}
+				}
+			}
+			return Util.flipRows(dataByte);
+		}
+		default:
+			throw new RuntimeException("gdal data type not implemented for band type UINT8 " + gdalRasterDataType);
+		}
+	}
+
+	public static int[][] readInt32(GdalReader gdalreader, int fileBandIndex, int gdalRasterDataType, Double noDataValue, Band band, int yoff, int ysize) throws IOException {
+		switch(gdalRasterDataType) {
+		case GdalReader.GDAL_UINT32:
+			log.warn("convert uint32 raster data to int32");
+		case GdalReader.GDAL_BYTE:
+		case GdalReader.GDAL_UINT16:
+		case GdalReader.GDAL_INT16:
+		case GdalReader.GDAL_INT32: {
+			int[][] dataInt = gdalreader.getDataInt(fileBandIndex, null, yoff, ysize);
+			if(noDataValue != null) {
+				int bandNa = band.getInt32NA();
+				int gdalNa = noDataValue.intValue();
+				if(gdalNa != bandNa) {
+					log.info("convert file no data value " + noDataValue + " to band int32 " + bandNa);
+					for(int[] row : dataInt) {
+						for (int x = 0; x < row.length; x++) {
+							if(row[x] == gdalNa) {
+								row[x] = bandNa;
+							}
+						}
+					}
+				}
+			}
+			return Util.flipRows(dataInt);
+		}
+		default:
+			throw new RuntimeException("gdal data type not implemented for band type INT32 " + gdalRasterDataType);
+		}
+	}
+}
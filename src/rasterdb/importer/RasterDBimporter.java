@@ -2,10 +2,15 @@ package rasterdb.importer;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -13,6 +18,7 @@ import org.apache.logging.log4j.Logger;
 import rasterdb.Band;
 import rasterdb.BandProcessing;
 import rasterdb.RasterDB;
+import rasterdb.cell.CellFloat32;
 import rasterdb.cell.CellInt16;
 import rasterdb.cell.CellType;
 import rasterdb.tile.ProcessingFloat;
@@ -20,6 +26,8 @@ import rasterdb.tile.ProcessingShort;
 import rasterdb.tile.TileFloat;
 import rasterdb.tile.TilePixel;
 import rasterunit.RasterUnitStorage;
+import rasterunit.Tile;
+import rasterunit.TileCollector;
 import util.TimeUtil;
 import util.Timer;
 import util.Util;
@@ -160,33 +168,66 @@ public class RasterDBimporter {
 		}
 
 		int bandCount = hyperspectral.getBandCount();
-		short[][] targetData = null;
+		Band[] bands = new Band[bandCount];
 		for(int fileBandIndex = 0; fileBandIndex < bandCount; fileBandIndex++) {
 			double wavelength = hyperspectral.enviHdr.wavelength_picometre[fileBandIndex] / 1000d;
 			double fwhm = hyperspectral.enviHdr.fwhm_picometre[fileBandIndex] / 1000d;
 			Band band = BandProcessing.matchSpectralBand(rasterdb, wavelength, fwhm, 0.01d);
 			if(band == null) {
 				band = rasterdb.createSpectralBand(TilePixel.TYPE_SHORT, wavelength, fwhm, null, null);
-			}			
-			targetData = hyperspectral.getData(fileBandIndex, targetData);			
-			targetData = Util.flipRows(targetData);
-			int cnt = ProcessingShort.writeMerge(rasterUnit, timestamp, band, targetData, pixelYmin, pixelXmin);
-			log.info(targetData.length + " x " + targetData[0].length+" b "+fileBandIndex+" tiles "+cnt);
+			}
+			bands[fileBandIndex] = band;
+		}
 
+		// blocks of lines of all bands, next block is read while tiles of current block are encoded
+		int lines = hyperspectral.lines;
+		int tileLen = TilePixel.PIXELS_PER_ROW;
+		long blockLines = ENVI_BLOCK_BYTES_MAX / Math.max(1, hyperspectral.getLineBytesAllBands());
+		if(blockLines >= tileLen) {
+			blockLines -= blockLines % tileLen; // multiple of tile rows, tiles crossing blocks are merged with the previous block
+		}
+		int blockLineCount = (int) Math.max(1, Math.min(lines, blockLines));
+		log.info("import " + bandCount + " bands in blocks of " + blockLineCount + " lines");
+		CompletableFuture<short[][][]> nextBlock = readEnviBlock(hyperspectral, 0, blockLineCount);
+		long tileCount = 0;
+		for(int firstLine = 0; firstLine < lines; firstLine += blockLineCount) {
+			int lineCount = Math.min(blockLineCount, lines - firstLine);
+			short[][][] blockData = nextBlock.join();
+			int nextLine = firstLine + lineCount;
+			nextBlock = nextLine < lines ? readEnviBlock(hyperspectral, nextLine, Math.min(blockLineCount, lines - nextLine)) : null;
+			int blockPixelYmin = pixelYmin + (lines - nextLine); // file lines are flipped
+			List<ArrayList<Tile>> bandTiles = IntStream.range(0, bandCount).parallel().mapToObj(fileBandIndex -> {
+				TileCollector collector = new TileCollector(rasterUnit);
+				try {
+					ProcessingShort.writeMerge(collector, timestamp, bands[fileBandIndex], Util.flipRows(blockData[fileBandIndex]), blockPixelYmin, pixelXmin);
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+				return collector.take();
+			}).collect(Collectors.toList());
+			for(ArrayList<Tile> tiles : bandTiles) {
+				for(Tile tile : tiles) {
+					rasterUnit.writeTile(tile);
+				}
+				tileCount += tiles.size();
+			}
 			rasterUnit.commit();
+			log.info("lines " + firstLine + " to " + (nextLine - 1) + " of " + lines + " tiles " + tileCount);
+		}
 
-			/*if(fileBandIndex == 0) {
-				Frame frame = new Frame(targetData, 0, 0, targetData[0].length-1, targetData.length-1);
-				ImageProducerGrey imageProducerGrey = new ImageProducerGrey(frame);
-				OutputStream out = new FileOutputStream("c:/pointdb_data/testing_rasterdb/img.png");
-				imageProducerGrey.produce(2.5f);
-				imageProducerGrey.writePng(out, 0);
-				out.close();
-			}*/
+		log.info("db tileKey count "+rasterUnit.getTileCount());
+	}
 
-		}				
+	private static final long ENVI_BLOCK_BYTES_MAX = 256 * 1024 * 1024;
 
-		log.info("db tileKey count "+rasterUnit.getTileCount());
+	private static CompletableFuture<short[][][]> readEnviBlock(Hyperspectral hyperspectral, int firstLine, int lineCount) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return hyperspectral.getDataAllBands(firstLine, lineCount, null);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
 	}
 
 
@@ -446,6 +487,41 @@ public class RasterDBimporter {
 				}
 				break;
 			}
+			case CellType.FLOAT32: {
+				switch(gdalRasterDataType) {
+				case GdalReader.GDAL_FLOAT64:
+					log.warn("convert float64 raster data to float32");
+				case GdalReader.GDAL_FLOAT32:
+				case GdalReader.GDAL_BYTE:
+				case GdalReader.GDAL_UINT16:
+				case GdalReader.GDAL_INT16: {
+					if(noDataValueHolder[0] != null) {
+						float noDataValue = noDataValueHolder[0].floatValue();
+						targetDataFloat = gdalreader.getDataFloat(fileBandIndex, targetDataFloat, noDataValue);
+					} else {
+						targetDataFloat = gdalreader.getDataFloat(fileBandIndex, targetDataFloat);
+					}
+					targetDataFloat = Util.flipRows(targetDataFloat);
+					CellFloat32 cellFloat32 = new CellFloat32(rasterdb.getTilePixelLen());
+					int xlen = targetDataFloat[0].length;
+					int ylen = targetDataFloat.length;
+					int cnt = cellFloat32.writeMerge(rasterUnit, timestamp, band, targetDataFloat, pixelYmin, pixelXmin, xlen, ylen);
+					log.info(targetDataFloat.length + " x " + targetDataFloat[0].length+" b "+fileBandIndex+"->"+band.index+" t "+timestamp+" tiles "+cnt);
+					rasterUnit.commit();
+					break;
+				}
+				default:
+					throw new RuntimeException("gdal data type not implemented for band type CellType.FLOAT32 "+gdalRasterDataType);				
+				}
+				break;
+			}
+			case CellType.UINT8:
+			case CellType.INT32: {
+				int cnt = CellBandImport.importBand(rasterdb, rasterUnit, gdalreader, fileBandIndex, gdalRasterDataType, noDataValueHolder[0], band, timestamp, pixelXmin, pixelYmin);
+				log.info(gdalreader.y_range + " x " + gdalreader.x_range+" b "+fileBandIndex+"->"+band.index+" t "+timestamp+" tiles "+cnt);
+				rasterUnit.commit();
+				break;
+			}
 			}
 		}
 	}
@@ -14,6 +14,7 @@ import rasterdb.ast.AST_Sequence;
 import rasterdb.ast.AST_function;
 import rasterdb.ast.AST_radiance;
 import rasterdb.ast.AstVisitor;
+import util.CancellationToken;
 import util.frame.DoubleFrame;
 
 public class CompileVisitor implements AstVisitor<ProcessorNode, Void> {
@@ -45,6 +46,7 @@ public class CompileVisitor implements AstVisitor<ProcessorNode, Void> {
 				DoubleFrame[][] subResults = new DoubleFrame[len][];
 				int fullLen = 0;
 				for (int i = 0; i < len; i++) {
+					CancellationToken.checkCurrent();
 					DoubleFrame[] subResult = nodes[i].process(processor);
 					fullLen += subResult.length;
 					subResults[i] = subResult; 
@@ -68,6 +70,7 @@ public class CompileVisitor implements AstVisitor<ProcessorNode, Void> {
 		return new ProcessorNode() {
 			@Override
 			public DoubleFrame[] process(BandProcessor processor) {
+				CancellationToken.checkCurrent();
 				Band band = processor.getBand(ast.number);
 				DoubleFrame frame = processor.getDoubleFrame(band);
 				if(band.has_wavelength()) {
@@ -110,6 +113,7 @@ public class CompileVisitor implements AstVisitor<ProcessorNode, Void> {
 				public DoubleFrame[] process(BandProcessor processor) {
 					DoubleFrame[][] subResults = new DoubleFrame[len][];
 					for (int i = 0; i < subResults.length; i++) {
+						CancellationToken.checkCurrent();
 						subResults[i] = nodes[i].process(processor);
 					}
 					switch(name) {
@@ -176,6 +180,16 @@ public class CompileVisitor implements AstVisitor<ProcessorNode, Void> {
 			default:
 				throw new RuntimeException("gap_filling one or two parameters "+paramNodes.length);
 			}
+		case "temporal_mean":
+		case "temporal_median":
+		case "temporal_min":
+		case "temporal_max":
+		case "temporal_count":
+		case "temporal_sd":
+			if(paramNodes.length != 1) {
+				throw new RuntimeException(ast.name + " needs one parameter "+paramNodes.length);
+			}
+			return new ProcessorNode_temporal(paramNodes[0], ast.name.substring("temporal_".length()));
 		default:
 			throw new RuntimeException("error: unknown function '"+ast.name+"'");
 		}
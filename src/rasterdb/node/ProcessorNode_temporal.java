@@ -0,0 +1,56 @@
+package rasterdb.node;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import rasterdb.BandProcessor;
+import rasterdb.TemporalReducer;
+import util.frame.DoubleFrame;
+
+/**
+ * Evaluates node at all timestamps of the layer and aggregates the resulting frames per pixel.
+ */
+public class ProcessorNode_temporal extends ProcessorNode {
+	static final Logger log = LogManager.getLogger();
+
+	private final ProcessorNode node;
+	private final String function;
+
+	public ProcessorNode_temporal(ProcessorNode node, String function) {
+		if(!TemporalReducer.isFunction(function)) {
+			throw new RuntimeException("unknown temporal function: " + function);
+		}
+		this.node = node;
+		this.function = function;
+	}
+
+	@Override
+	public DoubleFrame[] process(BandProcessor processor) {
+		TemporalReducer[] reducers = null;
+		DoubleFrame[] extents = null;
+		for(int timestamp:processor.rasterdb.rasterUnit().timeKeysReadonly()) {
+			BandProcessor timestampProcessor = new BandProcessor(processor.rasterdb, processor.range2d, timestamp, processor.getScale());
+			DoubleFrame[] frames = node.process(timestampProcessor);
+			if(reducers == null) {
+				reducers = new TemporalReducer[frames.length];
+				extents = frames;
+				for (int i = 0; i < frames.length; i++) {
+					reducers[i] = new TemporalReducer(function, frames[i].width, frames[i].height);
+				}
+			}
+			for (int i = 0; i < frames.length; i++) {
+				reducers[i].add(frames[i].data);
+			}
+		}
+		if(reducers == null) {
+			return node.process(processor);
+		}
+		DoubleFrame[] results = new DoubleFrame[reducers.length];
+		for (int i = 0; i < reducers.length; i++) {
+			DoubleFrame extent = extents[i];
+			results[i] = new DoubleFrame(reducers[i].result(), extent.local_min_x, extent.local_min_y, extent.local_max_x, extent.local_max_y);
+			results[i].meta.putAll(extent.meta);
+		}
+		return results;
+	}
+}
@@ -8,8 +8,11 @@ import org.apache.logging.log4j.Logger;
 
 import rasterdb.Band;
 import rasterdb.RasterDB;
+import rasterdb.cell.CellFloat32;
 import rasterdb.cell.CellInt16;
+import rasterdb.cell.CellInt32;
 import rasterdb.cell.CellType;
+import rasterdb.cell.CellUint8;
 import rasterdb.tile.Processing.Commiter;
 import rasterunit.BandKey;
 import rasterunit.RasterUnitStorage;
@@ -80,6 +83,18 @@ public class Processing {
 			CellInt16 cellInt16 = new CellInt16(rasterdb.getTilePixelLen());
 			cellInt16.writeStorageBandDiv(band, div, srcStorage, srcBandKey, dstStorage, dstBandKey, commiter);	
 			break;
+		case CellType.FLOAT32:
+			CellFloat32 cellFloat32 = new CellFloat32(rasterdb.getTilePixelLen());
+			cellFloat32.writeStorageBandDiv(band, div, srcStorage, srcBandKey, dstStorage, dstBandKey, commiter);	
+			break;
+		case CellType.UINT8:
+			CellUint8 cellUint8 = new CellUint8(rasterdb.getTilePixelLen());
+			cellUint8.writeStorageBandDiv(band, div, srcStorage, srcBandKey, dstStorage, dstBandKey, commiter);	
+			break;
+		case CellType.INT32:
+			CellInt32 cellInt32 = new CellInt32(rasterdb.getTilePixelLen());
+			cellInt32.writeStorageBandDiv(band, div, srcStorage, srcBandKey, dstStorage, dstBandKey, commiter);	
+			break;
 		default:
 			throw new RuntimeException("unknown band type");
 		}
@@ -284,14 +284,14 @@ public class ProcessingFloat {
 			for(Tile tile:tiles) {
 				int x = TilePixel.tileToPixel(tile.x - xmin);
 				int y = TilePixel.tileToPixel(tile.y - ymin);
-				TileFloat.decode(tile.data, data, x, y);
+				TileFloat.decode(tile, data, x, y);
 			}
 		} else {
 			Tile[] resultTiles = tiles.toArray(new Tile[0]);
 			Arrays.stream(resultTiles).parallel().forEach(tile -> {
 				int x = TilePixel.tileToPixel(tile.x - xmin);
 				int y = TilePixel.tileToPixel(tile.y - ymin);
-				TileFloat.decode(tile.data, data, x, y);
+				TileFloat.decode(tile, data, x, y);
 			});
 		}
 		return data;
@@ -310,7 +310,7 @@ public class ProcessingFloat {
 			for(Tile tile:tiles) {
 				int x = TilePixel.tileDiv2ToPixel(tile.x - xmin);
 				int y = TilePixel.tileDiv2ToPixel(tile.y - ymin);
-				float[][] pixels = TileFloat.decode(tile.data);
+				float[][] pixels = TileFloat.decode(tile);
 				copyTileDiv2(pixels, data, y, x);
 			}
 		}else {
@@ -318,7 +318,7 @@ public class ProcessingFloat {
 			Arrays.stream(resultTiles).parallel().forEach(tile -> {
 				int x = TilePixel.tileDiv2ToPixel(tile.x - xmin);
 				int y = TilePixel.tileDiv2ToPixel(tile.y - ymin);
-				float[][] pixels = TileFloat.decode(tile.data);
+				float[][] pixels = TileFloat.decode(tile);
 				copyTileDiv2(pixels, data, y, x);
 			});
 		}
@@ -338,7 +338,7 @@ public class ProcessingFloat {
 			for(Tile tile:tiles) {
 				int x = TilePixel.tileDiv4ToPixel(tile.x - xmin);
 				int y = TilePixel.tileDiv4ToPixel(tile.y - ymin);
-				float[][] pixels = TileFloat.decode(tile.data);
+				float[][] pixels = TileFloat.decode(tile);
 				copyTileDiv4(pixels, data, y, x);
 			}
 		}else {
@@ -346,7 +346,7 @@ public class ProcessingFloat {
 			Arrays.stream(resultTiles).parallel().forEach(tile -> {
 				int x = TilePixel.tileDiv4ToPixel(tile.x - xmin);
 				int y = TilePixel.tileDiv4ToPixel(tile.y - ymin);
-				float[][] pixels = TileFloat.decode(tile.data);
+				float[][] pixels = TileFloat.decode(tile);
 				copyTileDiv4(pixels, data, y, x);
 			});
 		}
@@ -362,7 +362,7 @@ public class ProcessingFloat {
 			for(Tile tile:tiles) {
 				int x = TilePixel.tileDivToPixel(tile.x - xmin, div);
 				int y = TilePixel.tileDivToPixel(tile.y - ymin, div);
-				float[][] pixels = TileFloat.decode(tile.data);
+				float[][] pixels = TileFloat.decode(tile);
 				copyTileDiv(pixels, data, y, x, div);
 			}
 		}else {
@@ -370,7 +370,7 @@ public class ProcessingFloat {
 			Arrays.stream(resultTiles).parallel().forEach(tile -> {
 				int x = TilePixel.tileDivToPixel(tile.x - xmin, div);
 				int y = TilePixel.tileDivToPixel(tile.y - ymin, div);
-				float[][] pixels = TileFloat.decode(tile.data);
+				float[][] pixels = TileFloat.decode(tile);
 				copyTileDiv(pixels, data, y, x, div);
 			});
 		}
@@ -429,10 +429,9 @@ public class ProcessingFloat {
 			TileKey tileKey = new TileKey(t, band.index, y, x);
 			Tile tile = rasterUnitStorage.readTile(tileKey);
 			if(tile != null) {
-				TileFloat.decodeMerge(tile.data, tilePixels);
+				TileFloat.decodeMerge(tile, tilePixels);
 			}		
-			byte[] data = TileFloat.encode(tilePixels);
-			rasterUnitStorage.writeTile(new Tile(tileKey, TilePixel.TYPE_FLOAT, data));
+			rasterUnitStorage.writeTile(TileFloat.encodeTile(tileKey, tilePixels));
 			return true;
 		} else {
 			return false;
@@ -479,7 +478,7 @@ public class ProcessingFloat {
 					if(target[targetIndex] == null) {
 						target[targetIndex] = createEmpty(TilePixel.PIXELS_PER_ROW, TilePixel.PIXELS_PER_ROW); // na fill: not all pixels may be written
 					}
-					float[][] pixels = TileFloat.decode(tile.data);
+					float[][] pixels = TileFloat.decode(tile);
 					int iy = tile.y - tymin;
 					int ix = tile.x - txmin - targetIndex * div;
 					copyTileDivSelect(pixels, target[targetIndex], iy * pixel_len_div, ix * pixel_len_div, div);
@@ -487,8 +486,7 @@ public class ProcessingFloat {
 				for (int targetIndex = 0; targetIndex < target.length; targetIndex++) {
 					if(target[targetIndex] != null) {
 						TileKey tileKey = dstBandKey.toTileKey(y, x + targetIndex);
-						byte[] data = TileFloat.encode(target[targetIndex]);
-						dstStorage.writeTile(new Tile(tileKey, TilePixel.TYPE_FLOAT, data));
+						dstStorage.writeTile(TileFloat.encodeTile(tileKey, target[targetIndex]));
 						tilesWrittenInRow++;
 					}
 				}
@@ -1,8 +1,10 @@
 package rasterdb.tile;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 
 import rasterdb.Band;
 import rasterdb.tile.Processing.Commiter;
@@ -11,6 +13,7 @@ import rasterunit.RasterUnit;
 import rasterunit.RasterUnitStorage;
 import rasterunit.Tile;
 import rasterunit.TileKey;
+import util.CancellationToken;
 import util.Range2d;
 
 public class ProcessingShort {
@@ -45,7 +48,7 @@ public class ProcessingShort {
 		int ymax = TilePixel.pixelToTile(pymax);
 		int xmin = TilePixel.pixelToTile(pxmin); 
 		int xmax = TilePixel.pixelToTile(pxmax);
-		short[][] data = readTiles(pyramid_rasterUnit, t, band, ymin, ymax, xmin, xmax);
+		short[][] data = readTiles(pyramid_rasterUnit, t, band, ymin, ymax, xmin, xmax, pymin, pymax, pxmin, pxmax);
 		int yloff = TilePixel.pixelToTileOffset(pymin);
 		int xloff = TilePixel.pixelToTileOffset(pxmin);
 		int yroff = TilePixel.tileToPixel(ymax - ymin) + TilePixel.pixelToTileOffset(pymax);
@@ -262,28 +265,62 @@ public class ProcessingShort {
 	}
 
 	public static short[][] readTiles(RasterUnitStorage pyramid_rasterUnit, int t, Band band, int ymin, int ymax, int xmin, int xmax) {
+		return readTiles(pyramid_rasterUnit, t, band, ymin, ymax, xmin, xmax, TilePixel.tileToPixel(ymin), TilePixel.tileToPixelMax(ymax), TilePixel.tileToPixel(xmin), TilePixel.tileToPixelMax(xmax));
+	}
+
+	/**
+	 * Reads tiles of tile range. Tiles without valid pixels in pixel range are skipped without reading tile data if the storage index knows the valid pixels of the tile.
+	 * @return pixels of tile range, na if not read
+	 */
+	public static short[][] readTiles(RasterUnitStorage pyramid_rasterUnit, int t, Band band, int ymin, int ymax, int xmin, int xmax, int pymin, int pymax, int pxmin, int pxmax) {
 		int rxlen = TilePixel.tileToPixel(xmax - xmin + 1);
 		int rylen = TilePixel.tileToPixel(ymax - ymin + 1);
 		short na = band.getInt16NA();
 		short[][] data = createEmpty(rxlen, rylen, na); // na fill: not all pixels may be written
-		Collection<Tile> tiles = pyramid_rasterUnit.readTiles(t, band.index, ymin, ymax, xmin, xmax);
+		Collection<Tile> tiles = readValidTiles(pyramid_rasterUnit, t, band.index, ymin, ymax, xmin, xmax, pymin, pymax, pxmin, pxmax);
+		CancellationToken token = CancellationToken.current();
 		if(!parallel) {
 			for(Tile tile:tiles) {
+				CancellationToken.check(token);
 				int x = TilePixel.tileToPixel(tile.x - xmin);
 				int y = TilePixel.tileToPixel(tile.y - ymin);
-				TileShort.decode(tile.data, data, x, y);
+				TileShort.decode(tile, data, x, y);
 			}
 		} else {
 			Tile[] resultTiles = tiles.toArray(new Tile[0]);
 			Arrays.stream(resultTiles).parallel().forEach(tile -> {
+				CancellationToken.check(token);
 				int x = TilePixel.tileToPixel(tile.x - xmin);
 				int y = TilePixel.tileToPixel(tile.y - ymin);
-				TileShort.decode(tile.data, data, x, y);
+				TileShort.decode(tile, data, x, y);
 			});
 		}
 		return data;
 	}
 
+	private static Collection<Tile> readValidTiles(RasterUnitStorage storage, int t, int b, int ymin, int ymax, int xmin, int xmax, int pymin, int pymax, int pxmin, int pxmax) {
+		ArrayList<Tile> tiles = new ArrayList<Tile>();
+		Iterator<TileKey> it = storage.readTiles(t, b, ymin, ymax, xmin, xmax).keyIterator();
+		CancellationToken token = CancellationToken.current();
+		try {
+			while(it.hasNext()) {
+				CancellationToken.check(token);
+				TileKey tileKey = it.next();
+				int tpx = TilePixel.tileToPixel(tileKey.x);
+				int tpy = TilePixel.tileToPixel(tileKey.y);
+				if(storage.getTileValid(tileKey).intersects(pxmin - tpx, pymin - tpy, pxmax - tpx, pymax - tpy)) {
+					Tile tile = storage.readTile(tileKey);
+					if(tile != null) {
+						tiles.add(tile);
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return tiles;
+	}
+
 	public static short[][] readTilesDiv2(RasterUnit rasterUnit, int t, Band band, Range2d range2d) {
 		return readTilesDiv2(rasterUnit, t, band, range2d.ymin, range2d.ymax, range2d.xmin, range2d.xmax);
 	}
@@ -298,7 +335,7 @@ public class ProcessingShort {
 			for(Tile tile:tiles) {
 				int x = TilePixel.tileDiv2ToPixel(tile.x - xmin);
 				int y = TilePixel.tileDiv2ToPixel(tile.y - ymin);
-				short[][] pixels = TileShort.decode(tile.data);
+				short[][] pixels = TileShort.decode(tile);
 				copyTileDiv2(pixels, na, data, y, x);
 			}
 		}else {
@@ -306,7 +343,7 @@ public class ProcessingShort {
 			Arrays.stream(resultTiles).parallel().forEach(tile -> {
 				int x = TilePixel.tileDiv2ToPixel(tile.x - xmin);
 				int y = TilePixel.tileDiv2ToPixel(tile.y - ymin);
-				short[][] pixels = TileShort.decode(tile.data);
+				short[][] pixels = TileShort.decode(tile);
 				copyTileDiv2(pixels, na, data, y, x);
 			});
 		}
@@ -331,7 +368,7 @@ public class ProcessingShort {
 			for(Tile tile:tiles) {
 				int x = TilePixel.tileDiv4ToPixel(tile.x - xmin);
 				int y = TilePixel.tileDiv4ToPixel(tile.y - ymin);
-				short[][] pixels = TileShort.decode(tile.data);
+				short[][] pixels = TileShort.decode(tile);
 				copyTileDiv4(pixels, na, data, y, x);
 			}
 		}else {
@@ -339,7 +376,7 @@ public class ProcessingShort {
 			Arrays.stream(resultTiles).parallel().forEach(tile -> {
 				int x = TilePixel.tileDiv4ToPixel(tile.x - xmin);
 				int y = TilePixel.tileDiv4ToPixel(tile.y - ymin);
-				short[][] pixels = TileShort.decode(tile.data);
+				short[][] pixels = TileShort.decode(tile);
 				copyTileDiv4(pixels, na, data, y, x);
 			});
 		}
@@ -356,7 +393,7 @@ public class ProcessingShort {
 			for(Tile tile:tiles) {
 				int x = TilePixel.tileDivToPixel(tile.x - xmin, div);
 				int y = TilePixel.tileDivToPixel(tile.y - ymin, div);
-				short[][] pixels = TileShort.decode(tile.data);
+				short[][] pixels = TileShort.decode(tile);
 				copyTileDiv(pixels, na, data, y, x, div);
 			}
 		}else {
@@ -364,7 +401,7 @@ public class ProcessingShort {
 			Arrays.stream(resultTiles).parallel().forEach(tile -> {
 				int x = TilePixel.tileDivToPixel(tile.x - xmin, div);
 				int y = TilePixel.tileDivToPixel(tile.y - ymin, div);
-				short[][] pixels = TileShort.decode(tile.data);
+				short[][] pixels = TileShort.decode(tile);
 				copyTileDiv(pixels, na, data, y, x, div);
 			});
 		}
@@ -425,10 +462,9 @@ public class ProcessingShort {
 			TileKey tileKey = new TileKey(t, band.index, y, x);
 			Tile tile = rasterUnit.readTile(tileKey);
 			if(tile != null) {
-				TileShort.decodeMerge(tile.data, tilePixels, na);
+				TileShort.decodeMerge(tile, tilePixels, na);
 			}		
-			byte[] data = TileShort.encode(tilePixels);
-			rasterUnit.writeTile(new Tile(tileKey, TilePixel.TYPE_SHORT, data));
+			rasterUnit.writeTile(TileShort.encodeTile(tileKey, tilePixels, na));
 			return true;
 		} else {
 			return false;
@@ -477,7 +513,7 @@ public class ProcessingShort {
 					if(target[targetIndex] == null) {
 						target[targetIndex] = createEmpty(TilePixel.PIXELS_PER_ROW, TilePixel.PIXELS_PER_ROW, na); // na fill: not all pixels may be written
 					}
-					short[][] pixels = TileShort.decode(tile.data);
+					short[][] pixels = TileShort.decode(tile);
 					int iy = tile.y - tymin;
 					int ix = tile.x - txmin - targetIndex * div;
 					copyTileDivSelect(pixels, na, target[targetIndex], iy * pixel_len_div, ix * pixel_len_div, div);
@@ -485,8 +521,7 @@ public class ProcessingShort {
 				for (int targetIndex = 0; targetIndex < target.length; targetIndex++) {
 					if(target[targetIndex] != null) {
 						TileKey tileKey = dstBandKey.toTileKey(y, x + targetIndex);
-						byte[] data = TileShort.encode(target[targetIndex]);
-						dstStorage.writeTile(new Tile(tileKey, TilePixel.TYPE_SHORT, data));
+						dstStorage.writeTile(TileShort.encodeTile(tileKey, target[targetIndex], na));
 						tilesWrittenInRow++;
 					}
 				}
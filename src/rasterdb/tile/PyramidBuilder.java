@@ -0,0 +1,228 @@
+package rasterdb.tile;
+
+import java.io.IOException;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import rasterdb.Band;
+import rasterdb.RasterDB;
+import rasterdb.tile.Processing.Commiter;
+import rasterunit.BandKey;
+import rasterunit.RasterUnitStorage;
+import rasterunit.RasterUnitStorageView;
+import rasterunit.Tile;
+import rasterunit.TileCollection;
+import rasterunit.TileCollector;
+import rasterunit.TileKey;
+import util.Range2d;
+
+/**
+ * Writes pyramid levels rasterPyr1Unit to rasterPyr4Unit during import, instead of rebuilding the pyramid from all base tiles afterwards.
+ * Base tiles are added in descending tile rows per band as they are written.
+ * A parent row is aggregated as soon as all its child rows of the imported range are written, child tiles are taken from memory.
+ * Only child rows of pending parent rows are kept in memory.
+ */
+public class PyramidBuilder {
+	private static final Logger log = LogManager.getLogger();
+
+	private static final int DIV = 4;
+	private static final int LEVELS = 4;
+
+	private final RasterDB rasterdb;
+	private final RasterUnitStorage[] storages;
+	private final Commiter[] commiters;
+	private final HashMap<BandKey, Level[]> bandLevels = new HashMap<BandKey, Level[]>();
+
+	/**
+	 * Pending rows of one level of one band.
+	 */
+	private class Level {
+		final int level; // level of child rows, 0 is base
+		final Band band;
+		final BandKey bandKey;
+		final int rowMin; // child rows of imported range
+		final int xmin;
+		final int xmax;
+		final TreeMap<TileKey, Tile> tiles = new TreeMap<TileKey, Tile>(TileKey.COMPARATOR); // written child tiles of pending parent rows
+		int nextParentRow; // highest parent row not written yet
+
+		Level(int level, Band band, BandKey bandKey, int rowMin, int rowMax, int xmin, int xmax) {
+			this.level = level;
+			this.band = band;
+			this.bandKey = bandKey;
+			this.rowMin = rowMin;
+			this.xmin = xmin;
+			this.xmax = xmax;
+			this.nextParentRow = Math.floorDiv(rowMax, DIV);
+		}
+
+		/**
+		 * Writes parent rows that are complete after writing of child rows down to lowestRow.
+		 * @return written parent tiles, ordered by row descending
+		 */
+		ArrayList<Tile> add(Collection<Tile> childTiles, int lowestRow) throws IOException {
+			for(Tile tile:childTiles) {
+				tiles.put(tile.toTileKey(), tile);
+			}
+			int parentRowMin = nextParentRow;
+			while(parentRowMin >= Math.floorDiv(rowMin, DIV) && Math.max(parentRowMin * DIV, rowMin) >= lowestRow) {
+				parentRowMin--;
+			}
+			parentRowMin++;
+			if(parentRowMin > nextParentRow) {
+				return new ArrayList<Tile>();
+			}
+			Range2d childRange = new Range2d(xmin, parentRowMin * DIV, xmax, nextParentRow * DIV + DIV - 1);
+			TileCollector dst = new TileCollector(storages[level + 1]);
+			Processing.writeStorageBandDiv(rasterdb, band, DIV, new ChildView(storages[level], this, childRange), bandKey, dst, bandKey, commiters[level]);
+			ArrayList<Tile> parentTiles = dst.take();
+			for(Tile tile:parentTiles) {
+				storages[level + 1].writeTile(tile);
+			}
+			nextParentRow = parentRowMin - 1;
+			tiles.tailMap(new TileKey(bandKey.t, bandKey.b, parentRowMin * DIV, Integer.MIN_VALUE), true).clear(); // child rows of written parents are not needed anymore
+			return parentTiles;
+		}
+	}
+
+	/**
+	 * Children of a range of parent rows, tiles of pending rows are read from memory.
+	 */
+	private static class ChildView extends RasterUnitStorageView {
+		private final Level level;
+		private final Range2d childRange;
+
+		ChildView(RasterUnitStorage storage, Level level, Range2d childRange) {
+			super(storage);
+			this.level = level;
+			this.childRange = childRange;
+		}
+
+		@Override
+		public Range2d getTileRange2d(BandKey bandKey) {
+			return childRange;
+		}
+
+		@Override
+		public Tile readTile(TileKey tileKey) throws IOException {
+			Tile tile = level.tiles.get(tileKey);
+			return tile == null ? storage.readTile(tileKey) : tile;
+		}
+
+		@Override
+		public TileCollection readTiles(int t, int b, int ymin, int ymax, int xmin, int xmax) {
+			return new TileCollection(this, getRowKeys(t, b, ymin, ymax), xmin, xmax);
+		}
+
+		@Override
+		public Collection<Tile> getTiles(TileKey keyXmin, TileKey keyXmax) {
+			NavigableSet<TileKey> keys = storage.getTileKeys(keyXmin.t, keyXmin.b, keyXmin.y, keyXmin.x, keyXmax.x);
+			return new AbstractCollection<Tile>() {
+				@Override
+				public Iterator<Tile> iterator() {
+					Iterator<TileKey> it = keys.iterator();
+					return new Iterator<Tile>() {
+						@Override
+						public boolean hasNext() {
+							return it.hasNext();
+						}
+						@Override
+						public Tile next() {
+							try {
+								return readTile(it.next());
+							} catch (IOException e) {
+								throw new RuntimeException(e);
+							}
+						}
+					};
+				}
+				@Override
+				public int size() {
+					return keys.size();
+				}
+			};
+		}
+	}
+
+	public PyramidBuilder(RasterDB rasterdb) {
+		if(rasterdb.isInternalPyramid()) {
+			throw new RuntimeException("internal pyramid not supported");
+		}
+		this.rasterdb = rasterdb;
+		storages = new RasterUnitStorage[] {rasterdb.rasterUnit(), rasterdb.rasterPyr1Unit(), rasterdb.rasterPyr2Unit(), rasterdb.rasterPyr3Unit(), rasterdb.rasterPyr4Unit()};
+		commiters = new Commiter[LEVELS];
+		for (int i = 0; i < LEVELS; i++) {
+			commiters[i] = new Commiter(storages[i + 1]);
+		}
+	}
+
+	/**
+	 * Starts import of a band, tile rows need to be added in descending order.
+	 * @param band
+	 * @param t timestamp
+	 * @param range imported base tile range
+	 */
+	public void startBand(Band band, int t, Range2d range) {
+		BandKey bandKey = new BandKey(t, band.index);
+		Level[] levels = new Level[LEVELS];
+		int rowMin = range.ymin;
+		int rowMax = range.ymax;
+		int xmin = range.xmin;
+		int xmax = range.xmax;
+		for (int i = 0; i < LEVELS; i++) {
+			levels[i] = new Level(i, band, bandKey, rowMin, rowMax, xmin, xmax);
+			rowMin = Math.floorDiv(rowMin, DIV);
+			rowMax = Math.floorDiv(rowMax, DIV);
+			xmin = Math.floorDiv(xmin, DIV);
+			xmax = Math.floorDiv(xmax, DIV);
+		}
+		bandLevels.put(bandKey, levels);
+	}
+
+	/**
+	 * Adds written base tiles and writes completed parent rows of all levels.
+	 * @param band
+	 * @param t timestamp
+	 * @param tiles written base tiles
+	 * @param lowestRow all base rows of the imported range down to lowestRow are written
+	 * @throws IOException
+	 */
+	public void add(Band band, int t, Collection<Tile> tiles, int lowestRow) throws IOException {
+		BandKey bandKey = new BandKey(t, band.index);
+		Level[] levels = bandLevels.get(bandKey);
+		if(levels == null) {
+			throw new RuntimeException("band not started " + bandKey);
+		}
+		Collection<Tile> childTiles = tiles;
+		int childLowestRow = lowestRow;
+		for (int i = 0; i < LEVELS; i++) {
+			Level level = levels[i];
+			childTiles = level.add(childTiles, childLowestRow);
+			childLowestRow = level.nextParentRow + 1;
+		}
+		if(lowestRow <= levels[0].rowMin) {
+			bandLevels.remove(bandKey);
+			log.info("pyramid of band " + band.index + " t " + t + " done");
+		}
+	}
+
+	/**
+	 * Commits pyramid levels.
+	 */
+	public void finish() {
+		for(Commiter commiter:commiters) {
+			commiter.checkFinishCommit();
+		}
+		if(!bandLevels.isEmpty()) {
+			log.warn("pyramid incomplete for bands " + bandLevels.keySet());
+		}
+	}
+}
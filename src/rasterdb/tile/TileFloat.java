@@ -1,29 +1,96 @@
 package rasterdb.tile;
 
 import java.io.IOException;
+import java.util.Arrays;
+
+import rasterunit.Tile;
+import rasterunit.TileKey;
+import rasterunit.TileValid;
+import util.BufferPool;
 
 public class TileFloat {
 	
+	private static final int NA_BITS = Float.floatToIntBits(Float.NaN);
+
 	public static byte[] encode(float[][] pixels) {		
 		try {			
-			int[] raw = new int[TilePixel.PIXELS_PER_TILE];
-			int destPos = 0;
-			for(int i=0;i<TilePixel.PIXELS_PER_ROW;i++) {
-				float[] src = pixels[i];				
-				for(int c=0;c<TilePixel.PIXELS_PER_ROW;c++) {
-					raw[destPos++] = Float.floatToIntBits(src[c]);
-				}
-			}
+			int[] raw = toRaw(pixels);
 			byte[] bytes = TileShort.encode_raw(raw);
+			BufferPool.returnInts(raw);
 			return bytes;
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
 	}
+
+	/**
+	 * 
+	 * @param pixels
+	 * @return raw values borrowed from BufferPool
+	 */
+	private static int[] toRaw(float[][] pixels) {
+		int[] raw = BufferPool.borrowInts(TilePixel.PIXELS_PER_TILE);
+		int destPos = 0;
+		for(int i=0;i<TilePixel.PIXELS_PER_ROW;i++) {
+			float[] src = pixels[i];				
+			for(int c=0;c<TilePixel.PIXELS_PER_ROW;c++) {
+				raw[destPos++] = Float.floatToIntBits(src[c]);
+			}
+		}
+		return raw;
+	}
+	
+	/**
+	 * Encodes pixels to a tile, constant pixels (including all NaN) are stored as constant tile without encoding.
+	 * Valid (not NaN) pixels are attached to the tile.
+	 * @param tileKey
+	 * @param pixels
+	 * @return
+	 */
+	public static Tile encodeTile(TileKey tileKey, float[][] pixels) {
+		int v = Float.floatToIntBits(pixels[0][0]);
+		if(isConst(pixels, v)) {
+			return Tile.ofConst(tileKey, TilePixel.TYPE_FLOAT, v, TileValid.ofConst(TilePixel.PIXELS_PER_ROW, v == NA_BITS));
+		}
+		try {
+			int[] raw = toRaw(pixels);
+			TileValid valid = TileValid.ofRaw(raw, TilePixel.PIXELS_PER_ROW, NA_BITS);
+			byte[] data = TileShort.encode_raw(raw);
+			BufferPool.returnInts(raw);
+			return new Tile(tileKey, TilePixel.TYPE_FLOAT, data, valid);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public static boolean isConst(float[][] pixels, int valueBits) {
+		for(int i=0;i<TilePixel.PIXELS_PER_ROW;i++) {
+			float[] src = pixels[i];				
+			for(int c=0;c<TilePixel.PIXELS_PER_ROW;c++) {
+				if(Float.floatToIntBits(src[c]) != valueBits) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	public static float[][] decode(Tile tile) {
+		if(tile.isConst()) {
+			float v = Float.intBitsToFloat(tile.getConstValue());
+			float[][] pixels = new float[TilePixel.PIXELS_PER_ROW][TilePixel.PIXELS_PER_ROW];
+			for(int i=0;i<TilePixel.PIXELS_PER_ROW;i++) {
+				Arrays.fill(pixels[i], v);
+			}
+			return pixels;
+		}
+		return decode(tile.data);
+	}
 	
 	public static float[][] decode(byte[] data) {
 		try {
-			int[] raw = TileShort.decode_raw(data);
+			int[] raw = BufferPool.borrowInts(TilePixel.PIXELS_PER_TILE);
+			TileShort.decode_raw(data, raw);
 			float[][] pixels = new float[TilePixel.PIXELS_PER_ROW][TilePixel.PIXELS_PER_ROW];
 			int srcPos = 0;
 			for(int i=0;i<TilePixel.PIXELS_PER_ROW;i++) {
@@ -32,6 +99,7 @@ public class TileFloat {
 					dst[c] = Float.intBitsToFloat(raw[srcPos++]);
 				}
 			}
+			BufferPool.returnInts(raw);
 			return pixels;
 		} catch (IOException e) {
 			throw new RuntimeException(e);
@@ -44,9 +112,23 @@ public class TileFloat {
 		}
 	}
 	
+	public static void decode(Tile tile, float[][] target, int xmin, int ymin) {
+		if(tile.isConst()) {
+			float v = Float.intBitsToFloat(tile.getConstValue());
+			int xEnd = xmin + TilePixel.PIXELS_PER_ROW;
+			int yEnd = ymin + TilePixel.PIXELS_PER_ROW;
+			for(int y = ymin; y < yEnd; y++) {
+				Arrays.fill(target[y], xmin, xEnd, v);
+			}
+		} else {
+			decode(tile.data, target, xmin, ymin);
+		}
+	}
+	
 	public static void decode(byte[] data, float[][] target, int xmin, int ymin) {
 		try {
-			int[] raw = TileShort.decode_raw(data);
+			int[] raw = BufferPool.borrowInts(TilePixel.PIXELS_PER_TILE);
+			TileShort.decode_raw(data, raw);
 			int srcPos = 0;
 			int xStart = xmin;
 			int xEnd = xmin + TilePixel.PIXELS_PER_ROW - 1;
@@ -58,14 +140,32 @@ public class TileFloat {
 					dst[x] = Float.intBitsToFloat(raw[srcPos++]);
 				}
 			}
+			BufferPool.returnInts(raw);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
 	}
 	
+	public static void decodeMerge(Tile tile, float[][] pixels) {
+		if(tile.isConst()) {
+			float v = Float.intBitsToFloat(tile.getConstValue());
+			for(int i=0;i<TilePixel.PIXELS_PER_ROW;i++) {
+				float[] dst = pixels[i];				
+				for(int c=0;c<TilePixel.PIXELS_PER_ROW;c++) {
+					if(!Float.isFinite(dst[c])) {
+						dst[c] = v; 
+					}
+				}
+			}
+		} else {
+			decodeMerge(tile.data, pixels);
+		}
+	}
+	
 	public static void decodeMerge(byte[] data, float[][] pixels) {
 		try {
-			int[] raw = TileShort.decode_raw(data);
+			int[] raw = BufferPool.borrowInts(TilePixel.PIXELS_PER_TILE);
+			TileShort.decode_raw(data, raw);
 			int srcPos = 0;
 			for(int i=0;i<TilePixel.PIXELS_PER_ROW;i++) {
 				float[] dst = pixels[i];				
@@ -76,6 +176,7 @@ public class TileFloat {
 					srcPos++;
 				}
 			}
+			BufferPool.returnInts(raw);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
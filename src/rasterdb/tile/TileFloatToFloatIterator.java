@@ -24,7 +24,7 @@ public class TileFloatToFloatIterator implements Iterator<float[][]> {
 		if(tile == null) {
 			return empty;
 		} else {
-			return TileFloat.decode(tile.data);
+			return TileFloat.decode(tile);
 		}
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
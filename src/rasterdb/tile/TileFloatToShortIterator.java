@@ -32,10 +32,10 @@ public class TileFloatToShortIterator implements Iterator<short[][]> {
 		if(tile == null) {
 			return empty;
 		} else {
-			float[][] src = TileFloat.decode(tile.data);
+			float[][] src = TileFloat.decode(tile);
 			short[][] dst = new short[TilePixel.PIXELS_PER_ROW][TilePixel.PIXELS_PER_ROW];
 			ShortFrame.floatToShort(src, dst, TilePixel.PIXELS_PER_ROW, TilePixel.PIXELS_PER_ROW, na_target);
 			return dst;
 		}
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
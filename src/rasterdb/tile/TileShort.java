@@ -1,11 +1,16 @@
 package rasterdb.tile;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import org.xerial.snappy.Snappy;
 
 import me.lemire.integercompression.FastPFOR;
 import me.lemire.integercompression.IntWrapper;
+import rasterunit.Tile;
+import rasterunit.TileKey;
+import rasterunit.TileValid;
+import util.BufferPool;
 import util.Serialisation;
 
 public class TileShort {
@@ -18,54 +23,159 @@ public class TileShort {
 	};	
 
 	private static int DECODER_BUFFER_SIZE = TilePixel.PIXELS_PER_TILE + 256;
+	private static final int DECODER_BLOCK_SIZE = 256; // values per FastPFOR block
 
+	/**
+	 * Encodes PIXELS_PER_TILE raw values, raw values are modified in place.
+	 * @param raw
+	 * @return
+	 * @throws IOException
+	 */
 	public static byte[] encode_raw(int[] raw) throws IOException {
-		Serialisation.encodeDeltaZigZag(raw);
+		Serialisation.encodeDeltaZigZag(raw, TilePixel.PIXELS_PER_TILE);
 		IntWrapper inpos = new IntWrapper();
-		int[] compressed_raw = new int[DECODER_BUFFER_SIZE];
+		int[] compressed_raw = BufferPool.borrowInts(DECODER_BUFFER_SIZE);
 		IntWrapper outpos = new IntWrapper();
 		threadLocal_fastPFOR.get().headlessCompress(raw, inpos, TilePixel.PIXELS_PER_TILE, compressed_raw, outpos);
 		byte[] bytes = Snappy.rawCompress(compressed_raw, outpos.get() * 4);
+		BufferPool.returnInts(compressed_raw);
 		return bytes;
 	}
 
+	/**
+	 * 
+	 * @param data
+	 * @return new array of PIXELS_PER_TILE raw values
+	 * @throws IOException
+	 */
 	public static int[] decode_raw(byte[] data) throws IOException {
-		int[] raw_compressed = Snappy.uncompressIntArray(data);
-		IntWrapper inpos = new IntWrapper();
 		int[] raw = new int[TilePixel.PIXELS_PER_TILE];
-		IntWrapper outpos = new IntWrapper();
-		threadLocal_fastPFOR.get().headlessUncompress(raw_compressed, inpos, raw_compressed.length, raw, outpos, TilePixel.PIXELS_PER_TILE);
-		Serialisation.decodeDeltaZigZag(raw);
+		decode_raw(data, raw);
 		return raw;
 	}
 
+	/**
+	 * Decodes PIXELS_PER_TILE raw values into target.
+	 * @param data
+	 * @param target array of at least PIXELS_PER_TILE values
+	 * @throws IOException
+	 */
 	public static void decode_raw(byte[] data, int[] target) throws IOException {
-		int[] raw_compressed = Snappy.uncompressIntArray(data);
+		int compressedLen = Snappy.uncompressedLength(data) / 4;
+		int[] raw_compressed = BufferPool.borrowInts(compressedLen);
+		Snappy.rawUncompress(data, 0, data.length, raw_compressed, 0);
 		IntWrapper inpos = new IntWrapper();
 		IntWrapper outpos = new IntWrapper();
-		threadLocal_fastPFOR.get().headlessUncompress(raw_compressed, inpos, raw_compressed.length, target, outpos, TilePixel.PIXELS_PER_TILE);
-		Serialisation.decodeDeltaZigZag(target);
+		threadLocal_fastPFOR.get().headlessUncompress(raw_compressed, inpos, compressedLen, target, outpos, TilePixel.PIXELS_PER_TILE);
+		BufferPool.returnInts(raw_compressed);
+		Serialisation.decodeDeltaZigZag(target, TilePixel.PIXELS_PER_TILE);
 	}
 
-	public static byte[] encode(short[][] pixels) {		
+	/**
+	 * Decodes the raw value of one pixel. Only the blocks up to the pixel are unpacked and delta decoded.
+	 * @param tile
+	 * @param pos pixel position in tile: row * PIXELS_PER_ROW + column
+	 * @return raw value
+	 * @throws IOException
+	 */
+	public static int decode_raw_pixel(Tile tile, int pos) throws IOException {
+		if(tile.isConst()) {
+			return tile.getConstValue();
+		}
+		byte[] data = tile.data;
+		int compressedLen = Snappy.uncompressedLength(data) / 4;
+		int[] raw_compressed = BufferPool.borrowInts(compressedLen);
+		Snappy.rawUncompress(data, 0, data.length, raw_compressed, 0);
+		int len = Math.min((pos / DECODER_BLOCK_SIZE + 1) * DECODER_BLOCK_SIZE, TilePixel.PIXELS_PER_TILE);
+		int[] raw = BufferPool.borrowInts(len);
+		IntWrapper inpos = new IntWrapper();
+		IntWrapper outpos = new IntWrapper();
+		threadLocal_fastPFOR.get().headlessUncompress(raw_compressed, inpos, compressedLen, raw, outpos, len);
+		BufferPool.returnInts(raw_compressed);
+		int v = 0;
+		for (int i = 0; i <= pos; i++) {
+			v += Serialisation.decodeZigZag(raw[i]);
+		}
+		BufferPool.returnInts(raw);
+		return v;
+	}
+
+	public static void decode_raw(Tile tile, int[] target) throws IOException {
+		if(tile.isConst()) {
+			Arrays.fill(target, 0, TilePixel.PIXELS_PER_TILE, tile.getConstValue());
+		} else {
+			decode_raw(tile.data, target);
+		}
+	}
+
+	/**
+	 * Encodes pixels to a tile, constant pixels are stored as constant tile without encoding.
+	 * Valid (not na) pixels are attached to the tile.
+	 * @param tileKey
+	 * @param pixels
+	 * @param na
+	 * @return
+	 */
+	public static Tile encodeTile(TileKey tileKey, short[][] pixels, short na) {
+		short v = pixels[0][0];
+		if(isConst(pixels, v)) {
+			return Tile.ofConst(tileKey, TilePixel.TYPE_SHORT, v, TileValid.ofConst(TilePixel.PIXELS_PER_ROW, v == na));
+		}
 		try {
-			int[] raw = new int[TilePixel.PIXELS_PER_TILE];
-			int destPos = 0;
-			for(int i=0;i<TilePixel.PIXELS_PER_ROW;i++) {
-				short[] src = pixels[i];				
-				for(int c=0;c<TilePixel.PIXELS_PER_ROW;c++) {
-					raw[destPos++] = src[c];
+			int[] raw = toRaw(pixels);
+			TileValid valid = TileValid.ofRaw(raw, TilePixel.PIXELS_PER_ROW, na);
+			byte[] data = encode_raw(raw);
+			BufferPool.returnInts(raw);
+			return new Tile(tileKey, TilePixel.TYPE_SHORT, data, valid);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public static boolean isConst(short[][] pixels, short value) {
+		for(int i=0;i<TilePixel.PIXELS_PER_ROW;i++) {
+			short[] src = pixels[i];				
+			for(int c=0;c<TilePixel.PIXELS_PER_ROW;c++) {
+				if(src[c] != value) {
+					return false;
 				}
 			}
-			return encode_raw(raw);
+		}
+		return true;
+	}
+
+	public static byte[] encode(short[][] pixels) {		
+		try {
+			int[] raw = toRaw(pixels);
+			byte[] data = encode_raw(raw);
+			BufferPool.returnInts(raw);
+			return data;
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
+	/**
+	 * 
+	 * @param pixels
+	 * @return raw values borrowed from BufferPool
+	 */
+	private static int[] toRaw(short[][] pixels) {
+		int[] raw = BufferPool.borrowInts(TilePixel.PIXELS_PER_TILE);
+		int destPos = 0;
+		for(int i=0;i<TilePixel.PIXELS_PER_ROW;i++) {
+			short[] src = pixels[i];				
+			for(int c=0;c<TilePixel.PIXELS_PER_ROW;c++) {
+				raw[destPos++] = src[c];
+			}
+		}
+		return raw;
+	}
+
 	public static short[][] decode(byte[] data) {
 		try {
-			int[] raw = decode_raw(data);		
+			int[] raw = BufferPool.borrowInts(TilePixel.PIXELS_PER_TILE);
+			decode_raw(data, raw);
 			short[][] pixels = new short[TilePixel.PIXELS_PER_ROW][TilePixel.PIXELS_PER_ROW];
 			int srcPos = 0;
 			for(int i=0;i<TilePixel.PIXELS_PER_ROW;i++) {
@@ -74,15 +184,44 @@ public class TileShort {
 					dst[c] = (short) raw[srcPos++];
 				}
 			}
+			BufferPool.returnInts(raw);
 			return pixels;
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
+	public static short[][] decode(Tile tile) {
+		if(tile.isConst()) {
+			short v = (short) tile.getConstValue();
+			short[][] pixels = new short[TilePixel.PIXELS_PER_ROW][TilePixel.PIXELS_PER_ROW];
+			if(v != 0) {
+				for(int i=0;i<TilePixel.PIXELS_PER_ROW;i++) {
+					Arrays.fill(pixels[i], v);
+				}
+			}
+			return pixels;
+		}
+		return decode(tile.data);
+	}
+
+	public static void decode(Tile tile, short[][] target, int xmin, int ymin) {
+		if(tile.isConst()) {
+			short v = (short) tile.getConstValue();
+			int xEnd = xmin + TilePixel.PIXELS_PER_ROW;
+			int yEnd = ymin + TilePixel.PIXELS_PER_ROW;
+			for(int y = ymin; y < yEnd; y++) {
+				Arrays.fill(target[y], xmin, xEnd, v);
+			}
+		} else {
+			decode(tile.data, target, xmin, ymin);
+		}
+	}
+
 	public static void decode(byte[] data, short[][] target, int xmin, int ymin) {
 		try {
-			int[] raw = decode_raw(data);
+			int[] raw = BufferPool.borrowInts(TilePixel.PIXELS_PER_TILE);
+			decode_raw(data, raw);
 			int srcPos = 0;
 			int xStart = xmin;
 			int xEnd = xmin + TilePixel.PIXELS_PER_ROW - 1;
@@ -94,14 +233,32 @@ public class TileShort {
 					dst[x] = (short) raw[srcPos++];
 				}
 			}
+			BufferPool.returnInts(raw);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
+	public static void decodeMerge(Tile tile, short[][] pixels, short na) {
+		if(tile.isConst()) {
+			short v = (short) tile.getConstValue();
+			for(int i=0;i<TilePixel.PIXELS_PER_ROW;i++) {
+				short[] dst = pixels[i];				
+				for(int c=0;c<TilePixel.PIXELS_PER_ROW;c++) {
+					if(dst[c] == na) {
+						dst[c] = v; 
+					}
+				}
+			}
+		} else {
+			decodeMerge(tile.data, pixels, na);
+		}
+	}
+
 	public static void decodeMerge(byte[] data, short[][] pixels, short na) {
 		try {
-			int[] raw = decode_raw(data);
+			int[] raw = BufferPool.borrowInts(TilePixel.PIXELS_PER_TILE);
+			decode_raw(data, raw);
 			int srcPos = 0;
 			for(int i=0;i<TilePixel.PIXELS_PER_ROW;i++) {
 				short[] dst = pixels[i];				
@@ -112,6 +269,7 @@ public class TileShort {
 					srcPos++;
 				}
 			}
+			BufferPool.returnInts(raw);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
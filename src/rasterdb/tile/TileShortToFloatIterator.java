@@ -27,10 +27,10 @@ public class TileShortToFloatIterator implements Iterator<float[][]> {
 		if(tile == null) {
 			return empty;
 		} else {
-			short[][] src = TileShort.decode(tile.data);
+			short[][] src = TileShort.decode(tile);
 			float[][] dst = new float[TilePixel.PIXELS_PER_ROW][TilePixel.PIXELS_PER_ROW];
 			FloatFrame.shortToFloat(src, dst, TilePixel.PIXELS_PER_ROW, TilePixel.PIXELS_PER_ROW, na);
 			return dst;
 		}
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -29,7 +29,7 @@ public class TileShortToShortIterator implements Iterator<short[][]> {
 		if(tile == null) {
 			return empty;
 		} else {
-			return TileShort.decode(tile.data);
+			return TileShort.decode(tile);
 		}
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
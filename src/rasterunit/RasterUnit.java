@@ -13,6 +13,8 @@ import java.util.NavigableSet;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -21,6 +23,7 @@ import org.mapdb.DB;
 import org.mapdb.DB.BTreeMapMaker;
 import org.mapdb.DBMaker;
 import org.mapdb.DBMaker.Maker;
+import org.mapdb.Serializer;
 import org.mapdb.Store;
 import org.xerial.snappy.Snappy;
 
@@ -29,6 +32,7 @@ import me.lemire.integercompression.IntCompressor;
 import me.lemire.integercompression.SkippableComposition;
 import me.lemire.integercompression.VariableByte;
 import util.Range2d;
+import util.Revision;
 import util.Serialisation;
 import util.Timer;
 import util.collections.ReadonlyNavigableSetView;
@@ -38,6 +42,7 @@ public class RasterUnit implements RasterUnitStorage {
 	private static final Logger log = LogManager.getLogger();
 
 	private BTreeMap<TileKey,Tile> tileMap;
+	private BTreeMap<TileKey,long[]> validMap; // {count, packed box} of tiles with known valid pixels, see TileValid
 
 	private NavigableSet<TileKey> tileKeys;
 	private NavigableSet<RowKey> rowKeys;
@@ -56,12 +61,20 @@ public class RasterUnit implements RasterUnitStorage {
 	 * some tiles written since last commit
 	 */
 	private boolean tilesWritten = false;
+	private volatile long revision = 0; // set after changes of tiles
 
 	/**
 	 * some tiles written and committed ==> cache file is outdated
 	 */
 	private boolean cacheFileOutdated = false;
 
+	/**
+	 * Migration to other storage: written tile keys are reported to the listener, writes can be blocked for switching.
+	 */
+	private final ReentrantReadWriteLock migrationLock = new ReentrantReadWriteLock();
+	private volatile Consumer<TileKey> writeListener = null;
+	private volatile boolean retired = false;
+
 	public RasterUnit(Path root, String name, boolean fast_unsafe_import) {
 		this(root, name, name + ".cache", fast_unsafe_import);
 	}
@@ -110,6 +123,10 @@ public class RasterUnit implements RasterUnitStorage {
 		tileMapMaker.keySerializer(TileKey.SERIALIZER, TileKey.COMPARATOR);
 		tileMapMaker.valueSerializer(Tile.SERIALIZER);
 		tileMap = tileMapMaker.makeOrGet();
+		BTreeMapMaker validMapMaker = tileMapDb.treeMapCreate(name + DB_NAME_VALID_SUFFIX);
+		validMapMaker.keySerializer(TileKey.SERIALIZER, TileKey.COMPARATOR);
+		validMapMaker.valueSerializer(Serializer.LONG_ARRAY);
+		validMap = validMapMaker.makeOrGet();
 
 		tileKeys = new ConcurrentSkipListSet<TileKey>(TileKey.COMPARATOR);
 		tileKeysReadonly = new ReadonlyNavigableSetView<TileKey>(tileKeys);
@@ -180,9 +197,59 @@ public class RasterUnit implements RasterUnitStorage {
 	 */
 	public void write(TileKey tileKey, Tile tile) {
 		//log.info("write tile " + tileKey);
-		tilesWritten = true;
-		tileMap.put(tileKey, tile);
-		addKey(tileKey);
+		migrationLock.readLock().lock();
+		try {
+			if(retired) {
+				throw new RuntimeException("storage migrated, tile not written " + tileKey);
+			}
+			tilesWritten = true;
+			tileMap.put(tileKey, tile);
+			if(tile.valid.isUnknown()) {
+				validMap.remove(tileKey);
+			} else {
+				validMap.put(tileKey, new long[] {tile.valid.count, tile.valid.packBox()});
+			}
+			addKey(tileKey);
+			revision = Revision.next();
+			Consumer<TileKey> listener = writeListener;
+			if(listener != null) {
+				listener.accept(tileKey);
+			}
+		} finally {
+			migrationLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Reports keys of following tile writes, removal of tiles is rejected while set.
+	 * @param writeListener or null to remove
+	 */
+	public void setWriteListener(Consumer<TileKey> writeListener) {
+		this.writeListener = writeListener;
+	}
+
+	/**
+	 * Waits for running writes and blocks following writes until unblockWrites is called by the same thread.
+	 */
+	public void blockWrites() {
+		migrationLock.writeLock().lock();
+	}
+
+	public void unblockWrites() {
+		migrationLock.writeLock().unlock();
+	}
+
+	/**
+	 * Storage is replaced by migrated storage, following writes are rejected.
+	 */
+	public void setRetired() {
+		retired = true;
+	}
+
+	private void checkRemovable() {
+		if(writeListener != null || retired) {
+			throw new RuntimeException("tiles can not be removed while storage is migrated");
+		}
 	}
 
 	public void writeTile(Tile tile) {
@@ -324,6 +391,7 @@ public class RasterUnit implements RasterUnitStorage {
 	private static final int cacheHeader = 0xcaac;
 	private static final int cacheVersion = 2;
 	private static final String DB_NAME_CACHE_TIMESTAMP = "cacheTimestamp";
+	private static final String DB_NAME_VALID_SUFFIX = "_valid";
 	private static final int CACHE_KEY_COUNT_MIN = 4096;
 
 	private static ThreadLocal<IntCompressor> threadLocal_ic = new ThreadLocal<IntCompressor>() {
@@ -472,20 +540,28 @@ public class RasterUnit implements RasterUnitStorage {
 		return tileKeys.size();
 	}
 
+	@Override
+	public long getRevision() {
+		return revision;
+	}
+
 	public boolean isEmpty() {
 		return tileMap.isEmpty();
 	}
 	
 	@Override
 	public long removeAllTiles() throws IOException {
+		checkRemovable();
 		try {
 			long cnt = tileKeys.size();
-			tileMap.clear();			
+			tileMap.clear();
+			validMap.clear();
 			return cnt;
 		} finally {
 			log.info("refresh keys");
 			refreshKeys();
 			tilesWritten = true;
+			revision = Revision.next();
 			log.info("commit");
 			commit();
 		}
@@ -493,6 +569,7 @@ public class RasterUnit implements RasterUnitStorage {
 
 	@Override
 	public long removeAllTilesOfTimestamp(int t) {
+		checkRemovable();
 		try {
 			long cnt = 0;
 			TileKey min = new TileKey(t, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE);
@@ -501,6 +578,7 @@ public class RasterUnit implements RasterUnitStorage {
 			TreeSet<TileKey> keys = new TreeSet<TileKey>(tileKeys.subSet(min, true, max, true));
 			log.info("remove tiles");
 			for(TileKey key:keys) {
+				validMap.remove(key);
 				if(tileMap.remove(key) != null) {
 					cnt++;
 				}
@@ -510,13 +588,42 @@ public class RasterUnit implements RasterUnitStorage {
 			log.info("refresh keys");
 			refreshKeys();
 			tilesWritten = true;
+			revision = Revision.next();
 			log.info("commit");
 			commit();
 		}
 	}
 	
+	@Override
+	public long removeAllTilesOfTimestampRange(int tmin, int tmax) {
+		checkRemovable();
+		try {
+			long cnt = 0;
+			TileKey min = new TileKey(tmin, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE);
+			TileKey max = new TileKey(tmax, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+			log.info("generate keys");
+			TreeSet<TileKey> keys = new TreeSet<TileKey>(tileKeys.subSet(min, true, max, true));
+			log.info("remove tiles");
+			for(TileKey key:keys) {
+				validMap.remove(key);
+				if(tileMap.remove(key) != null) {
+					cnt++;
+				}
+			}
+			return cnt;
+		} finally {
+			log.info("refresh keys");
+			refreshKeys();
+			tilesWritten = true;
+			revision = Revision.next();
+			log.info("commit");
+			commit();
+		}
+	}
+
 	@Override
 	public long removeAllTilesOfBand(int b) {
+		checkRemovable();
 		try {
 			long cnt = 0;
 			for(int t:this.timeKeys) {				
@@ -526,6 +633,7 @@ public class RasterUnit implements RasterUnitStorage {
 				TreeSet<TileKey> keys = new TreeSet<TileKey>(tileKeys.subSet(min, true, max, true));
 				log.info("remove tiles");
 				for(TileKey key:keys) {
+					validMap.remove(key);
 					if(tileMap.remove(key) != null) {
 						cnt++;
 					}
@@ -536,6 +644,7 @@ public class RasterUnit implements RasterUnitStorage {
 			log.info("refresh keys");
 			refreshKeys();
 			tilesWritten = true;
+			revision = Revision.next();
 			log.info("commit");
 			commit();
 		}
@@ -545,6 +654,30 @@ public class RasterUnit implements RasterUnitStorage {
 	public void flush() throws IOException {
 		commit();		
 	}
+
+	/**
+	 * Valid pixels from side map of the tile map, UNKNOWN for tiles written before valid pixels were recorded.
+	 */
+	@Override
+	public TileValid getTileValid(TileKey tileKey) {
+		long[] v = validMap.get(tileKey);
+		return v == null ? TileValid.UNKNOWN : TileValid.of((int) v[0], v[1]);
+	}
+
+	/**
+	 * Valid pixel stats from side map of the tile map, tiles without entry have unknown valid pixels.
+	 */
+	@Override
+	public long[] calculateValidPixelStats() {
+		long validPixelCount = 0;
+		long knownCount = 0;
+		for(long[] v:validMap.values()) {
+			validPixelCount += v[0];
+			knownCount++;
+		}
+		long unknownCount = Math.max(0, tileMap.sizeLong() - knownCount);
+		return new long[] {validPixelCount, knownCount, unknownCount};
+	}
 	
 	public ReadonlyNavigableSetView<TileKey> tileKeysReadonly() {
 		return tileKeysReadonly;
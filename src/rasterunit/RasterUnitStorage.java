@@ -3,6 +3,7 @@ package rasterunit;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.NavigableSet;
+import java.util.function.LongConsumer;
 
 import util.Range2d;
 import util.collections.ReadonlyNavigableSetView;
@@ -45,6 +46,14 @@ public interface RasterUnitStorage extends AutoCloseable {
 	KeyRange getKeyRange();
 	
 	void writeTile(Tile tile) throws IOException;
+
+	/**
+	 * Revision of last change of tiles, see {@link util.Revision}.
+	 * @return revision or 0 if not changed since opened
+	 */
+	default long getRevision() {
+		return 0;
+	}
 	
 	void commit();
 	void flush() throws IOException;
@@ -63,6 +72,31 @@ public interface RasterUnitStorage extends AutoCloseable {
 	long removeAllTiles() throws IOException;
 	long removeAllTilesOfTimestamp(int t) throws IOException;
 	long removeAllTilesOfBand(int b) throws IOException;
+
+	/**
+	 * Removes all tiles of timestamps tmin to tmax (inclusive).
+	 * @param tmin
+	 * @param tmax
+	 * @return count of removed tiles
+	 * @throws IOException
+	 */
+	default long removeAllTilesOfTimestampRange(int tmin, int tmax) throws IOException {
+		long cnt = 0;
+		for(int t : timeKeysReadonly().subSet(tmin, true, tmax, true).toArray(new Integer[0])) {
+			cnt += removeAllTilesOfTimestamp(t);
+		}
+		return cnt;
+	}
+
+	/**
+	 * Reclaims unused space of storage files.
+	 * @param progress receives count of processed tiles, may be null
+	 * @return count of reclaimed bytes
+	 * @throws IOException
+	 */
+	default long compact(LongConsumer progress) throws IOException {
+		return 0;
+	}
 	
 	long calculateInternalFreeSize();
 	long calculateStorageSize();
@@ -73,4 +107,21 @@ public interface RasterUnitStorage extends AutoCloseable {
 	 * @return
 	 */
 	long[] calculateTileSizeStats();
+
+	/**
+	 * Valid pixels of tile from index without reading tile data.
+	 * @param tileKey
+	 * @return valid pixels, UNKNOWN if not available or tile does not exist
+	 */
+	default TileValid getTileValid(TileKey tileKey) {
+		return TileValid.UNKNOWN;
+	}
+
+	/**
+	 * Valid pixel stats from index without reading tile data.
+	 * @return {valid pixel count, tile count with known valid pixels, tile count with unknown valid pixels} or null if not available
+	 */
+	default long[] calculateValidPixelStats() {
+		return null;
+	}
 }
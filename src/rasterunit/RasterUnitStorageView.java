@@ -0,0 +1,161 @@
+package rasterunit;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.NavigableSet;
+
+import util.Range2d;
+import util.collections.ReadonlyNavigableSetView;
+
+/**
+ * Read only view of a storage, reads are delegated to the storage.
+ * Base of views that change single aspects of reading or writing.
+ */
+public class RasterUnitStorageView implements RasterUnitStorage {
+
+	protected final RasterUnitStorage storage;
+
+	public RasterUnitStorageView(RasterUnitStorage storage) {
+		this.storage = storage;
+	}
+
+	@Override
+	public void writeTile(Tile tile) throws IOException {
+		throw new RuntimeException("read only view");
+	}
+
+	@Override
+	public void commit() {
+		// nothing
+	}
+
+	@Override
+	public void flush() throws IOException {
+		// nothing
+	}
+
+	@Override
+	public void close() throws IOException {
+		// nothing
+	}
+
+	@Override
+	public ReadonlyNavigableSetView<TileKey> tileKeysReadonly() {
+		return storage.tileKeysReadonly();
+	}
+
+	@Override
+	public ReadonlyNavigableSetView<BandKey> bandKeysReadonly() {
+		return storage.bandKeysReadonly();
+	}
+
+	@Override
+	public ReadonlyNavigableSetView<Integer> timeKeysReadonly() {
+		return storage.timeKeysReadonly();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return storage.isEmpty();
+	}
+
+	@Override
+	public Tile readTile(TileKey tileKey) throws IOException {
+		return storage.readTile(tileKey);
+	}
+
+	@Override
+	public Tile readTile(int t, int b, int y, int x) throws IOException {
+		return storage.readTile(t, b, y, x);
+	}
+
+	@Override
+	public TileCollection readTiles(int t, int b, int ymin, int ymax, int xmin, int xmax) {
+		return storage.readTiles(t, b, ymin, ymax, xmin, xmax);
+	}
+
+	@Override
+	public NavigableSet<TileKey> getTileKeys(int t, int b, int y, int xmin, int xmax) {
+		return storage.getTileKeys(t, b, y, xmin, xmax);
+	}
+
+	@Override
+	public Collection<Tile> getTiles(TileKey keyXmin, TileKey keyXmax) {
+		return storage.getTiles(keyXmin, keyXmax);
+	}
+
+	@Override
+	public NavigableSet<RowKey> getRowKeys(int t, int b, int ymin, int ymax) {
+		return storage.getRowKeys(t, b, ymin, ymax);
+	}
+
+	@Override
+	public Range2d getTileRange2d() {
+		return storage.getTileRange2d();
+	}
+
+	@Override
+	public Range2d getTileRange2d(BandKey bandKey) {
+		return storage.getTileRange2d(bandKey);
+	}
+
+	@Override
+	public Range2d getTileRange2dOfSubset(BandKey bandKey, Range2d subsetTileRange) {
+		return storage.getTileRange2dOfSubset(bandKey, subsetTileRange);
+	}
+
+	@Override
+	public KeyRange getKeyRange() {
+		return storage.getKeyRange();
+	}
+
+	@Override
+	public int getTileCount() {
+		return storage.getTileCount();
+	}
+
+	@Override
+	public long getRevision() {
+		return storage.getRevision();
+	}
+
+	@Override
+	public long removeAllTiles() throws IOException {
+		throw new RuntimeException("read only view");
+	}
+
+	@Override
+	public long removeAllTilesOfTimestamp(int t) throws IOException {
+		throw new RuntimeException("read only view");
+	}
+
+	@Override
+	public long removeAllTilesOfBand(int b) throws IOException {
+		throw new RuntimeException("read only view");
+	}
+
+	@Override
+	public long calculateInternalFreeSize() {
+		return storage.calculateInternalFreeSize();
+	}
+
+	@Override
+	public long calculateStorageSize() {
+		return storage.calculateStorageSize();
+	}
+
+	@Override
+	public int calculateTileCount() {
+		return storage.calculateTileCount();
+	}
+
+	@Override
+	public long[] calculateTileSizeStats() {
+		return storage.calculateTileSizeStats();
+	}
+
+	@Override
+	public TileValid getTileValid(TileKey tileKey) {
+		return storage.getTileValid(tileKey);
+	}
+}
@@ -0,0 +1,155 @@
+package rasterunit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of read tiles shared by the threads of related requests, e.g. the sub-requests of a batch.
+ * The cache of the current request is bound to the request thread, RasterDB reads through a {@link View} if a cache is bound.
+ * Tiles are cached as read first, cached bytes are bounded, tiles above the bound are read uncached.
+ * Cached tiles are separated by storage and revision of the read storage, so views of different pinned snapshots do not share tiles.
+ */
+public class SharedTileCache {
+
+	private static final ThreadLocal<SharedTileCache> threadLocal_cache = new ThreadLocal<SharedTileCache>();
+
+	private final long maxBytes;
+	private final AtomicLong bytes = new AtomicLong();
+	private final ConcurrentHashMap<StorageKey, ConcurrentHashMap<TileKey, Tile>> storageMap = new ConcurrentHashMap<StorageKey, ConcurrentHashMap<TileKey, Tile>>();
+
+	/**
+	 * Storage by identity and revision of read content.
+	 */
+	private static class StorageKey {
+		private final RasterUnitStorage storage;
+		private final long revision;
+
+		public StorageKey(RasterUnitStorage storage, long revision) {
+			this.storage = storage;
+			this.revision = revision;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(storage) * 31 + Long.hashCode(revision);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof StorageKey)) {
+				return false;
+			}
+			StorageKey other = (StorageKey) obj;
+			return storage == other.storage && revision == other.revision;
+		}
+	}
+
+	/**
+	 *
+	 * @param maxBytes maximum of cached tile data bytes
+	 */
+	public SharedTileCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 *
+	 * @return cache of current thread, nullable
+	 */
+	public static SharedTileCache current() {
+		return threadLocal_cache.get();
+	}
+
+	/**
+	 * Binds cache to current thread.
+	 * @param cache nullable
+	 * @return previously bound cache, nullable
+	 */
+	public static SharedTileCache bind(SharedTileCache cache) {
+		SharedTileCache prev = threadLocal_cache.get();
+		if(cache == null) {
+			threadLocal_cache.remove();
+		} else {
+			threadLocal_cache.set(cache);
+		}
+		return prev;
+	}
+
+	/**
+	 * Read only view that reads tiles through the cache.
+	 * @param base unpinned storage of a layer, pins of the same snapshot share their cached tiles
+	 * @param storage storage to read missing tiles from, e.g. a pinned snapshot of base, its revision identifies the cached tiles
+	 * @return
+	 */
+	public RasterUnitStorage view(RasterUnitStorage base, RasterUnitStorage storage) {
+		StorageKey key = new StorageKey(base, storage.getRevision());
+		return new View(storageMap.computeIfAbsent(key, k -> new ConcurrentHashMap<TileKey, Tile>()), storage);
+	}
+
+	public long getCachedBytes() {
+		return bytes.get();
+	}
+
+	private class View extends RasterUnitStorageView {
+		private final ConcurrentHashMap<TileKey, Tile> tileMap;
+
+		public View(ConcurrentHashMap<TileKey, Tile> tileMap, RasterUnitStorage storage) {
+			super(storage);
+			this.tileMap = tileMap;
+		}
+
+		@Override
+		public Tile readTile(TileKey tileKey) throws IOException {
+			Tile tile = tileMap.get(tileKey);
+			if(tile != null) {
+				return tile;
+			}
+			tile = storage.readTile(tileKey);
+			if(tile == null) {
+				return null;
+			}
+			long tileBytes = tile.data.length;
+			if(bytes.addAndGet(tileBytes) > maxBytes) {
+				bytes.addAndGet(-tileBytes);
+				return tile;
+			}
+			Tile prev = tileMap.putIfAbsent(tileKey, tile);
+			if(prev != null) {
+				bytes.addAndGet(-tileBytes);
+				return prev;
+			}
+			return tile;
+		}
+
+		@Override
+		public Tile readTile(int t, int b, int y, int x) throws IOException {
+			return readTile(new TileKey(t, b, y, x));
+		}
+
+		@Override
+		public TileCollection readTiles(int t, int b, int ymin, int ymax, int xmin, int xmax) {
+			return new TileCollection(this, getRowKeys(t, b, ymin, ymax), xmin, xmax);
+		}
+
+		@Override
+		public Collection<Tile> getTiles(TileKey keyXmin, TileKey keyXmax) {
+			NavigableSet<TileKey> keys = storage.getTileKeys(keyXmin.t, keyXmin.b, keyXmin.y, keyXmin.x, keyXmax.x);
+			ArrayList<Tile> tiles = new ArrayList<Tile>(keys.size());
+			try {
+				for(TileKey key : keys) {
+					Tile tile = readTile(key);
+					if(tile != null) {
+						tiles.add(tile);
+					}
+				}
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			return tiles;
+		}
+	}
+}
@@ -0,0 +1,534 @@
+package rasterunit;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import util.Range2d;
+import util.collections.ReadonlyNavigableSetView;
+
+/**
+ * Tile storage of multiple TileStorage segments, each segment with own tile file, index, free slots and flush.
+ * Tiles are assigned to segments by a stable hash of the tile key or of the spatial tile block.
+ * Segment files can be placed in different directories, e.g. on different volumes.
+ * The count of segments and the partition of a layer must not change after creation.
+ */
+public class StripedTileStorage implements RasterUnitStorage {
+	private static final Logger log = LogManager.getLogger();
+
+	/**
+	 * Assign tiles by hash of t, b, y, x.
+	 */
+	public static final String PARTITION_HASH = "hash";
+
+	/**
+	 * Assign tiles by hash of spatial blocks of SPATIAL_BLOCK_TILES x SPATIAL_BLOCK_TILES tiles, all timestamps and bands of a block are in the same segment.
+	 */
+	public static final String PARTITION_SPATIAL = "spatial";
+
+	private static final int SPATIAL_BLOCK_SHIFT = 3;
+
+	private final TileStorage[] segments;
+	private final boolean spatial;
+
+	private final ReentrantReadWriteLock keysLock = new ReentrantReadWriteLock(); // read lock: tile writes, write lock: rebuild of keys
+
+	private volatile Keys keys = new Keys(); // replaced on rebuild, readers never see partially rebuilt keys
+
+	/**
+	 * Derived keys of all segments.
+	 */
+	private static class Keys {
+		public final ConcurrentSkipListSet<TileKey> tileKeys = new ConcurrentSkipListSet<TileKey>(TileKey.COMPARATOR);
+		public final ConcurrentSkipListSet<RowKey> rowKeys = new ConcurrentSkipListSet<RowKey>(RowKey.COMPARATOR);
+		public final ConcurrentSkipListSet<BandKey> bandKeys = new ConcurrentSkipListSet<BandKey>(BandKey.COMPARATOR);
+		public final ConcurrentSkipListSet<Integer> timeKeys = new ConcurrentSkipListSet<Integer>();
+
+		public final ReadonlyNavigableSetView<TileKey> tileKeysReadonly = new ReadonlyNavigableSetView<TileKey>(tileKeys);
+		public final ReadonlyNavigableSetView<BandKey> bandKeysReadonly = new ReadonlyNavigableSetView<BandKey>(bandKeys);
+		public final ReadonlyNavigableSetView<Integer> timeKeysReadonly = new ReadonlyNavigableSetView<Integer>(timeKeys);
+
+		public void add(TileKey key) {
+			tileKeys.add(key);
+			rowKeys.add(new RowKey(key.t, key.b, key.y));
+			bandKeys.add(new BandKey(key.t, key.b));
+			timeKeys.add(key.t);
+		}
+	}
+
+	/**
+	 *
+	 * @param segmentPaths directories of segments, segment i is placed in segmentPaths[i % segmentPaths.length]
+	 * @param prefix file name prefix, segment files are named prefix_s{i}
+	 * @param segmentCount
+	 * @param partition PARTITION_HASH or PARTITION_SPATIAL
+	 * @param options options of all segments
+	 * @throws IOException
+	 */
+	public StripedTileStorage(Path[] segmentPaths, String prefix, int segmentCount, String partition, TileStorageOption... options) throws IOException {
+		if(segmentCount < 1) {
+			throw new RuntimeException("invalid segment count: " + segmentCount);
+		}
+		if(segmentPaths.length == 0) {
+			throw new RuntimeException("missing segment paths");
+		}
+		switch(partition) {
+		case PARTITION_HASH:
+			spatial = false;
+			break;
+		case PARTITION_SPATIAL:
+			spatial = true;
+			break;
+		default:
+			throw new RuntimeException("unknown partition: " + partition);
+		}
+		segments = new TileStorage[segmentCount];
+		try {
+			for (int i = 0; i < segmentCount; i++) {
+				TileStorageConfig config = new TileStorageConfig(segmentPaths[i % segmentPaths.length], prefix + "_s" + i, options);
+				segments[i] = new TileStorage(config);
+			}
+		} catch(Exception e) {
+			for(TileStorage segment:segments) {
+				if(segment != null) {
+					try {
+						segment.close();
+					} catch(Exception e1) {
+						log.warn(e1);
+					}
+				}
+			}
+			throw e;
+		}
+		refreshKeys();
+	}
+
+	private TileStorage segment(int t, int b, int y, int x) {
+		long h;
+		if(spatial) {
+			h = ((long) (y >> SPATIAL_BLOCK_SHIFT) << 32) ^ (x >> SPATIAL_BLOCK_SHIFT);
+		} else {
+			h = ((((long) t * 0x9E3779B1L + b) * 0x9E3779B1L + y) * 0x9E3779B1L) + x;
+		}
+		h *= 0xBF58476D1CE4E5B9L;
+		h ^= h >>> 31;
+		return segments[(int) Math.floorMod(h, (long) segments.length)];
+	}
+
+	private TileStorage segment(TileKey tileKey) {
+		return segment(tileKey.t, tileKey.b, tileKey.y, tileKey.x);
+	}
+
+	/**
+	 * Builds keys of all segments and swaps them in, tile writes wait for the rebuild.
+	 */
+	private void refreshKeys() {
+		keysLock.writeLock().lock();
+		try {
+			Keys newKeys = new Keys();
+			for(TileStorage segment:segments) {
+				for(TileKey key:segment.tileKeysReadonly()) {
+					newKeys.add(key);
+				}
+			}
+			keys = newKeys;
+		} finally {
+			keysLock.writeLock().unlock();
+		}
+	}
+
+	public int getSegmentCount() {
+		return segments.length;
+	}
+
+	TileStorage getSegment(int i) {
+		return segments[i];
+	}
+
+	/**
+	 * Pins backup snapshots of all segments at the same state, writers of all segments are fenced until all snapshots are pinned.
+	 * Returned snapshots need to be closed after copying.
+	 * @return snapshot of segment i at index i
+	 */
+	TileStorageSnapshot[] pinBackupSnapshots() {
+		TileStorageSnapshot[] snapshots = new TileStorageSnapshot[segments.length];
+		int fenced = 0;
+		try {
+			for(; fenced < segments.length; fenced++) { // fixed order, no deadlock of concurrent backups
+				segments[fenced].fenceWrites();
+			}
+			for (int i = 0; i < segments.length; i++) {
+				snapshots[i] = segments[i].pinBackupSnapshot();
+			}
+			return snapshots;
+		} catch(RuntimeException e) {
+			for(TileStorageSnapshot snapshot:snapshots) {
+				if(snapshot != null) {
+					snapshot.close();
+				}
+			}
+			throw e;
+		} finally {
+			for (int i = 0; i < fenced; i++) {
+				segments[i].unfenceWrites();
+			}
+		}
+	}
+
+	public void setDedup(boolean dedup) {
+		for(TileStorage segment:segments) {
+			segment.setDedup(dedup);
+		}
+	}
+
+	@Override
+	public ReadonlyNavigableSetView<TileKey> tileKeysReadonly() {
+		return keys.tileKeysReadonly;
+	}
+
+	@Override
+	public ReadonlyNavigableSetView<BandKey> bandKeysReadonly() {
+		return keys.bandKeysReadonly;
+	}
+
+	@Override
+	public ReadonlyNavigableSetView<Integer> timeKeysReadonly() {
+		return keys.timeKeysReadonly;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return keys.tileKeys.isEmpty();
+	}
+
+	@Override
+	public Tile readTile(TileKey tileKey) throws IOException {
+		return segment(tileKey).readTile(tileKey);
+	}
+
+	@Override
+	public Tile readTile(int t, int b, int y, int x) throws IOException {
+		return segment(t, b, y, x).readTile(t, b, y, x);
+	}
+
+	@Override
+	public TileCollection readTiles(int t, int b, int ymin, int ymax, int xmin, int xmax) {
+		Collection<RowKey> rows = getRowKeys(t, b, ymin, ymax);
+		return new TileCollection(this, rows, xmin, xmax);
+	}
+
+	@Override
+	public NavigableSet<TileKey> getTileKeys(int t, int b, int y, int xmin, int xmax) {
+		return keys.tileKeys.subSet(new TileKey(t, b, y, xmin), true, new TileKey(t, b, y, xmax), true);
+	}
+
+	@Override
+	public Collection<Tile> getTiles(TileKey keyXmin, TileKey keyXmax) {
+		NavigableSet<TileKey> subset = keys.tileKeys.subSet(keyXmin, true, keyXmax, true);
+		return new AbstractCollection<Tile>() {
+			@Override
+			public Iterator<Tile> iterator() {
+				Iterator<TileKey> it = subset.iterator();
+				return new Iterator<Tile>() {
+					@Override
+					public boolean hasNext() {
+						return it.hasNext();
+					}
+					@Override
+					public Tile next() {
+						try {
+							return readTile(it.next());
+						} catch (IOException e) {
+							throw new RuntimeException(e);
+						}
+					}
+				};
+			}
+			@Override
+			public int size() {
+				return subset.size();
+			}
+		};
+	}
+
+	@Override
+	public NavigableSet<RowKey> getRowKeys(int t, int b, int ymin, int ymax) {
+		return keys.rowKeys.subSet(new RowKey(t, b, ymin), true, new RowKey(t, b, ymax), true);
+	}
+
+	@Override
+	public Range2d getTileRange2d() {
+		return getTileRange2d(keys.tileKeys);
+	}
+
+	@Override
+	public Range2d getTileRange2d(BandKey bandKey) {
+		return getTileRange2d(keys.tileKeys.subSet(bandKey.toTileKeyMin(), true, bandKey.toTileKeyMax(), true));
+	}
+
+	private static Range2d getTileRange2d(NavigableSet<TileKey> keys) {
+		int xmin = Integer.MAX_VALUE;
+		int ymin = Integer.MAX_VALUE;
+		int xmax = Integer.MIN_VALUE;
+		int ymax = Integer.MIN_VALUE;
+		for(TileKey tileKey:keys) {
+			int x = tileKey.x;
+			int y = tileKey.y;
+			if(x<xmin) {
+				xmin = x;
+			}
+			if(y<ymin) {
+				ymin = y;
+			}
+			if(xmax<x) {
+				xmax = x;
+			}
+			if(ymax<y) {
+				ymax = y;
+			}
+		}
+		Range2d tileRange = new Range2d(xmin, ymin, xmax, ymax);
+		return tileRange.isEmptyMarker() ? null : tileRange;
+	}
+
+	@Override
+	public Range2d getTileRange2dOfSubset(BandKey bandKey, Range2d subsetTileRange) {
+		int xmin = Integer.MAX_VALUE;
+		int xmax = Integer.MIN_VALUE;
+		Keys keys = this.keys;
+		NavigableSet<RowKey> subsetRowKeys = keys.rowKeys.subSet(new RowKey(bandKey.t, bandKey.b, subsetTileRange.ymin), true, new RowKey(bandKey.t, bandKey.b, subsetTileRange.ymax), true);
+		if(subsetRowKeys.isEmpty()) {
+			return null;
+		}
+		for(RowKey rowKey : subsetRowKeys) {
+			NavigableSet<TileKey> row = keys.tileKeys.subSet(rowKey.toTileKey(subsetTileRange.xmin), true, rowKey.toTileKey(subsetTileRange.xmax), true);
+			if(!row.isEmpty()) {
+				if(row.first().x < xmin) {
+					xmin = row.first().x;
+				}
+				if(xmax < row.last().x) {
+					xmax = row.last().x;
+				}
+			}
+		}
+		return xmin == Integer.MAX_VALUE || xmax == Integer.MIN_VALUE ? null : new Range2d(xmin, subsetRowKeys.first().y, xmax, subsetRowKeys.last().y);
+	}
+
+	@Override
+	public KeyRange getKeyRange() {
+		int xmin = Integer.MAX_VALUE;
+		int ymin = Integer.MAX_VALUE;
+		int bmin = Integer.MAX_VALUE;
+		int tmin = Integer.MAX_VALUE;
+		int xmax = Integer.MIN_VALUE;
+		int ymax = Integer.MIN_VALUE;
+		int bmax = Integer.MIN_VALUE;
+		int tmax = Integer.MIN_VALUE;
+		for(TileKey tileKey:keys.tileKeys) {
+			xmin = Math.min(xmin, tileKey.x);
+			xmax = Math.max(xmax, tileKey.x);
+			ymin = Math.min(ymin, tileKey.y);
+			ymax = Math.max(ymax, tileKey.y);
+			bmin = Math.min(bmin, tileKey.b);
+			bmax = Math.max(bmax, tileKey.b);
+			tmin = Math.min(tmin, tileKey.t);
+			tmax = Math.max(tmax, tileKey.t);
+		}
+		KeyRange keyRange = new KeyRange(xmin, ymin, bmin, tmin, xmax, ymax, bmax, tmax);
+		return keyRange.isEmptyMarker() ? null : keyRange;
+	}
+
+	@Override
+	public void writeTile(Tile tile) throws IOException {
+		TileKey key = tile.toTileKey();
+		keysLock.readLock().lock();
+		try {
+			segment(key).writeTile(tile);
+			keys.add(key);
+		} finally {
+			keysLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void commit() {
+		// nothing
+	}
+
+	/**
+	 * Flushes segments in parallel.
+	 */
+	@Override
+	public void flush() throws IOException {
+		forEachSegment(TileStorage::flush);
+	}
+
+	@Override
+	public void close() throws IOException {
+		forEachSegment(TileStorage::close);
+	}
+
+	private interface SegmentAction {
+		void apply(TileStorage segment) throws IOException;
+	}
+
+	private void forEachSegment(SegmentAction action) throws IOException {
+		try {
+			Arrays.stream(segments).parallel().forEach(segment -> {
+				try {
+					action.apply(segment);
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			});
+		} catch(RuntimeException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public int getTileCount() {
+		return keys.tileKeys.size();
+	}
+
+	@Override
+	public long getRevision() {
+		long revision = 0;
+		for(TileStorage segment:segments) {
+			revision = Math.max(revision, segment.getRevision());
+		}
+		return revision;
+	}
+
+	@Override
+	public long removeAllTiles() throws IOException {
+		long cnt = 0;
+		try {
+			for(TileStorage segment:segments) {
+				cnt += segment.removeAllTiles();
+			}
+		} finally {
+			refreshKeys();
+		}
+		return cnt;
+	}
+
+	@Override
+	public long removeAllTilesOfTimestamp(int t) throws IOException {
+		long cnt = 0;
+		try {
+			for(TileStorage segment:segments) {
+				cnt += segment.removeAllTilesOfTimestamp(t);
+			}
+		} finally {
+			refreshKeys();
+		}
+		return cnt;
+	}
+
+	@Override
+	public long removeAllTilesOfBand(int b) throws IOException {
+		long cnt = 0;
+		try {
+			for(TileStorage segment:segments) {
+				cnt += segment.removeAllTilesOfBand(b);
+			}
+		} finally {
+			refreshKeys();
+		}
+		return cnt;
+	}
+
+	@Override
+	public long removeAllTilesOfTimestampRange(int tmin, int tmax) throws IOException {
+		long cnt = 0;
+		try {
+			for(TileStorage segment:segments) {
+				cnt += segment.removeAllTilesOfTimestampRange(tmin, tmax);
+			}
+		} finally {
+			refreshKeys();
+		}
+		return cnt;
+	}
+
+	@Override
+	public long compact(LongConsumer progress) throws IOException {
+		long shrunk = 0;
+		long segmentMoved = 0;
+		for(TileStorage segment:segments) {
+			long prev = segmentMoved;
+			long[] last = new long[] {0};
+			shrunk += segment.compact(progress == null ? null : moved -> {
+				last[0] = moved;
+				progress.accept(prev + moved);
+			});
+			segmentMoved += last[0];
+		}
+		return shrunk;
+	}
+
+	@Override
+	public long calculateInternalFreeSize() {
+		return Arrays.stream(segments).mapToLong(TileStorage::calculateInternalFreeSize).sum();
+	}
+
+	@Override
+	public long calculateStorageSize() {
+		return Arrays.stream(segments).mapToLong(TileStorage::calculateStorageSize).sum();
+	}
+
+	@Override
+	public int calculateTileCount() {
+		return Arrays.stream(segments).mapToInt(TileStorage::calculateTileCount).sum();
+	}
+
+	@Override
+	public long[] calculateTileSizeStats() {
+		long min = Long.MAX_VALUE;
+		long max = Long.MIN_VALUE;
+		long cnt = 0;
+		long sum = 0;
+		for(TileStorage segment:segments) {
+			long[] stats = segment.calculateTileSizeStats();
+			if(stats != null) {
+				int segmentCount = segment.calculateTileCount();
+				min = Math.min(min, stats[0]);
+				max = Math.max(max, stats[2]);
+				sum += stats[1] * segmentCount;
+				cnt += segmentCount;
+			}
+		}
+		return cnt == 0 ? null : new long[] {min, sum / cnt, max};
+	}
+
+	@Override
+	public TileValid getTileValid(TileKey tileKey) {
+		return segment(tileKey).getTileValid(tileKey);
+	}
+
+	@Override
+	public long[] calculateValidPixelStats() {
+		long[] result = new long[3];
+		for(TileStorage segment:segments) {
+			long[] stats = segment.calculateValidPixelStats();
+			for (int i = 0; i < result.length; i++) {
+				result[i] += stats[i];
+			}
+		}
+		return result;
+	}
+}
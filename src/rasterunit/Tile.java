@@ -9,6 +9,12 @@ import org.mapdb.Serializer;
 public class Tile {
 	//private static final Logger log = LogManager.getLogger();
 
+	/**
+	 * Flag in tile type: all pixels of the tile have the same value.
+	 * Data of constant tiles contains the raw (int) value only, no encoded pixels.
+	 */
+	public static final int TYPE_CONST_FLAG = 0x40000000;
+
 	public final int t;
 	public final int b;
 	public final int y;
@@ -17,19 +23,72 @@ public class Tile {
 
 	public final byte[] data;
 
+	/**
+	 * Valid pixels of tile, not null, in memory only (not serialized)
+	 */
+	public final TileValid valid;
+
 	public Tile(int t, int b, int y, int x, int type, byte[] data) {
+		this(t, b, y, x, type, data, TileValid.UNKNOWN);
+	}
+
+	public Tile(int t, int b, int y, int x, int type, byte[] data, TileValid valid) {
 		this.t = t;
 		this.b = b;
 		this.y = y;
 		this.x = x;
 		this.type = type;
 		this.data = data;
+		this.valid = valid;
 	}
 
 	public Tile(TileKey tileKey, int type, byte[] data) {
 		this(tileKey.t, tileKey.b, tileKey.y, tileKey.x, type, data);
 	}
 
+	public Tile(TileKey tileKey, int type, byte[] data, TileValid valid) {
+		this(tileKey.t, tileKey.b, tileKey.y, tileKey.x, type, data, valid);
+	}
+
+	/**
+	 * Creates a constant tile.
+	 * @param tileKey
+	 * @param type tile type without const flag
+	 * @param value raw value of all pixels, e.g. short value or float bits
+	 * @return
+	 */
+	public static Tile ofConst(TileKey tileKey, int type, int value) {
+		return new Tile(tileKey, type | TYPE_CONST_FLAG, constData(value));
+	}
+
+	public static Tile ofConst(TileKey tileKey, int type, int value, TileValid valid) {
+		return new Tile(tileKey, type | TYPE_CONST_FLAG, constData(value), valid);
+	}
+
+	public static byte[] constData(int value) {
+		return new byte[] {(byte) value, (byte) (value >> 8), (byte) (value >> 16), (byte) (value >> 24)};
+	}
+
+	public boolean isConst() {
+		return (type & TYPE_CONST_FLAG) != 0;
+	}
+
+	/**
+	 * 
+	 * @return raw value of constant tile
+	 */
+	public int getConstValue() {
+		return (data[0] & 0xff) | ((data[1] & 0xff) << 8) | ((data[2] & 0xff) << 16) | ((data[3] & 0xff) << 24);
+	}
+
+	/**
+	 * 
+	 * @return tile type without const flag
+	 */
+	public int getBaseType() {
+		return type & ~TYPE_CONST_FLAG;
+	}
+
 	public static final Serializer<Tile> SERIALIZER = new Serializer<Tile>() {
 		@Override
 		public void serialize(DataOutput out, Tile tile) throws IOException {
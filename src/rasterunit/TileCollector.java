@@ -0,0 +1,33 @@
+package rasterunit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Reads from target storage and collects written tiles instead of writing them.
+ * Used to encode tiles in parallel while collected tiles are written by a single writer.
+ * Not thread-safe, one collector per encoding thread.
+ */
+public class TileCollector extends RasterUnitStorageView {
+
+	private ArrayList<Tile> tiles = new ArrayList<Tile>();
+
+	public TileCollector(RasterUnitStorage storage) {
+		super(storage);
+	}
+
+	/**
+	 * Returns collected tiles and starts a new collection.
+	 * @return
+	 */
+	public ArrayList<Tile> take() {
+		ArrayList<Tile> r = tiles;
+		tiles = new ArrayList<Tile>();
+		return r;
+	}
+
+	@Override
+	public void writeTile(Tile tile) throws IOException {
+		tiles.add(tile);
+	}
+}
@@ -10,18 +10,42 @@ public class TileSlot {
 	public final int len;
 	public final int type;
 	public final int rev;
+	public final int validCount; // -1 if unknown
+	public final long validBox; // packed, see TileValid
 
 	public TileSlot(long pos, int len, int type, int rev) {
+		this(pos, len, type, rev, -1, 0);
+	}
+
+	public TileSlot(long pos, int len, int type, int rev, int validCount, long validBox) {
 		this.pos = pos;
 		this.len = len;
 		this.type = type;
 		this.rev = rev;
+		this.validCount = validCount;
+		this.validBox = validBox;
 	}
 
 	public boolean isConcurrentUpdate() {
 		return pos == Long.MIN_VALUE;
 	}
 
+	/**
+	 * Constant tile slot: no data in tile file, pos contains the raw value.
+	 * @return
+	 */
+	public boolean isConst() {
+		return (type & Tile.TYPE_CONST_FLAG) != 0;
+	}
+
+	public int getConstValue() {
+		return (int) pos;
+	}
+
+	public TileValid getValid() {
+		return TileValid.of(validCount, validBox);
+	}
+
 	public static final Comparator<TileSlot> POS_LEN_REV_COMPARATOR = new Comparator<TileSlot>() {
 		@Override
 		public int compare(TileSlot o1, TileSlot o2) {
@@ -9,14 +9,20 @@ import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NavigableSet;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ConcurrentSkipListSet;
@@ -24,12 +30,15 @@ import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import griddb.Encoding;
+import util.BufferPool;
 import util.Range2d;
+import util.Revision;
 import util.Serialisation;
 import util.Timer;
 import util.collections.ReadonlyNavigableSetView;
@@ -46,6 +55,42 @@ public class TileStorage implements RasterUnitStorage {
 	private volatile boolean dirty; // only read/write inside of flushLock
 	private final ReentrantReadWriteLock flushLock = new ReentrantReadWriteLock(true);
 
+	/**
+	 * Content-addressed deduplication: identical tile data of multiple tiles is stored once.
+	 */
+	private volatile boolean dedup;
+	private final Object dedupLock = new Object();
+	private final ConcurrentHashMap<Long, Integer> sharedRefs = new ConcurrentHashMap<Long, Integer>(); // tile file pos -> count of tiles referencing the data, only counts > 1
+	private final HashMap<Long, Long> dedupPosMap = new HashMap<Long, Long>(); // dedup key -> tile file pos, guarded by dedupLock
+	private final HashMap<Long, Long> dedupKeyMap = new HashMap<Long, Long>(); // tile file pos -> dedup key, guarded by dedupLock
+
+	/**
+	 * Snapshot reads: immutable index versions of committed states are readable.
+	 * The copy of the index is created lazily on the first pin after a commit and only if no tiles were written since the commit, so commits without readers do not copy the index.
+	 * Tile data of replaced tiles is freed when no pinned snapshot references it anymore.
+	 */
+	private final boolean snapshots;
+	private final Object snapshotLock = new Object();
+	private volatile TileStorageSnapshot publishedSnapshot; // set inside of flushLock write lock and snapshotLock
+	private long snapshotVersion = 0; // guarded by snapshotLock
+	private final TreeMap<Long, Integer> pinnedSnapshots = new TreeMap<Long, Integer>(); // version -> pin count, guarded by snapshotLock
+	private final ArrayDeque<PendingFreeSlot> pendingFreeSlots = new ArrayDeque<PendingFreeSlot>(); // ordered by version, guarded by snapshotLock
+	private volatile long invalidSnapshotVersion = 0; // snapshots with lower version reference removed tiles
+	private volatile boolean snapshotStale = true; // tiles written after last publish
+	private volatile boolean commitPending = false; // committed after last publish and no tiles written since, snapshot is created on next pin
+	private volatile long revision = 0; // set after changes of tiles
+	private volatile int pinnedSnapshotCount = 0; // updated inside of snapshotLock
+
+	private static class PendingFreeSlot {
+		public final FreeSlot slot;
+		public final long version; // latest snapshot version that may reference the slot
+
+		public PendingFreeSlot(FreeSlot slot, long version) {
+			this.slot = slot;
+			this.version = version;
+		}
+	}
+
 	public final ReadonlyNavigableSetView<TileKey> tileKeysReadonly;
 	public final ReadonlyNavigableSetView<BandKey> bandKeysReadonly;
 	public final ReadonlyNavigableSetView<Integer> timeKeysReadonly;
@@ -61,6 +106,8 @@ public class TileStorage implements RasterUnitStorage {
 
 	public TileStorage(TileStorageConfig config) throws IOException {	
 		this.config = config;
+		this.dedup = config.dedup;
+		this.snapshots = config.snapshots;
 		boolean createIndexFile = false;
 		if(config.create) {
 			config.path.toFile().mkdirs();
@@ -129,6 +176,20 @@ public class TileStorage implements RasterUnitStorage {
 	}
 
 	public void writeTile(Tile tile) throws IOException {
+		writeTile(tile, 0, false);
+	}
+
+	/**
+	 * Writes tile with revision of source tile, used for copies of tile storages.
+	 * @param tile
+	 * @param rev
+	 * @throws IOException
+	 */
+	void writeTile(Tile tile, int rev) throws IOException {
+		writeTile(tile, rev, true);
+	}
+
+	private void writeTile(Tile tile, int fixedRev, boolean isFixedRev) throws IOException {
 		optionalConsolidateFreeSlots();
 		flushLock.readLock().lock();
 		try {
@@ -165,11 +226,32 @@ public class TileStorage implements RasterUnitStorage {
 					}
 				}
 			}		
-			int len = tile.data.length;
+			boolean isConst = tile.isConst();
+			boolean prevHasData = prevValue != null && !prevValue.isConst();
+			int len = isConst ? 0 : tile.data.length;
 			FreeSlot freeSlotFull = null;
 			FreeSlot freeSlotPart = null;
 			long pos = Long.MIN_VALUE;
-			if(prevValue == null) {
+			long dedupKey = 0;
+			boolean isDuplicate = false;
+			if(dedup && !isConst) {
+				dedupKey = dedupKey(tile.data);
+				pos = acquireDuplicate(dedupKey, tile.data);
+				isDuplicate = pos != Long.MIN_VALUE;
+			}
+			if(prevHasData && !releaseData(prevValue.pos)) {
+				prevHasData = false; // data of previous tile is still referenced by other tiles
+			}
+			if(isDuplicate) {
+				if(prevHasData) {
+					freeSlotFull = new FreeSlot(prevValue.pos, prevValue.len);
+				}
+			} else if(isConst) {
+				if(prevHasData) {
+					freeSlotFull = new FreeSlot(prevValue.pos, prevValue.len);
+				}
+				pos = tile.getConstValue() & 0xFFFFFFFFL; // constant value stored in slot, no data in tile file
+			} else if(!prevHasData) {
 				FreeSlot writeSlot = pollFreeSlot(len);
 				if(writeSlot == null) {
 					pos = fileLimit.getAndAdd(len);
@@ -181,7 +263,7 @@ public class TileStorage implements RasterUnitStorage {
 					}
 				}
 			} else {
-				if(prevValue.len < len) {
+				if(prevValue.len < len || retainSlots()) { // data of previous tile may still be read from snapshots
 					freeSlotFull = new FreeSlot(prevValue.pos, prevValue.len);
 					FreeSlot writeSlot = pollFreeSlot(len);
 					if(writeSlot == null) {
@@ -202,14 +284,22 @@ public class TileStorage implements RasterUnitStorage {
 				}
 			}
 
-			int rev = prevValue == null ? ThreadLocalRandom.current().nextInt() : prevValue.rev + 1;
-			writeTile(tile.data, pos, len);
-			TileSlot value = new TileSlot(pos, len, tile.type, rev);			
+			int rev = isFixedRev ? fixedRev : prevValue == null ? ThreadLocalRandom.current().nextInt() : prevValue.rev + 1;
+			if(!isConst && !isDuplicate) {
+				writeTile(tile.data, pos, len);
+				if(dedup) {
+					registerData(dedupKey, pos);
+				}
+			}
+			TileSlot value = new TileSlot(pos, len, tile.type, rev, tile.valid.count, tile.valid.packBox());			
 			if(!map.replace(key, TileSlot.CONCURRENT_UPDATE, value)) {
 				throw new RuntimeException("concurrent tile write error " + key.toString());
 			}
 			addKey(key);
-			if(freeSlotFull != null) {
+			snapshotStale = true;
+			commitPending = false;
+			revision = Revision.next();
+			if(freeSlotFull != null && !(retainSlots() && deferFreeSlot(key, prevValue, freeSlotFull))) {
 				freeSet.add(freeSlotFull);
 				freeSetAddCounter.getAndIncrement();
 			}
@@ -222,6 +312,362 @@ public class TileStorage implements RasterUnitStorage {
 		}
 	}
 
+	/**
+	 * 
+	 * @param data
+	 * @return hash of tile data and length
+	 */
+	private static long dedupKey(byte[] data) {
+		ByteBuffer byteBuffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+		long h = 0x9E3779B97F4A7C15L ^ data.length;
+		while(byteBuffer.remaining() >= 8) {
+			h = (h ^ byteBuffer.getLong()) * 0xBF58476D1CE4E5B9L;
+			h ^= h >>> 31;
+		}
+		while(byteBuffer.hasRemaining()) {
+			h = (h ^ byteBuffer.get()) * 0x94D049BB133111EBL;
+			h ^= h >>> 29;
+		}
+		return h == 0 ? 1 : h; // 0 is used for unknown key in index
+	}
+
+	/**
+	 * Searches stored data identical to data and adds a reference to it.
+	 * @param dedupKey
+	 * @param data
+	 * @return tile file pos of referenced data or Long.MIN_VALUE if no identical data is stored
+	 * @throws IOException
+	 */
+	private long acquireDuplicate(long dedupKey, byte[] data) throws IOException {
+		Long pos;
+		synchronized (dedupLock) {
+			pos = dedupPosMap.get(dedupKey);
+		}
+		if(pos == null) {
+			return Long.MIN_VALUE;
+		}
+		byte[] stored = readTile(pos, data.length); // verify content, hash collisions are possible
+		if(!Arrays.equals(stored, data)) {
+			return Long.MIN_VALUE;
+		}
+		synchronized (dedupLock) {
+			if(!pos.equals(dedupPosMap.get(dedupKey))) { // data released concurrently
+				return Long.MIN_VALUE;
+			}
+			sharedRefs.put(pos, sharedRefs.getOrDefault(pos, 1) + 1);
+		}
+		return pos;
+	}
+
+	/**
+	 * Removes one reference to tile data.
+	 * @param pos
+	 * @return true if data is not referenced anymore, slot can be freed or overwritten
+	 */
+	private boolean releaseData(long pos) {
+		if(!dedup && sharedRefs.isEmpty() && dedupKeyMap.isEmpty()) {
+			return true;
+		}
+		synchronized (dedupLock) {
+			Integer refs = sharedRefs.get(pos);
+			if(refs != null) {
+				if(refs > 2) {
+					sharedRefs.put(pos, refs - 1);
+				} else {
+					sharedRefs.remove(pos);
+				}
+				return false;
+			}
+			Long dedupKey = dedupKeyMap.remove(pos);
+			if(dedupKey != null) {
+				dedupPosMap.remove(dedupKey, pos);
+			}
+			return true;
+		}
+	}
+
+	private void registerData(long dedupKey, long pos) {
+		synchronized (dedupLock) {
+			if(dedupPosMap.putIfAbsent(dedupKey, pos) == null) {
+				dedupKeyMap.put(pos, dedupKey);
+			}
+		}
+	}
+
+	/**
+	 * Enables or disables deduplication of tile data for following writes. Already stored tiles are not changed.
+	 * @param dedup
+	 */
+	public void setDedup(boolean dedup) {
+		this.dedup = dedup;
+	}
+
+	public boolean isDedup() {
+		return dedup;
+	}
+
+	/**
+	 * 
+	 * @return count of tile data slots that are referenced by more than one tile
+	 */
+	public int getSharedSlotCount() {
+		return sharedRefs.size();
+	}
+
+	/**
+	 * 
+	 * @return true if data of replaced tiles needs to be kept for snapshots or backups
+	 */
+	private boolean retainSlots() {
+		return snapshots || pinnedSnapshotCount > 0;
+	}
+
+	/**
+	 * Keeps data of replaced tile until no pinned snapshot references it.
+	 * @param key
+	 * @param prevValue
+	 * @param freeSlot
+	 * @return true if deferred, false if slot can be freed directly
+	 */
+	private boolean deferFreeSlot(TileKey key, TileSlot prevValue, FreeSlot freeSlot) {
+		synchronized (snapshotLock) {
+			TileStorageSnapshot published = publishedSnapshot;
+			if(!dedup && sharedRefs.isEmpty() && (published == null || !prevValue.equals(published.getSlot(key)))) {
+				return false; // written after last publish, not visible in any snapshot
+			}
+			pendingFreeSlots.addLast(new PendingFreeSlot(freeSlot, snapshotVersion));
+			return true;
+		}
+	}
+
+	/**
+	 * Publishes current index as new snapshot version, waits for running tile writes.
+	 * Deferred slots that are not referenced by pinned snapshots anymore are freed.
+	 * @return published snapshot, not pinned
+	 */
+	public TileStorageSnapshot publishSnapshot() {
+		if(!snapshots) {
+			throw new RuntimeException("snapshots not enabled");
+		}
+		return publishSnapshot(false);
+	}
+
+	private TileStorageSnapshot publishSnapshot(boolean force) {
+		flushLock.writeLock().lock();
+		try {
+			if(!force && !snapshotStale && publishedSnapshot != null) {
+				synchronized (snapshotLock) {
+					releasePendingFreeSlots();
+				}
+				return publishedSnapshot;
+			}
+			snapshotStale = false;
+			commitPending = false;
+			long version;
+			synchronized (snapshotLock) {
+				version = snapshotVersion + 1;
+			}
+			TileStorageSnapshot snapshot = new TileStorageSnapshot(this, version, revision, map); // no concurrent writes inside of write lock
+			synchronized (snapshotLock) {
+				snapshotVersion = version;
+				publishedSnapshot = snapshot;
+				releasePendingFreeSlots();
+			}
+			return snapshot;
+		} finally {
+			flushLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Needs to be called inside of flushLock write lock and snapshotLock.
+	 */
+	private void releasePendingFreeSlots() {
+		long minVersion = snapshots ? snapshotVersion : Long.MAX_VALUE; // without snapshot reads only pinned snapshots of backups are relevant
+		if(!pinnedSnapshots.isEmpty()) {
+			minVersion = Math.min(minVersion, pinnedSnapshots.firstKey());
+		}
+		while(!pendingFreeSlots.isEmpty() && pendingFreeSlots.peekFirst().version < minVersion) {
+			freeSet.add(pendingFreeSlots.pollFirst().slot);
+			freeSetAddCounter.getAndIncrement();
+		}
+	}
+
+	/**
+	 * Marks current index as committed, the snapshot is created on next pin if no tiles are written before.
+	 * Deferred slots that are not referenced by pinned snapshots anymore are freed.
+	 */
+	private void commitSnapshot() {
+		flushLock.writeLock().lock();
+		try {
+			if(snapshotStale) {
+				commitPending = true;
+			}
+			synchronized (snapshotLock) {
+				releasePendingFreeSlots();
+			}
+		} finally {
+			flushLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Pins latest committed snapshot, blocks on writers only to create the snapshot of a pending commit.
+	 * Returned snapshot needs to be closed after reading.
+	 * @return
+	 */
+	public TileStorageSnapshot pinSnapshot() {
+		if(!snapshots) {
+			throw new RuntimeException("snapshots not enabled");
+		}
+		if(commitPending) {
+			flushLock.writeLock().lock();
+			try {
+				if(commitPending) { // no tiles written since commit
+					publishSnapshot(false);
+				}
+			} finally {
+				flushLock.writeLock().unlock();
+			}
+		}
+		synchronized (snapshotLock) {
+			return pin(publishedSnapshot);
+		}
+	}
+
+	/**
+	 * Blocks tile writes until {@link #unfenceWrites()}, waits for running tile writes. Reentrant.
+	 * Used to pin snapshots of multiple storages at the same state.
+	 */
+	void fenceWrites() {
+		flushLock.writeLock().lock();
+	}
+
+	void unfenceWrites() {
+		flushLock.writeLock().unlock();
+	}
+
+	/**
+	 * Pins current index version for a consistent copy, writers are fenced while the version is created.
+	 * Works without enabled snapshot reads, data of replaced tiles is kept until the returned snapshot is closed.
+	 * @return
+	 */
+	public TileStorageSnapshot pinBackupSnapshot() {
+		flushLock.writeLock().lock();
+		try {
+			TileStorageSnapshot snapshot = publishSnapshot(true);
+			synchronized (snapshotLock) {
+				return pin(snapshot);
+			}
+		} finally {
+			flushLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Needs to be called inside of snapshotLock.
+	 */
+	private TileStorageSnapshot pin(TileStorageSnapshot published) {
+		pinnedSnapshots.merge(published.version, 1, Integer::sum);
+		pinnedSnapshotCount++;
+		return new TileStorageSnapshot(published);
+	}
+
+	void unpinSnapshot(TileStorageSnapshot snapshot) {
+		synchronized (snapshotLock) {
+			Integer cnt = pinnedSnapshots.get(snapshot.version);
+			if(cnt != null) {
+				if(cnt > 1) {
+					pinnedSnapshots.put(snapshot.version, cnt - 1);
+				} else {
+					pinnedSnapshots.remove(snapshot.version);
+				}
+				pinnedSnapshotCount--;
+			}
+		}
+		if(!snapshots) { // no publishing without snapshot reads, release kept data of backup now
+			flushLock.writeLock().lock();
+			try {
+				synchronized (snapshotLock) {
+					releasePendingFreeSlots();
+				}
+			} finally {
+				flushLock.writeLock().unlock();
+			}
+		}
+	}
+
+	TileSlot getSlot(TileKey tileKey) {
+		return map.get(tileKey);
+	}
+
+	/**
+	 * Removes single tile, used for copies of tile storages.
+	 * @param tileKey
+	 * @return true if tile existed
+	 */
+	boolean removeTile(TileKey tileKey) throws IOException {
+		flushLock.writeLock().lock();
+		try {
+			TileSlot prevValue = map.remove(tileKey);
+			if(prevValue == null) {
+				return false;
+			}
+			setDirty();
+			snapshotStale = true;
+			commitPending = false;
+			revision = Revision.next();
+			if(!prevValue.isConst() && releaseData(prevValue.pos)) {
+				FreeSlot freeSlot = new FreeSlot(prevValue.pos, prevValue.len);
+				if(!(retainSlots() && deferFreeSlot(tileKey, prevValue, freeSlot))) {
+					freeSet.add(freeSlot);
+					freeSetAddCounter.getAndIncrement();
+				}
+			}
+			return true;
+		} finally {
+			flushLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Refreshes row, band and timestamp keys after removal of single tiles.
+	 */
+	void refreshKeys() {
+		flushLock.writeLock().lock();
+		try {
+			refreshDerivedKeys();
+		} finally {
+			flushLock.writeLock().unlock();
+		}
+	}
+
+	byte[] readSnapshotData(TileStorageSnapshot snapshot, long pos, int len) throws IOException {
+		flushLock.readLock().lock(); // no truncation of tile file while reading
+		try {
+			if(snapshot.version < invalidSnapshotVersion) {
+				throw new RuntimeException("snapshot invalidated by removal of tiles");
+			}
+			return readTile(pos, len);
+		} finally {
+			flushLock.readLock().unlock();
+		}
+	}
+
+	public boolean isSnapshots() {
+		return snapshots;
+	}
+
+	/**
+	 * 
+	 * @return count of pinned snapshot handles
+	 */
+	public int getPinnedSnapshotCount() {
+		synchronized (snapshotLock) {
+			return pinnedSnapshots.values().stream().mapToInt(Integer::intValue).sum();
+		}
+	}
+
 	private int countAdjacentFreeSlots() {
 		flushLock.readLock().lock();
 		try {	
@@ -357,6 +803,157 @@ public class TileStorage implements RasterUnitStorage {
 		Timer.stop("consolidateFreeSlots");
 	}
 
+	private static final int COMPACT_FREE_SLOT_CANDIDATES_MAX = 64;
+
+	/**
+	 * Moves tile data from the end of the tile file into free slots before it and truncates the tile file.
+	 * Reads are not blocked, a concurrently read tile is read again at its new position.
+	 * @param progress receives count of moved tiles, may be null
+	 * @return count of bytes the tile file was shrunk
+	 * @throws IOException
+	 */
+	@Override
+	public long compact(LongConsumer progress) throws IOException {
+		long sizeStart = fileLimit.get();
+		consolidateFreeSlotsDirect();
+		ArrayList<Entry<TileKey, TileSlot>> entries = new ArrayList<Entry<TileKey, TileSlot>>();
+		for(Entry<TileKey, TileSlot> e:map.entrySet()) { // entries of ConcurrentSkipListMap are immutable snapshots
+			TileSlot tileSlot = e.getValue();
+			if(!tileSlot.isConcurrentUpdate() && !tileSlot.isConst() && tileSlot.len > 0) {
+				entries.add(e);
+			}
+		}
+		entries.sort((a, b) -> Long.compare(b.getValue().pos, a.getValue().pos));
+		long moved = 0;
+		long lowestFreePos = lowestFreePos();
+		for(Entry<TileKey, TileSlot> e:entries) {
+			if(e.getValue().pos < lowestFreePos) {
+				break; // no free space before
+			}
+			if(moveTile(e.getKey(), e.getValue())) {
+				moved++;
+				if(moved % 256 == 0) {
+					lowestFreePos = lowestFreePos();
+					if(progress != null) {
+						progress.accept(moved);
+					}
+				}
+			}
+		}
+		if(progress != null) {
+			progress.accept(moved);
+		}
+		consolidateFreeSlotsDirect();
+		truncateTail();
+		long shrunk = sizeStart - fileLimit.get();
+		log.info("compacted " + config.storagePath + ": moved " + moved + " tiles, shrunk " + shrunk + " bytes");
+		return shrunk;
+	}
+
+	private long lowestFreePos() {
+		return freeSet.stream().mapToLong(freeSlot -> freeSlot.pos).min().orElse(Long.MAX_VALUE);
+	}
+
+	/**
+	 * 
+	 * @param key
+	 * @param tileSlot
+	 * @return true if tile data was moved to a free slot before its current position
+	 * @throws IOException
+	 */
+	private boolean moveTile(TileKey key, TileSlot tileSlot) throws IOException {
+		flushLock.readLock().lock();
+		try {
+			if(!tileSlot.equals(map.get(key)) || sharedRefs.containsKey(tileSlot.pos)) {
+				return false; // concurrently updated or data shared by deduplicated tiles
+			}
+			FreeSlot target = pollFreeSlotBefore(tileSlot.len, tileSlot.pos);
+			if(target == null) {
+				return false;
+			}
+			if(target.len > tileSlot.len) {
+				freeSet.add(new FreeSlot(target.pos + tileSlot.len, target.len - tileSlot.len));
+				freeSetAddCounter.getAndIncrement();
+			}
+			byte[] data = readTile(tileSlot.pos, tileSlot.len);
+			writeTile(data, target.pos, tileSlot.len);
+			TileSlot movedSlot = new TileSlot(target.pos, tileSlot.len, tileSlot.type, tileSlot.rev, tileSlot.validCount, tileSlot.validBox); // same revision, content not changed
+			boolean replaced;
+			synchronized (dedupLock) {
+				replaced = !sharedRefs.containsKey(tileSlot.pos) && map.replace(key, tileSlot, movedSlot);
+				if(replaced) {
+					Long dedupKey = dedupKeyMap.remove(tileSlot.pos);
+					if(dedupKey != null) {
+						dedupKeyMap.put(target.pos, dedupKey);
+						dedupPosMap.put(dedupKey, target.pos);
+					}
+				}
+			}
+			FreeSlot freeSlot = replaced ? new FreeSlot(tileSlot.pos, tileSlot.len) : new FreeSlot(target.pos, tileSlot.len);
+			if(replaced) {
+				setDirty();
+				snapshotStale = true;
+				commitPending = false;
+				revision = Revision.next();
+			}
+			if(!(replaced && retainSlots() && deferFreeSlot(key, tileSlot, freeSlot))) {
+				freeSet.add(freeSlot);
+				freeSetAddCounter.getAndIncrement();
+			}
+			return replaced;
+		} finally {
+			flushLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 
+	 * @param len
+	 * @param limitPos
+	 * @return removed free slot that ends before limitPos or null
+	 */
+	private FreeSlot pollFreeSlotBefore(int len, long limitPos) {
+		int candidates = 0;
+		for(FreeSlot freeSlot : freeSet.tailSet(new FreeSlot(0, len), true)) {
+			if(freeSlot.pos + len <= limitPos && freeSet.remove(freeSlot)) {
+				return freeSlot;
+			}
+			if(++candidates >= COMPACT_FREE_SLOT_CANDIDATES_MAX) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Removes free slots at the end of the tile file and shrinks the tile file.
+	 * @throws IOException
+	 */
+	private void truncateTail() throws IOException {
+		flushLock.writeLock().lock();
+		try {
+			long limit = fileLimit.get();
+			boolean found = true;
+			while(found) {
+				found = false;
+				for(FreeSlot freeSlot : freeSet) {
+					if(freeSlot.nextPos() == limit && freeSet.remove(freeSlot)) {
+						limit = freeSlot.pos;
+						found = true;
+						break;
+					}
+				}
+			}
+			if(limit < fileLimit.get()) {
+				log.info("truncate " + fileLimit.get() + " to " + limit);
+				fileLimit.set(limit);
+				tileFileChannel.truncate(limit);
+			}
+		} finally {
+			flushLock.writeLock().unlock();
+		}
+	}
+
 	private FreeSlot pollFreeSlot(int len) {
 		flushLock.readLock().lock();
 		try {
@@ -369,11 +966,11 @@ public class TileStorage implements RasterUnitStorage {
 	}
 
 	private void writeTile(byte[] data, long pos, int len) throws IOException {
-		ByteBuffer byteBuffer = ByteBuffer.allocateDirect(len);
-		byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
+		ByteBuffer byteBuffer = BufferPool.borrowDirect(len);
 		byteBuffer.put(data);
 		((Buffer) byteBuffer).flip(); // fix compatibility with older versions than JDK9
 		writeTile(data, pos, len, byteBuffer);
+		BufferPool.returnDirect(byteBuffer);
 	}
 
 	private void writeTile(byte[] data, long pos, int len, ByteBuffer byteBuffer) throws IOException {
@@ -427,10 +1024,10 @@ public class TileStorage implements RasterUnitStorage {
 						}
 					}
 				}
-				byte[] data = readTile(tileSlotPre.pos, tileSlotPre.len);
+				byte[] data = tileSlotPre.isConst() ? Tile.constData(tileSlotPre.getConstValue()) : readTile(tileSlotPre.pos, tileSlotPre.len);
 				TileSlot tileSlotPost = map.get(tileKey);
 				if(tileSlotPost != null && !tileSlotPost.isConcurrentUpdate() && tileSlotPre.equals(tileSlotPost)) {
-					return new Tile(tileKey.t, tileKey.b, tileKey.y, tileKey.x, tileSlotPre.type, data);
+					return new Tile(tileKey.t, tileKey.b, tileKey.y, tileKey.x, tileSlotPre.type, data, tileSlotPre.getValid());
 				} else {
 					if(concurrentUpdateOuterWaitCount >= 10) {
 						try {							
@@ -454,12 +1051,12 @@ public class TileStorage implements RasterUnitStorage {
 	}
 
 	private byte[] readTile(long pos, int len) throws IOException {
-		ByteBuffer byteBuffer = ByteBuffer.allocateDirect(len);
-		byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
+		ByteBuffer byteBuffer = BufferPool.borrowDirect(len);
 		readTile(pos, len, byteBuffer);
 		((Buffer) byteBuffer).flip(); // fix compatibility with older versions than JDK9
 		byte[] data = new byte[len];
 		byteBuffer.get(data);
+		BufferPool.returnDirect(byteBuffer);
 		return data;
 	}
 
@@ -488,15 +1085,25 @@ public class TileStorage implements RasterUnitStorage {
 			if(dirty) {
 				tileFileChannel.force(true);
 				//writeIndexVersion1(map,config.indexPath);
-				writeIndexVersion2(map,config.indexPath);	
+				synchronized (dedupLock) {
+					if(dedup || !dedupKeyMap.isEmpty()) {
+						writeIndexVersion4(map, dedupKeyMap, config.indexPath);
+					} else {
+						writeIndexVersion3(map, config.indexPath); // readable by versions without dedup
+					}
+				}
 				unsetDirty();
 			}
+			if(snapshots && !close) {
+				commitSnapshot();
+			}
 			if(close) {
 				tileFileChannel.close();
 				fileLimit.set(Long.MIN_VALUE);
 				freeSet.clear();
 				freeSetAddCounter.set(0);
 				map.clear();
+				clearDedup();
 			}
 		} finally {
 			flushLock.writeLock().unlock();
@@ -539,9 +1146,34 @@ public class TileStorage implements RasterUnitStorage {
 	}
 
 	public static void writeIndexVersion2(ConcurrentSkipListMap<TileKey, TileSlot> map, Path path) throws IOException {
+		writeIndexColumns(map, path, INDEX_FILE_VERSION_2, null);
+	}
+
+	/**
+	 * Version 2 columns with additional valid pixel count and bounding box columns.
+	 * @param map
+	 * @param path
+	 * @throws IOException
+	 */
+	public static void writeIndexVersion3(ConcurrentSkipListMap<TileKey, TileSlot> map, Path path) throws IOException {
+		writeIndexColumns(map, path, INDEX_FILE_VERSION_3, null);
+	}
+
+	/**
+	 * Version 3 columns with additional dedup key columns.
+	 * @param map
+	 * @param dedupKeys tile file pos -> dedup key of deduplicated tile data
+	 * @param path
+	 * @throws IOException
+	 */
+	public static void writeIndexVersion4(ConcurrentSkipListMap<TileKey, TileSlot> map, Map<Long, Long> dedupKeys, Path path) throws IOException {
+		writeIndexColumns(map, path, INDEX_FILE_VERSION_4, dedupKeys);
+	}
+
+	private static void writeIndexColumns(ConcurrentSkipListMap<TileKey, TileSlot> map, Path path, int version, Map<Long, Long> dedupKeys) throws IOException {
 		final int MAP_LEN = map.size();
-		final int ENTRY_LEN = 6 * 4 + 8;
-		final int COMPRESSORS = 8;
+		final int ENTRY_LEN = 11 * 4 + 8;
+		final int COMPRESSORS = 13;
 		final int MAX_OVERHEAD = COMPRESSORS * 16; // estimation
 		long maxFileLen = 4 + 4 + 4 + MAP_LEN * ENTRY_LEN + MAX_OVERHEAD;
 		if(maxFileLen > Integer.MAX_VALUE) {
@@ -550,7 +1182,7 @@ public class TileStorage implements RasterUnitStorage {
 		ByteBuffer byteBuffer = ByteBuffer.allocateDirect((int) maxFileLen);
 		byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
 		byteBuffer.putInt(TileStorage.INDEX_FILE_HEADER);
-		byteBuffer.putInt(TileStorage.INDEX_FILE_VERSION_2);
+		byteBuffer.putInt(version);
 		byteBuffer.putInt(MAP_LEN);
 		Set<Entry<TileKey, TileSlot>> set = map.entrySet();
 		{
@@ -649,6 +1281,48 @@ public class TileStorage implements RasterUnitStorage {
 			int[] compressed = Encoding.encInt32_pfor_internal(data); // no delta
 			Serialisation.writeIntsWithSize(compressed, byteBuffer);
 		}
+		if(version >= INDEX_FILE_VERSION_3) {
+			{
+				int i = 0;
+				int[] data = new int[MAP_LEN];
+				for(Entry<TileKey, TileSlot> e:set) {
+					TileSlot v = e.getValue();
+					data[i++] = v.validCount + 1; // unknown -1 -> 0
+				}
+				int[] compressed = Encoding.encInt32_pfor_internal(data); // no delta
+				Serialisation.writeIntsWithSize(compressed, byteBuffer);
+			}
+			{
+				int i = 0;
+				int[] upper = new int[MAP_LEN];
+				int[] lower = new int[MAP_LEN];
+				for(Entry<TileKey, TileSlot> e:set) {
+					TileSlot v = e.getValue();
+					upper[i] = (int) (v.validBox >>> 32);
+					lower[i++] = (int) v.validBox;
+				}
+				int[] compressed_upper = Encoding.encInt32_pfor_internal(upper); // no delta
+				Serialisation.writeIntsWithSize(compressed_upper, byteBuffer);
+				int[] compressed_lower = Encoding.encInt32_pfor_internal(lower); // no delta
+				Serialisation.writeIntsWithSize(compressed_lower, byteBuffer);
+			}
+		}
+		if(version >= INDEX_FILE_VERSION_4) {
+			int i = 0;
+			int[] upper = new int[MAP_LEN];
+			int[] lower = new int[MAP_LEN];
+			for(Entry<TileKey, TileSlot> e:set) {
+				TileSlot v = e.getValue();
+				Long dedupKey = v.isConst() ? null : dedupKeys.get(v.pos);
+				long key = dedupKey == null ? 0 : dedupKey;
+				upper[i] = (int) (key >>> 32);
+				lower[i++] = (int) key;
+			}
+			int[] compressed_upper = Encoding.encInt32_pfor_internal(upper); // no delta
+			Serialisation.writeIntsWithSize(compressed_upper, byteBuffer);
+			int[] compressed_lower = Encoding.encInt32_pfor_internal(lower); // no delta
+			Serialisation.writeIntsWithSize(compressed_lower, byteBuffer);
+		}
 
 		((Buffer) byteBuffer).flip(); // fix compatibility with older versions than JDK9
 		int dataSize = byteBuffer.limit();
@@ -668,8 +1342,22 @@ public class TileStorage implements RasterUnitStorage {
 	public static final int INDEX_FILE_HEADER = 0xe6699667;
 	static final int INDEX_FILE_VERSION_1 = 0x01_00_00_00;
 	public static final int INDEX_FILE_VERSION_2 = 0x02_00_00_00;
+	public static final int INDEX_FILE_VERSION_3 = 0x03_00_00_00;
+	public static final int INDEX_FILE_VERSION_4 = 0x04_00_00_00;
 
 	public static TreeSet<TileSlot> readIndex(Path path, ConcurrentSkipListMap<TileKey, TileSlot> map) throws IOException {
+		return readIndex(path, map, null);
+	}
+
+	/**
+	 * 
+	 * @param path
+	 * @param map
+	 * @param dedupKeys nullable, receives tile file pos -> dedup key of deduplicated tile data
+	 * @return
+	 * @throws IOException
+	 */
+	public static TreeSet<TileSlot> readIndex(Path path, ConcurrentSkipListMap<TileKey, TileSlot> map, Map<Long, Long> dedupKeys) throws IOException {
 		try(FileChannel indexFileChannel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.CREATE)) {
 			long fileLen = indexFileChannel.size();
 			//log.info("fileLen " + fileLen);
@@ -694,6 +1382,10 @@ public class TileStorage implements RasterUnitStorage {
 					return readIndexVersion1(byteBuffer, map);
 				case INDEX_FILE_VERSION_2:
 					return readIndexVersion2(byteBuffer, map);					
+				case INDEX_FILE_VERSION_3:
+					return readIndexVersion3(byteBuffer, map);
+				case INDEX_FILE_VERSION_4:
+					return readIndexColumns(byteBuffer, map, INDEX_FILE_VERSION_4, dedupKeys);
 				default:
 					throw new RuntimeException("unknown index version");
 				}
@@ -726,6 +1418,14 @@ public class TileStorage implements RasterUnitStorage {
 	}
 
 	public static TreeSet<TileSlot> readIndexVersion2(ByteBuffer byteBuffer, ConcurrentSkipListMap<TileKey, TileSlot> map) {
+		return readIndexColumns(byteBuffer, map, INDEX_FILE_VERSION_2, null);
+	}
+
+	public static TreeSet<TileSlot> readIndexVersion3(ByteBuffer byteBuffer, ConcurrentSkipListMap<TileKey, TileSlot> map) {
+		return readIndexColumns(byteBuffer, map, INDEX_FILE_VERSION_3, null);
+	}
+
+	private static TreeSet<TileSlot> readIndexColumns(ByteBuffer byteBuffer, ConcurrentSkipListMap<TileKey, TileSlot> map, int version, Map<Long, Long> dedupKeys) {
 		int mapLen = byteBuffer.getInt();
 		//log.info("mapLen " + mapLen);
 
@@ -761,26 +1461,59 @@ public class TileStorage implements RasterUnitStorage {
 
 		int[] types = Encoding.decInt32_pfor_internal(Serialisation.readIntsWithSize(byteBuffer)); // no delta
 
+		int[] validCounts = null;
+		long[] validBoxes = null;
+		if(version >= INDEX_FILE_VERSION_3) {
+			validCounts = Encoding.decInt32_pfor_internal(Serialisation.readIntsWithSize(byteBuffer)); // no delta
+			int[] box_upper = Encoding.decInt32_pfor_internal(Serialisation.readIntsWithSize(byteBuffer));
+			int[] box_lower = Encoding.decInt32_pfor_internal(Serialisation.readIntsWithSize(byteBuffer));
+			validBoxes = new long[mapLen];
+			for (int i = 0; i < mapLen; i++) {
+				validBoxes[i] = ((long)(box_upper[i]) << 32) + (box_lower[i] & 0xFFFFFFFFL);
+			}
+		}
+
+		long[] keys = null;
+		if(version >= INDEX_FILE_VERSION_4) {
+			int[] key_upper = Encoding.decInt32_pfor_internal(Serialisation.readIntsWithSize(byteBuffer));
+			int[] key_lower = Encoding.decInt32_pfor_internal(Serialisation.readIntsWithSize(byteBuffer));
+			keys = new long[mapLen];
+			for (int i = 0; i < mapLen; i++) {
+				keys[i] = ((long)(key_upper[i]) << 32) + (key_lower[i] & 0xFFFFFFFFL);
+			}
+		}
+
 		ThreadLocalRandom random = ThreadLocalRandom.current();
 		TreeSet<TileSlot> slotSet = new TreeSet<TileSlot>(TileSlot.POS_LEN_REV_COMPARATOR);
 		for (int i = 0; i < mapLen; i++) {
-			TileSlot tileSlot = new TileSlot(poss[i], lens[i], types[i], random.nextInt());
+			TileSlot tileSlot = validCounts == null ? new TileSlot(poss[i], lens[i], types[i], random.nextInt()) : new TileSlot(poss[i], lens[i], types[i], random.nextInt(), validCounts[i] - 1, validBoxes[i]);
 			if(poss[i] < 0) {
 				throw new RuntimeException("internal error: poss[" + i + "] = " + poss[i] + "   " + tileSlot);
 			}
 			map.put(new TileKey(ts[i], bs[i], ys[i], xs[i]), tileSlot);
 			slotSet.add(tileSlot);
+			if(keys != null && dedupKeys != null && keys[i] != 0) {
+				dedupKeys.put(poss[i], keys[i]);
+			}
 		}
 		return slotSet;
 	}
 
 	public static long refreshFreeSet(TreeSet<TileSlot> slotSet, ConcurrentSkipListSet<FreeSlot> freeSet) {
 		long pos = 0;
+		TileSlot prev = null;
 		for(TileSlot tileSlot:slotSet) {
+			if(tileSlot.isConst()) {
+				continue;
+			}
 			long slotPos = tileSlot.pos;
 			if(slotPos < pos) {
-				throw new RuntimeException("internal error: pos=" + pos + "   " + tileSlot);
+				if(prev != null && slotPos == prev.pos && tileSlot.len == prev.len) {
+					continue; // shared data of deduplicated tiles
+				}
+				throw new RuntimeException("internal error: overlapping tile slots pos=" + pos + "   " + tileSlot);
 			}
+			prev = tileSlot;
 			long lenDiff = slotPos - pos;
 			while(lenDiff > 0) {
 				int freeSlotLen = lenDiff > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) lenDiff;
@@ -797,11 +1530,19 @@ public class TileStorage implements RasterUnitStorage {
 	public static long refreshFreeSet(TileSlot[] slots, ConcurrentSkipListSet<FreeSlot> freeSet) {
 		Arrays.sort(slots, TileSlot.POS_LEN_REV_COMPARATOR);
 		long pos = 0;
+		TileSlot prev = null;
 		for(TileSlot tileSlot:slots) {
+			if(tileSlot.isConst()) {
+				continue;
+			}
 			long slotPos = tileSlot.pos;
 			if(slotPos < pos) {
-				throw new RuntimeException("internal error: pos=" + pos + "   " + tileSlot);
+				if(prev != null && slotPos == prev.pos && tileSlot.len == prev.len) {
+					continue; // shared data of deduplicated tiles
+				}
+				throw new RuntimeException("internal error: overlapping tile slots pos=" + pos + "   " + tileSlot);
 			}
+			prev = tileSlot;
 			long lenDiff = slotPos - pos;
 			while(lenDiff > 0) {
 				int freeSlotLen = lenDiff > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) lenDiff;
@@ -822,9 +1563,12 @@ public class TileStorage implements RasterUnitStorage {
 			fileLimit.set(Long.MIN_VALUE);
 			freeSet.clear();
 			freeSetAddCounter.set(0);
+			clearDedup();
 			if(config.indexPath.toFile().exists()) {
-				TreeSet<TileSlot> slotSet = readIndex(config.indexPath, map);
+				HashMap<Long, Long> dedupKeys = new HashMap<Long, Long>();
+				TreeSet<TileSlot> slotSet = readIndex(config.indexPath, map, dedupKeys);
 				refreshDerivedKeys();
+				refreshDedup(dedupKeys);
 				long pos = refreshFreeSet(slotSet, freeSet);
 				fileLimit.set(pos);
 				long tileFileLen = tileFileChannel.size();
@@ -838,19 +1582,64 @@ public class TileStorage implements RasterUnitStorage {
 			} else {
 				fileLimit.set(0);
 			}
+			synchronized (snapshotLock) { // also without snapshot reads, backups may hold pinned snapshots
+				pendingFreeSlots.clear(); // free slots are regenerated from index
+				invalidSnapshotVersion = snapshotVersion + 1; // pinned snapshots may reference freed slots
+			}
+			if(snapshots) {
+				publishSnapshot(true);
+			}
 		} finally {
 			flushLock.writeLock().unlock();
 		}
 	}
 
+	private void clearDedup() {
+		synchronized (dedupLock) {
+			sharedRefs.clear();
+			dedupPosMap.clear();
+			dedupKeyMap.clear();
+		}
+	}
+
+	/**
+	 * Counts references of shared tile data and fills dedup key lookup.
+	 * @param dedupKeys
+	 */
+	private void refreshDedup(Map<Long, Long> dedupKeys) {
+		synchronized (dedupLock) {
+			HashMap<Long, Integer> refs = new HashMap<Long, Integer>();
+			for(TileSlot tileSlot:map.values()) {
+				if(!tileSlot.isConst()) {
+					refs.merge(tileSlot.pos, 1, Integer::sum);
+				}
+			}
+			for(Entry<Long, Integer> e:refs.entrySet()) {
+				if(e.getValue() > 1) {
+					sharedRefs.put(e.getKey(), e.getValue());
+				}
+			}
+			for(Entry<Long, Long> e:dedupKeys.entrySet()) {
+				if(dedupPosMap.putIfAbsent(e.getValue(), e.getKey()) == null) {
+					dedupKeyMap.put(e.getKey(), e.getValue());
+				}
+			}
+		}
+	}
+
 	@Override
 	public void close() throws IOException {
 		flush(true);
 	}
 
+	/**
+	 * Commits current index for snapshot reads if snapshots are enabled.
+	 */
 	@Override
 	public void commit() {
-		// nothing		
+		if(snapshots) {
+			commitSnapshot();
+		}
 	}
 
 	@Override
@@ -984,6 +1773,7 @@ public class TileStorage implements RasterUnitStorage {
 	}
 
 	private void refreshDerivedKeys() {
+		revision = Revision.next();
 		rowKeys.clear();
 		bandKeys.clear();
 		timeKeys.clear();
@@ -1018,6 +1808,11 @@ public class TileStorage implements RasterUnitStorage {
 		return map.size();
 	}
 
+	@Override
+	public long getRevision() {
+		return revision;
+	}
+
 	@Override
 	public long removeAllTiles() throws IOException {
 		flushLock.writeLock().lock();
@@ -1055,19 +1850,40 @@ public class TileStorage implements RasterUnitStorage {
 		}	
 	}
 
+	@Override
+	public long removeAllTilesOfTimestampRange(int tmin, int tmax) throws IOException {
+		flushLock.writeLock().lock();
+		try {
+			TileKey min = new TileKey(tmin, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE);
+			TileKey max = new TileKey(tmax, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+			ConcurrentNavigableMap<TileKey, TileSlot> tmap = map.subMap(min, true, max, true);
+			long cnt = tmap.size();
+			if(cnt > 0) {
+				setDirty();
+				tmap.clear(); // remove all tile entries of timestamp range
+				flush(); // write removed entries to file
+				open(); // regenerate free slot list and truncate tile file
+			}
+			return cnt;
+		} finally {
+			refreshDerivedKeys();
+			flushLock.writeLock().unlock();
+		}	
+	}
+
 	@Override
 	public long removeAllTilesOfBand(int b) throws IOException {
 		flushLock.writeLock().lock();
 		try {
 			long cnt = 0;
 			for(int t:this.timeKeys) {	
-				TileKey min = new TileKey(t, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE);
-				TileKey max = new TileKey(t, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
-				ConcurrentNavigableMap<TileKey, TileSlot> tmap = map.subMap(min, true, max, true);
-				int subSize = tmap.size();				
+				TileKey min = new TileKey(t, b, Integer.MIN_VALUE, Integer.MIN_VALUE);
+				TileKey max = new TileKey(t, b, Integer.MAX_VALUE, Integer.MAX_VALUE);
+				ConcurrentNavigableMap<TileKey, TileSlot> tbmap = map.subMap(min, true, max, true);
+				int subSize = tbmap.size();				
 				if(subSize > 0) {
 					setDirty();
-					tmap.clear(); // remove all tile entries of timestamp
+					tbmap.clear(); // remove all tile entries of band at timestamp
 					cnt += subSize;
 				}
 			}
@@ -1116,6 +1932,31 @@ public class TileStorage implements RasterUnitStorage {
 		}		
 		return cnt == 0 ? null : new long[] {min, sum/cnt, max};
 	}
+
+	@Override
+	public TileValid getTileValid(TileKey tileKey) {
+		TileSlot tileSlot = map.get(tileKey);
+		if(tileSlot == null || tileSlot.isConcurrentUpdate()) {
+			return TileValid.UNKNOWN;
+		}
+		return tileSlot.getValid();
+	}
+
+	@Override
+	public long[] calculateValidPixelStats() {
+		long validPixelCount = 0;
+		long knownCount = 0;
+		long unknownCount = 0;
+		for(TileSlot tileSlot:map.values()) {
+			if(tileSlot.isConcurrentUpdate() || tileSlot.validCount < 0) {
+				unknownCount++;
+			} else {
+				validPixelCount += tileSlot.validCount;
+				knownCount++;
+			}
+		}
+		return new long[] {validPixelCount, knownCount, unknownCount};
+	}
 	
 	@Override
 	public Range2d getTileRange2d() {
@@ -0,0 +1,132 @@
+package rasterunit;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Consistent copy of tile storages while the layer keeps serving.
+ * Writers are fenced only while the index version is pinned, tile data of the pinned version is streamed afterwards.
+ * The target is a compact TileStorage, in incremental mode only tiles changed since the previous backup are copied.
+ */
+public class TileStorageBackup {
+	private static final Logger log = LogManager.getLogger();
+
+	private final boolean incremental;
+	private final LongConsumer progress;
+
+	private long copied = 0;
+	private long unchanged = 0;
+	private long removed = 0;
+
+	/**
+	 *
+	 * @param incremental copy only tiles with changed revision into existing backup target
+	 * @param progress receives count of processed tiles, may be null
+	 */
+	public TileStorageBackup(boolean incremental, LongConsumer progress) {
+		this.incremental = incremental;
+		this.progress = progress;
+	}
+
+	/**
+	 * Backup of storage into targetDir, StripedTileStorage segments are pinned at the same state and written as prefix_s{i}.
+	 * @param storage
+	 * @param targetDir
+	 * @param prefix file name prefix of target
+	 * @throws IOException
+	 */
+	public void backup(RasterUnitStorage storage, Path targetDir, String prefix) throws IOException {
+		if(storage instanceof TileStorage) {
+			backup((TileStorage) storage, targetDir, prefix);
+		} else if(storage instanceof StripedTileStorage) {
+			StripedTileStorage striped = (StripedTileStorage) storage;
+			TileStorageSnapshot[] snapshots = striped.pinBackupSnapshots(); // all segments of the same state
+			try {
+				for (int i = 0; i < snapshots.length; i++) {
+					backup(striped.getSegment(i), snapshots[i], targetDir, prefix + "_s" + i);
+				}
+			} finally {
+				for(TileStorageSnapshot snapshot:snapshots) {
+					snapshot.close();
+				}
+			}
+		} else {
+			throw new RuntimeException("backup not supported for storage, migrate to TileStorage first: " + storage.getClass().getSimpleName());
+		}
+	}
+
+	private void backup(TileStorage storage, Path targetDir, String prefix) throws IOException {
+		try(TileStorageSnapshot snapshot = storage.pinBackupSnapshot()) {
+			backup(storage, snapshot, targetDir, prefix);
+		}
+	}
+
+	private void backup(TileStorage storage, TileStorageSnapshot snapshot, Path targetDir, String prefix) throws IOException {
+		boolean update = incremental && Files.exists(targetDir.resolve(prefix + ".idx"));
+		TileStorageConfig config = update ? new TileStorageConfig(targetDir, prefix) : new TileStorageConfig(targetDir, prefix, TileStorageOption.CREATE);
+		Map<TileKey, TileSlot> index = snapshot.index();
+		log.info("backup " + prefix + " of snapshot version " + snapshot.version + " with " + index.size() + " tiles" + (update ? " incremental" : ""));
+		TileStorage target = new TileStorage(config);
+		try {
+			if(update) {
+				ArrayList<TileKey> removedKeys = new ArrayList<TileKey>();
+				for(TileKey key:target.tileKeysReadonly()) {
+					if(!index.containsKey(key)) {
+						removedKeys.add(key);
+					}
+				}
+				for(TileKey key:removedKeys) {
+					if(target.removeTile(key)) {
+						removed++;
+					}
+				}
+				if(!removedKeys.isEmpty()) {
+					target.refreshKeys();
+				}
+			}
+			for(Map.Entry<TileKey, TileSlot> e:index.entrySet()) {
+				TileKey key = e.getKey();
+				TileSlot slot = e.getValue();
+				if(update) {
+					TileSlot prev = target.getSlot(key);
+					if(prev != null && prev.rev == slot.rev && prev.len == slot.len && prev.type == slot.type) {
+						unchanged++;
+						onProgress();
+						continue;
+					}
+				}
+				byte[] data = slot.isConst() ? Tile.constData(slot.getConstValue()) : storage.readSnapshotData(snapshot, slot.pos, slot.len);
+				target.writeTile(new Tile(key.t, key.b, key.y, key.x, slot.type, data, slot.getValid()), slot.rev);
+				copied++;
+				onProgress();
+			}
+		} finally {
+			target.close();
+		}
+	}
+
+	private void onProgress() {
+		if(progress != null) {
+			progress.accept(copied + unchanged);
+		}
+	}
+
+	public long getCopied() {
+		return copied;
+	}
+
+	public long getUnchanged() {
+		return unchanged;
+	}
+
+	public long getRemoved() {
+		return removed;
+	}
+}
@@ -12,14 +12,24 @@ public class TileStorageConfig {
 	public final Path indexPath;
 	public final File dirtyFile;
 	public final boolean create;
+	public final boolean dedup;
+	public final boolean snapshots;
 
 	public TileStorageConfig(Path root, String prefix, TileStorageOption ...options) {
 		boolean create = false;
+		boolean dedup = false;
+		boolean snapshots = false;
 		for(TileStorageOption option:options) {
 			switch (option) {
 			case CREATE:
 				create = true;
 				break;
+			case DEDUP:
+				dedup = true;
+				break;
+			case SNAPSHOTS:
+				snapshots = true;
+				break;
 			default:
 				throw new RuntimeException("unknown option: " + option);
 			}
@@ -30,5 +40,7 @@ public class TileStorageConfig {
 		this.indexPath = path.resolve(prefix + ".idx");
 		this.dirtyFile = path.resolve(prefix + ".DIRTY").toFile();
 		this.create = create;
+		this.dedup = dedup;
+		this.snapshots = snapshots;
 	}
 }
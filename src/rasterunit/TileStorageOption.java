@@ -2,4 +2,6 @@ package rasterunit;
 
 public enum TileStorageOption {	
 	CREATE,
+	DEDUP,
+	SNAPSHOTS,
 }
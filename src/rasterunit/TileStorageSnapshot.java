@@ -0,0 +1,363 @@
+package rasterunit;
+
+import java.io.IOException;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import util.Range2d;
+import util.collections.ReadonlyNavigableSetView;
+
+/**
+ * Immutable published index version of a TileStorage.
+ * Reads do not block on writers and do not see tile writes after publishing.
+ * Tile data referenced by a pinned snapshot is not overwritten until the snapshot is closed.
+ */
+public class TileStorageSnapshot implements RasterUnitStorage {
+
+	private final TileStorage storage;
+	public final long version;
+	private final long revision; // revision of storage at publishing
+
+	private final TreeMap<TileKey, TileSlot> map;
+	private final TreeSet<RowKey> rowKeys;
+	private final TreeSet<BandKey> bandKeys;
+	private final TreeSet<Integer> timeKeys;
+
+	public final ReadonlyNavigableSetView<TileKey> tileKeysReadonly;
+	public final ReadonlyNavigableSetView<BandKey> bandKeysReadonly;
+	public final ReadonlyNavigableSetView<Integer> timeKeysReadonly;
+
+	private volatile boolean closed = false;
+
+	/**
+	 * Copies index, needs to be called without concurrent writes.
+	 * @param storage
+	 * @param version
+	 * @param revision revision of storage
+	 * @param index
+	 */
+	TileStorageSnapshot(TileStorage storage, long version, long revision, Map<TileKey, TileSlot> index) {
+		this.storage = storage;
+		this.version = version;
+		this.revision = revision;
+		map = new TreeMap<TileKey, TileSlot>(TileKey.COMPARATOR);
+		rowKeys = new TreeSet<RowKey>(RowKey.COMPARATOR);
+		bandKeys = new TreeSet<BandKey>(BandKey.COMPARATOR);
+		timeKeys = new TreeSet<Integer>();
+		for(Map.Entry<TileKey, TileSlot> e:index.entrySet()) {
+			TileKey key = e.getKey();
+			map.put(key, e.getValue());
+			rowKeys.add(new RowKey(key.t, key.b, key.y));
+			bandKeys.add(new BandKey(key.t, key.b));
+			timeKeys.add(key.t);
+		}
+		tileKeysReadonly = new ReadonlyNavigableSetView<TileKey>(map.navigableKeySet());
+		bandKeysReadonly = new ReadonlyNavigableSetView<BandKey>(bandKeys);
+		timeKeysReadonly = new ReadonlyNavigableSetView<Integer>(timeKeys);
+	}
+
+	/**
+	 * Pin handle of published snapshot, shares index.
+	 * @param published
+	 */
+	TileStorageSnapshot(TileStorageSnapshot published) {
+		this.storage = published.storage;
+		this.version = published.version;
+		this.revision = published.revision;
+		this.map = published.map;
+		this.rowKeys = published.rowKeys;
+		this.bandKeys = published.bandKeys;
+		this.timeKeys = published.timeKeys;
+		this.tileKeysReadonly = published.tileKeysReadonly;
+		this.bandKeysReadonly = published.bandKeysReadonly;
+		this.timeKeysReadonly = published.timeKeysReadonly;
+	}
+
+	/**
+	 * Unpins this snapshot, tile data of replaced tiles may be reused afterwards.
+	 */
+	@Override
+	public synchronized void close() {
+		if(!closed) {
+			closed = true;
+			storage.unpinSnapshot(this);
+		}
+	}
+
+	/**
+	 * Revision of the storage when this snapshot was published, reads of this snapshot match this revision.
+	 */
+	@Override
+	public long getRevision() {
+		return revision;
+	}
+
+	@Override
+	public ReadonlyNavigableSetView<TileKey> tileKeysReadonly() {
+		return tileKeysReadonly;
+	}
+
+	@Override
+	public ReadonlyNavigableSetView<BandKey> bandKeysReadonly() {
+		return bandKeysReadonly;
+	}
+
+	@Override
+	public ReadonlyNavigableSetView<Integer> timeKeysReadonly() {
+		return timeKeysReadonly;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return map.isEmpty();
+	}
+
+	@Override
+	public Tile readTile(TileKey tileKey) throws IOException {
+		if(closed) {
+			throw new RuntimeException("read of closed snapshot, tile data may be overwritten");
+		}
+		TileSlot tileSlot = map.get(tileKey);
+		if(tileSlot == null) {
+			return null;
+		}
+		byte[] data = tileSlot.isConst() ? Tile.constData(tileSlot.getConstValue()) : storage.readSnapshotData(this, tileSlot.pos, tileSlot.len);
+		return new Tile(tileKey.t, tileKey.b, tileKey.y, tileKey.x, tileSlot.type, data, tileSlot.getValid());
+	}
+
+	@Override
+	public Tile readTile(int t, int b, int y, int x) throws IOException {
+		return readTile(new TileKey(t, b, y, x));
+	}
+
+	@Override
+	public TileCollection readTiles(int t, int b, int ymin, int ymax, int xmin, int xmax) {
+		return new TileCollection(this, getRowKeys(t, b, ymin, ymax), xmin, xmax);
+	}
+
+	@Override
+	public NavigableSet<TileKey> getTileKeys(int t, int b, int y, int xmin, int xmax) {
+		return Collections.unmodifiableNavigableSet(map.navigableKeySet().subSet(new TileKey(t, b, y, xmin), true, new TileKey(t, b, y, xmax), true));
+	}
+
+	@Override
+	public Collection<Tile> getTiles(TileKey keyXmin, TileKey keyXmax) {
+		NavigableSet<TileKey> keys = map.navigableKeySet().subSet(keyXmin, true, keyXmax, true);
+		return new AbstractCollection<Tile>() {
+			@Override
+			public Iterator<Tile> iterator() {
+				Iterator<TileKey> it = keys.iterator();
+				return new Iterator<Tile>() {
+					@Override
+					public boolean hasNext() {
+						return it.hasNext();
+					}
+					@Override
+					public Tile next() {
+						try {
+							return readTile(it.next());
+						} catch (IOException e) {
+							throw new RuntimeException(e);
+						}
+					}
+				};
+			}
+			@Override
+			public int size() {
+				return keys.size();
+			}
+		};
+	}
+
+	@Override
+	public NavigableSet<RowKey> getRowKeys(int t, int b, int ymin, int ymax) {
+		return Collections.unmodifiableNavigableSet(rowKeys.subSet(new RowKey(t, b, ymin), true, new RowKey(t, b, ymax), true));
+	}
+
+	@Override
+	public Range2d getTileRange2d() {
+		return getTileRange2d(map.navigableKeySet());
+	}
+
+	@Override
+	public Range2d getTileRange2d(BandKey bandKey) {
+		return getTileRange2d(map.navigableKeySet().subSet(bandKey.toTileKeyMin(), true, bandKey.toTileKeyMax(), true));
+	}
+
+	private static Range2d getTileRange2d(NavigableSet<TileKey> keys) {
+		int xmin = Integer.MAX_VALUE;
+		int ymin = Integer.MAX_VALUE;
+		int xmax = Integer.MIN_VALUE;
+		int ymax = Integer.MIN_VALUE;
+		for(TileKey tileKey:keys) {
+			int x = tileKey.x;
+			int y = tileKey.y;
+			if(x<xmin) {
+				xmin = x;
+			}
+			if(y<ymin) {
+				ymin = y;
+			}
+			if(xmax<x) {
+				xmax = x;
+			}
+			if(ymax<y) {
+				ymax = y;
+			}
+		}
+		Range2d tileRange = new Range2d(xmin, ymin, xmax, ymax);
+		return tileRange.isEmptyMarker() ? null : tileRange;
+	}
+
+	@Override
+	public Range2d getTileRange2dOfSubset(BandKey bandKey, Range2d subsetTileRange) {
+		int xmin = Integer.MAX_VALUE;
+		int xmax = Integer.MIN_VALUE;
+		NavigableSet<RowKey> subsetRowKeys = getRowKeys(bandKey.t, bandKey.b, subsetTileRange.ymin, subsetTileRange.ymax);
+		if(subsetRowKeys.isEmpty()) {
+			return null;
+		}
+		for(RowKey rowKey : subsetRowKeys) {
+			NavigableSet<TileKey> row = map.navigableKeySet().subSet(rowKey.toTileKey(subsetTileRange.xmin), true, rowKey.toTileKey(subsetTileRange.xmax), true);
+			if(!row.isEmpty()) {
+				if(row.first().x < xmin) {
+					xmin = row.first().x;
+				}
+				if(xmax < row.last().x) {
+					xmax = row.last().x;
+				}
+			}
+		}
+		return xmin == Integer.MAX_VALUE || xmax == Integer.MIN_VALUE ? null : new Range2d(xmin, subsetRowKeys.first().y, xmax, subsetRowKeys.last().y);
+	}
+
+	@Override
+	public KeyRange getKeyRange() {
+		int xmin = Integer.MAX_VALUE;
+		int ymin = Integer.MAX_VALUE;
+		int bmin = Integer.MAX_VALUE;
+		int tmin = Integer.MAX_VALUE;
+		int xmax = Integer.MIN_VALUE;
+		int ymax = Integer.MIN_VALUE;
+		int bmax = Integer.MIN_VALUE;
+		int tmax = Integer.MIN_VALUE;
+		for(TileKey tileKey:map.keySet()) {
+			xmin = Math.min(xmin, tileKey.x);
+			xmax = Math.max(xmax, tileKey.x);
+			ymin = Math.min(ymin, tileKey.y);
+			ymax = Math.max(ymax, tileKey.y);
+			bmin = Math.min(bmin, tileKey.b);
+			bmax = Math.max(bmax, tileKey.b);
+			tmin = Math.min(tmin, tileKey.t);
+			tmax = Math.max(tmax, tileKey.t);
+		}
+		KeyRange keyRange = new KeyRange(xmin, ymin, bmin, tmin, xmax, ymax, bmax, tmax);
+		return keyRange.isEmptyMarker() ? null : keyRange;
+	}
+
+	@Override
+	public void writeTile(Tile tile) throws IOException {
+		throw new RuntimeException("snapshot is read only");
+	}
+
+	@Override
+	public void commit() {
+		// nothing
+	}
+
+	@Override
+	public void flush() throws IOException {
+		// nothing
+	}
+
+	@Override
+	public int getTileCount() {
+		return map.size();
+	}
+
+	@Override
+	public long removeAllTiles() throws IOException {
+		throw new RuntimeException("snapshot is read only");
+	}
+
+	@Override
+	public long removeAllTilesOfTimestamp(int t) throws IOException {
+		throw new RuntimeException("snapshot is read only");
+	}
+
+	@Override
+	public long removeAllTilesOfBand(int b) throws IOException {
+		throw new RuntimeException("snapshot is read only");
+	}
+
+	@Override
+	public long calculateInternalFreeSize() {
+		return storage.calculateInternalFreeSize();
+	}
+
+	@Override
+	public long calculateStorageSize() {
+		return storage.calculateStorageSize();
+	}
+
+	@Override
+	public int calculateTileCount() {
+		return map.size();
+	}
+
+	@Override
+	public long[] calculateTileSizeStats() {
+		long min = Long.MAX_VALUE;
+		long max = Long.MIN_VALUE;
+		long cnt = 0;
+		long sum = 0;
+		for(TileSlot tileSlot:map.values()) {
+			int len = tileSlot.len;
+			if(len < min) {
+				min = len;
+			}
+			if(max < len) {
+				max = len;
+			}
+			sum += len;
+			cnt++;
+		}
+		return cnt == 0 ? null : new long[] {min, sum/cnt, max};
+	}
+
+	@Override
+	public TileValid getTileValid(TileKey tileKey) {
+		TileSlot tileSlot = map.get(tileKey);
+		return tileSlot == null ? TileValid.UNKNOWN : tileSlot.getValid();
+	}
+
+	@Override
+	public long[] calculateValidPixelStats() {
+		long validPixelCount = 0;
+		long knownCount = 0;
+		long unknownCount = 0;
+		for(TileSlot tileSlot:map.values()) {
+			if(tileSlot.validCount < 0) {
+				unknownCount++;
+			} else {
+				validPixelCount += tileSlot.validCount;
+				knownCount++;
+			}
+		}
+		return new long[] {validPixelCount, knownCount, unknownCount};
+	}
+
+	TileSlot getSlot(TileKey tileKey) {
+		return map.get(tileKey);
+	}
+
+	Map<TileKey, TileSlot> index() {
+		return Collections.unmodifiableMap(map);
+	}
+}
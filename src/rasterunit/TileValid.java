@@ -0,0 +1,142 @@
+package rasterunit;
+
+/**
+ * Valid (not NA) pixels of a tile: count and bounding box in tile local pixel coordinates.
+ * Stored in the tile index to skip tiles or calculate extents without reading tile data.
+ */
+public class TileValid {
+
+	/**
+	 * Valid pixels not known, e.g. tiles written by older versions.
+	 */
+	public static final TileValid UNKNOWN = new TileValid(-1, 0, 0, -1, -1);
+
+	/**
+	 * Tile without valid pixels.
+	 */
+	public static final TileValid EMPTY = new TileValid(0, 0, 0, -1, -1);
+
+	public final int count;
+	public final int xmin;
+	public final int ymin;
+	public final int xmax;
+	public final int ymax;
+
+	public TileValid(int count, int xmin, int ymin, int xmax, int ymax) {
+		this.count = count;
+		this.xmin = xmin;
+		this.ymin = ymin;
+		this.xmax = xmax;
+		this.ymax = ymax;
+	}
+
+	/**
+	 *
+	 * @param count count of valid pixels or -1 if unknown
+	 * @param box packed bounding box
+	 * @return
+	 */
+	public static TileValid of(int count, long box) {
+		if(count < 0) {
+			return UNKNOWN;
+		}
+		if(count == 0) {
+			return EMPTY;
+		}
+		return new TileValid(count, (int) (box & 0xffff), (int) ((box >>> 16) & 0xffff), (int) ((box >>> 32) & 0xffff), (int) ((box >>> 48) & 0xffff));
+	}
+
+	/**
+	 *
+	 * @return bounding box packed to 16 bit per coordinate: xmin, ymin, xmax, ymax
+	 */
+	public long packBox() {
+		if(count <= 0) {
+			return 0;
+		}
+		return (xmin & 0xffffL) | ((ymin & 0xffffL) << 16) | ((xmax & 0xffffL) << 32) | ((ymax & 0xffffL) << 48);
+	}
+
+	/**
+	 * Calculates valid pixels of row major raw values.
+	 * @param raw
+	 * @param len pixels per row and column
+	 * @param rawNA raw value of NA pixels
+	 * @return
+	 */
+	public static TileValid ofRaw(int[] raw, int len, int rawNA) {
+		int count = 0;
+		int xmin = Integer.MAX_VALUE;
+		int ymin = Integer.MAX_VALUE;
+		int xmax = -1;
+		int ymax = -1;
+		int pos = 0;
+		for (int y = 0; y < len; y++) {
+			int rowXmin = -1;
+			int rowXmax = -1;
+			for (int x = 0; x < len; x++) {
+				if(raw[pos++] != rawNA) {
+					if(rowXmin < 0) {
+						rowXmin = x;
+					}
+					rowXmax = x;
+					count++;
+				}
+			}
+			if(rowXmin >= 0) {
+				if(rowXmin < xmin) {
+					xmin = rowXmin;
+				}
+				if(rowXmax > xmax) {
+					xmax = rowXmax;
+				}
+				if(ymin == Integer.MAX_VALUE) {
+					ymin = y;
+				}
+				ymax = y;
+			}
+		}
+		return count == 0 ? EMPTY : new TileValid(count, xmin, ymin, xmax, ymax);
+	}
+
+	/**
+	 * Valid pixels of a constant tile.
+	 * @param len pixels per row and column
+	 * @param isNA
+	 * @return
+	 */
+	public static TileValid ofConst(int len, boolean isNA) {
+		return isNA ? EMPTY : new TileValid(len * len, 0, 0, len - 1, len - 1);
+	}
+
+	public boolean isUnknown() {
+		return count < 0;
+	}
+
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	/**
+	 *
+	 * @param xmin tile local pixel coordinates
+	 * @param ymin
+	 * @param xmax
+	 * @param ymax
+	 * @return false if there are no valid pixels in range, true if unknown
+	 */
+	public boolean intersects(int xmin, int ymin, int xmax, int ymax) {
+		if(count < 0) {
+			return true;
+		}
+		if(count == 0) {
+			return false;
+		}
+		return this.xmin <= xmax && xmin <= this.xmax && this.ymin <= ymax && ymin <= this.ymax;
+	}
+
+	@Override
+	public String toString() {
+		return "TileValid [count=" + count + ", xmin=" + xmin + ", ymin=" + ymin + ", xmax=" + xmax + ", ymax=" + ymax + "]";
+	}
+}
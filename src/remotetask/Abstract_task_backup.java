@@ -0,0 +1,60 @@
+package remotetask;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.json.JSONObject;
+
+import broker.Broker;
+import broker.acl.EmptyACL;
+import rasterunit.TileStorageBackup;
+import util.Util;
+
+/**
+ * Backup of a layer into backup/[type]/[layer]/[backup], subclasses provide the layer.
+ * Task parameters: "backup" name of backup, optional "incremental".
+ */
+public abstract class Abstract_task_backup extends CancelableRemoteTask {
+
+	private final Path target;
+	private final boolean incremental;
+
+	/**
+	 * 
+	 * @param ctx
+	 * @param type layer type, e.g. "rasterdb"
+	 * @param name ID of layer
+	 */
+	public Abstract_task_backup(Context ctx, String type, String name) {
+		Broker broker = ctx.broker;
+		JSONObject task = ctx.task;
+		EmptyACL.ADMIN.check(ctx.userIdentity);
+		String backup = task.getString("backup");
+		Util.checkID(backup);
+		target = broker.getBackupRoot().resolve(type).resolve(name).resolve(backup);
+		incremental = task.optBoolean("incremental", false);
+	}
+
+	/**
+	 * Copies the layer into targetDir.
+	 * @param targetDir
+	 * @param tileStorageBackup
+	 * @throws IOException
+	 */
+	protected abstract void backup(Path targetDir, TileStorageBackup tileStorageBackup) throws IOException;
+
+	@Override
+	protected void process() throws Exception {
+		setMessage("backup to " + target);
+		TileStorageBackup tileStorageBackup = new TileStorageBackup(incremental, cnt -> {
+			if(isCanceled()) {
+				throw new RuntimeException("canceled");
+			}
+			if(isMessageTime()) {
+				setMessage("processed " + cnt + " tiles");
+			}
+		});
+		backup(target, tileStorageBackup);
+		setMessage("backup done: " + tileStorageBackup.getCopied() + " tiles copied, " + tileStorageBackup.getUnchanged() + " unchanged, " + tileStorageBackup.getRemoved() + " removed");
+	}
+}
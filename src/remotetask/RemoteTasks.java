@@ -15,15 +15,21 @@ import remotetask.pointdb.Task_index_raster;
 import remotetask.pointdb.Task_to_pointcloud;
 import remotetask.pointdb.Task_verify;
 import remotetask.pointdb.task_pointdb;
+import remotetask.rasterdb.Task_backup;
+import remotetask.rasterdb.Task_compact_storage;
 import remotetask.rasterdb.Task_count_pixels;
 import remotetask.rasterdb.Task_create;
 import remotetask.rasterdb.Task_create_band;
+import remotetask.rasterdb.Task_extract_pixels;
 import remotetask.rasterdb.Task_import;
+import remotetask.rasterdb.Task_migrate_storage;
 import remotetask.rasterdb.Task_rebuild;
 import remotetask.rasterdb.Task_rebuild_pyramid;
 import remotetask.rasterdb.Task_refresh_extent;
 import remotetask.rasterdb.Task_remove_bands;
+import remotetask.rasterdb.Task_remove_time_range;
 import remotetask.rasterdb.Task_remove_timestamps;
+import remotetask.rasterdb.Task_temporal_composite;
 import remotetask.rasterdb.task_rasterdb;
 import remotetask.vectordb.RefreshCatalogEntryRemoteTask;
 import remotetask.vectordb.task_vectordb;
@@ -52,6 +58,12 @@ public class RemoteTasks {
 		put(Task_rebuild_pyramid.class);
 		put(Task_count_pixels.class);
 		put(Task_refresh_extent.class);		
+		put(Task_extract_pixels.class);
+		put(Task_temporal_composite.class);
+		put(Task_migrate_storage.class);
+		put(Task_remove_time_range.class);
+		put(Task_compact_storage.class);
+		put(Task_backup.class);
 
 		//task_pointdb
 		put(remotetask.pointdb.Task_import.class);
@@ -68,11 +80,13 @@ public class RemoteTasks {
 		put(remotetask.pointcloud.Task_index_raster.class);
 		put(remotetask.pointcloud.Task_coverage.class);
 		put(remotetask.pointcloud.Task_to_voxel.class);
+		put(remotetask.pointcloud.Task_backup.class);
 		
 		//task_voxeldb
 		put(remotetask.voxeldb.Task_import.class);
 		put(remotetask.voxeldb.Task_rasterize.class);
 		put(remotetask.voxeldb.Task_voxel_to_pointcloud.class);
+		put(remotetask.voxeldb.Task_backup.class);
 
 		//task_vectordb
 		put(RefreshCatalogEntryRemoteTask.class);
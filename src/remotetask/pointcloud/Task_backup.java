@@ -0,0 +1,32 @@
+package remotetask.pointcloud;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import pointcloud.PointCloud;
+import rasterunit.TileStorageBackup;
+import remotetask.Abstract_task_backup;
+import remotetask.Context;
+import remotetask.Description;
+import remotetask.Param;
+
+@task_pointcloud("backup")
+@Description("Consistent backup of PointCloud layer while the layer keeps serving. Writers are paused only while the tile index version is pinned, tiles of that version are copied into a compact TileStorage backup afterwards. Needs storage type TileStorage.")
+@Param(name="pointcloud", type="pointcloud", desc="ID of PointCloud layer.", example="pointcloud1")
+@Param(name="backup", type="string", desc="Name of backup, target folder is backup/pointcloud/[layer]/[backup].", example="daily")
+@Param(name="incremental", type="boolean", desc="Copy only tiles changed since previous backup with same name. (default: false)", example="true", required=false)
+public class Task_backup extends Abstract_task_backup {
+
+	private final PointCloud src;
+
+	public Task_backup(Context ctx) {
+		super(ctx, "pointcloud", ctx.task.getString("pointcloud"));
+		src = ctx.broker.getPointCloud(ctx.task.getString("pointcloud"));
+		src.check(ctx.userIdentity);
+	}
+
+	@Override
+	protected void backup(Path targetDir, TileStorageBackup tileStorageBackup) throws IOException {
+		src.getGriddb().backup(targetDir, tileStorageBackup);
+	}
+}
@@ -0,0 +1,228 @@
+package remotetask.rasterdb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import rasterdb.Band;
+import rasterdb.RasterDB;
+import rasterdb.tile.PyramidBuilder;
+import rasterunit.RasterUnitStorage;
+import rasterunit.Tile;
+import rasterunit.TileCollector;
+import util.Range2d;
+import util.raster.GdalReader;
+
+/**
+ * Parallel import of GDAL band windows: window readers with one GDAL dataset per thread, tile encoders and one writer in window order.
+ * Windows cover whole tile rows, so tiles of different windows of a band do not overlap and can be merged independently.
+ * Count of windows in flight is bounded, memory usage does not grow with raster size.
+ * Optionally pyramid levels are written from the written tiles in the same pass.
+ */
+class ImportPipeline {
+	private static final Logger log = LogManager.getLogger();
+
+	private static final int POLL_MILLIS = 100;
+
+	static class Window {
+		final int seq;
+		final BandSpec bandSpec;
+		final int timestamp;
+		final int yoff;
+		final int ysize;
+		final int pixelYmin;
+		final Range2d bandTileRange; // tiles of all windows of the band
+		final int lowestTileRow;
+
+		Object data; // set by reader
+		ArrayList<Tile> tiles; // set by encoder
+
+		Window(int seq, BandSpec bandSpec, int timestamp, int yoff, int ysize, int pixelYmin, Range2d bandTileRange, int tileLen) {
+			this.seq = seq;
+			this.bandSpec = bandSpec;
+			this.timestamp = timestamp;
+			this.yoff = yoff;
+			this.ysize = ysize;
+			this.pixelYmin = pixelYmin;
+			this.bandTileRange = bandTileRange;
+			this.lowestTileRow = Math.floorDiv(pixelYmin, tileLen);
+		}
+
+		boolean isFirstOfBand() {
+			return yoff == 0;
+		}
+	}
+
+	private final RasterDB rasterdb;
+	private final String filename;
+	private final int readers;
+	private final int encoders;
+	private final int maxInFlight;
+
+	private volatile Throwable error = null;
+	private volatile boolean readersDone = false;
+
+	ImportPipeline(RasterDB rasterdb, String filename) {
+		this.rasterdb = rasterdb;
+		this.filename = filename;
+		int cpus = Runtime.getRuntime().availableProcessors();
+		this.readers = Math.max(1, Math.min(4, cpus / 4));
+		this.encoders = Math.max(1, cpus - readers);
+		this.maxInFlight = readers + encoders + 2;
+	}
+
+	/**
+	 *
+	 * @return count of windows that may be in memory at the same time
+	 */
+	int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	/**
+	 * Imports windows, tiles are written in window order by the calling thread.
+	 * @param windows ordered by seq starting at 0
+	 * @param pixelXmin
+	 * @param pyramidBuilder writes pyramid of written tiles, may be null
+	 * @param progress receives count of written windows
+	 * @return count of written tiles
+	 */
+	long run(List<Window> windows, int pixelXmin, PyramidBuilder pyramidBuilder, IntConsumer progress) {
+		log.info("import " + windows.size() + " windows with " + readers + " readers and " + encoders + " encoders");
+		RasterUnitStorage rasterUnit = rasterdb.rasterUnit();
+		Semaphore inFlight = new Semaphore(maxInFlight);
+		AtomicInteger nextWindow = new AtomicInteger(0);
+		AtomicInteger runningReaders = new AtomicInteger(readers);
+		ArrayBlockingQueue<Window> readQueue = new ArrayBlockingQueue<Window>(maxInFlight);
+		ArrayBlockingQueue<Window> writeQueue = new ArrayBlockingQueue<Window>(maxInFlight);
+		ExecutorService readerExecutor = Executors.newFixedThreadPool(readers);
+		ExecutorService encoderExecutor = Executors.newFixedThreadPool(encoders);
+		try {
+			for (int i = 0; i < readers; i++) {
+				readerExecutor.execute(() -> {
+					GdalReader gdalreader = null;
+					try {
+						gdalreader = new GdalReader(filename);
+						while(error == null) {
+							inFlight.acquire(); // acquired in window order, the next window to write always holds a permit
+							int seq = nextWindow.getAndIncrement();
+							if(seq >= windows.size()) {
+								inFlight.release();
+								break;
+							}
+							Window window = windows.get(seq);
+							window.data = ImportRemoteTask.readBand(rasterdb, gdalreader, window.bandSpec, window.yoff, window.ysize);
+							readQueue.put(window);
+						}
+					} catch(Throwable e) {
+						onError(e);
+					} finally {
+						if(gdalreader != null) {
+							gdalreader.close();
+						}
+						if(runningReaders.decrementAndGet() == 0) {
+							readersDone = true;
+						}
+					}
+				});
+			}
+			for (int i = 0; i < encoders; i++) {
+				encoderExecutor.execute(() -> {
+					try {
+						TileCollector collector = new TileCollector(rasterUnit);
+						while(error == null) {
+							Window window = readQueue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+							if(window == null) {
+								if(readersDone && readQueue.isEmpty()) {
+									break;
+								}
+								continue;
+							}
+							ImportRemoteTask.writeBand(rasterdb, collector, window.bandSpec, window.timestamp, window.data, pixelXmin, window.pixelYmin);
+							window.data = null;
+							window.tiles = collector.take();
+							writeQueue.put(window);
+						}
+					} catch(Throwable e) {
+						onError(e);
+					}
+				});
+			}
+
+			HashMap<Integer, Window> pending = new HashMap<Integer, Window>();
+			long tileCount = 0;
+			for (int seq = 0; seq < windows.size(); seq++) {
+				Window window = pending.remove(seq);
+				while(window == null) {
+					checkError();
+					Window w = writeQueue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+					if(w != null) {
+						if(w.seq == seq) {
+							window = w;
+						} else {
+							pending.put(w.seq, w);
+						}
+					}
+				}
+				for(Tile tile : window.tiles) {
+					rasterUnit.writeTile(tile);
+				}
+				tileCount += window.tiles.size();
+				rasterUnit.commit();
+				if(pyramidBuilder != null) {
+					Band band = rasterdb.getBandByNumber(window.bandSpec.rasterdb_band_index);
+					if(window.isFirstOfBand()) {
+						pyramidBuilder.startBand(band, window.timestamp, window.bandTileRange);
+					}
+					pyramidBuilder.add(band, window.timestamp, window.tiles, window.lowestTileRow);
+				}
+				window.tiles = null;
+				inFlight.release();
+				progress.accept(seq + 1);
+			}
+			checkError();
+			if(pyramidBuilder != null) {
+				pyramidBuilder.finish();
+			}
+			return tileCount;
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (Exception e) {
+			onError(e);
+			throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+		} finally {
+			readerExecutor.shutdownNow();
+			encoderExecutor.shutdownNow();
+			try {
+				readerExecutor.awaitTermination(1, TimeUnit.MINUTES);
+				encoderExecutor.awaitTermination(1, TimeUnit.MINUTES);
+			} catch (InterruptedException e) {
+				log.warn(e);
+			}
+		}
+	}
+
+	private void onError(Throwable e) {
+		if(error == null) {
+			log.error(e);
+			error = e;
+		}
+	}
+
+	private void checkError() {
+		Throwable e = error;
+		if(e != null) {
+			throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+		}
+	}
+}
@@ -8,10 +8,13 @@ import org.apache.logging.log4j.Logger;
 import broker.Broker;
 import rasterdb.Band;
 import rasterdb.RasterDB;
+import rasterdb.cell.CellFloat32;
 import rasterdb.cell.CellInt16;
 import rasterdb.cell.CellType;
+import rasterdb.importer.CellBandImport;
 import rasterdb.tile.ProcessingFloat;
 import rasterdb.tile.ProcessingShort;
+import rasterdb.tile.PyramidBuilder;
 import rasterdb.tile.TileFloat;
 import rasterdb.tile.TilePixel;
 import rasterunit.RasterUnitStorage;
@@ -62,8 +65,8 @@ public class ImportRemoteTask extends RemoteTask {
 		int pixelXmin = rasterdb.ref().geoXToPixel(easting);
 		int pixelYmin = rasterdb.ref().geoYToPixel(corrected_northing);
 
-
-		final int maxPixels = 134_217_728;
+		ImportPipeline pipeline = new ImportPipeline(rasterdb, gdalreader.getFilename());
+		final int maxPixels = 134_217_728 / pipeline.getMaxInFlight(); // per window
 		int xRange = gdalreader.x_range;
 		int yRange = gdalreader.y_range;
 		int maxLines = maxPixels / ((xRange < 1) ? 1 : xRange);
@@ -71,41 +74,43 @@ public class ImportRemoteTask extends RemoteTask {
 			maxLines = 1;
 		}
 
+		Vec<ImportPipeline.Window> windows = new Vec<ImportPipeline.Window>();
 		for(BandSpec bandSpec:bandSpecs) {
 			if(bandSpec.import_band) {
-				setMessage("importing band " + bandSpec.file_band_index);
 				int importBandTimestamp = bandSpec.timestamp == -1 ? generealTimestamp : bandSpec.timestamp;
-				log.info("pixelYmin "+ pixelYmin);
+				int tileLen = getTileLen(rasterdb, bandSpec);
+				int windowTileRows = Math.max(1, maxLines / tileLen);
+				log.info("pixelYmin "+ pixelYmin + "  window tile rows " + windowTileRows);
+				Range2d bandTileRange = new Range2d(Math.floorDiv(pixelXmin, tileLen), Math.floorDiv(pixelYmin, tileLen), Math.floorDiv(pixelXmin + xRange - 1, tileLen), Math.floorDiv(pixelYmin + yRange - 1, tileLen));
 				int yoff = 0;
 				while(yoff < yRange) {
-					int ysize = yoff + maxLines <= yRange ? maxLines : yRange - yoff;			
-					log.info("full size "+ yRange + "  batch from " + yoff + " to " + (yoff + (ysize -1)) + " size " + ysize);
-					int yEnd = yoff + (ysize - 1);
-					int yEndOffset = (yRange - 1) - yEnd;
-					int batchPixelYmin = pixelYmin + yEndOffset; 
-					//int batchPixelYmin = pixelYmin + ( (yStart + yRange - 1) - (yStart + yBatchSize - 1) );
-					log.info("batchPixelYmin "+ batchPixelYmin);
-					if(yoff > 0) {
-						setMessage("importing band " + bandSpec.file_band_index + " (" + ((yoff*100) / yRange) + "%)");
-					}
-					importBand(rasterdb, gdalreader, bandSpec, pixelXmin, batchPixelYmin, importBandTimestamp, yoff, ysize);
+					// window from file row yoff down to the first pixel row of a tile row, file rows are flipped
+					int windowPixelYmax = pixelYmin + (yRange - 1 - yoff);
+					int windowPixelYmin = Math.max(pixelYmin, (Math.floorDiv(windowPixelYmax, tileLen) - (windowTileRows - 1)) * tileLen);
+					int ysize = windowPixelYmax - windowPixelYmin + 1;
+					windows.add(new ImportPipeline.Window(windows.size(), bandSpec, importBandTimestamp, yoff, ysize, windowPixelYmin, bandTileRange, tileLen));
 					yoff += ysize;
-				}			
+				}
 			}
 		}
 
-		/*for(BandSpec bandSpec:bandSpecs) {
-		 * if(bandSpec.import_band) {
-			setMessage("importing band " + bandSpec.file_band_index);
-			importBand(rasterdb, gdalreader, bandSpec, pixelXmin, pixelYmin, timestamp);
+		int windowCount = windows.size();
+		boolean ingestPyramid = update_pyramid && !rasterdb.isInternalPyramid(); // pyramid of imported bands is written during import
+		PyramidBuilder pyramidBuilder = ingestPyramid ? new PyramidBuilder(rasterdb) : null;
+		long tileCount = pipeline.run(windows, pixelXmin, pyramidBuilder, cnt -> {
+			if(isMessageTime()) {
+				setMessage("importing (" + ((cnt * 100) / windowCount) + "%)");
 			}
-		}*/
-		
+		});
+		log.info("tiles written: " + tileCount);
+
 		setMessage("calculate extent");
 		Range2d localRange = rasterdb.getLocalRange(true);
 		log.info("new local range " + localRange);
 
-		if(update_pyramid) {
+		if(ingestPyramid) {
+			rasterdb.flush();
+		} else if(update_pyramid) {
 			setMessage("rebuild pyramid");
 			rasterdb.rebuildPyramid(true);
 		}
@@ -117,7 +122,25 @@ public class ImportRemoteTask extends RemoteTask {
 		setMessage("import done");
 	}
 
-	private static void importBand(RasterDB rasterdb, GdalReader gdalreader, BandSpec bandSpec, int pixelXmin, int pixelYmin, int timestamp, int yoff, int ysize) throws IOException {
+	/**
+	 * 
+	 * @return pixels per tile row of the band type
+	 */
+	private static int getTileLen(RasterDB rasterdb, BandSpec bandSpec) {
+		switch(bandSpec.rastedb_band_data_type) {
+		case TilePixel.TYPE_SHORT:
+		case TilePixel.TYPE_FLOAT:
+			return TilePixel.PIXELS_PER_ROW;
+		default:
+			return rasterdb.getTilePixelLen();
+		}
+	}
+
+	/**
+	 * Reads window of band and converts it to the band data type in RasterDB row order.
+	 * @return short[][], float[][], byte[][] or int[][]
+	 */
+	static Object readBand(RasterDB rasterdb, GdalReader gdalreader, BandSpec bandSpec, int yoff, int ysize) throws IOException {
 		org.gdal.gdal.Band gdalRasterBand = gdalreader.dataset.GetRasterBand(bandSpec.file_band_index);
 		Band rasterdbBand = rasterdb.getBandByNumber(bandSpec.rasterdb_band_index);
 		if(rasterdbBand.type != bandSpec.rastedb_band_data_type) {
@@ -127,26 +150,51 @@ public class ImportRemoteTask extends RemoteTask {
 		if(gdalRasterDataType != bandSpec.gdal_raster_data_type) {
 			throw new RuntimeException("wrong rasterdb_band_data_type");
 		}
-		RasterUnitStorage rasterUnit = rasterdb.rasterUnit();
 		switch(bandSpec.rastedb_band_data_type) {
-		case TilePixel.TYPE_SHORT: {
-			importBand_TYPE_SHORT(rasterdb, bandSpec, gdalreader, rasterUnit, timestamp, rasterdbBand, pixelXmin, pixelYmin, yoff, ysize, false);
-			break;
-		}
-		case TilePixel.TYPE_FLOAT: {
-			importBand_TYPE_FLOAT(rasterdb, bandSpec, gdalreader, rasterUnit, timestamp, rasterdbBand, pixelXmin, pixelYmin, yoff, ysize);
-			break;
+		case TilePixel.TYPE_SHORT:
+		case CellType.INT16:
+			return readBand_TYPE_SHORT(bandSpec, gdalreader, rasterdbBand, yoff, ysize);
+		case TilePixel.TYPE_FLOAT:
+		case CellType.FLOAT32:
+			return readBand_TYPE_FLOAT(bandSpec, gdalreader, yoff, ysize);
+		case CellType.UINT8:
+		case CellType.INT32:
+			return CellBandImport.read(gdalreader, bandSpec.file_band_index, bandSpec.gdal_raster_data_type, bandSpec.no_data_value, rasterdbBand, yoff, ysize);
+		default:
+			throw new RuntimeException("RasterDB band data type not implemented " + bandSpec.rastedb_band_data_type);			
 		}
+	}
+
+	/**
+	 * Merges window data of readBand into tiles of rasterUnit.
+	 * @return count of written tiles
+	 */
+	static int writeBand(RasterDB rasterdb, RasterUnitStorage rasterUnit, BandSpec bandSpec, int timestamp, Object data, int pixelXmin, int pixelYmin) throws IOException {
+		Band rasterdbBand = rasterdb.getBandByNumber(bandSpec.rasterdb_band_index);
+		switch(bandSpec.rastedb_band_data_type) {
+		case TilePixel.TYPE_SHORT:
+			return ProcessingShort.writeMerge(rasterUnit, timestamp, rasterdbBand, (short[][]) data, pixelYmin, pixelXmin);
+		case TilePixel.TYPE_FLOAT:
+			return ProcessingFloat.writeMerge(rasterUnit, timestamp, rasterdbBand, (float[][]) data, pixelYmin, pixelXmin);
 		case CellType.INT16: {
-			importBand_TYPE_SHORT(rasterdb, bandSpec, gdalreader, rasterUnit, timestamp, rasterdbBand, pixelXmin, pixelYmin, yoff, ysize, true);
-			break;
+			short[][] dataShort = (short[][]) data;
+			CellInt16 cellInt16 = new CellInt16(rasterdb.getTilePixelLen());
+			return cellInt16.writeMerge(rasterUnit, timestamp, rasterdbBand, dataShort, pixelYmin, pixelXmin, dataShort[0].length, dataShort.length);
+		}
+		case CellType.FLOAT32: {
+			float[][] dataFloat = (float[][]) data;
+			CellFloat32 cellFloat32 = new CellFloat32(rasterdb.getTilePixelLen());
+			return cellFloat32.writeMerge(rasterUnit, timestamp, rasterdbBand, dataFloat, pixelYmin, pixelXmin, dataFloat[0].length, dataFloat.length);
 		}
+		case CellType.UINT8:
+		case CellType.INT32:
+			return CellBandImport.write(rasterdb, rasterUnit, rasterdbBand, timestamp, data, pixelXmin, pixelYmin);
 		default:
 			throw new RuntimeException("RasterDB band data type not implemented " + bandSpec.rastedb_band_data_type);			
 		}
 	}
 	
-	private static void importBand_TYPE_SHORT(RasterDB rasterdb, BandSpec bandSpec, GdalReader gdalreader, RasterUnitStorage rasterUnit, int timestamp, Band rasterdbBand, int pixelXmin, int pixelYmin, int yoff, int ysize, boolean isCellInt16) throws IOException {
+	private static short[][] readBand_TYPE_SHORT(BandSpec bandSpec, GdalReader gdalreader, Band rasterdbBand, int yoff, int ysize) throws IOException {
 		short[][] dataShort = null;		
 		switch(bandSpec.gdal_raster_data_type) {
 		case GdalReader.GDAL_BYTE:
@@ -194,21 +242,10 @@ public class ImportRemoteTask extends RemoteTask {
 		default:
 			throw new RuntimeException("gdal data type not implemented for band type TYPE_SHORT " + bandSpec.gdal_raster_data_type);				
 		}			
-		dataShort = Util.flipRows(dataShort);
-		int cnt;
-		if(isCellInt16) {
-			CellInt16 cellInt16 = new CellInt16(rasterdb.getTilePixelLen());
-			int xlen = dataShort[0].length;
-			int ylen = dataShort.length;
-			cnt = cellInt16.writeMerge(rasterUnit, timestamp, rasterdbBand, dataShort, pixelYmin, pixelXmin, xlen, ylen);			
-		} else {
-			cnt = ProcessingShort.writeMerge(rasterUnit, timestamp, rasterdbBand, dataShort, pixelYmin, pixelXmin);
-		}		
-		rasterUnit.commit();
-		log.info("tiles written: " + cnt);
+		return Util.flipRows(dataShort);
 	}
 	
-	private static void importBand_TYPE_FLOAT(RasterDB rasterdb, BandSpec bandSpec, GdalReader gdalreader, RasterUnitStorage rasterUnit, int timestamp, Band rasterdbBand, int pixelXmin, int pixelYmin, int yoff, int ysize) throws IOException {
+	private static float[][] readBand_TYPE_FLOAT(BandSpec bandSpec, GdalReader gdalreader, int yoff, int ysize) throws IOException {
 		switch(bandSpec.gdal_raster_data_type) {
 		case GdalReader.GDAL_FLOAT64:
 			log.warn("convert float64 raster data to float32");
@@ -222,16 +259,10 @@ public class ImportRemoteTask extends RemoteTask {
 			} else {
 				dataFloat = gdalreader.getDataFloat(bandSpec.file_band_index, null, bandSpec.no_data_value.floatValue(), yoff, ysize);
 			}
-			dataFloat = Util.flipRows(dataFloat);
-			int cnt = ProcessingFloat.writeMerge(rasterUnit, timestamp, rasterdbBand, dataFloat, pixelYmin, pixelXmin);
-			rasterUnit.commit();
-			log.info("tiles written: " + cnt);
-			break;
+			return Util.flipRows(dataFloat);
 		}
 		default:
 			throw new RuntimeException("gdal data type not implemented for band type TYPE_FLOAT " + bandSpec.gdal_raster_data_type);				
 		}
 	}
-
-
 }
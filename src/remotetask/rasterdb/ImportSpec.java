@@ -99,6 +99,15 @@ public class ImportSpec {
 							case "int16":
 								bandSpec.rastedb_band_data_type = 3;
 								break;								
+							case "float32":
+								bandSpec.rastedb_band_data_type = 4;
+								break;
+							case "uint8":
+								bandSpec.rastedb_band_data_type = 5;
+								break;
+							case "int32":
+								bandSpec.rastedb_band_data_type = 6;
+								break;
 							default:
 								log.warn("unknown band type: " + rastedb_band_data_type_name);
 							}
@@ -174,6 +183,15 @@ public class ImportSpec {
 							case "int16":
 								bandSpec.rastedb_band_data_type = 3;
 								break;							
+							case "float32":
+								bandSpec.rastedb_band_data_type = 4;
+								break;
+							case "uint8":
+								bandSpec.rastedb_band_data_type = 5;
+								break;
+							case "int32":
+								bandSpec.rastedb_band_data_type = 6;
+								break;
 							default:
 								log.warn("unknown band type: " + rastedb_band_data_type_name);
 							}
@@ -0,0 +1,32 @@
+package remotetask.rasterdb;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import rasterdb.RasterDB;
+import rasterunit.TileStorageBackup;
+import remotetask.Abstract_task_backup;
+import remotetask.Context;
+import remotetask.Description;
+import remotetask.Param;
+
+@task_rasterdb("backup")
+@Description("Consistent backup of RasterDB layer including pyramid while the layer keeps serving. Writers are paused only while the tile index version is pinned, tiles of that version are copied into a compact TileStorage backup afterwards. Needs storage type TileStorage or StripedTileStorage.")
+@Param(name="rasterdb", type="rasterdb", desc="ID of RasterDB layer.", example="rasterdb1")
+@Param(name="backup", type="string", desc="Name of backup, target folder is backup/rasterdb/[layer]/[backup].", example="daily")
+@Param(name="incremental", type="boolean", desc="Copy only tiles changed since previous backup with same name. (default: false)", example="true", required=false)
+public class Task_backup extends Abstract_task_backup {
+
+	private final RasterDB src;
+
+	public Task_backup(Context ctx) {
+		super(ctx, "rasterdb", ctx.task.getString("rasterdb"));
+		src = ctx.broker.getRasterdb(ctx.task.getString("rasterdb"));
+		src.check(ctx.userIdentity);
+	}
+
+	@Override
+	protected void backup(Path targetDir, TileStorageBackup tileStorageBackup) throws IOException {
+		src.backup(targetDir, tileStorageBackup);
+	}
+}
@@ -0,0 +1,39 @@
+package remotetask.rasterdb;
+
+import rasterdb.RasterDB;
+import rasterunit.RasterUnitStorage;
+import remotetask.Context;
+import remotetask.Description;
+import remotetask.Param;
+import remotetask.RemoteTask;
+
+@task_rasterdb("compact_storage")
+@Description("Reclaim unused space of storage files of RasterDB layer including pyramid. TileStorage files are compacted by moving tiles from the end of the file into free space and truncating the file, reads are not blocked.")
+@Param(name="rasterdb", type="rasterdb", desc="ID of RasterDB layer.", example="rasterdb1")
+public class Task_compact_storage extends RemoteTask {
+
+	private final RasterDB rasterdb;
+
+	public Task_compact_storage(Context ctx) {
+		String name = ctx.task.getString("rasterdb");
+		this.rasterdb =  ctx.broker.getRasterdb(name);
+		rasterdb.checkMod(ctx.userIdentity);
+	}
+
+	@Override
+	protected void process() throws Exception {
+		RasterUnitStorage[] storages = new RasterUnitStorage[] {rasterdb.rasterUnit(), rasterdb.rasterPyr1Unit(), rasterdb.rasterPyr2Unit(), rasterdb.rasterPyr3Unit(), rasterdb.rasterPyr4Unit()};
+		long shrunk = 0;
+		for (int i = 0; i < storages.length; i++) {
+			String name = RasterDB.STORAGE_NAMES[i];
+			setMessage("compact " + name);
+			shrunk += storages[i].compact(moved -> {
+				if(isMessageTime()) {
+					setMessage("compact " + name + "  moved " + moved + " tiles");
+				}
+			});
+			storages[i].flush();
+		}
+		setMessage("compact storage done, reclaimed " + shrunk + " bytes");
+	}
+}
@@ -7,8 +7,11 @@ import org.json.JSONObject;
 import broker.Broker;
 import rasterdb.Band;
 import rasterdb.RasterDB;
+import rasterdb.cell.CellFloat32;
 import rasterdb.cell.CellInt16;
+import rasterdb.cell.CellInt32;
 import rasterdb.cell.CellType;
+import rasterdb.cell.CellUint8;
 import rasterdb.cell.Int16;
 import rasterdb.tile.TileFloat;
 import rasterdb.tile.TilePixel;
@@ -57,7 +60,7 @@ public class Task_count_pixels extends RemoteTask {
 		case TilePixel.TYPE_SHORT: {
 			int[] raw = new int[TilePixel.PIXELS_PER_TILE];
 			for(Tile tile:tiles) {
-				TileShort.decode_raw(tile.data, raw);  
+				TileShort.decode_raw(tile, raw);  
 				cnt += TileShort.countNotNa_raw(raw, band.getInt16NA());
 			}
 			break;
@@ -66,7 +69,7 @@ public class Task_count_pixels extends RemoteTask {
 			int[] raw = new int[TilePixel.PIXELS_PER_TILE];
 			float[] dst = new float[TilePixel.PIXELS_PER_TILE];
 			for(Tile tile:tiles) {
-				TileShort.decode_raw(tile.data, raw);  
+				TileShort.decode_raw(tile, raw);  
 				TileFloat.decode_raw(raw, dst);
 				cnt += TileFloat.countNotNa_raw(dst);
 			}
@@ -75,11 +78,39 @@ public class Task_count_pixels extends RemoteTask {
 		case CellType.INT16: {
 			for(Tile tile:tiles) {
 				CellInt16 cellInt16 = new CellInt16(rasterdb.getTilePixelLen());
-				int[] raw = cellInt16.dec(tile.data);
+				int[] raw = cellInt16.dec(tile);
 				cnt += Int16.countNotNa_raw(raw, band.getInt16NA());
 			}
 			break;
 		}
+		case CellType.FLOAT32: {
+			CellFloat32 cellFloat32 = new CellFloat32(rasterdb.getTilePixelLen());
+			for(Tile tile:tiles) {
+				int[] raw = cellFloat32.dec(tile);
+				for(int v:raw) {
+					if(Float.isFinite(Float.intBitsToFloat(v))) {
+						cnt++;
+					}
+				}
+			}
+			break;
+		}
+		case CellType.UINT8: {
+			CellUint8 cellUint8 = new CellUint8(rasterdb.getTilePixelLen());
+			for(Tile tile:tiles) {
+				int[] raw = cellUint8.dec(tile);
+				cnt += Int16.countNotNa_raw(raw, band.getUint8NA() & 0xff);
+			}
+			break;
+		}
+		case CellType.INT32: {
+			CellInt32 cellInt32 = new CellInt32(rasterdb.getTilePixelLen());
+			for(Tile tile:tiles) {
+				int[] raw = cellInt32.dec(tile);
+				cnt += Int16.countNotNa_raw(raw, band.getInt32NA());
+			}
+			break;
+		}
 		default:
 			throw new RuntimeException("not implemented for band type " + band.type);
 		}
@@ -0,0 +1,88 @@
+package remotetask.rasterdb;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+import org.json.JSONObject;
+
+import broker.Broker;
+import broker.acl.EmptyACL;
+import broker.group.Poi;
+import broker.group.PoiGroup;
+import rasterdb.Band;
+import rasterdb.PixelExtractor;
+import rasterdb.PixelExtractor.PixelValue;
+import rasterdb.RasterDB;
+import remotetask.Context;
+import remotetask.Description;
+import remotetask.Param;
+import remotetask.RemoteTask;
+import util.JsonUtil;
+
+@task_rasterdb("extract_pixels")
+@Description("Extract pixel values at points for bands and timestamps to a long format table file (one row per point, timestamp and band).")
+@Param(name="rasterdb", type="rasterdb", desc="ID of RasterDB layer.", example="rasterdb1")
+@Param(name="poi_group", type="string", desc="POI group of points. (alternatively parameter points)", example="poi_group1", required=false)
+@Param(name="points", type="string", desc="List of points. (alternatively parameter poi_group)", format="list of: x y or name x y", example="p1 609000.1 5530100.7, p2 609010.5 5530110.2", required=false)
+@Param(name="bands", type="integer_array", desc="Array of integer band numbers. (default: all bands)", example="1, 2, 3", required=false)
+@Param(name="time", type="string", desc="Time range of timestamps. (default: all timestamps)", example="2018", required=false)
+@Param(name="file", format="path", desc="Target file. (located on server) Format by file extension: .csv or .rdat", example="data/pixels.csv")
+public class Task_extract_pixels extends RemoteTask {
+	//private static final Logger log = LogManager.getLogger();
+
+	private final Broker broker;
+	private final JSONObject task;
+	private final RasterDB rasterdb;
+	private final Poi[] pois;
+
+	public Task_extract_pixels(Context ctx) {
+		this.broker = ctx.broker;
+		this.task = ctx.task;
+		String name = task.getString("rasterdb");
+		this.rasterdb =  broker.getRasterdb(name);
+		rasterdb.check(ctx.userIdentity);
+		EmptyACL.ADMIN.check(ctx.userIdentity);
+		if(task.has("poi_group")) {
+			if(task.has("points")) {
+				throw new RuntimeException("parameter points can not be used if parameter poi_group is specified");
+			}
+			String poiGroupName = task.getString("poi_group");
+			PoiGroup poiGroup = broker.getPoiGroup(poiGroupName);
+			if(poiGroup == null) {
+				throw new RuntimeException("poi_group not found: " + poiGroupName);
+			}
+			poiGroup.acl.check(ctx.userIdentity);
+			this.pois = poiGroup.pois;
+		} else if(task.has("points")) {
+			this.pois = Poi.parsePoiList(task.getString("points"));
+		} else {
+			throw new RuntimeException("missing parameter poi_group or points");
+		}
+	}
+
+	@Override
+	protected void process() throws Exception {
+		Band[] bands = PixelExtractor.getBands(rasterdb, task.has("bands") ? JsonUtil.getIntArray(task, "bands") : null);
+		int[] timestamps = PixelExtractor.getTimestamps(rasterdb, task.has("time") ? task.getString("time") : null);
+		PixelExtractor extractor = new PixelExtractor(rasterdb, pois, bands, timestamps);
+		setMessage("extract " + extractor.getValueCount() + " pixel values of " + pois.length + " points in " + extractor.getGroupCount() + " tiles");
+		Path path = Paths.get(task.getString("file"));
+		if(path.toString().toLowerCase().endsWith(".rdat")) {
+			ArrayList<PixelValue> values = extractor.run();
+			try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+				PixelExtractor.createRdatDataFrame().write(out, values);
+			}
+		} else {
+			try(PrintWriter out = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+				extractor.writeCsv(out);
+			}
+		}
+		setMessage("extract pixels done: " + path);
+	}
+}
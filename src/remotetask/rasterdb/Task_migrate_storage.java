@@ -0,0 +1,218 @@
+package remotetask.rasterdb;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONObject;
+
+import broker.Broker;
+import broker.acl.EmptyACL;
+import rasterdb.RasterDB;
+import rasterunit.RasterUnit;
+import rasterunit.RasterUnitStorage;
+import rasterunit.Tile;
+import rasterunit.TileKey;
+import rasterunit.TileStorage;
+import remotetask.CancelableRemoteTask;
+import remotetask.Context;
+import remotetask.Description;
+import remotetask.Param;
+
+@task_rasterdb("migrate_storage")
+@Description("Convert storage of RasterDB layer including pyramid from RasterUnit to TileStorage. Tiles are copied in parallel without decoding, the layer keeps serving during the copy and tiles written meanwhile are copied again before switching. Old RasterUnit files are kept.")
+@Param(name="rasterdb", type="rasterdb", desc="ID of RasterDB layer.", example="rasterdb1")
+@Param(name="chunk_size", type="integer", desc="Count of tiles per parallel copy chunk. (default: 4096)", example="4096", required=false)
+public class Task_migrate_storage extends CancelableRemoteTask {
+	private static final Logger log = LogManager.getLogger();
+
+	private static final int REPLAY_ROUNDS_MAX = 3;
+	private static final int REPLAY_BLOCKING_MAX = 1024;
+
+	private final RasterDB rasterdb;
+	private final int chunkSize;
+
+	private final AtomicLong copiedCounter = new AtomicLong(0);
+
+	public Task_migrate_storage(Context ctx) {
+		Broker broker = ctx.broker;
+		JSONObject task = ctx.task;
+		String name = task.getString("rasterdb");
+		rasterdb = broker.getRasterdb(name);
+		rasterdb.check(ctx.userIdentity);
+		EmptyACL.ADMIN.check(ctx.userIdentity);
+		chunkSize = task.optInt("chunk_size", 4096);
+		if(chunkSize < 1) {
+			throw new RuntimeException("invalid chunk_size: " + chunkSize);
+		}
+	}
+
+	@Override
+	protected void process() throws Exception {
+		if(!rasterdb.getStorageType().equals("RasterUnit")) {
+			throw new RuntimeException("storage_type is not RasterUnit: " + rasterdb.getStorageType());
+		}
+		Path path = rasterdb.config.getPath();
+		int levels = RasterDB.STORAGE_NAMES.length;
+		RasterUnit[] sources = new RasterUnit[levels];
+		TileStorage[] targets = new TileStorage[levels];
+		ArrayList<ConcurrentSkipListSet<TileKey>> changed = new ArrayList<ConcurrentSkipListSet<TileKey>>();
+		for (int level = 0; level < levels; level++) {
+			changed.add(new ConcurrentSkipListSet<TileKey>(TileKey.COMPARATOR));
+		}
+		boolean switched = false;
+		try {
+			for (int level = 0; level < levels; level++) {
+				String name = RasterDB.STORAGE_NAMES[level];
+				if(level > 0 && !Files.exists(path.resolve(name))) {
+					continue;
+				}
+				sources[level] = (RasterUnit) storage(level);
+				sources[level].setWriteListener(changed.get(level)::add);
+				targets[level] = new TileStorage(rasterdb.getTileStorageConfig(name, true));
+			}
+
+			for (int level = 0; level < levels; level++) {
+				if(sources[level] == null) {
+					continue;
+				}
+				TileKey[] keys = sources[level].tileKeysReadonly().toArray(new TileKey[0]);
+				setMessage(RasterDB.STORAGE_NAMES[level] + ": copy " + keys.length + " tiles");
+				copyParallel(sources[level], targets[level], keys);
+				for (int round = 0; round < REPLAY_ROUNDS_MAX && changed.get(level).size() > REPLAY_BLOCKING_MAX; round++) {
+					replay(sources[level], targets[level], changed.get(level));
+				}
+				targets[level].flush();
+			}
+
+			setMessage("switch storage");
+			for (int level = 0; level < levels; level++) {
+				if(sources[level] != null) {
+					sources[level].blockWrites();
+				}
+			}
+			try {
+				for (int level = 0; level < levels; level++) {
+					if(sources[level] == null) {
+						continue;
+					}
+					replay(sources[level], targets[level], changed.get(level));
+					int srcCount = sources[level].getTileCount();
+					int dstCount = targets[level].getTileCount();
+					if(srcCount != dstCount) {
+						throw new RuntimeException(RasterDB.STORAGE_NAMES[level] + ": tile count verification failed: " + srcCount + " RasterUnit tiles, " + dstCount + " TileStorage tiles");
+					}
+					targets[level].flush();
+				}
+				rasterdb.switchStorage("TileStorage", targets);
+				switched = true;
+				for(RasterUnit source:sources) {
+					if(source != null) {
+						source.setRetired();
+					}
+				}
+			} finally {
+				for (int level = levels - 1; level >= 0; level--) {
+					if(sources[level] != null) {
+						sources[level].unblockWrites();
+					}
+				}
+			}
+			setMessage("migrated " + copiedCounter.get() + " tile copies to TileStorage, RasterUnit files kept in " + path);
+		} finally {
+			for(RasterUnit source:sources) {
+				if(source != null) {
+					source.setWriteListener(null);
+				}
+			}
+			if(!switched) {
+				for (int level = 0; level < levels; level++) {
+					if(targets[level] != null) {
+						try {
+							targets[level].close();
+						} catch(Exception e) {
+							log.warn(e);
+						}
+						String name = RasterDB.STORAGE_NAMES[level];
+						Files.deleteIfExists(path.resolve(name + ".tst"));
+						Files.deleteIfExists(path.resolve(name + ".idx"));
+					}
+				}
+			}
+		}
+	}
+
+	private RasterUnitStorage storage(int level) {
+		switch(level) {
+		case 0:
+			return rasterdb.rasterUnit();
+		case 1:
+			return rasterdb.rasterPyr1Unit();
+		case 2:
+			return rasterdb.rasterPyr2Unit();
+		case 3:
+			return rasterdb.rasterPyr3Unit();
+		case 4:
+			return rasterdb.rasterPyr4Unit();
+		default:
+			throw new RuntimeException("unknown level: " + level);
+		}
+	}
+
+	/**
+	 * Copies tiles in key range chunks in parallel, tile data is copied as stored.
+	 */
+	private void copyParallel(RasterUnit source, TileStorage target, TileKey[] keys) {
+		int chunks = (keys.length + chunkSize - 1) / chunkSize;
+		IntStream.range(0, chunks).parallel().forEach(chunk -> {
+			if(isCanceled()) {
+				return;
+			}
+			int end = Math.min(keys.length, (chunk + 1) * chunkSize);
+			for (int i = chunk * chunkSize; i < end; i++) {
+				copy(source, target, keys[i]);
+			}
+			if(isMessageTime()) {
+				setMessage("copied " + copiedCounter.get() + " tiles");
+			}
+		});
+		if(isCanceled()) {
+			throw new RuntimeException("canceled");
+		}
+	}
+
+	/**
+	 * Copies tiles written during migration again.
+	 */
+	private void replay(RasterUnit source, TileStorage target, ConcurrentSkipListSet<TileKey> changed) {
+		TileKey[] keys = new TileKey[changed.size()];
+		int len = 0;
+		TileKey key;
+		while(len < keys.length && (key = changed.pollFirst()) != null) {
+			keys[len++] = key;
+		}
+		log.info("replay " + len + " tiles written during migration");
+		TileKey[] replayKeys = len == keys.length ? keys : Arrays.copyOf(keys, len);
+		copyParallel(source, target, replayKeys);
+	}
+
+	private void copy(RasterUnit source, TileStorage target, TileKey key) {
+		Tile tile = source.readTile(key);
+		if(tile == null) {
+			return;
+		}
+		try {
+			target.writeTile(tile);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		copiedCounter.incrementAndGet();
+	}
+}
@@ -0,0 +1,59 @@
+package remotetask.rasterdb;
+
+import rasterdb.RasterDB;
+import rasterunit.RasterUnitStorage;
+import remotetask.Context;
+import remotetask.Description;
+import remotetask.Param;
+import remotetask.RemoteTask;
+import util.TimeUtil;
+
+@task_rasterdb("remove_time_range")
+@Description("Remove all pixel data of all bands at all timestamps of a time range in one step and optionally reclaim storage space.")
+@Param(name="rasterdb", type="rasterdb", desc="ID of RasterDB layer.", example="rasterdb1")
+@Param(name="time", type="string", desc="Time range of timestamps to remove.", example="2018")
+@Param(name="compact", type="boolean", desc="Compact storage files after removal. (default: true)", example="true", required=false)
+public class Task_remove_time_range extends RemoteTask {
+
+	private final RasterDB rasterdb;
+	private final int[] timestampRange;
+	private final boolean compact;
+
+	public Task_remove_time_range(Context ctx) {
+		String name = ctx.task.getString("rasterdb");
+		this.rasterdb =  ctx.broker.getRasterdb(name);
+		rasterdb.checkMod(ctx.userIdentity);
+		String time = ctx.task.getString("time");
+		this.timestampRange = TimeUtil.getTimestampRangeOrNull(time);
+		if(timestampRange == null) {
+			throw new RuntimeException("could not parse time parameter: " + time);
+		}
+		this.compact = ctx.task.optBoolean("compact", true);
+	}
+
+	@Override
+	protected void process() throws Exception {
+		String rangeText = TimeUtil.toPrettyText(timestampRange[0]) + " to " + TimeUtil.toPrettyText(timestampRange[1]);
+		RasterUnitStorage[] storages = new RasterUnitStorage[] {rasterdb.rasterUnit(), rasterdb.rasterPyr1Unit(), rasterdb.rasterPyr2Unit(), rasterdb.rasterPyr3Unit(), rasterdb.rasterPyr4Unit()};
+		long removed = 0;
+		for (int i = 0; i < storages.length; i++) {
+			setMessage("remove " + rangeText + " in " + RasterDB.STORAGE_NAMES[i]);
+			removed += storages[i].removeAllTilesOfTimestampRange(timestampRange[0], timestampRange[1]);
+		}
+		setMessage("removed " + removed + " tiles of " + rangeText);
+		if(compact) {
+			long shrunk = 0;
+			for (int i = 0; i < storages.length; i++) {
+				String name = RasterDB.STORAGE_NAMES[i];
+				setMessage("compact " + name);
+				shrunk += storages[i].compact(moved -> {
+					if(isMessageTime()) {
+						setMessage("compact " + name + "  moved " + moved + " tiles");
+					}
+				});
+				storages[i].flush();
+			}
+			setMessage("removed " + removed + " tiles of " + rangeText + ", reclaimed " + shrunk + " bytes");
+		}
+	}
+}
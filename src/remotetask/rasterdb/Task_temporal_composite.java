@@ -0,0 +1,159 @@
+package remotetask.rasterdb;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONObject;
+
+import broker.Broker;
+import broker.acl.EmptyACL;
+import rasterdb.Band;
+import rasterdb.GeoReference;
+import rasterdb.PixelExtractor;
+import rasterdb.RasterDB;
+import rasterdb.TemporalReducer;
+import rasterdb.TimeBandProcessor;
+import rasterdb.cell.CellFloat32;
+import rasterdb.cell.CellType;
+import remotetask.CancelableRemoteTask;
+import remotetask.Context;
+import remotetask.Description;
+import remotetask.Param;
+import util.JsonUtil;
+import util.Range2d;
+import util.Util;
+
+@task_rasterdb("temporal_composite")
+@Description("Aggregate pixel values over timestamps per pixel and write the result to a new RasterDB layer. Tile positions are processed in parallel, only one tile stack per position is kept in memory.")
+@Param(name="rasterdb", type="rasterdb", desc="ID of RasterDB layer. (source)", example="rasterdb1")
+@Param(name="composite", type="layer_id", desc="ID of new RasterDB layer. (target)", example="rasterdb1_composite")
+@Param(name="function", type="string", desc="Aggregation function.", format="mean, median, min, max, count or sd", example="median")
+@Param(name="bands", type="integer_array", desc="Array of integer band numbers. (default: all bands)", example="1, 2, 3", required=false)
+@Param(name="time", type="string", desc="Time range of timestamps. (default: all timestamps)", example="2018", required=false)
+@Param(name="overwrite", type="boolean", desc="Delete existing RasterDB layer of target ID. (default: false)", example="true", required=false)
+public class Task_temporal_composite extends CancelableRemoteTask {
+	private static final Logger log = LogManager.getLogger();
+
+	private final Broker broker;
+	private final JSONObject task;
+	private final RasterDB rasterdb;
+	private final String function;
+	private final String compositeName;
+
+	public Task_temporal_composite(Context ctx) {
+		this.broker = ctx.broker;
+		this.task = ctx.task;
+		EmptyACL.ADMIN.check(ctx.userIdentity);
+		String name = task.getString("rasterdb");
+		this.rasterdb =  broker.getRasterdb(name);
+		rasterdb.check(ctx.userIdentity);
+		this.function = task.getString("function");
+		if(!TemporalReducer.isFunction(function)) {
+			throw new RuntimeException("unknown function: " + function);
+		}
+		this.compositeName = task.getString("composite");
+		Util.checkStrictID(compositeName);
+		if(compositeName.equals(name)) {
+			throw new RuntimeException("target layer needs to be different from source layer");
+		}
+		if(broker.hasRasterdb(compositeName) && !task.optBoolean("overwrite", false)) {
+			throw new RuntimeException("target layer already exists, set parameter 'overwrite' to replace it: " + compositeName);
+		}
+	}
+
+	@Override
+	protected void process() throws Exception {
+		Band[] bands = PixelExtractor.getBands(rasterdb, task.has("bands") ? JsonUtil.getIntArray(task, "bands") : null);
+		int[] timestamps = PixelExtractor.getTimestamps(rasterdb, task.has("time") ? task.getString("time") : null);
+
+		RasterDB composite = broker.createNewRasterdb(compositeName, false);
+		boolean done = false;
+		try {
+			process(composite, bands, timestamps);
+			done = true;
+		} finally {
+			if(done) {
+				composite.close();
+			} else {
+				log.warn("remove incomplete temporal composite " + compositeName);
+				broker.deleteRasterdb(compositeName); // closes composite
+			}
+		}
+	}
+
+	private void process(RasterDB composite, Band[] bands, int[] timestamps) throws IOException {
+		GeoReference ref = rasterdb.ref();
+		composite.setProj4(ref.proj4);
+		composite.setCode(ref.code);
+		composite.setPixelSize(ref.pixel_size_x, ref.pixel_size_y, ref.offset_x, ref.offset_y);
+		composite.writeMeta();
+
+		Range2d localRange = rasterdb.getLocalRange(false);
+		if(localRange == null || timestamps.length == 0) {
+			setMessage("no pixels in source layer");
+			return;
+		}
+		CellFloat32 cellFloat32 = new CellFloat32(composite.getTilePixelLen());
+		int tileLen = cellFloat32.pixel_len;
+		ArrayList<Range2d> blocks = new ArrayList<Range2d>();
+		for (int y = Math.floorDiv(localRange.ymin, tileLen); y <= Math.floorDiv(localRange.ymax, tileLen); y++) {
+			for (int x = Math.floorDiv(localRange.xmin, tileLen); x <= Math.floorDiv(localRange.xmax, tileLen); x++) {
+				blocks.add(Range2d.ofCorner(x * tileLen, y * tileLen, tileLen, tileLen));
+			}
+		}
+
+		for(Band band:bands) {
+			String title = (band.has_title() ? band.title : "band" + band.index) + "_" + function;
+			Band compositeBand = composite.createBand(CellType.FLOAT32, title, band.visualisation);
+			AtomicInteger blockCounter = new AtomicInteger(0);
+			blocks.parallelStream().forEach(block -> {
+				if(isCanceled()) {
+					return;
+				}
+				try {
+					processBlock(block, band, timestamps, composite, compositeBand, cellFloat32);
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+				int cnt = blockCounter.incrementAndGet();
+				if(isMessageTime()) {
+					setMessage("band " + band.index + "  tile positions " + cnt + " of " + blocks.size());
+				}
+			});
+			if(isCanceled()) {
+				throw new RuntimeException("canceled");
+			}
+			composite.rasterUnit().commit();
+			log.info("band " + band.index + " done");
+		}
+		composite.rebuildPyramid(true);
+		setMessage("temporal composite done");
+	}
+
+	private void processBlock(Range2d block, Band band, int[] timestamps, RasterDB composite, Band compositeBand, CellFloat32 cellFloat32) throws IOException {
+		TimeBandProcessor processor = new TimeBandProcessor(rasterdb, block);
+		TemporalReducer reducer = new TemporalReducer(function, block.getWidth(), block.getHeight());
+		for(int timestamp:timestamps) {
+			if(processor.mayHavePixels(timestamp, band)) {
+				reducer.add(processor.getDoubleFrame(timestamp, band).data);
+			}
+		}
+		if(!reducer.hasValues()) {
+			return;
+		}
+		double[][] result = reducer.result();
+		float[][] pixels = new float[result.length][];
+		for (int y = 0; y < result.length; y++) {
+			double[] src = result[y];
+			float[] dst = new float[src.length];
+			for (int x = 0; x < src.length; x++) {
+				dst[x] = (float) src[x];
+			}
+			pixels[y] = dst;
+		}
+		cellFloat32.writeMerge(composite.rasterUnit(), 0, compositeBand, pixels, block.ymin, block.xmin, block.getWidth(), block.getHeight());
+	}
+}
@@ -0,0 +1,32 @@
+package remotetask.voxeldb;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import voxeldb.VoxelDB;
+import rasterunit.TileStorageBackup;
+import remotetask.Abstract_task_backup;
+import remotetask.Context;
+import remotetask.Description;
+import remotetask.Param;
+
+@task_voxeldb("backup")
+@Description("Consistent backup of VoxelDB layer while the layer keeps serving. Writers are paused only while the tile index version is pinned, tiles of that version are copied into a compact TileStorage backup afterwards. Needs storage type TileStorage.")
+@Param(name="voxeldb", type="voxeldb", desc="ID of VoxelDB layer.", example="voxeldb1")
+@Param(name="backup", type="string", desc="Name of backup, target folder is backup/voxeldb/[layer]/[backup].", example="daily")
+@Param(name="incremental", type="boolean", desc="Copy only tiles changed since previous backup with same name. (default: false)", example="true", required=false)
+public class Task_backup extends Abstract_task_backup {
+
+	private final VoxelDB src;
+
+	public Task_backup(Context ctx) {
+		super(ctx, "voxeldb", ctx.task.getString("voxeldb"));
+		src = ctx.broker.getVoxeldb(ctx.task.getString("voxeldb"));
+		src.check(ctx.userIdentity);
+	}
+
+	@Override
+	protected void backup(Path targetDir, TileStorageBackup tileStorageBackup) throws IOException {
+		src.getGriddb().backup(targetDir, tileStorageBackup);
+	}
+}
@@ -0,0 +1,242 @@
+package server;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jetty.http.HttpStatus;
+
+import broker.AdmissionConfig;
+import broker.AdmissionConfig.EndpointConfig;
+import util.CancellationToken;
+
+/**
+ * Admission control of requests: per endpoint class a concurrency limit with a bounded queue, and a memory budget shared by all requests.
+ * Handlers reserve the estimated memory of a request before execution with {@link #reserveMemory(long, String)}.
+ * Reservations of a request are released when the request is finished.
+ */
+public class AdmissionControl {
+	private static final Logger log = LogManager.getLogger();
+
+	private static final long WAIT_SLICE_MILLIS = 100; // check cancellation while queued
+
+	public enum EndpointClass {
+		INTERACTIVE,
+		EXPORT,
+		TASK
+	}
+
+	/**
+	 * Request not admitted, status is sent to the client instead of executing the request.
+	 */
+	public static class AdmissionRejectedException extends RuntimeException {
+		private static final long serialVersionUID = -4207826389120377563L;
+
+		public final int status;
+		public final int retryAfterSeconds; // 0 if not transient
+
+		public AdmissionRejectedException(int status, int retryAfterSeconds, String message) {
+			super(message);
+			this.status = status;
+			this.retryAfterSeconds = retryAfterSeconds;
+		}
+	}
+
+	private static class Gate {
+		final EndpointConfig config;
+		final Semaphore permits;
+		final AtomicInteger queued = new AtomicInteger(0);
+
+		Gate(EndpointConfig config) {
+			this.config = config;
+			this.permits = new Semaphore(config.concurrency, true);
+		}
+	}
+
+	/**
+	 * Admission of one request, bound to the request thread.
+	 */
+	public static class Ticket {
+		private final AdmissionControl admissionControl;
+		private final Gate gate;
+		private long reservedBytes = 0;
+		private volatile boolean detached = false;
+		private boolean released = false; // synchronized
+
+		private Ticket(AdmissionControl admissionControl, Gate gate) {
+			this.admissionControl = admissionControl;
+			this.gate = gate;
+		}
+
+		/**
+		 * 
+		 * @return true if the request is finished on another thread and the ticket is released there
+		 */
+		public boolean isDetached() {
+			return detached;
+		}
+
+		public void release() {
+			admissionControl.release(this);
+		}
+	}
+
+	private static final ThreadLocal<Ticket> threadLocal_ticket = new ThreadLocal<Ticket>();
+
+	private final AdmissionConfig config;
+	private final Gate[] gates;
+	private long reservedBytes = 0; // synchronized
+
+	public AdmissionControl(AdmissionConfig config) {
+		this.config = config;
+		EndpointClass[] endpointClasses = EndpointClass.values();
+		gates = new Gate[endpointClasses.length];
+		for(EndpointClass endpointClass:endpointClasses) {
+			gates[endpointClass.ordinal()] = new Gate(getEndpointConfig(endpointClass));
+		}
+		log.info("admission: interactive " + config.interactive.concurrency + ", export " + config.export.concurrency + ", task " + config.task.concurrency + " concurrent requests, memory budget " + (config.memory_budget >> 20) + " MB");
+	}
+
+	private EndpointConfig getEndpointConfig(EndpointClass endpointClass) {
+		switch(endpointClass) {
+		case INTERACTIVE:
+			return config.interactive;
+		case EXPORT:
+			return config.export;
+		case TASK:
+			return config.task;
+		default:
+			throw new RuntimeException("unknown endpoint class " + endpointClass);
+		}
+	}
+
+	/**
+	 * Waits for a free slot of the endpoint class and binds the ticket to the current thread.
+	 * @param endpointClass
+	 * @return ticket to release with {@link #release(Ticket)}
+	 * @throws AdmissionRejectedException if the queue is full or the request waited longer than queue timeout
+	 */
+	public Ticket admit(EndpointClass endpointClass) {
+		Gate gate = gates[endpointClass.ordinal()];
+		if(!gate.permits.tryAcquire()) {
+			if(gate.queued.incrementAndGet() > gate.config.queue) {
+				gate.queued.decrementAndGet();
+				throw new AdmissionRejectedException(HttpServletResponse.SC_SERVICE_UNAVAILABLE, retryAfter(gate), "server busy: queue of " + endpointClass.name().toLowerCase() + " requests is full");
+			}
+			try {
+				long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(gate.config.queue_timeout);
+				while(!gate.permits.tryAcquire(WAIT_SLICE_MILLIS, TimeUnit.MILLISECONDS)) {
+					CancellationToken.checkCurrent();
+					if(System.nanoTime() - deadline >= 0) {
+						throw new AdmissionRejectedException(HttpServletResponse.SC_SERVICE_UNAVAILABLE, retryAfter(gate), "server busy: " + endpointClass.name().toLowerCase() + " request not started within " + gate.config.queue_timeout + " seconds");
+					}
+				}
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} finally {
+				gate.queued.decrementAndGet();
+			}
+		}
+		Ticket ticket = new Ticket(this, gate);
+		threadLocal_ticket.set(ticket);
+		return ticket;
+	}
+
+	/**
+	 * Releases slot and memory reservations of the ticket and unbinds it from the current thread.
+	 * @param ticket
+	 */
+	public void release(Ticket ticket) {
+		threadLocal_ticket.remove();
+		synchronized (ticket) {
+			if(ticket.released) {
+				return;
+			}
+			ticket.released = true;
+		}
+		if(ticket.reservedBytes > 0) {
+			synchronized (this) {
+				reservedBytes -= ticket.reservedBytes;
+				notifyAll();
+			}
+			ticket.reservedBytes = 0;
+		}
+		ticket.gate.permits.release();
+	}
+
+	/**
+	 * Unbinds the ticket of the current request from the current thread to finish the request on another thread.
+	 * A detached ticket is not released at end of handling, it needs to be released with {@link Ticket#release()}.
+	 * @return ticket or null if the current thread has no ticket
+	 */
+	public static Ticket detachCurrent() {
+		Ticket ticket = threadLocal_ticket.get();
+		if(ticket != null) {
+			ticket.detached = true;
+			threadLocal_ticket.remove();
+		}
+		return ticket;
+	}
+
+	/**
+	 * Binds a detached ticket to the current thread.
+	 * @param ticket nullable
+	 */
+	public static void bind(Ticket ticket) {
+		if(ticket == null) {
+			threadLocal_ticket.remove();
+		} else {
+			threadLocal_ticket.set(ticket);
+		}
+	}
+
+	private static int retryAfter(Gate gate) {
+		return Math.max(1, Math.min(60, gate.config.queue_timeout));
+	}
+
+	/**
+	 * Reserves estimated memory for the current request, waits if the memory budget is used by other requests.
+	 * No effect outside of admitted requests.
+	 * @param bytes estimated memory of request
+	 * @param what description of request for status messages
+	 * @throws AdmissionRejectedException if the estimation is above the per request maximum or memory is not available within queue timeout
+	 */
+	public static void reserveMemory(long bytes, String what) {
+		Ticket ticket = threadLocal_ticket.get();
+		if(ticket == null || bytes <= 0) {
+			return;
+		}
+		ticket.admissionControl.reserve(ticket, bytes, what);
+	}
+
+	private void reserve(Ticket ticket, long bytes, String what) {
+		long requestBytes = ticket.reservedBytes + bytes;
+		if(requestBytes > config.request_memory_max) {
+			throw new AdmissionRejectedException(HttpStatus.UNPROCESSABLE_ENTITY_422, 0, what + ": estimated memory " + (requestBytes >> 20) + " MB is above the limit of " + (config.request_memory_max >> 20) + " MB per request, reduce extent, band count or resolution");
+		}
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(ticket.gate.config.queue_timeout);
+		synchronized (this) {
+			while(reservedBytes + bytes > config.memory_budget) {
+				CancellationToken.checkCurrent();
+				if(System.nanoTime() - deadline >= 0) {
+					throw new AdmissionRejectedException(HttpServletResponse.SC_SERVICE_UNAVAILABLE, retryAfter(ticket.gate), what + ": server busy, estimated memory " + (bytes >> 20) + " MB not available within " + ticket.gate.config.queue_timeout + " seconds");
+				}
+				try {
+					wait(WAIT_SLICE_MILLIS);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			reservedBytes += bytes;
+		}
+		ticket.reservedBytes = requestBytes;
+	}
+
+	public synchronized long getReservedBytes() {
+		return reservedBytes;
+	}
+}
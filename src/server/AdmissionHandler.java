@@ -0,0 +1,103 @@
+package server;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+
+import server.AdmissionControl.AdmissionRejectedException;
+import server.AdmissionControl.EndpointClass;
+import server.AdmissionControl.Ticket;
+
+/**
+ * Admits requests by endpoint class, rejected requests get status 503 (busy) or 422 (request too large) with a text message.
+ * Static web content and batch requests are not limited, sub-requests of batches are admitted individually.
+ */
+public class AdmissionHandler extends HandlerWrapper {
+	private static final Logger log = LogManager.getLogger();
+
+	private final AdmissionControl admissionControl;
+
+	public AdmissionHandler(AdmissionControl admissionControl) {
+		this.admissionControl = admissionControl;
+	}
+
+	@Override
+	public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+		EndpointClass endpointClass = classify(target);
+		if(endpointClass == null) {
+			super.handle(target, baseRequest, request, response);
+			return;
+		}
+		Ticket ticket = null;
+		try {
+			ticket = admissionControl.admit(endpointClass);
+			super.handle(target, baseRequest, request, response);
+		} catch(AdmissionRejectedException e) {
+			log.warn(e.getMessage() + "  " + target);
+			baseRequest.setHandled(true);
+			if(!response.isCommitted()) {
+				response.resetBuffer();
+				response.setStatus(e.status);
+				if(e.retryAfterSeconds > 0) {
+					response.setHeader("Retry-After", Integer.toString(e.retryAfterSeconds));
+				}
+				response.setContentType("text/plain;charset=utf-8");
+				response.getWriter().println(e.getMessage());
+			}
+		} finally {
+			if(ticket != null && !ticket.isDetached()) {
+				admissionControl.release(ticket);
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param target
+	 * @return endpoint class or null if not limited
+	 */
+	static EndpointClass classify(String target) {
+		if(target.startsWith("/web/") || target.startsWith("/files/") || target.equals("/favicon.ico")) {
+			return null;
+		}
+		int nameStart = target.lastIndexOf('/') + 1;
+		int nameEnd = target.indexOf('.', nameStart);
+		String name = nameEnd < 0 ? target.substring(nameStart) : target.substring(nameStart, nameEnd);
+		String format = nameEnd < 0 ? "" : target.substring(nameEnd + 1);
+		switch(name) {
+		case "batch":
+			return null; // sub-requests are admitted individually
+		case "upload":
+		case "import":
+		case "create_raster":
+		case "remote_tasks":
+		case "insert_raster":
+		case "rebuild_pyramid":
+			return EndpointClass.TASK;
+		case "raster":
+			return format.equals("png") || format.equals("jpg") ? EndpointClass.INTERACTIVE : EndpointClass.EXPORT;
+		case "points":
+		case "volume":
+		case "voxels":
+		case "indices":
+		case "packages":
+		case "query":
+		case "query_raster":
+		case "polygon":
+		case "dtm":
+		case "dsm":
+		case "chm":
+		case "process":
+			return EndpointClass.EXPORT;
+		default:
+			return EndpointClass.INTERACTIVE;
+		}
+	}
+}
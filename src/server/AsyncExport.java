@@ -0,0 +1,66 @@
+package server;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jetty.server.Request;
+
+import server.AdmissionControl.Ticket;
+import util.AsyncResponseReceiver;
+import util.CancellationToken;
+import util.Receiver;
+
+/**
+ * Produces the response of an export on an export thread and writes it asynchronously, the request thread returns to the pool at once.
+ * Cancellation token and admission ticket of the request are moved to the export thread.
+ * Count of running exports is bounded by admission control.
+ */
+public class AsyncExport {
+	private static final Logger log = LogManager.getLogger();
+
+	private static final ExecutorService executor = Executors.newCachedThreadPool();
+
+	public interface Producer {
+		void produce(Receiver receiver) throws Exception;
+	}
+
+	/**
+	 * Runs producer asynchronously. Thread local state of the request (e.g. snapshot scopes) is not available in the producer.
+	 * Snapshots pinned by the request are closed when the request thread returns, the producer needs to open its own scope and obtain storages inside of it.
+	 * @param request
+	 * @param response
+	 * @param producer
+	 * @throws IOException
+	 */
+	public static void run(Request request, HttpServletResponse response, Producer producer) throws IOException {
+		request.setHandled(true);
+		AsyncContext asyncContext = request.startAsync();
+		asyncContext.setTimeout(0); // exports may run long, connection idle timeout applies
+		AsyncResponseReceiver receiver = new AsyncResponseReceiver(response, asyncContext);
+		CancellationToken token = CancellationToken.current();
+		Ticket ticket = AdmissionControl.detachCurrent();
+		executor.execute(() -> {
+			CancellationToken prevToken = CancellationToken.bind(token);
+			AdmissionControl.bind(ticket);
+			try {
+				producer.produce(receiver);
+				receiver.finish();
+			} catch(Throwable e) {
+				log.warn("export failed " + e);
+				receiver.fail(e);
+			} finally {
+				if(ticket != null) {
+					ticket.release();
+				}
+				AdmissionControl.bind(null);
+				CancellationToken.bind(prevToken);
+			}
+		});
+	}
+}
@@ -0,0 +1,296 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.server.Authentication;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HttpChannel;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.HttpOutput;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import org.eclipse.jetty.util.Callback;
+
+import rasterunit.SharedTileCache;
+import util.CancellationToken;
+
+/**
+ * Dispatches sub-requests of a batch in-process through a {@link LocalConnector}, so sub-requests are handled by the regular handlers without network, login and TLS overhead.
+ * Sub-requests carry the token of their batch and are handled with authentication, cancellation and tile cache of the batch, see {@link #wrap(Handler)}.
+ * Batch tokens are accepted from the local connector only.
+ * Sub-responses are buffered, content above {@link #MAX_SUB_RESPONSE_BYTES} is rejected with status 413.
+ */
+public class BatchDispatcher {
+	private static final Logger log = LogManager.getLogger();
+
+	public static final String TOKEN_HEADER = "X-Batch-Token";
+	private static final String SUB_ID_HEADER = "X-Batch-Sub";
+
+	public static final long MAX_SUB_RESPONSE_BYTES = 4 * 1024 * 1024; // content of one buffered sub-response
+
+	private static final long SUB_REQUEST_TIMEOUT_SECONDS = 5 * 60;
+	private static final long TILE_CACHE_BYTES = 64 * 1024 * 1024; // per batch
+
+	private static final SecureRandom random = new SecureRandom();
+
+	private final LocalConnector connector;
+	private final ConcurrentHashMap<String, Batch> batchMap = new ConcurrentHashMap<String, Batch>();
+
+	public BatchDispatcher(Server server, HttpConfiguration httpConfiguration) {
+		this.connector = new LocalConnector(server, new HttpConnectionFactory(httpConfiguration));
+	}
+
+	/**
+	 * Connector of sub-requests, needs to be added to the server.
+	 * @return
+	 */
+	public LocalConnector getConnector() {
+		return connector;
+	}
+
+	/**
+	 *
+	 * @param request
+	 * @return true if request is a sub-request of a batch
+	 */
+	public boolean isSubRequest(Request request) {
+		HttpChannel channel = request.getHttpChannel();
+		return channel != null && channel.getConnector() == connector;
+	}
+
+	/**
+	 * Response of a sub-request.
+	 */
+	public static class SubResponse {
+		public final int status;
+		public final String contentType; // nullable
+		public final byte[] content;
+
+		public SubResponse(int status, String contentType, byte[] content) {
+			this.status = status;
+			this.contentType = contentType;
+			this.content = content;
+		}
+	}
+
+	/**
+	 * Sub-requests of one batch request, authorised with the authentication of the batch request.
+	 */
+	public class Batch implements AutoCloseable {
+		private final String token;
+		private final Authentication authentication; // nullable
+		private final CancellationToken cancellationToken;
+		private final SharedTileCache tileCache = new SharedTileCache(TILE_CACHE_BYTES);
+		private final AtomicLong subIdCounter = new AtomicLong();
+		private final Set<String> oversizedSubIds = ConcurrentHashMap.newKeySet(); // sub-requests with response above limit
+
+		private Batch(String token, Authentication authentication, CancellationToken cancellationToken) {
+			this.token = token;
+			this.authentication = authentication;
+			this.cancellationToken = cancellationToken;
+		}
+
+		/**
+		 * Runs a sub-request and waits for its response. Thread safe, sub-requests may run in parallel.
+		 * @param method GET or POST
+		 * @param uri absolute path with optional query, e.g. "/rasterdb/layer/meta.json"
+		 * @param contentType content type of body, nullable
+		 * @param body nullable
+		 * @return
+		 * @throws Exception
+		 */
+		public SubResponse dispatch(String method, String uri, String contentType, byte[] body) throws Exception {
+			cancellationToken.check();
+			if(!HttpMethod.GET.is(method) && !HttpMethod.POST.is(method)) {
+				throw new RuntimeException("unsupported sub-request method: " + method);
+			}
+			if(uri == null || !uri.startsWith("/") || !isValidHeaderText(uri) || uri.indexOf(' ') >= 0) {
+				throw new RuntimeException("invalid sub-request uri: " + uri);
+			}
+			if(contentType != null && !isValidHeaderText(contentType)) {
+				throw new RuntimeException("invalid sub-request content type");
+			}
+			String subId = Long.toString(subIdCounter.incrementAndGet());
+			StringBuilder head = new StringBuilder();
+			head.append(method.toUpperCase()).append(' ').append(uri).append(" HTTP/1.1\r\n");
+			head.append("Host: localhost\r\n");
+			head.append("Connection: close\r\n");
+			head.append(TOKEN_HEADER).append(": ").append(token).append("\r\n");
+			head.append(SUB_ID_HEADER).append(": ").append(subId).append("\r\n");
+			if(body != null) {
+				if(contentType != null) {
+					head.append("Content-Type: ").append(contentType).append("\r\n");
+				}
+				head.append("Content-Length: ").append(body.length).append("\r\n");
+			}
+			head.append("\r\n");
+			byte[] headBytes = head.toString().getBytes(StandardCharsets.ISO_8859_1);
+			ByteBuffer raw = ByteBuffer.allocate(headBytes.length + (body == null ? 0 : body.length));
+			raw.put(headBytes);
+			if(body != null) {
+				raw.put(body);
+			}
+			raw.flip();
+			ByteBuffer rawResponse = connector.getResponse(raw, SUB_REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			cancellationToken.check();
+			if(oversizedSubIds.remove(subId)) {
+				return new SubResponse(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "text/plain;charset=utf-8", ("sub-response above limit of " + (MAX_SUB_RESPONSE_BYTES >> 20) + " MB, request smaller parts or use a separate request").getBytes(StandardCharsets.UTF_8));
+			}
+			HttpTester.Response response = rawResponse == null ? null : HttpTester.parseResponse(rawResponse);
+			if(response == null) {
+				return new SubResponse(HttpServletResponse.SC_GATEWAY_TIMEOUT, "text/plain;charset=utf-8", "sub-request timed out or incomplete".getBytes(StandardCharsets.UTF_8));
+			}
+			byte[] content = response.getContentBytes();
+			return new SubResponse(response.getStatus(), response.get(HttpHeader.CONTENT_TYPE), content == null ? new byte[0] : content);
+		}
+
+		public long getCachedTileBytes() {
+			return tileCache.getCachedBytes();
+		}
+
+		/**
+		 * Invalidates the batch token, running sub-requests are cancelled.
+		 */
+		@Override
+		public void close() {
+			batchMap.remove(token);
+			cancellationToken.cancel("batch closed");
+		}
+	}
+
+	/**
+	 * Fails writes of a sub-response when its content exceeds {@link #MAX_SUB_RESPONSE_BYTES}.
+	 */
+	private static class LimitInterceptor implements HttpOutput.Interceptor {
+		private final HttpOutput.Interceptor next;
+		private final Runnable onOversized;
+		private long bytes = 0; // written by request thread only
+
+		public LimitInterceptor(HttpOutput.Interceptor next, Runnable onOversized) {
+			this.next = next;
+			this.onOversized = onOversized;
+		}
+
+		@Override
+		public void write(ByteBuffer content, boolean last, Callback callback) {
+			bytes += content == null ? 0 : content.remaining();
+			if(bytes > MAX_SUB_RESPONSE_BYTES) {
+				onOversized.run();
+				callback.failed(new IOException("sub-response above limit of " + (MAX_SUB_RESPONSE_BYTES >> 20) + " MB"));
+				return;
+			}
+			next.write(content, last, callback);
+		}
+
+		@Override
+		public HttpOutput.Interceptor getNextInterceptor() {
+			return next;
+		}
+
+		@Override
+		public boolean isOptimizedForDirectBuffers() {
+			return next.isOptimizedForDirectBuffers();
+		}
+	}
+
+	private static boolean isValidHeaderText(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if(c < 0x20 || c >= 0x7f) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Opens a batch for sub-requests of the current request, the batch needs to be closed at end of the request.
+	 * @param request
+	 * @return
+	 */
+	public Batch open(Request request) {
+		if(isSubRequest(request)) {
+			throw new RuntimeException("nested batch requests are not supported");
+		}
+		CancellationToken requestToken = CancellationToken.current();
+		CancellationToken cancellationToken = new CancellationToken(requestToken == null ? null : requestToken::isCancelled);
+		Authentication authentication = request.getAuthentication();
+		if(!(authentication instanceof Authentication.User)) {
+			authentication = null;
+		}
+		byte[] tokenBytes = new byte[18];
+		random.nextBytes(tokenBytes);
+		String token = Base64.getUrlEncoder().withoutPadding().encodeToString(tokenBytes);
+		Batch batch = new Batch(token, authentication, cancellationToken);
+		batchMap.put(token, batch);
+		return batch;
+	}
+
+	/**
+	 * Handler that applies the batch of sub-requests, other requests are passed unchanged.
+	 * Needs to be placed before authentication handlers and inside of {@link CancellationHandler}.
+	 * @param handler
+	 * @return
+	 */
+	public Handler wrap(Handler handler) {
+		HandlerWrapper wrapper = new HandlerWrapper() {
+			@Override
+			public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+				String token = baseRequest.getHeader(TOKEN_HEADER);
+				if(token == null || !isSubRequest(baseRequest)) {
+					super.handle(target, baseRequest, request, response);
+					return;
+				}
+				Batch batch = batchMap.get(token);
+				if(batch == null) {
+					log.warn("sub-request of closed or unknown batch  " + target);
+					baseRequest.setHandled(true);
+					response.sendError(HttpServletResponse.SC_FORBIDDEN, "unknown batch");
+					return;
+				}
+				if(batch.authentication != null) {
+					baseRequest.setAuthentication(batch.authentication);
+				}
+				String subId = baseRequest.getHeader(SUB_ID_HEADER);
+				HttpOutput output = baseRequest.getResponse().getHttpOutput();
+				output.setInterceptor(new LimitInterceptor(output.getInterceptor(), () -> {
+					if(subId != null) {
+						batch.oversizedSubIds.add(subId);
+					}
+				}));
+				CancellationToken connectionToken = CancellationToken.current();
+				CancellationToken prevToken = CancellationToken.bind(new CancellationToken(() -> batch.cancellationToken.isCancelled() || (connectionToken != null && connectionToken.isCancelled())));
+				boolean readOnly = HttpMethod.GET.is(baseRequest.getMethod()) || HttpMethod.HEAD.is(baseRequest.getMethod()); // tile cache views are read only
+				SharedTileCache prevCache = SharedTileCache.bind(readOnly ? batch.tileCache : null);
+				try {
+					super.handle(target, baseRequest, request, response);
+				} finally {
+					SharedTileCache.bind(prevCache);
+					CancellationToken.bind(prevToken);
+				}
+			}
+		};
+		wrapper.setHandler(handler);
+		return wrapper;
+	}
+}
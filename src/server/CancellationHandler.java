@@ -0,0 +1,48 @@
+package server;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.server.HttpChannel;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+
+import util.CancellationToken;
+import util.CancellationToken.CancelledException;
+
+/**
+ * Binds a {@link CancellationToken} to the request thread for the time of handling.
+ * The token is cancelled when Jetty closed the connection of the request.
+ */
+public class CancellationHandler extends HandlerWrapper {
+	private static final Logger log = LogManager.getLogger();
+
+	@Override
+	public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+		CancellationToken token = new CancellationToken(() -> isDisconnected(baseRequest));
+		CancellationToken prev = CancellationToken.bind(token);
+		try {
+			super.handle(target, baseRequest, request, response);
+		} catch(CancelledException e) {
+			log.info(e.getMessage() + "  " + baseRequest.getRequestURI());
+			baseRequest.setHandled(true);
+		} finally {
+			CancellationToken.bind(prev);
+		}
+	}
+
+	private static boolean isDisconnected(Request request) {
+		HttpChannel channel = request.getHttpChannel();
+		if(channel == null) {
+			return false;
+		}
+		EndPoint endPoint = channel.getEndPoint();
+		return endPoint == null || !endPoint.isOpen() || endPoint.isOutputShutdown();
+	}
+}
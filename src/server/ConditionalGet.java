@@ -0,0 +1,121 @@
+package server;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.server.Request;
+
+/**
+ * Conditional GET: ETags of responses are derived from revision of the layer and request parameters, clients get 304 (not modified) for unchanged layers.
+ * Revisions are in memory only, ETags contain a nonce of the server instance, so ETags of a previous server run never match.
+ */
+public class ConditionalGet {
+
+	/**
+	 * Revalidation after short expiry, for map tiles that are requested repeatedly by viewers.
+	 */
+	public static final String CACHE_CONTROL_TILES = "private, max-age=60";
+
+	/**
+	 * Revalidation on every request.
+	 */
+	public static final String CACHE_CONTROL_REVALIDATE = "private, no-cache";
+
+	private static final String INSTANCE = Long.toString(System.currentTimeMillis(), 36);
+	private static final int ETAG_HASH_BYTES = 18;
+	private static final HashSet<String> IGNORED_PARAMETERS = new HashSet<String>(Arrays.asList("session", "cnt")); // request bookkeeping of WMS clients, no influence on content
+
+	/**
+	 *
+	 * @param key identifies layer and method of the response, and user for user dependent responses
+	 * @param revision revision of the layer
+	 * @param request all query parameters of the request are included, in any order and case of names
+	 * @param extra additional values the response depends on
+	 * @return strong ETag with quotes
+	 */
+	public static String etag(String key, long revision, Request request, String... extra) {
+		ArrayList<String> params = new ArrayList<String>();
+		Enumeration<String> names = request.getParameterNames();
+		while(names.hasMoreElements()) {
+			String name = names.nextElement();
+			if(IGNORED_PARAMETERS.contains(name.toLowerCase())) {
+				continue;
+			}
+			for(String value : request.getParameterValues(name)) {
+				params.add(name.toLowerCase() + '=' + value);
+			}
+		}
+		Collections.sort(params);
+		StringBuilder sb = new StringBuilder();
+		sb.append(INSTANCE).append('\n').append(key).append('\n').append(revision).append('\n').append(request.getRequestURI());
+		for(String param : params) {
+			sb.append('\n').append(param);
+		}
+		for(String e : extra) {
+			sb.append('\n').append(e);
+		}
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+			return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, ETAG_HASH_BYTES)) + '"';
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Sets ETag and Cache-Control headers and answers with 304 if the ETag matches If-None-Match of the request.
+	 * Only GET and HEAD requests are conditional.
+	 * @param request
+	 * @param response
+	 * @param etag
+	 * @param cacheControl
+	 * @return true if the request is handled with 304, no content needs to be sent
+	 */
+	public static boolean checkNotModified(Request request, HttpServletResponse response, String etag, String cacheControl) {
+		String method = request.getMethod();
+		if(!HttpMethod.GET.is(method) && !HttpMethod.HEAD.is(method)) {
+			return false;
+		}
+		response.setHeader(HttpHeader.ETAG.asString(), etag);
+		response.setHeader(HttpHeader.CACHE_CONTROL.asString(), cacheControl);
+		Enumeration<String> headers = request.getHeaders(HttpHeader.IF_NONE_MATCH.asString());
+		if(headers == null) {
+			return false;
+		}
+		while(headers.hasMoreElements()) {
+			if(matches(headers.nextElement(), etag)) {
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				request.setHandled(true);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean matches(String ifNoneMatch, String etag) {
+		for(String tag : ifNoneMatch.split(",")) {
+			tag = tag.trim();
+			if(tag.equals("*")) {
+				return true;
+			}
+			if(tag.startsWith("W/")) { // weak comparison
+				tag = tag.substring(2);
+			}
+			if(tag.equals(etag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
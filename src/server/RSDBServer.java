@@ -50,6 +50,7 @@ import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.gdal.gdal.gdal;
 
 import broker.Broker;
+import rasterdb.ProductCache;
 import server.api.main.MainAPICollectionHandler;
 import server.api.poi_groups.APIHandler_poi_groups;
 import server.api.pointclouds.APIHandler_pointclouds;
@@ -252,6 +253,9 @@ public class RSDBServer {
 			}
 		}
 
+		BatchDispatcher batchDispatcher = new BatchDispatcher(server, createBaseHttpConfiguration());
+		server.addConnector(batchDispatcher.getConnector());
+
 		DefaultSessionIdManager sessionIdManager = new DefaultSessionIdManager(server);
 		sessionIdManager.setWorkerName(null);
 		SessionHandler sessionHandler = new SessionHandler();
@@ -262,7 +266,7 @@ public class RSDBServer {
 		sessionCokkieConfig.setPath("/");
 
 		ContextHandlerCollection contextCollection = new ContextHandlerCollection();
-		contextCollection.setHandlers(createContextHanlders(broker));
+		contextCollection.setHandlers(createContextHanlders(broker, batchDispatcher));
 
 
 		HandlerList handlerList = new HandlerList();
@@ -276,7 +280,13 @@ public class RSDBServer {
 			handlerList.addHandler(contextCollection);
 		}
 
-		server.setHandler(handlerList);
+		ProductCache.configure(broker.brokerConfig.server().product_cache);
+
+		AdmissionHandler admissionHandler = new AdmissionHandler(new AdmissionControl(broker.brokerConfig.server().admission));
+		admissionHandler.setHandler(handlerList);
+		CancellationHandler cancellationHandler = new CancellationHandler();
+		cancellationHandler.setHandler(batchDispatcher.wrap(admissionHandler));
+		server.setHandler(cancellationHandler);
 		return server;
 	}
 	
@@ -347,7 +357,7 @@ public class RSDBServer {
 		System.out.println("-------------------------------------------------------------------");
 	}
 
-	private static ContextHandler[] createContextHanlders(Broker broker) {
+	private static ContextHandler[] createContextHanlders(Broker broker, BatchDispatcher batchDispatcher) {
 		ContextHandler[] contexts = new ContextHandler[] {
 				createContext(POINTDB_API_URL, new APICollectionHandler(broker)),
 				createContext("/pointdbs", true, new APIHandler_pointdbs(broker)),
@@ -358,7 +368,7 @@ public class RSDBServer {
 				createContext(VECTORDBS_URL, true, new VectordbsHandler(broker)),
 				createContext(POI_GROUPS_URL, true, new APIHandler_poi_groups(broker)),
 				createContext(ROI_GROUPS_URL, true, new APIHandler_roi_groups(broker)),
-				createContext(MAIN_API_URL, new MainAPICollectionHandler(broker)),
+				createContext(MAIN_API_URL, new MainAPICollectionHandler(broker, batchDispatcher)),
 				createContext("/rasterdb_wms", true, new WmsHandler(broker)),
 				createContext("/rasterdbs.json", true, new RasterdbsHandler(broker)),
 				createContext(WEBCONTENT_URL, createWebcontentHandler()),
@@ -12,6 +12,8 @@ import org.eclipse.jetty.server.Response;
 import org.eclipse.jetty.server.handler.AbstractHandler;
 
 import broker.Broker;
+import server.AdmissionControl.AdmissionRejectedException;
+import util.CancellationToken.CancelledException;
 
 public abstract class APIHandler extends AbstractHandler {
 	private static final Logger log = LogManager.getLogger();
@@ -31,6 +33,8 @@ public abstract class APIHandler extends AbstractHandler {
 	public final void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
 		try {
 			handle(target, baseRequest,(Response) response);
+		} catch(CancelledException | AdmissionRejectedException e) {
+			throw e;
 		} catch(Exception e) {
 			e.printStackTrace();
 			log.error(e.getClass().getSimpleName()+" "+e.getMessage());
@@ -0,0 +1,196 @@
+package server.api.main;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONWriter;
+
+import broker.Broker;
+import server.AdmissionControl;
+import server.BatchDispatcher;
+import server.BatchDispatcher.Batch;
+import server.BatchDispatcher.SubResponse;
+import server.api.APIHandler;
+import util.CancellationToken;
+import util.Web;
+
+/**
+ * Runs a list of sub-requests in parallel and streams the responses as NDJSON, one line per sub-request in order of completion.
+ * Sub-requests are handled by the regular handlers, authorised with the identity of the batch request and share a tile cache.
+ * Request: POST {"requests": [{"id": "a", "method": "GET", "url": "/rasterdb/layer/meta.json"}, ...]}, method defaults to GET, POST sub-requests may have "body" (text or JSON) and "content_type".
+ * Response line: {"id": "a", "status": 200, "content_type": "application/json", "body": "..."}, binary content as "body_base64", failed dispatch as "error".
+ * Sub-responses above {@link BatchDispatcher#MAX_SUB_RESPONSE_BYTES} get status 413, memory of the buffered sub-responses is reserved by admission control.
+ */
+public class APIHandler_batch extends APIHandler {
+	private static final Logger log = LogManager.getLogger();
+
+	private static final String MIME_NDJSON = "application/x-ndjson";
+	private static final int MAX_SUB_REQUESTS = 256;
+	private static final int MAX_PARALLEL = 8; // per batch
+	private static final long WAIT_SLICE_MILLIS = 100; // check cancellation while waiting for sub-requests
+	private static final long BYTES_PER_RESPONSE_BYTE = 4; // buffered response, content copy and base64 text
+
+	private static final ExecutorService executor = Executors.newCachedThreadPool();
+
+	private final BatchDispatcher batchDispatcher;
+
+	public APIHandler_batch(Broker broker, BatchDispatcher batchDispatcher) {
+		super(broker, "batch");
+		this.batchDispatcher = batchDispatcher;
+	}
+
+	private static class SubRequest {
+		public final String id;
+		public final String method;
+		public final String url;
+		public final String contentType; // nullable
+		public final byte[] body; // nullable
+
+		public SubRequest(String id, String method, String url, String contentType, byte[] body) {
+			this.id = id;
+			this.method = method;
+			this.url = url;
+			this.contentType = contentType;
+			this.body = body;
+		}
+	}
+
+	private static class SubResult {
+		public final SubRequest subRequest;
+		public final SubResponse response; // null if failed
+		public final Exception error; // null if not failed
+
+		public SubResult(SubRequest subRequest, SubResponse response, Exception error) {
+			this.subRequest = subRequest;
+			this.response = response;
+			this.error = error;
+		}
+	}
+
+	@Override
+	protected void handle(String target, Request request, Response response) throws IOException {
+		request.setHandled(true);
+		if(!request.getMethod().equals("POST")) {
+			throw new RuntimeException("batch needs POST with JSON content");
+		}
+		JSONArray jsonRequests = Web.requestContentToJSON(request).getJSONArray("requests");
+		int n = jsonRequests.length();
+		if(n > MAX_SUB_REQUESTS) {
+			throw new RuntimeException("too many sub-requests: " + n + ", maximum is " + MAX_SUB_REQUESTS);
+		}
+		SubRequest[] subRequests = new SubRequest[n];
+		for (int i = 0; i < n; i++) {
+			subRequests[i] = parseSubRequest(jsonRequests.getJSONObject(i), i);
+		}
+
+		AdmissionControl.reserveMemory(Math.min(n, MAX_PARALLEL + 1) * BatchDispatcher.MAX_SUB_RESPONSE_BYTES * BYTES_PER_RESPONSE_BYTE, "batch of " + n + " sub-requests"); // running sub-requests and one result in writing
+		try(Batch batch = batchDispatcher.open(request)) {
+			ExecutorCompletionService<SubResult> completionService = new ExecutorCompletionService<SubResult>(executor);
+			response.setStatus(HttpServletResponse.SC_OK);
+			response.setContentType(MIME_NDJSON);
+			PrintWriter out = response.getWriter();
+			int submitted = 0;
+			while(submitted < n && submitted < MAX_PARALLEL) {
+				submit(completionService, batch, subRequests[submitted++]);
+			}
+			int completed = 0;
+			while(completed < n) {
+				Future<SubResult> future = completionService.poll(WAIT_SLICE_MILLIS, TimeUnit.MILLISECONDS);
+				if(future == null) {
+					CancellationToken.checkCurrent();
+					continue;
+				}
+				completed++;
+				if(submitted < n) {
+					submit(completionService, batch, subRequests[submitted++]);
+				}
+				writeResult(out, future.get());
+				out.flush();
+			}
+			log.info("batch of " + n + " sub-requests, cached tiles " + (batch.getCachedTileBytes() >> 10) + " kB");
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static SubRequest parseSubRequest(JSONObject json, int index) {
+		String id = json.has("id") ? json.get("id").toString() : Integer.toString(index);
+		String method = json.optString("method", "GET").toUpperCase();
+		String url = json.getString("url");
+		String contentType = json.optString("content_type", null);
+		byte[] body = null;
+		if(json.has("body")) {
+			Object jsonBody = json.get("body");
+			if(jsonBody instanceof JSONObject || jsonBody instanceof JSONArray) {
+				if(contentType == null) {
+					contentType = MIME_JSON;
+				}
+			}
+			body = jsonBody.toString().getBytes(StandardCharsets.UTF_8);
+		}
+		return new SubRequest(id, method, url, contentType, body);
+	}
+
+	private static void submit(ExecutorCompletionService<SubResult> completionService, Batch batch, SubRequest subRequest) {
+		completionService.submit(() -> {
+			try {
+				return new SubResult(subRequest, batch.dispatch(subRequest.method, subRequest.url, subRequest.contentType, subRequest.body), null);
+			} catch(Exception e) {
+				log.warn("sub-request failed " + subRequest.url + "  " + e);
+				return new SubResult(subRequest, null, e);
+			}
+		});
+	}
+
+	private static void writeResult(PrintWriter out, SubResult result) {
+		JSONWriter json = new JSONWriter(out);
+		json.object();
+		json.key("id");
+		json.value(result.subRequest.id);
+		if(result.response == null) {
+			json.key("error");
+			json.value(result.error.getMessage() == null ? result.error.toString() : result.error.getMessage());
+		} else {
+			SubResponse subResponse = result.response;
+			json.key("status");
+			json.value(subResponse.status);
+			if(subResponse.contentType != null) {
+				json.key("content_type");
+				json.value(subResponse.contentType);
+			}
+			if(isText(subResponse.contentType)) {
+				json.key("body");
+				json.value(new String(subResponse.content, StandardCharsets.UTF_8));
+			} else {
+				json.key("body_base64");
+				json.value(Base64.getEncoder().encodeToString(subResponse.content));
+			}
+		}
+		json.endObject();
+		out.write('\n');
+	}
+
+	private static boolean isText(String contentType) {
+		if(contentType == null) {
+			return false;
+		}
+		String c = contentType.toLowerCase();
+		return c.startsWith("text/") || c.contains("json") || c.contains("xml") || c.contains("javascript");
+	}
+}
@@ -0,0 +1,37 @@
+package server.api.main;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.json.JSONWriter;
+
+import broker.Broker;
+import broker.acl.EmptyACL;
+import server.api.APIHandler;
+import util.BufferPool;
+import util.Web;
+
+/**
+ * Allocation counters of {@link BufferPool}, to measure reuse of tile work buffers.
+ */
+public class APIHandler_buffer_pool extends APIHandler {
+
+	public APIHandler_buffer_pool(Broker broker) {
+		super(broker, "buffer_pool");
+	}
+
+	@Override
+	protected void handle(String target, Request request, Response response) throws IOException {
+		EmptyACL.ADMIN.check(Web.getUserIdentity(request));
+		response.setStatus(HttpServletResponse.SC_OK);
+		response.setContentType(MIME_JSON);
+		JSONWriter json = new JSONWriter(response.getWriter());
+		json.object();
+		json.key("buffer_pool");
+		BufferPool.writeStatsJSON(json);
+		json.endObject();
+	}
+}
@@ -9,6 +9,7 @@ import org.eclipse.jetty.server.Response;
 import org.eclipse.jetty.server.UserIdentity;
 
 import broker.Broker;
+import server.ConditionalGet;
 import server.api.APIHandler;
 import util.Web;
 
@@ -22,6 +23,10 @@ public class APIHandler_catalog_json extends APIHandler {
 	@Override
 	protected void handle(String target, Request request, Response response) throws IOException {
 		UserIdentity userIdentity = Web.getUserIdentity(request);
+		String user = userIdentity == null ? "" : userIdentity.getUserPrincipal().getName();
+		if(ConditionalGet.checkNotModified(request, response, ConditionalGet.etag("catalog", broker.catalog.getRevision(), request, user), ConditionalGet.CACHE_CONTROL_REVALIDATE)) {
+			return;
+		}
 
 		response.setStatus(HttpServletResponse.SC_OK);
 		response.setContentType(MIME_JSON);
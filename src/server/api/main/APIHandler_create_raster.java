@@ -1,6 +1,7 @@
 package server.api.main;
 
 import java.io.IOException;
+import java.util.Collections;
 
 import javax.servlet.http.HttpServletResponse;
 
@@ -12,6 +13,7 @@ import org.json.JSONWriter;
 
 import broker.Broker;
 import rasterdb.RasterDB;
+import rasterunit.StripedTileStorage;
 import server.api.APIHandler;
 
 public class APIHandler_create_raster extends APIHandler {
@@ -50,6 +52,13 @@ public class APIHandler_create_raster extends APIHandler {
 		}
 		
 		RasterDB rasterdb = broker.createOrGetRasterdb(name, transaction, storage_type);
+		String storage_segments = request.getParameter("storage_segments");
+		String storage_partition = request.getParameter("storage_partition");
+		if(storage_segments != null || storage_partition != null) {
+			int segments = storage_segments == null ? 4 : Integer.parseInt(storage_segments);
+			String partition = storage_partition == null ? StripedTileStorage.PARTITION_HASH : storage_partition;
+			rasterdb.setStorageStriping(segments, partition, Collections.emptyList());
+		}
 		if(proj4 != null && !proj4.isEmpty()) {
 			rasterdb.setProj4(proj4);
 		}
@@ -413,6 +413,15 @@ public class APIHandler_inspect extends APIHandler {
 				case CellType.INT16:
 					json.value("int16");
 					break;
+				case CellType.FLOAT32:
+					json.value("float32");
+					break;
+				case CellType.UINT8:
+					json.value("uint8");
+					break;
+				case CellType.INT32:
+					json.value("int32");
+					break;
 				default:
 					throw new RuntimeException("unknown band type: "+ band.type);
 				}
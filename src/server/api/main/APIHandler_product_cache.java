@@ -0,0 +1,37 @@
+package server.api.main;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.json.JSONWriter;
+
+import broker.Broker;
+import broker.acl.EmptyACL;
+import rasterdb.ProductCache;
+import server.api.APIHandler;
+import util.Web;
+
+/**
+ * Counters of {@link ProductCache}, to measure reuse of evaluated raster products.
+ */
+public class APIHandler_product_cache extends APIHandler {
+
+	public APIHandler_product_cache(Broker broker) {
+		super(broker, "product_cache");
+	}
+
+	@Override
+	protected void handle(String target, Request request, Response response) throws IOException {
+		EmptyACL.ADMIN.check(Web.getUserIdentity(request));
+		response.setStatus(HttpServletResponse.SC_OK);
+		response.setContentType(MIME_JSON);
+		JSONWriter json = new JSONWriter(response.getWriter());
+		json.object();
+		json.key("product_cache");
+		ProductCache.writeStatsJSON(json);
+		json.endObject();
+	}
+}
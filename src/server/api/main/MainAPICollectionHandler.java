@@ -1,10 +1,11 @@
 package server.api.main;
 
 import broker.Broker;
+import server.BatchDispatcher;
 
 public class MainAPICollectionHandler extends APICollectionHandler {
 
-	public MainAPICollectionHandler(Broker broker) {
+	public MainAPICollectionHandler(Broker broker, BatchDispatcher batchDispatcher) {
 		addMethod(new APIHandler_poi_groups(broker));
 		addMethod(new APIHandler_poi_group(broker));
 		addMethod(new APIHandler_roi_groups(broker));
@@ -25,6 +26,9 @@ public class MainAPICollectionHandler extends APICollectionHandler {
 		addMethod(new APIHandler_proxy(broker));
 		addMethod(new APIHandler_connection_test(broker));
 		addMethod(new APIHandler_mbtiles(broker));
+		addMethod(new APIHandler_buffer_pool(broker));
+		addMethod(new APIHandler_product_cache(broker));
+		addMethod(new APIHandler_batch(broker, batchDispatcher));
 	}
 
 }
@@ -16,6 +16,7 @@ import org.json.JSONWriter;
 
 import broker.Broker;
 import broker.Informal;
+import server.AdmissionControl.AdmissionRejectedException;
 import util.JsonUtil;
 import util.Web;
 
@@ -48,6 +49,8 @@ public class APIHandler_pointclouds extends AbstractHandler {
 				String next = i < 0 ? "/" : target.substring(i);
 				apihandler_pointcloud.handle(name, next, request, (Response)response, userIdentity);
 			}
+		} catch(AdmissionRejectedException e) {
+			throw e;
 		} catch(Exception e) {
 			e.printStackTrace();
 			log.error(e);
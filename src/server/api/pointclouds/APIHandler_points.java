@@ -18,8 +18,9 @@ import pointcloud.CellTable.ChainedFilterFunc;
 import pointcloud.PointCloud;
 import pointdb.base.Rect;
 import pointdb.subsetdsl.Region;
+import server.AdmissionControl;
+import server.AsyncExport;
 import util.Receiver;
-import util.ResponseReceiver;
 import util.StreamReceiver;
 
 public class APIHandler_points {
@@ -28,6 +29,9 @@ public class APIHandler_points {
 	protected static final String MIME_JSON = "application/json";	
 	protected static final String MIME_CSV = "text/csv";
 
+	private static final int ESTIMATE_SAMPLE_CELLS = 16;
+	private static final long BYTES_PER_POINT = 96; // point object and output
+
 	//private final Broker broker;
 
 	public APIHandler_points(Broker broker) {
@@ -93,33 +97,44 @@ public class APIHandler_points {
 		ChainedFilterFunc filterFunc = CellTable.parseFilter(request.getParameter("filter"));
 
 		if(format.equals("zip")) {
-			String tileFormat = "las";
-			response.setContentType("application/zip");
-			ZipOutputStream zipOutputStream = new ZipOutputStream(response.getOutputStream());
-			zipOutputStream.setLevel(Deflater.NO_COMPRESSION);
-			Receiver receiver = new StreamReceiver(zipOutputStream);
 			Region rr = requestRegion;
-			boundingRect.tiles_utmm(1000_000, 1000_000, (xtile, ytile, tileRect) -> {
-				log.info(tileRect);
-				String tileFilename = "tile_" + xtile + "_" + ytile + ".las";
-				try {
-					Region tileRegion = Region.ofFilteredBbox(tileRect, rr.polygonPoints);
-					zipOutputStream.putNextEntry(new ZipEntry(tileFilename));
-					double txmin = tileRect.getUTMd_min_x();
-					double tymin = tileRect.getUTMd_min_y();
-					double txmax = tileRect.getUTMd_max_x_inclusive();
-					double tymax = tileRect.getUTMd_max_y_inclusive();
-					PointProcessor.process(pointcloud, txmin, tymin, txmax, tymax, filterFunc, tileRegion, tileFormat, receiver, request, selector);
-					zipOutputStream.closeEntry();
-				} catch (IOException e) {
-					throw new RuntimeException(e);
-				}				
-			});			
-			zipOutputStream.finish();
-			zipOutputStream.flush();
+			Rect rect = boundingRect;
+			AsyncExport.run(request, response, zipReceiver -> {
+				String tileFormat = "las";
+				zipReceiver.setContentType("application/zip");
+				ZipOutputStream zipOutputStream = new ZipOutputStream(zipReceiver.getOutputStream());
+				zipOutputStream.setLevel(Deflater.NO_COMPRESSION);
+				Receiver receiver = new StreamReceiver(zipOutputStream);
+				rect.tiles_utmm(1000_000, 1000_000, (xtile, ytile, tileRect) -> {
+					log.info(tileRect);
+					String tileFilename = "tile_" + xtile + "_" + ytile + ".las";
+					try {
+						Region tileRegion = Region.ofFilteredBbox(tileRect, rr.polygonPoints);
+						zipOutputStream.putNextEntry(new ZipEntry(tileFilename));
+						double txmin = tileRect.getUTMd_min_x();
+						double tymin = tileRect.getUTMd_min_y();
+						double txmax = tileRect.getUTMd_max_x_inclusive();
+						double tymax = tileRect.getUTMd_max_y_inclusive();
+						PointProcessor.process(pointcloud, txmin, tymin, txmax, tymax, filterFunc, tileRegion, tileFormat, receiver, request, selector);
+						zipOutputStream.closeEntry();
+					} catch (IOException e) {
+						throw new RuntimeException(e);
+					}				
+				});			
+				zipOutputStream.finish();
+				zipOutputStream.flush();
+			});
 		} else {
-			ResponseReceiver receiver = new ResponseReceiver(response);		
-			PointProcessor.process(pointcloud, xmin, ymin, xmax, ymax, filterFunc, requestRegion, format, receiver, request, selector);
+			long pointCount = pointcloud.estimatePointCount(xmin, ymin, xmax, ymax, ESTIMATE_SAMPLE_CELLS);
+			AdmissionControl.reserveMemory(pointCount * BYTES_PER_POINT, "about " + pointCount + " points");
+			double pxmin = xmin;
+			double pymin = ymin;
+			double pxmax = xmax;
+			double pymax = ymax;
+			Region region = requestRegion;
+			AsyncExport.run(request, response, receiver -> {
+				PointProcessor.process(pointcloud, pxmin, pymin, pxmax, pymax, filterFunc, region, format, receiver, request, selector);
+			});
 		}
 	}
 }
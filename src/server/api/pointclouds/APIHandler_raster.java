@@ -24,10 +24,11 @@ import pointcloud.Rect2d;
 import rasterdb.TimeBandProcessor;
 import rasterdb.node.ProcessorNode_gap_filling;
 import rasterdb.tile.ProcessingDouble;
+import server.AdmissionControl;
+import server.AsyncExport;
 import server.api.pointdb.JsWriter;
 import util.Range2d;
 import util.Receiver;
-import util.ResponseReceiver;
 import util.StreamReceiver;
 import util.rdat.RdatBand;
 import util.rdat.RdatList;
@@ -41,6 +42,7 @@ public class APIHandler_raster {
 	//private final Broker broker;
 
 	private final static double SMALL_VALUE = 0.000001d;
+	private final static long RASTER_BYTES_PER_PIXEL = 3 * 8; // grids of intermediate results and output
 
 	public static final String[][] RASTER_TYPES = new String[][] {
 		{"dtm", "Digital Terrain Model"},
@@ -94,28 +96,33 @@ public class APIHandler_raster {
 		final String type = type0;
 
 		if(format.equals("zip")) {			
-			String tileFormat = "tiff";
-			response.setContentType("application/zip");
-			ZipOutputStream zipOutputStream = new ZipOutputStream(response.getOutputStream());
-			zipOutputStream.setLevel(Deflater.NO_COMPRESSION);
-			Receiver receiver = new StreamReceiver(zipOutputStream);			
-			double tileSize = 1000d;
-			Rect2d req_rect = new Rect2d(req_xmin, req_ymin, req_xmax, req_ymax);
-			req_rect.tiled(tileSize, tileSize, (long xtile, long ytile, Rect2d tile_rect) -> {
-				String tileFilename = "tile_" + xtile + "_" + ytile + ".tiff";
-				try {
-					zipOutputStream.putNextEntry(new ZipEntry(tileFilename));
-					processRaster(pointcloud, type, tile_rect.xmin, tile_rect.ymin, tile_rect.xmax, tile_rect.ymax, res, fill, tileFormat, receiver);
-					zipOutputStream.closeEntry();
-				} catch (IOException e) {
-					throw new RuntimeException(e);
-				}
+			AsyncExport.run(request, response, zipReceiver -> {
+				String tileFormat = "tiff";
+				zipReceiver.setContentType("application/zip");
+				ZipOutputStream zipOutputStream = new ZipOutputStream(zipReceiver.getOutputStream());
+				zipOutputStream.setLevel(Deflater.NO_COMPRESSION);
+				Receiver receiver = new StreamReceiver(zipOutputStream);			
+				double tileSize = 1000d;
+				Rect2d req_rect = new Rect2d(req_xmin, req_ymin, req_xmax, req_ymax);
+				req_rect.tiled(tileSize, tileSize, (long xtile, long ytile, Rect2d tile_rect) -> {
+					String tileFilename = "tile_" + xtile + "_" + ytile + ".tiff";
+					try {
+						zipOutputStream.putNextEntry(new ZipEntry(tileFilename));
+						processRaster(pointcloud, type, tile_rect.xmin, tile_rect.ymin, tile_rect.xmax, tile_rect.ymax, res, fill, tileFormat, receiver);
+						zipOutputStream.closeEntry();
+					} catch (IOException e) {
+						throw new RuntimeException(e);
+					}
+				});
+				zipOutputStream.finish();
+				zipOutputStream.flush();
 			});
-			zipOutputStream.finish();
-			zipOutputStream.flush();
 		} else {
-			Receiver receiver = new ResponseReceiver(response);
-			processRaster(pointcloud, type, req_xmin, req_ymin, req_xmax, req_ymax, res, fill, format, receiver);
+			long pixelCount = (long) Math.ceil((req_xmax - req_xmin) / res) * (long) Math.ceil((req_ymax - req_ymin) / res);
+			AdmissionControl.reserveMemory(pixelCount * RASTER_BYTES_PER_PIXEL, "raster of " + pixelCount + " pixels");
+			AsyncExport.run(request, response, receiver -> {
+				processRaster(pointcloud, type, req_xmin, req_ymin, req_xmax, req_ymax, res, fill, format, receiver);
+			});
 		}
 	}
 
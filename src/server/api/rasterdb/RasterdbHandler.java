@@ -19,6 +19,8 @@ import org.eclipse.jetty.server.handler.AbstractHandler;
 import broker.Broker;
 import broker.Broker.RasterDBNotFoundExeption;
 import rasterdb.RasterDB;
+import server.AdmissionControl.AdmissionRejectedException;
+import util.CancellationToken.CancelledException;
 import util.Web;
 
 public class RasterdbHandler extends AbstractHandler {
@@ -41,6 +43,10 @@ public class RasterdbHandler extends AbstractHandler {
 		addMethod(new RasterdbMethod_set(broker));
 		addMethod(new RasterdbMethod_delete(broker));
 		addMethod(new RasterdbMethod_pixel(broker));
+		addMethod(new RasterdbMethod_pixels(broker, "csv"));
+		addMethod(new RasterdbMethod_pixels(broker, "rdat"));
+		addMethod(new RasterdbMethod_zonal_stats(broker, "csv"));
+		addMethod(new RasterdbMethod_zonal_stats(broker, "rdat"));
 		addMethod(new RasterdbMethod_packages(broker));
 		addMethod(new RasterdbMethod_wms(broker));
 	}
@@ -115,8 +121,10 @@ public class RasterdbHandler extends AbstractHandler {
 			}
 			UserIdentity userIdentity = Web.getUserIdentity(baseRequest);
 			if(rasterdb.isAllowed(userIdentity)) {
-				try {
+				try(RasterDB.SnapshotScope snapshotScope = handler.isSnapshotRead() ? rasterdb.openSnapshotScope() : null) {
 					handler.handle(rasterdb, subsubTarget, baseRequest, (Response) response, userIdentity);
+				} catch (CancelledException | AdmissionRejectedException e) {
+					throw e;
 				} catch (Exception e) {
 					log.error(e);
 					e.printStackTrace();
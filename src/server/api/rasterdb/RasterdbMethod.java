@@ -29,4 +29,12 @@ public abstract class RasterdbMethod {
 		return method;
 	}
 
+	/**
+	 * 
+	 * @return true if method reads tiles only, tiles are read from pinned snapshots if enabled for the layer
+	 */
+	public boolean isSnapshotRead() {
+		return false;
+	}
+
 }
@@ -20,6 +20,7 @@ import rasterdb.Band;
 import rasterdb.GeoReference;
 import rasterdb.RasterDB;
 import rasterunit.TileKey;
+import server.ConditionalGet;
 import server.api.rasterdb.WmsCapabilities.WmsStyle;
 import util.Range2d;
 import util.TimeUtil;
@@ -38,8 +39,15 @@ public class RasterdbMethod_meta_json extends RasterdbMethod {
 		try {
 			boolean requestTileCount = request.getParameter("tile_count") != null;
 			boolean requestTileSizeStats = request.getParameter("tile_size_stats") != null;
+			boolean requestCoverage = request.getParameter("coverage") != null;
 			boolean requestStorageSize = request.getParameter("storage_size") != null;
 			boolean requestInternalStorageInternalFreeSize = request.getParameter("storage_internal_free_size") != null;			
+			if(!requestStorageSize && !requestInternalStorageInternalFreeSize) { // storage sizes may change without writes
+				String user = userIdentity == null ? "" : userIdentity.getUserPrincipal().getName();
+				if(ConditionalGet.checkNotModified(request, response, ConditionalGet.etag("rasterdb/" + rasterdb.config.getName() + "/meta", rasterdb.getRevision(), request, user), ConditionalGet.CACHE_CONTROL_REVALIDATE)) {
+					return;
+				}
+			}
 
 			GeoReference ref = rasterdb.ref();
 
@@ -55,6 +63,14 @@ public class RasterdbMethod_meta_json extends RasterdbMethod {
 			rasterdb.informal().writeJson(json);
 			json.key("tile_pixel_len");
 			json.value(rasterdb.getTilePixelLen());
+			if(rasterdb.isTileDedup()) {
+				json.key("tile_dedup");
+				json.value(true);
+			}
+			if(rasterdb.isTileSnapshots()) {
+				json.key("tile_snapshots");
+				json.value(true);
+			}
 			json.key("ref");
 			json.object();
 			if(ref.has_pixel_size()) {
@@ -235,6 +251,20 @@ public class RasterdbMethod_meta_json extends RasterdbMethod {
 					json.endObject();		
 				}
 			}
+			if(requestCoverage && rasterdb.hasRasterUnit()) {
+				long[] stats = rasterdb.rasterUnit().calculateValidPixelStats();
+				if(stats != null) {
+					json.key("coverage");
+					json.object();
+					json.key("valid_pixel_count");
+					json.value(stats[0]);
+					json.key("tiles_with_valid_info");
+					json.value(stats[1]);
+					json.key("tiles_without_valid_info");
+					json.value(stats[2]);
+					json.endObject();
+				}
+			}
 			if(requestStorageSize && rasterdb.hasRasterUnit()) {
 				try {
 					long storage_size = rasterdb.rasterUnit().calculateStorageSize();
@@ -270,4 +300,4 @@ public class RasterdbMethod_meta_json extends RasterdbMethod {
 		}		
 	}
 
-}
\ No newline at end of file
+}
@@ -23,6 +23,11 @@ public class RasterdbMethod_pixel extends RasterdbMethod {
 		super(broker, "pixel");	
 	}
 
+	@Override
+	public boolean isSnapshotRead() {
+		return true;
+	}
+
 	@Override
 	public void handle(RasterDB rasterdb, String target, Request request, Response response, UserIdentity userIdentity) throws IOException {
 		double geoX = Web.getDouble(request, "x", Double.NaN);
@@ -46,4 +51,4 @@ public class RasterdbMethod_pixel extends RasterdbMethod {
 		out.println(data[0][0] +"  " + rasterdb.config.getName());
 	}
 
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,80 @@
+package server.api.rasterdb;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.UserIdentity;
+
+import broker.Broker;
+import broker.group.Poi;
+import broker.group.PoiGroup;
+import rasterdb.Band;
+import rasterdb.PixelExtractor;
+import rasterdb.PixelExtractor.PixelValue;
+import rasterdb.RasterDB;
+import util.ResponseReceiver;
+import util.Web;
+import util.rdat.RdatDataFrame;
+
+/**
+ * Batch extraction of pixel values at points (parameter poi_group or points) for bands (parameter band) and timestamps (parameter time).
+ * Result is a long format table with one row per point, timestamp and band.
+ */
+public class RasterdbMethod_pixels extends RasterdbMethod {
+	//private static final Logger log = LogManager.getLogger();
+
+	private final String format;
+
+	public RasterdbMethod_pixels(Broker broker, String format) {
+		super(broker, "pixels." + format);
+		this.format = format;
+	}
+
+	@Override
+	public void handle(RasterDB rasterdb, String target, Request request, Response response, UserIdentity userIdentity) throws IOException {
+		Poi[] pois = getPois(request, userIdentity);
+		String bandText = request.getParameter("band");
+		int[] band_numbers = bandText == null ? null : Arrays.stream(bandText.trim().split(" ")).mapToInt(Integer::parseInt).toArray();
+		Band[] bands = PixelExtractor.getBands(rasterdb, band_numbers);
+		int[] timestamps = PixelExtractor.getTimestamps(rasterdb, request.getParameter("time"));
+		PixelExtractor extractor = new PixelExtractor(rasterdb, pois, bands, timestamps);
+		switch(format) {
+		case "csv": {
+			response.setContentType(Web.MIME_CSV);
+			extractor.writeCsv(response.getWriter());
+			break;
+		}
+		case "rdat": {
+			ArrayList<PixelValue> values = extractor.run();
+			RdatDataFrame<PixelValue> df = PixelExtractor.createRdatDataFrame();
+			df.write(new ResponseReceiver(response), values);
+			break;
+		}
+		default:
+			throw new RuntimeException("unknown format: " + format);
+		}
+	}
+
+	private Poi[] getPois(Request request, UserIdentity userIdentity) {
+		String poiGroupName = request.getParameter("poi_group");
+		String pointsText = request.getParameter("points");
+		if(poiGroupName != null) {
+			if(pointsText != null) {
+				throw new RuntimeException("parameter points can not be used if parameter poi_group is specified");
+			}
+			PoiGroup poiGroup = broker.getPoiGroup(poiGroupName);
+			if(poiGroup == null) {
+				throw new RuntimeException("poi_group not found: " + poiGroupName);
+			}
+			poiGroup.acl.check(userIdentity);
+			return poiGroup.pois;
+		}
+		if(pointsText != null) {
+			return Poi.parsePoiList(pointsText);
+		}
+		throw new RuntimeException("missing parameter poi_group or points");
+	}
+}
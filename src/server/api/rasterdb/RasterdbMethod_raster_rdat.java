@@ -16,9 +16,14 @@ public class RasterdbMethod_raster_rdat extends RasterdbMethod {
 		super(broker, "raster.rdat");	
 	}
 
+	@Override
+	public boolean isSnapshotRead() {
+		return true;
+	}
+
 	@Override
 	public void handle(RasterDB rasterdb, String target, Request request, Response response, UserIdentity userIdentity) throws IOException {
 		RequestProcessor.process("rdat", rasterdb, request, response);
 	}
 
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -21,6 +21,11 @@ public class RasterdbMethod_raster_tiff extends RasterdbMethod {
 		super(broker, "raster.tiff");	
 	}
 
+	@Override
+	public boolean isSnapshotRead() {
+		return true;
+	}
+
 	@Override
 	public void handle(RasterDB rasterdb, String target, Request request, Response response, UserIdentity userIdentity) throws IOException {
 		
@@ -85,4 +90,4 @@ public class RasterdbMethod_raster_tiff extends RasterdbMethod {
 		}
 	}
 
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -114,6 +114,20 @@ public class RasterdbMethod_set extends RasterdbMethod {
 					rasterdb.setACL_mod(acl_mod);
 					break;
 				}
+				case "tile_dedup": {
+					EmptyACL.ADMIN.check(userIdentity);
+					boolean tile_dedup = meta.getBoolean("tile_dedup");
+					log.info("set tile_dedup " + tile_dedup);
+					rasterdb.setTileDedup(tile_dedup);
+					break;
+				}
+				case "tile_snapshots": {
+					EmptyACL.ADMIN.check(userIdentity);
+					boolean tile_snapshots = meta.getBoolean("tile_snapshots");
+					log.info("set tile_snapshots " + tile_snapshots);
+					rasterdb.setTileSnapshots(tile_snapshots);
+					break;
+				}
 				case "tags": {
 					rasterdb.checkMod(userIdentity);
 					updateCatalog = true;
@@ -204,4 +218,4 @@ public class RasterdbMethod_set extends RasterdbMethod {
 			}
 		}		
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
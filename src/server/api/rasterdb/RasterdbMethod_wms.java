@@ -25,10 +25,10 @@ import org.w3c.dom.Node;
 import broker.Broker;
 import rasterdb.BandProcessor;
 import rasterdb.GeoReference;
+import rasterdb.ProductCache;
 import rasterdb.RasterDB;
 import rasterdb.Rasterizer;
 import rasterdb.TimeBand;
-import rasterdb.dsl.DSL;
 import rasterdb.dsl.ErrorCollector;
 import server.api.rasterdb.WmsCapabilities.WmsStyle;
 import util.Range2d;
@@ -46,6 +46,11 @@ public class RasterdbMethod_wms extends RasterdbMethod {
 		super(broker, "wms");	
 	}
 
+	@Override
+	public boolean isSnapshotRead() {
+		return true;
+	}
+
 	@Override
 	public void handle(RasterDB rasterdb, String target, Request request, Response response, UserIdentity userIdentity) throws IOException {
 		request.setHandled(true);
@@ -101,7 +106,7 @@ public class RasterdbMethod_wms extends RasterdbMethod {
 			image = Rasterizer.rasterizeGrey(processor, timeBand, width, height, Double.NaN, null, null);
 		} else {
 			ErrorCollector errorCollector = new ErrorCollector();
-			DoubleFrame[] doubleFrames = DSL.process(bandText, errorCollector, processor);
+			DoubleFrame[] doubleFrames = ProductCache.process(bandText, errorCollector, processor);
 			image = Renderer.renderGreyDouble(doubleFrames[0], width, height, Double.NaN, null);
 		}
 		response.setContentType("image/png");
@@ -207,4 +212,4 @@ public class RasterdbMethod_wms extends RasterdbMethod {
 
 	}
 
-}
\ No newline at end of file
+}
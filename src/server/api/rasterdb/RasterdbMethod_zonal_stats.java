@@ -0,0 +1,75 @@
+package server.api.rasterdb;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.UserIdentity;
+
+import broker.Broker;
+import broker.group.RoiGroup;
+import rasterdb.Band;
+import rasterdb.PixelExtractor;
+import rasterdb.RasterDB;
+import rasterdb.ZonalStatistics;
+import rasterdb.ZonalStatistics.Row;
+import util.ResponseReceiver;
+import util.Web;
+
+/**
+ * Statistics of pixel values inside of ROI polygons (parameter roi_group) for bands (parameter band) and timestamps (parameter time).
+ * Result is a table with one row per ROI, timestamp and band.
+ */
+public class RasterdbMethod_zonal_stats extends RasterdbMethod {
+	//private static final Logger log = LogManager.getLogger();
+
+	private final String format;
+
+	public RasterdbMethod_zonal_stats(Broker broker, String format) {
+		super(broker, "zonal_stats." + format);
+		this.format = format;
+	}
+
+	@Override
+	public void handle(RasterDB rasterdb, String target, Request request, Response response, UserIdentity userIdentity) throws IOException {
+		String roiGroupName = request.getParameter("roi_group");
+		if(roiGroupName == null) {
+			throw new RuntimeException("missing parameter roi_group");
+		}
+		RoiGroup roiGroup = broker.getRoiGroup(roiGroupName);
+		if(roiGroup == null) {
+			throw new RuntimeException("roi_group not found: " + roiGroupName);
+		}
+		roiGroup.acl.check(userIdentity);
+		String bandText = request.getParameter("band");
+		int[] band_numbers = bandText == null ? null : Arrays.stream(bandText.trim().split(" ")).mapToInt(Integer::parseInt).toArray();
+		Band[] bands = PixelExtractor.getBands(rasterdb, band_numbers);
+		int[] timestamps = PixelExtractor.getTimestamps(rasterdb, request.getParameter("time"));
+		int scale = Web.getInt(request, "div", 1);
+		if(scale < 1) {
+			throw new RuntimeException("parameter div needs to be at least 1: " + scale);
+		}
+		String percentilesText = request.getParameter("percentiles");
+		double[] percentiles = percentilesText == null ? ZonalStatistics.DEFAULT_PERCENTILES : Arrays.stream(percentilesText.trim().split(" ")).mapToDouble(Double::parseDouble).toArray();
+		for(double percentile : percentiles) {
+			if(!(percentile >= 0 && percentile <= 100)) { // false for NaN
+				throw new RuntimeException("percentiles need to be in range 0 to 100: " + percentile);
+			}
+		}
+		ZonalStatistics zonalStatistics = new ZonalStatistics(rasterdb, roiGroup.rois, bands, timestamps, scale, percentiles);
+		List<Row> rows = zonalStatistics.run();
+		switch(format) {
+		case "csv":
+			response.setContentType(Web.MIME_CSV);
+			zonalStatistics.writeCsv(response.getWriter(), rows);
+			break;
+		case "rdat":
+			zonalStatistics.createRdatDataFrame().write(new ResponseReceiver(response), rows);
+			break;
+		default:
+			throw new RuntimeException("unknown format: " + format);
+		}
+	}
+}
@@ -17,11 +17,15 @@ import rasterdb.BandProcessing;
 import rasterdb.BandProcessor;
 import rasterdb.GeoReference;
 import rasterdb.RasterDB;
+import rasterdb.RasterDB.SnapshotScope;
 import rasterdb.TimeBand;
 import rasterdb.TimeBandProcessor;
 import rasterunit.RasterUnitStorage;
+import server.AdmissionControl;
+import server.AdmissionControl.AdmissionRejectedException;
+import server.AsyncExport;
+import server.ConditionalGet;
 import util.Range2d;
-import util.ResponseReceiver;
 import util.TimeUtil;
 import util.Web;
 
@@ -34,9 +38,15 @@ public class RequestProcessor {
 
 	enum OutputProcessingType {IDENTITY, VISUALISATION};
 
+	private static final long BAND_BYTES_PER_PIXEL = 8; // band frame and encoded output
+	private static final long PRODUCT_BYTES_PER_PIXEL = 4 * 8; // a few double frames of intermediate results
+
 	public static void process(String format, RasterDB rasterdb, Request request, Response response) throws IOException {
 		request.setHandled(true);
 		try {
+			if(ConditionalGet.checkNotModified(request, response, ConditionalGet.etag("rasterdb/" + rasterdb.config.getName() + "/raster", rasterdb.getRevision(), request, format), ConditionalGet.CACHE_CONTROL_REVALIDATE)) {
+				return;
+			}
 			//log.info("buffer size " + response.getBufferSize());
 			//response.setBufferSize(1024*1024);
 			format = Web.getString(request, "format", format);
@@ -63,7 +73,10 @@ public class RequestProcessor {
 				return;
 			}
 			
-			BandProcessor processor = new BandProcessor(rasterdb, Web.getFlag(request, "clipped") ? range2d.clip(rasterLocalRange) : range2d, timestamp, scaleDiv);
+			Range2d processingRange = Web.getFlag(request, "clipped") ? range2d.clip(rasterLocalRange) : range2d;
+			int processingTimestamp = timestamp;
+			int processingScaleDiv = scaleDiv;
+			BandProcessor processor = new BandProcessor(rasterdb, processingRange, processingTimestamp, processingScaleDiv); // for checks of parameters on request thread, storages of request scope are closed before export
 
 			log.info("processor dstRange " + processor.getDstRange());
 			log.info("processor srcRange " + processor.getSrcRange());
@@ -97,13 +110,32 @@ public class RequestProcessor {
 					processingBands = processor.getTimeBands();
 				}
 
-				RequestProcessorBands.processBands(processor, processingBands, outputProcessingType, format, new ResponseReceiver(response));
+				AdmissionControl.reserveMemory(getPixelCount(processor) * processingBands.size() * BAND_BYTES_PER_PIXEL, "raster of " + processingBands.size() + " bands");
+				Collection<TimeBand> bands = processingBands;
+				OutputProcessingType type = outputProcessingType;
+				String outputFormat = format;
+				AsyncExport.run(request, response, receiver -> {
+					try(SnapshotScope snapshotScope = rasterdb.openSnapshotScope()) {
+						BandProcessor exportProcessor = new BandProcessor(rasterdb, processingRange, processingTimestamp, processingScaleDiv); // storages of export scope
+						RequestProcessorBands.processBands(exportProcessor, bands, type, outputFormat, receiver);
+					}
+				});
 			} else { // product processing
 				if (bandText != null) {
 					throw new RuntimeException("parameter band can not be used if parameter product is specified");
 				}
-				RequestProcessorProduct.processProduct(processor, productText, outputProcessingType, format, new ResponseReceiver(response));								
+				AdmissionControl.reserveMemory(getPixelCount(processor) * PRODUCT_BYTES_PER_PIXEL, "raster product");
+				OutputProcessingType type = outputProcessingType;
+				String outputFormat = format;
+				AsyncExport.run(request, response, receiver -> {
+					try(SnapshotScope snapshotScope = rasterdb.openSnapshotScope()) {
+						BandProcessor exportProcessor = new BandProcessor(rasterdb, processingRange, processingTimestamp, processingScaleDiv); // storages of export scope
+						RequestProcessorProduct.processProduct(exportProcessor, productText, type, outputFormat, receiver);
+					}
+				});
 			}
+		} catch (AdmissionRejectedException e) {
+			throw e;
 		} catch (Exception e) {
 			log.error(e);
 			e.printStackTrace();
@@ -116,6 +148,11 @@ public class RequestProcessor {
 		}
 	}
 
+	private static long getPixelCount(BandProcessor processor) {
+		Range2d dstRange = processor.getDstRange();
+		return (long) dstRange.getWidth() * dstRange.getHeight();
+	}
+
 	private static int getTimestamp(Request request, RasterUnitStorage rasterUnitStorage) {
 		int timestamp = -1;
 		String timestampText = request.getParameter("timestamp");
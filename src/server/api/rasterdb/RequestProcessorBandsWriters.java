@@ -74,9 +74,11 @@ public class RequestProcessorBandsWriters {
 			switch (timeband.band.type) {
 			case TilePixel.TYPE_SHORT:
 			case CellType.INT16:
+			case CellType.UINT8:
 				// nothing
 				break;
 			case TilePixel.TYPE_FLOAT:
+			case CellType.FLOAT32:
 				if(dataType == RdatDataType.INT16) {
 					dataType = RdatDataType.FLOAT32;
 				}
@@ -138,9 +140,11 @@ public class RequestProcessorBandsWriters {
 			switch (timeband.band.type) {
 			case TilePixel.TYPE_SHORT:
 			case CellType.INT16:
+			case CellType.UINT8:
 				// nothing
 				break;
 			case TilePixel.TYPE_FLOAT:
+			case CellType.FLOAT32:
 				if(tiffdataType == TiffDataType.INT16) {
 					tiffdataType = TiffDataType.FLOAT32;
 				}
@@ -204,9 +208,11 @@ public class RequestProcessorBandsWriters {
 			switch (timeband.band.type) {
 			case TilePixel.TYPE_SHORT:
 			case CellType.INT16:
+			case CellType.UINT8:
 				// nothing
 				break;
 			case TilePixel.TYPE_FLOAT:
+			case CellType.FLOAT32:
 				if(tiffdataType == TiffDataType.INT16) {
 					tiffdataType = TiffDataType.FLOAT32;
 				}
@@ -6,7 +6,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import rasterdb.BandProcessor;
-import rasterdb.dsl.DSL;
+import rasterdb.ProductCache;
 import rasterdb.dsl.ErrorCollector;
 import server.api.rasterdb.RequestProcessor.OutputProcessingType;
 import util.Range2d;
@@ -24,7 +24,7 @@ public class RequestProcessorProduct {
 		int reqHeight = reqRange2d.getHeight();
 		ErrorCollector errorCollector = new ErrorCollector();
 		log.info("process: "+productText);
-		DoubleFrame[] doubleFrames = DSL.process(productText, errorCollector, processor);
+		DoubleFrame[] doubleFrames = ProductCache.process(productText, errorCollector, processor);
 		log.info("BANDS "+doubleFrames.length);
 		
 		switch(outputProcessingType) {
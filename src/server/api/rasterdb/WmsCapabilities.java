@@ -102,6 +102,9 @@ public class WmsCapabilities {
 		addElement(eGetCapabilities, "Format", "text/xml");
 		Element eGetMap = addGetResource(eRequest, "GetMap");
 		addElement(eGetMap, "Format", "image/png");
+		Element eGetFeatureInfo = addGetResource(eRequest, "GetFeatureInfo");
+		addElement(eGetFeatureInfo, "Format", "application/json");
+		addElement(eGetFeatureInfo, "Format", "text/plain");
 
 	}
 
@@ -137,10 +140,19 @@ public class WmsCapabilities {
 		String description = rasterdb.informal().description;
 		int bandCount = rasterdb.bandMapReadonly.size();
 		Element eLayer = addElement(root, "Layer");
+		eLayer.setAttribute("queryable", "1");
 		addElement(eLayer, "Name", name);
 		addElement(eLayer, "Title", name + " - " + description);
 		addElement(eLayer, "Abstract", "raster with " + bandCount + " bands");
 		addElement(eLayer, "CRS", code);
+		GeoReference layerRef = rasterdb.ref();
+		if(layerRef.has_code() || layerRef.has_proj4()) {
+			for(String reprojectionCode : WmsReprojection.CRS_CODES) {
+				if(!reprojectionCode.equalsIgnoreCase(code)) {
+					addElement(eLayer, "CRS", reprojectionCode);
+				}
+			}
+		}
 		Element eBoundingBox = addElement(eLayer, "BoundingBox");
 		eBoundingBox.setAttribute("CRS", code);
 		Range2d localRange = rasterdb.getLocalRange(false);
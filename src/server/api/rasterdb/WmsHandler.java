@@ -1,6 +1,7 @@
 package server.api.rasterdb;
 
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.Arrays;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -12,22 +13,32 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.json.JSONWriter;
 
 import broker.Broker;
+import rasterdb.Band;
 import rasterdb.BandProcessor;
 import rasterdb.GeoReference;
+import rasterdb.PixelExtractor;
+import rasterdb.ProductCache;
 import rasterdb.RasterDB;
 import rasterdb.Rasterizer;
 import rasterdb.TimeBand;
 import rasterdb.dsl.DSL;
 import rasterdb.dsl.ErrorCollector;
+import server.AdmissionControl;
+import server.AdmissionControl.AdmissionRejectedException;
+import server.ConditionalGet;
 import server.api.main.APIHandler_session;
+import util.CancellationToken;
+import util.CancellationToken.CancelledException;
 import util.Range2d;
+import util.TimeUtil;
 import util.Timer;
 import util.Web;
 import util.frame.DoubleFrame;
+import util.image.ImageBufferARGB;
 import util.image.MonoColor;
-import util.image.PureImage;
 import util.image.Renderer;
 
 public class WmsHandler extends AbstractHandler {
@@ -74,10 +85,15 @@ public class WmsHandler extends AbstractHandler {
 			case "GetCapabilities":
 				handle_GetCapabilities(target, request, internal, response);
 				break;
+			case "GetFeatureInfo":
+				handle_GetFeatureInfo(target, request, internal, response);
+				break;
 			default:
 				throw new RuntimeException("unknown request "+reqParam);
 			}
 
+		} catch(AdmissionRejectedException e) {
+			throw e;
 		} catch(Exception e) {
 			e.printStackTrace();
 			log.error(e);
@@ -92,6 +108,179 @@ public class WmsHandler extends AbstractHandler {
 		wmsCapabilities.capabilities(response.getOutputStream(), Web.getUserIdentity(request));		
 	}
 
+	/**
+	 * Values of all bands at the clicked pixel, optionally with values of a DSL product (parameter product or product of STYLES).
+	 * Without TIME parameter the last timestamp is queried, with TIME parameter all timestamps in the time range.
+	 * Only the pixel is decoded from base level tiles.
+	 * @param target
+	 * @param request
+	 * @param internal
+	 * @param response
+	 * @throws IOException
+	 */
+	private void handle_GetFeatureInfo(String target, Request request, HttpServletRequest internal, HttpServletResponse response) throws IOException {
+		String layer = request.getParameter("QUERY_LAYERS");
+		if(layer == null) {
+			layer = request.getParameter("LAYERS");
+		}
+		RasterDB rasterdb = broker.getRasterdb(layer);
+		if (!rasterdb.isAllowed(Web.getUserIdentity(request))) {
+			response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+			response.setContentType("text/plain;charset=utf-8");
+			response.getWriter().println("access not allowed for user");
+			log.error("access not allowed for user");
+			return;
+		}
+		String[] bbox = request.getParameter("BBOX").split(",");
+		int width = Integer.parseInt(request.getParameter("WIDTH"));
+		int height = Integer.parseInt(request.getParameter("HEIGHT"));
+		String iText = request.getParameter("I");
+		if(iText == null) {
+			iText = request.getParameter("X"); // WMS 1.1.1
+		}
+		String jText = request.getParameter("J");
+		if(jText == null) {
+			jText = request.getParameter("Y"); // WMS 1.1.1
+		}
+		int i = Integer.parseInt(iText);
+		int j = Integer.parseInt(jText);
+		String crs = request.getParameter("CRS");
+		if(crs == null) {
+			crs = request.getParameter("SRS"); // WMS 1.1.1
+		}
+		GeoReference ref = rasterdb.ref();
+		double[] point = WmsReprojection.toLayerPoint(ref, crs, request.getParameter("VERSION"), bbox, width, height, i, j);
+		if(point == null) {
+			String modus = request.getParameter("modus");
+			boolean transposed = modus != null && modus.equals("openlayers") ? ref.wms_transposed : false;
+			double xmin = Double.parseDouble(bbox[transposed ? 1 : 0]);
+			double ymin = Double.parseDouble(bbox[transposed ? 0 : 1]);
+			double xmax = Double.parseDouble(bbox[transposed ? 3 : 2]);
+			double ymax = Double.parseDouble(bbox[transposed ? 2 : 3]);
+			point = new double[] {xmin + (i + 0.5) * (xmax - xmin) / width, ymax - (j + 0.5) * (ymax - ymin) / height};
+		}
+		int px = ref.geoXToPixel(point[0]);
+		int py = ref.geoYToPixel(point[1]);
+		Range2d pixelRange = new Range2d(px, py, px, py);
+
+		String product = request.getParameter("product");
+		if(product == null) {
+			String style = request.getParameter("STYLES");
+			if(style != null) {
+				String style_product = style.trim().split("@")[0];
+				if(!style_product.isEmpty() && !style_product.equals("color") && !style_product.startsWith("band")) {
+					product = style_product;
+				}
+			}
+		}
+
+		try(RasterDB.SnapshotScope snapshotScope = rasterdb.openSnapshotScope()) {
+			String timeText = request.getParameter("TIME");
+			int[] timestamps;
+			if(timeText == null) {
+				timestamps = rasterdb.rasterUnit().timeKeysReadonly().isEmpty() ? new int[0] : new int[] {rasterdb.rasterUnit().timeKeysReadonly().last()};
+			} else {
+				timestamps = PixelExtractor.getTimestamps(rasterdb, timeText);
+			}
+			Band[] bands = PixelExtractor.getBands(rasterdb, null);
+			double[][] bandValues = new double[timestamps.length][bands.length];
+			double[][] productValues = new double[timestamps.length][];
+			for (int ti = 0; ti < timestamps.length; ti++) {
+				BandProcessor processor = new BandProcessor(rasterdb, pixelRange, timestamps[ti]); // single pixel processor
+				for (int bi = 0; bi < bands.length; bi++) {
+					bandValues[ti][bi] = processor.getDoubleFrame(bands[bi]).data[0][0];
+				}
+				if(product != null) {
+					DoubleFrame[] frames = DSL.process(product, new ErrorCollector(), processor);
+					productValues[ti] = new double[frames.length];
+					for (int k = 0; k < frames.length; k++) {
+						productValues[ti][k] = frames[k].data[0][0];
+					}
+				}
+			}
+
+			String infoFormat = request.getParameter("INFO_FORMAT");
+			if(infoFormat != null && infoFormat.startsWith("text/plain")) {
+				response.setContentType("text/plain;charset=utf-8");
+				PrintWriter out = response.getWriter();
+				out.println(rasterdb.config.getName() + "  x " + point[0] + "  y " + point[1]);
+				for (int ti = 0; ti < timestamps.length; ti++) {
+					StringBuilder line = new StringBuilder(TimeUtil.toText(timestamps[ti]));
+					for (int bi = 0; bi < bands.length; bi++) {
+						line.append("  band" + bands[bi].index + " " + toText(bandValues[ti][bi]));
+					}
+					if(productValues[ti] != null) {
+						for(double v : productValues[ti]) {
+							line.append("  product " + toText(v));
+						}
+					}
+					out.println(line);
+				}
+			} else {
+				response.setContentType("application/json");
+				JSONWriter json = new JSONWriter(response.getWriter());
+				json.object();
+				json.key("layer");
+				json.value(rasterdb.config.getName());
+				json.key("x");
+				json.value(point[0]);
+				json.key("y");
+				json.value(point[1]);
+				json.key("pixel_x");
+				json.value(px);
+				json.key("pixel_y");
+				json.value(py);
+				json.key("timestamps");
+				json.array();
+				for (int ti = 0; ti < timestamps.length; ti++) {
+					json.object();
+					json.key("timestamp");
+					json.value(timestamps[ti]);
+					json.key("datetime");
+					json.value(TimeUtil.toText(timestamps[ti]));
+					json.key("bands");
+					json.array();
+					for (int bi = 0; bi < bands.length; bi++) {
+						json.object();
+						json.key("index");
+						json.value(bands[bi].index);
+						if(bands[bi].has_title()) {
+							json.key("title");
+							json.value(bands[bi].title);
+						}
+						json.key("value");
+						writeValue(json, bandValues[ti][bi]);
+						json.endObject();
+					}
+					json.endArray();
+					if(productValues[ti] != null) {
+						json.key("product");
+						json.array();
+						for(double v : productValues[ti]) {
+							writeValue(json, v);
+						}
+						json.endArray();
+					}
+					json.endObject();
+				}
+				json.endArray();
+				json.endObject();
+			}
+		}
+	}
+
+	private static void writeValue(JSONWriter json, double v) {
+		if(Double.isFinite(v)) {
+			json.value(v);
+		} else {
+			json.value(null); // NA
+		}
+	}
+
+	private static String toText(double v) {
+		return Double.isFinite(v) ? Double.toString(v) : "NA";
+	}
+
 	public static class InterruptorInterruptedException extends RuntimeException {
 		private static final long serialVersionUID = -8405416244955848549L;
 	}
@@ -100,9 +289,22 @@ public class WmsHandler extends AbstractHandler {
 
 		public volatile boolean interrupted;
 		public final long id;
+		private final CancellationToken token; // nullable
 
+		/**
+		 * Interrupts also the cancellation token of current request.
+		 * @param id
+		 */
 		public Interruptor(long id) {
 			this.id = id;
+			this.token = CancellationToken.current();
+		}
+
+		public void interrupt() {
+			interrupted = true;
+			if(token != null) {
+				token.cancel("superseded by newer request");
+			}
 		}
 
 		public static boolean isInterrupted(Interruptor interruptor) {
@@ -126,6 +328,7 @@ public class WmsHandler extends AbstractHandler {
 	private void handle_GetMap(String target, Request request, HttpServletRequest internal, HttpServletResponse response) throws IOException {
 		Interruptor currentInterruptor = null;
 		Long session = null;
+		RasterDB.SnapshotScope snapshotScope = null;
 		try {
 			Timer.start("full request");
 			String base64Session = request.getParameter("session");
@@ -146,7 +349,7 @@ public class WmsHandler extends AbstractHandler {
 							} else {
 								if(prevInterruptor.id < currentInterruptor.id) {
 									if(taskMap.replace(session, prevInterruptor, currentInterruptor)) {
-										prevInterruptor.interrupted = true;
+										prevInterruptor.interrupt();
 										break;  // new value set and prev interrupted
 									}
 								} else {
@@ -179,6 +382,10 @@ public class WmsHandler extends AbstractHandler {
 				log.error("access not allowed for user");
 				return;
 			}
+			snapshotScope = rasterdb.openSnapshotScope(); // revision and tiles of the same snapshot
+			if(ConditionalGet.checkNotModified(request, response, ConditionalGet.etag("rasterdb/" + layer + "/wms", rasterdb.getRevision(), request), ConditionalGet.CACHE_CONTROL_TILES)) {
+				return;
+			}
 			int timestamp = 0;
 			String timeText = request.getParameter("TIME");
 			if(timeText == null) {
@@ -200,7 +407,10 @@ public class WmsHandler extends AbstractHandler {
 			GeoReference ref = rasterdb.ref();
 			String modus = request.getParameter("modus");
 			boolean transposed = modus != null && modus.equals("openlayers") ? ref.wms_transposed : false;
-			Range2d range2d = ref.parseBboxToRange2d(bbox, transposed);
+			String crs = request.getParameter("CRS");
+			if(crs == null) {
+				crs = request.getParameter("SRS"); // WMS 1.1.1
+			}
 			//Range2d range2d = ref.parseBboxToRange2d(bbox, ref.wms_transposed);
 			//log.info(range2d);
 			//log.info("geo xmin "+ref.pixelXToGeo(range2d.xmin)+"  ymin "+ref.pixelYToGeo(range2d.ymin)+"  xmax "+ref.pixelXToGeo(range2d.xmax)+"  ymax "+ref.pixelYToGeo(range2d.ymax));
@@ -209,7 +419,17 @@ public class WmsHandler extends AbstractHandler {
 			String heightText = request.getParameter("HEIGHT");
 			int height = Integer.parseInt(heightText);
 
-			BandProcessor processor = new BandProcessor(rasterdb, range2d, timestamp, width, height);
+			WmsReprojection reprojection = WmsReprojection.of(rasterdb, crs, request.getParameter("VERSION"), bbox, width, height);
+			Range2d range2d = reprojection == null ? ref.parseBboxToRange2d(bbox, transposed) : reprojection.srcRange; // null if tile outside of layer
+			int renderWidth = reprojection == null ? width : reprojection.renderWidth;
+			int renderHeight = reprojection == null ? height : reprojection.renderHeight;
+
+			BandProcessor processor = null;
+			if(range2d != null) {
+				processor = new BandProcessor(rasterdb, range2d, timestamp, renderWidth, renderHeight);
+				Range2d dstRange = processor.getDstRange();
+				AdmissionControl.reserveMemory((long) dstRange.getWidth() * dstRange.getHeight() * 3 * 8 + (long) renderWidth * renderHeight * 4 + (reprojection == null ? 0 : (long) width * height * 4), "WMS map");
+			}
 
 			String style_product = "color";
 			double gamma = Double.NaN;
@@ -271,10 +491,12 @@ public class WmsHandler extends AbstractHandler {
 				log.info("****************************************** interrupted (pre load)*******************************************");
 				return;
 			}
-			PureImage image = null;
-			if(style_product.equals("color") || style_product.isEmpty()) {
+			ImageBufferARGB image = null;
+			if(processor == null) {
+				// tile outside of layer, transparent
+			} else if(style_product.equals("color") || style_product.isEmpty()) {
 				Timer.start("render");
-				image = Rasterizer.rasterizeRGB(processor, width, height, gamma, range, syncBands, currentInterruptor);
+				image = Rasterizer.rasterizeRGB(processor, renderWidth, renderHeight, gamma, range, syncBands, currentInterruptor);
 				//log.info(Timer.stop("render"));
 			} else if(style_product.startsWith("band")) {
 				String s = style_product.substring(4);
@@ -282,14 +504,14 @@ public class WmsHandler extends AbstractHandler {
 				TimeBand band = processor.getTimeBand(bandIndex);
 				Timer.start("render");
 				if(palette == null) {
-					image = Rasterizer.rasterizeGrey(processor, band, width, height, gamma, range, currentInterruptor);
+					image = Rasterizer.rasterizeGrey(processor, band, renderWidth, renderHeight, gamma, range, currentInterruptor);
 				} else {
-					image = Rasterizer.rasterizePalette(processor, band, width, height, gamma, range, palette, currentInterruptor);		
+					image = Rasterizer.rasterizePalette(processor, band, renderWidth, renderHeight, gamma, range, palette, currentInterruptor);		
 				}
 				//log.info(Timer.stop("render"));
 			} else {
 				ErrorCollector errorCollector = new ErrorCollector();
-				DoubleFrame[] doubleFrames = DSL.process(style_product, errorCollector, processor);
+				DoubleFrame[] doubleFrames = ProductCache.process(style_product, errorCollector, processor);
 				if(doubleFrames.length < 1) {
 					throw new RuntimeException("no result");
 				}
@@ -300,17 +522,20 @@ public class WmsHandler extends AbstractHandler {
 					// nothing
 				} else if(doubleFrames.length == 1) {
 					if(palette == null) {
-						image = Renderer.renderGreyDouble(doubleFrames[0], width, height, gamma, range);
+						image = Renderer.renderGreyDouble(doubleFrames[0], renderWidth, renderHeight, gamma, range);
 					} else {
-						image = Renderer.renderPaletteDouble(doubleFrames[0], width, height, gamma, range, palette);					
+						image = Renderer.renderPaletteDouble(doubleFrames[0], renderWidth, renderHeight, gamma, range, palette);					
 					}
 				} else if(doubleFrames.length == 2) {
-					image = Renderer.renderRbDouble(doubleFrames[0], doubleFrames[1], width, height, gamma, range, syncBands);
+					image = Renderer.renderRbDouble(doubleFrames[0], doubleFrames[1], renderWidth, renderHeight, gamma, range, syncBands);
 				} else {
-					image = Renderer.renderRgbDouble(doubleFrames[0], doubleFrames[1], doubleFrames[2], width, height, gamma, range, syncBands);
+					image = Renderer.renderRgbDouble(doubleFrames[0], doubleFrames[1], doubleFrames[2], renderWidth, renderHeight, gamma, range, syncBands);
 				}				
 				//log.info(Timer.stop("render"));
 			}
+			if(reprojection != null) {
+				image = reprojection.warp(image);
+			}
 			if(Interruptor.isInterrupted(currentInterruptor)) {
 				log.info("****************************************** interrupted (pre sent)*******************************************");
 				return;
@@ -382,7 +607,13 @@ public class WmsHandler extends AbstractHandler {
 		} catch(InterruptorInterruptedException e) {
 			log.info("****************************************** interrupted (checked)*******************************************");
 			return;
+		} catch(CancelledException e) {
+			log.info("****************************************** interrupted (" + e.getMessage() + ") ***************************");
+			return;
 		} finally {
+			if(snapshotScope != null) {
+				snapshotScope.close();
+			}
 			if(session != null && currentInterruptor != null) {
 				if(taskMap.remove(session, currentInterruptor)) {
 					//log.info("task removed");
@@ -0,0 +1,175 @@
+package server.api.rasterdb;
+
+import org.locationtech.proj4j.CoordinateReferenceSystem;
+
+import rasterdb.GeoReference;
+import rasterdb.RasterDB;
+import util.Range2d;
+import util.image.ImageBufferARGB;
+import util.raster.CrsTransformer;
+import util.raster.CrsTransformer.Grid;
+
+/**
+ * Reprojection of WMS GetMap tiles from layer CRS to web map CRS.
+ * The layer is rendered for the pixel range that covers the tile and resampled to the tile with a transformation grid of {@link CrsTransformer}.
+ */
+public class WmsReprojection {
+
+	public static final String[] CRS_CODES = new String[] {"EPSG:3857", "EPSG:4326"};
+
+	private static final double OVERSAMPLING = 1.25; // render a bit finer than the tile, resampling is nearest neighbour
+	private static final int MAX_RENDER_FACTOR = 4; // render size limit relative to tile size
+
+	private final GeoReference ref;
+	private final Grid grid;
+	private final int width;
+	private final int height;
+
+	/**
+	 * Pixel range of layer to render, null if tile does not overlap layer.
+	 */
+	public final Range2d srcRange;
+	public final int renderWidth;
+	public final int renderHeight;
+
+	private WmsReprojection(GeoReference ref, Grid grid, int width, int height, Range2d srcRange, int renderWidth, int renderHeight) {
+		this.ref = ref;
+		this.grid = grid;
+		this.width = width;
+		this.height = height;
+		this.srcRange = srcRange;
+		this.renderWidth = renderWidth;
+		this.renderHeight = renderHeight;
+	}
+
+	/**
+	 *
+	 * @param rasterdb
+	 * @param crs CRS parameter of request, nullable
+	 * @param version VERSION parameter of request, nullable
+	 * @param bbox
+	 * @param width
+	 * @param height
+	 * @return reprojection or null if tile is in layer CRS or layer has no CRS
+	 */
+	public static WmsReprojection of(RasterDB rasterdb, String crs, String version, String[] bbox, int width, int height) {
+		GeoReference ref = rasterdb.ref();
+		if(!isReprojected(ref, crs)) {
+			return null;
+		}
+		String tileCode = toTileCode(crs);
+		double[] tileBbox = toTileBbox(crs, version, bbox);
+		CoordinateReferenceSystem layerCrs = CrsTransformer.getCRS(ref.code, ref.proj4);
+		CoordinateReferenceSystem tileCrs = CrsTransformer.getCRS(tileCode, null);
+		Grid grid = CrsTransformer.getGrid(layerCrs, tileCrs, tileBbox[0], tileBbox[1], tileBbox[2], tileBbox[3], width, height);
+
+		double[] bounds = grid.getBounds();
+		Range2d localRange = rasterdb.getLocalRange(false);
+		if(bounds == null || localRange == null) {
+			return new WmsReprojection(ref, grid, width, height, null, 0, 0);
+		}
+		double px1 = (bounds[0] - ref.offset_x) / ref.pixel_size_x;
+		double px2 = (bounds[2] - ref.offset_x) / ref.pixel_size_x;
+		double py1 = (bounds[1] - ref.offset_y) / ref.pixel_size_y;
+		double py2 = (bounds[3] - ref.offset_y) / ref.pixel_size_y;
+		double pxmin = Math.max(Math.floor(Math.min(px1, px2)) - 1, localRange.xmin);
+		double pymin = Math.max(Math.floor(Math.min(py1, py2)) - 1, localRange.ymin);
+		double pxmax = Math.min(Math.floor(Math.max(px1, px2)) + 1, localRange.xmax);
+		double pymax = Math.min(Math.floor(Math.max(py1, py2)) + 1, localRange.ymax);
+		if(pxmax < pxmin || pymax < pymin) {
+			return new WmsReprojection(ref, grid, width, height, null, 0, 0);
+		}
+		Range2d srcRange = new Range2d((int) pxmin, (int) pymin, (int) pxmax, (int) pymax);
+
+		double layerPixelsPerTilePixel = grid.getPixelDistance() / Math.min(Math.abs(ref.pixel_size_x), Math.abs(ref.pixel_size_y));
+		int renderWidth = width;
+		int renderHeight = height;
+		if(Double.isFinite(layerPixelsPerTilePixel) && layerPixelsPerTilePixel > 0) {
+			renderWidth = (int) Math.ceil(srcRange.getWidth() * OVERSAMPLING / layerPixelsPerTilePixel);
+			renderHeight = (int) Math.ceil(srcRange.getHeight() * OVERSAMPLING / layerPixelsPerTilePixel);
+		}
+		int maxRenderSize = MAX_RENDER_FACTOR * Math.max(width, height);
+		renderWidth = Math.max(1, Math.min(renderWidth, Math.min(srcRange.getWidth(), maxRenderSize)));
+		renderHeight = Math.max(1, Math.min(renderHeight, Math.min(srcRange.getHeight(), maxRenderSize)));
+		return new WmsReprojection(ref, grid, width, height, srcRange, renderWidth, renderHeight);
+	}
+
+	/**
+	 * Coordinates in layer CRS of the center of a tile pixel.
+	 * @param ref
+	 * @param crs CRS parameter of request, nullable
+	 * @param version VERSION parameter of request, nullable
+	 * @param bbox
+	 * @param width
+	 * @param height
+	 * @param i pixel column, from left
+	 * @param j pixel row, from top
+	 * @return {x, y} or null if tile is in layer CRS or layer has no CRS
+	 */
+	public static double[] toLayerPoint(GeoReference ref, String crs, String version, String[] bbox, int width, int height, int i, int j) {
+		if(!isReprojected(ref, crs)) {
+			return null;
+		}
+		String tileCode = toTileCode(crs);
+		double[] tileBbox = toTileBbox(crs, version, bbox);
+		double x = tileBbox[0] + (i + 0.5) * (tileBbox[2] - tileBbox[0]) / width;
+		double y = tileBbox[3] - (j + 0.5) * (tileBbox[3] - tileBbox[1]) / height;
+		return CrsTransformer.transform(CrsTransformer.getCRS(tileCode, null), CrsTransformer.getCRS(ref.code, ref.proj4), x, y);
+	}
+
+	private static boolean isReprojected(GeoReference ref, String crs) {
+		return crs != null && (ref.has_code() || ref.has_proj4()) && !crs.equalsIgnoreCase(ref.code);
+	}
+
+	private static String toTileCode(String crs) {
+		switch(crs.toUpperCase()) {
+		case "EPSG:3857":
+			return "EPSG:3857";
+		case "EPSG:4326":
+		case "CRS:84":
+			return "EPSG:4326";
+		default:
+			throw new RuntimeException("unsupported CRS " + crs + ", supported are layer CRS, EPSG:3857, EPSG:4326 and CRS:84");
+		}
+	}
+
+	/**
+	 * 
+	 * @param crs
+	 * @param version
+	 * @param bbox
+	 * @return {xmin, ymin, xmax, ymax} in axis order x, y (longitude, latitude)
+	 */
+	private static double[] toTileBbox(String crs, String version, String[] bbox) {
+		double xmin = Double.parseDouble(bbox[0]);
+		double ymin = Double.parseDouble(bbox[1]);
+		double xmax = Double.parseDouble(bbox[2]);
+		double ymax = Double.parseDouble(bbox[3]);
+		if(crs.equalsIgnoreCase("EPSG:4326") && (version == null || version.equals("1.3.0"))) { // WMS 1.3.0 axis order latitude, longitude
+			return new double[] {ymin, xmin, ymax, xmax};
+		}
+		return new double[] {xmin, ymin, xmax, ymax};
+	}
+
+	/**
+	 * Resamples the rendered image of srcRange to the tile.
+	 * @param rendered image of srcRange, nullable
+	 * @return tile image
+	 */
+	public ImageBufferARGB warp(ImageBufferARGB rendered) {
+		ImageBufferARGB tile = new ImageBufferARGB(width, height);
+		if(srcRange == null || rendered == null) {
+			return tile; // transparent
+		}
+		// image column of layer x: ((x - offset_x) / pixel_size_x - srcRange.xmin) * renderWidth / srcWidth
+		// image row of layer y: (srcRange.ymax + 1 - (y - offset_y) / pixel_size_y) * renderHeight / srcHeight, first row is north
+		double fx = (double) rendered.width / srcRange.getWidth();
+		double fy = (double) rendered.height / srcRange.getHeight();
+		double scaleX = fx / ref.pixel_size_x;
+		double offsetX = (-ref.offset_x / ref.pixel_size_x - srcRange.xmin) * fx;
+		double scaleY = -fy / ref.pixel_size_y;
+		double offsetY = (srcRange.ymax + 1 + ref.offset_y / ref.pixel_size_y) * fy;
+		grid.warp(rendered.data, rendered.width, rendered.height, scaleX, offsetX, scaleY, offsetY, tile.data);
+		return tile;
+	}
+}
@@ -0,0 +1,249 @@
+package util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Receiver of an async response: the producer writes on its own thread into a bounded queue of chunks, the queue is written to the client by a {@link WriteListener} without blocking container threads.
+ * The producer waits if the queue is full, so output is produced at the pace of the client.
+ * Headers need to be set before the first chunk is written.
+ */
+public class AsyncResponseReceiver extends Receiver {
+	private static final Logger log = LogManager.getLogger();
+
+	private static final int CHUNK_SIZE = 64 * 1024;
+	private static final long MAX_QUEUED_BYTES = 4 * 1024 * 1024;
+	private static final long WAIT_SLICE_MILLIS = 100; // check cancellation while waiting for client
+
+	private final HttpServletResponse response;
+	private final AsyncContext asyncContext;
+	private final ServletOutputStream servletOut;
+	private final ChunkOutputStream out = new ChunkOutputStream();
+	private PrintWriter writer = null;
+
+	private final ArrayDeque<byte[]> chunks = new ArrayDeque<byte[]>(); // synchronized
+	private long queuedBytes = 0; // synchronized
+	private boolean closed = false; // synchronized, no more chunks from producer
+	private boolean idle = false; // synchronized, listener waits for chunks
+	private boolean completed = false; // synchronized
+	private Throwable error = null; // synchronized, client write failed
+
+	/**
+	 * Starts writing, async mode of the request needs to be started.
+	 * @param response
+	 * @param asyncContext
+	 * @throws IOException
+	 */
+	public AsyncResponseReceiver(HttpServletResponse response, AsyncContext asyncContext) throws IOException {
+		this.response = response;
+		this.asyncContext = asyncContext;
+		this.servletOut = response.getOutputStream();
+		servletOut.setWriteListener(new WriteListener() {
+			@Override
+			public void onWritePossible() throws IOException {
+				drain();
+			}
+
+			@Override
+			public void onError(Throwable t) {
+				onClientError(t);
+			}
+		});
+	}
+
+	private class ChunkOutputStream extends OutputStream {
+		private byte[] buf = new byte[CHUNK_SIZE];
+		private int pos = 0;
+
+		@Override
+		public void write(int b) throws IOException {
+			if(pos == buf.length) {
+				flushChunk();
+			}
+			buf[pos++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while(len > 0) {
+				if(pos == buf.length) {
+					flushChunk();
+				}
+				int n = Math.min(len, buf.length - pos);
+				System.arraycopy(b, off, buf, pos, n);
+				pos += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if(pos > 0) {
+				flushChunk();
+			}
+		}
+
+		private void flushChunk() throws IOException {
+			byte[] chunk = pos == buf.length ? buf : Arrays.copyOf(buf, pos);
+			buf = new byte[CHUNK_SIZE]; // written chunks may be referenced by the container until written
+			pos = 0;
+			enqueue(chunk);
+		}
+
+		private void discard() {
+			pos = 0;
+		}
+
+		@Override
+		public void close() throws IOException {
+			// closed by finish()
+		}
+	}
+
+	private void enqueue(byte[] chunk) throws IOException {
+		synchronized (this) {
+			while(queuedBytes >= MAX_QUEUED_BYTES && error == null) {
+				CancellationToken.checkCurrent();
+				try {
+					wait(WAIT_SLICE_MILLIS);
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+			}
+			if(error != null) {
+				throw new IOException("client write failed", error);
+			}
+			chunks.addLast(chunk);
+			queuedBytes += chunk.length;
+			if(idle) {
+				idle = false;
+				drain();
+			}
+		}
+	}
+
+	/**
+	 * Writes queued chunks while the client can receive without blocking.
+	 * Called by the container if writing is possible again and by the producer if the listener is idle.
+	 */
+	private synchronized void drain() throws IOException {
+		while(servletOut.isReady()) {
+			byte[] chunk = chunks.pollFirst();
+			if(chunk == null) {
+				if(closed) {
+					complete();
+				} else {
+					idle = true;
+				}
+				return;
+			}
+			queuedBytes -= chunk.length;
+			notifyAll();
+			servletOut.write(chunk);
+		}
+	}
+
+	private synchronized void onClientError(Throwable t) {
+		log.warn("async write failed " + t);
+		error = t;
+		chunks.clear();
+		queuedBytes = 0;
+		notifyAll();
+		complete();
+	}
+
+	private void complete() {
+		if(!completed) {
+			completed = true;
+			asyncContext.complete();
+		}
+	}
+
+	/**
+	 * Writes remaining output and completes the response.
+	 * @throws IOException
+	 */
+	public void finish() throws IOException {
+		if(writer != null) {
+			writer.flush();
+		}
+		out.flush();
+		synchronized (this) {
+			closed = true;
+			if(idle) {
+				idle = false;
+				drain();
+			}
+		}
+	}
+
+	/**
+	 * Completes the response after a failed producer, sends the error if the response is not committed yet.
+	 * @param e
+	 */
+	public void fail(Throwable e) {
+		try {
+			synchronized (this) {
+				if(!response.isCommitted() && chunks.isEmpty() && error == null) {
+					writer = null;
+					out.discard();
+					response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+					response.setContentType("text/plain;charset=utf-8");
+					response.setContentLengthLong(-1);
+					byte[] chunk = (e.toString() + "\n").getBytes(StandardCharsets.UTF_8);
+					chunks.addLast(chunk);
+					queuedBytes += chunk.length;
+				}
+			}
+			finish();
+		} catch(Exception e1) {
+			log.warn(e1);
+			synchronized (this) {
+				complete();
+			}
+		}
+	}
+
+	@Override
+	public OutputStream getOutputStream() throws IOException {
+		return out;
+	}
+
+	@Override
+	public void setStatus(int sc) {
+		response.setStatus(sc);
+	}
+
+	@Override
+	public void setContentType(String contentType) {
+		response.setContentType(contentType);
+	}
+
+	@Override
+	public void setContentLength(long len) {
+		response.setContentLengthLong(len);
+	}
+
+	@Override
+	public PrintWriter getWriter() throws IOException {
+		if(writer == null) {
+			String encoding = response.getCharacterEncoding();
+			writer = new PrintWriter(new OutputStreamWriter(out, encoding == null ? "UTF-8" : encoding));
+		}
+		return writer;
+	}
+}
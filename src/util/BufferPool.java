@@ -0,0 +1,360 @@
+package util;
+
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.json.JSONWriter;
+
+/**
+ * Thread-local pools of work buffers for tile encoding, decoding and storage IO.
+ * Buffers are grouped in power of two size classes, a borrowed buffer may be larger than requested.
+ * Retained memory is bounded per thread and in total, buffers above the bounds are left to GC.
+ * Pools of terminated threads are released and removed from the total when new pools are created or the total bound is reached.
+ * A buffer that is not returned is no error, it is just not reused.
+ */
+public final class BufferPool {
+
+	private static final int MIN_CLASS_BITS = 10; // 1 KiB bytes or 1 Ki ints
+	private static final int MAX_CLASS_BITS = 24; // 16 MiB bytes or 16 Mi ints
+	private static final int CLASS_COUNT = MAX_CLASS_BITS - MIN_CLASS_BITS + 1;
+	private static final int MAX_BUFFERS_PER_CLASS = 4;
+	private static final long MAX_RETAINED_BYTES_PER_THREAD = 32L * 1024 * 1024;
+	private static final long MAX_RETAINED_BYTES_TOTAL = 512L * 1024 * 1024;
+
+	private static final AtomicLong retainedBytesTotal = new AtomicLong(); // of registered pools
+	private static final ConcurrentLinkedQueue<ThreadPool> pools = new ConcurrentLinkedQueue<ThreadPool>(); // registered pools, pools of terminated threads are removed by purge()
+
+	private static final LongAdder borrowCount = new LongAdder();
+	private static final LongAdder reuseCount = new LongAdder();
+	private static final LongAdder allocateCount = new LongAdder();
+	private static final LongAdder allocateBytes = new LongAdder();
+	private static final LongAdder returnCount = new LongAdder();
+	private static final LongAdder dropCount = new LongAdder();
+
+	private static final class Stack<T> {
+		final Object[] items = new Object[MAX_BUFFERS_PER_CLASS];
+		int size = 0;
+
+		@SuppressWarnings("unchecked")
+		T pop() {
+			if(size == 0) {
+				return null;
+			}
+			T item = (T) items[--size];
+			items[size] = null;
+			return item;
+		}
+
+		boolean push(T item) {
+			if(size == MAX_BUFFERS_PER_CLASS) {
+				return false;
+			}
+			items[size++] = item;
+			return true;
+		}
+	}
+
+	private static final class ThreadPool {
+		@SuppressWarnings("unchecked")
+		final Stack<int[]>[] ints = new Stack[CLASS_COUNT];
+		@SuppressWarnings("unchecked")
+		final Stack<byte[]>[] bytes = new Stack[CLASS_COUNT];
+		@SuppressWarnings("unchecked")
+		final Stack<ByteBuffer>[] directs = new Stack[CLASS_COUNT];
+		final WeakReference<Thread> owner = new WeakReference<Thread>(Thread.currentThread());
+		volatile long retainedBytes = 0; // written by owner thread only
+
+		ThreadPool() {
+			for (int i = 0; i < CLASS_COUNT; i++) {
+				ints[i] = new Stack<int[]>();
+				bytes[i] = new Stack<byte[]>();
+				directs[i] = new Stack<ByteBuffer>();
+			}
+		}
+	}
+
+	private static final ThreadLocal<ThreadPool> threadLocal_pool = new ThreadLocal<ThreadPool>() {
+		@Override
+		protected ThreadPool initialValue() {
+			purge();
+			ThreadPool pool = new ThreadPool();
+			pools.add(pool);
+			return pool;
+		}
+	};
+
+	/**
+	 * Releases pools of terminated threads.
+	 */
+	private static void purge() {
+		for(ThreadPool pool : pools) {
+			Thread thread = pool.owner.get();
+			if((thread == null || !thread.isAlive()) && pools.remove(pool)) { // retainedBytes of terminated thread is final
+				retainedBytesTotal.addAndGet(-pool.retainedBytes);
+			}
+		}
+	}
+
+	private BufferPool() {}
+
+	/**
+	 * Size class for borrowing: smallest class with at least len elements.
+	 * @param len
+	 * @return class index or -1 if len is above largest class
+	 */
+	private static int borrowClass(int len) {
+		int bits = len <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(len - 1);
+		if(bits > MAX_CLASS_BITS) {
+			return -1;
+		}
+		return bits < MIN_CLASS_BITS ? 0 : bits - MIN_CLASS_BITS;
+	}
+
+	/**
+	 * Size class for returning: only buffers with exact class size are retained.
+	 * @param len
+	 * @return class index or -1 if buffer is not retained
+	 */
+	private static int returnClass(int len) {
+		if(Integer.bitCount(len) != 1) {
+			return -1;
+		}
+		int bits = 31 - Integer.numberOfLeadingZeros(len);
+		if(bits < MIN_CLASS_BITS || bits > MAX_CLASS_BITS) {
+			return -1;
+		}
+		return bits - MIN_CLASS_BITS;
+	}
+
+	private static int classLen(int c) {
+		return 1 << (c + MIN_CLASS_BITS);
+	}
+
+	private static <T> T pop(Stack<T>[] stacks, int c, long byteSize, ThreadPool pool) {
+		T item = stacks[c].pop();
+		if(item != null) {
+			pool.retainedBytes -= byteSize;
+			retainedBytesTotal.addAndGet(-byteSize);
+			reuseCount.increment();
+		}
+		return item;
+	}
+
+	private static <T> void push(Stack<T>[] stacks, int c, T item, long byteSize, ThreadPool pool) {
+		returnCount.increment();
+		if(pool.retainedBytes + byteSize > MAX_RETAINED_BYTES_PER_THREAD) {
+			dropCount.increment();
+			return;
+		}
+		if(retainedBytesTotal.addAndGet(byteSize) > MAX_RETAINED_BYTES_TOTAL) {
+			retainedBytesTotal.addAndGet(-byteSize);
+			purge();
+			if(retainedBytesTotal.addAndGet(byteSize) > MAX_RETAINED_BYTES_TOTAL) {
+				retainedBytesTotal.addAndGet(-byteSize);
+				dropCount.increment();
+				return;
+			}
+		}
+		if(!stacks[c].push(item)) {
+			retainedBytesTotal.addAndGet(-byteSize);
+			dropCount.increment();
+			return;
+		}
+		pool.retainedBytes += byteSize;
+	}
+
+	private static void onAllocate(long byteSize) {
+		allocateCount.increment();
+		allocateBytes.add(byteSize);
+	}
+
+	/**
+	 * Borrows an int array, content is undefined.
+	 * @param len minimum length
+	 * @return array with length of at least len
+	 */
+	public static int[] borrowInts(int len) {
+		borrowCount.increment();
+		int c = borrowClass(len);
+		if(c < 0) {
+			onAllocate(4L * len);
+			return new int[len];
+		}
+		int classLen = classLen(c);
+		ThreadPool pool = threadLocal_pool.get();
+		int[] a = pop(pool.ints, c, 4L * classLen, pool);
+		if(a == null) {
+			onAllocate(4L * classLen);
+			a = new int[classLen];
+		}
+		return a;
+	}
+
+	/**
+	 * Returns an int array to the pool of current thread, the array must not be used by the caller afterwards.
+	 * @param a may be null
+	 */
+	public static void returnInts(int[] a) {
+		if(a == null) {
+			return;
+		}
+		int c = returnClass(a.length);
+		if(c < 0) {
+			returnCount.increment();
+			dropCount.increment();
+			return;
+		}
+		ThreadPool pool = threadLocal_pool.get();
+		push(pool.ints, c, a, 4L * a.length, pool);
+	}
+
+	/**
+	 * Borrows a byte array, content is undefined.
+	 * @param len minimum length
+	 * @return array with length of at least len
+	 */
+	public static byte[] borrowBytes(int len) {
+		borrowCount.increment();
+		int c = borrowClass(len);
+		if(c < 0) {
+			onAllocate(len);
+			return new byte[len];
+		}
+		int classLen = classLen(c);
+		ThreadPool pool = threadLocal_pool.get();
+		byte[] a = pop(pool.bytes, c, classLen, pool);
+		if(a == null) {
+			onAllocate(classLen);
+			a = new byte[classLen];
+		}
+		return a;
+	}
+
+	/**
+	 * Returns a byte array to the pool of current thread, the array must not be used by the caller afterwards.
+	 * @param a may be null
+	 */
+	public static void returnBytes(byte[] a) {
+		if(a == null) {
+			return;
+		}
+		int c = returnClass(a.length);
+		if(c < 0) {
+			returnCount.increment();
+			dropCount.increment();
+			return;
+		}
+		ThreadPool pool = threadLocal_pool.get();
+		push(pool.bytes, c, a, a.length, pool);
+	}
+
+	/**
+	 * Borrows a little endian direct buffer with position 0 and limit len, content is undefined.
+	 * @param len
+	 * @return
+	 */
+	public static ByteBuffer borrowDirect(int len) {
+		borrowCount.increment();
+		int c = borrowClass(len);
+		ByteBuffer buffer = null;
+		if(c < 0) {
+			onAllocate(len);
+			buffer = ByteBuffer.allocateDirect(len);
+		} else {
+			int classLen = classLen(c);
+			ThreadPool pool = threadLocal_pool.get();
+			buffer = pop(pool.directs, c, classLen, pool);
+			if(buffer == null) {
+				onAllocate(classLen);
+				buffer = ByteBuffer.allocateDirect(classLen);
+			}
+		}
+		buffer.clear();
+		buffer.limit(len);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+
+	/**
+	 * Returns a direct buffer to the pool of current thread, the buffer must not be used by the caller afterwards.
+	 * @param buffer may be null
+	 */
+	public static void returnDirect(ByteBuffer buffer) {
+		if(buffer == null) {
+			return;
+		}
+		int c = buffer.isDirect() ? returnClass(buffer.capacity()) : -1;
+		if(c < 0) {
+			returnCount.increment();
+			dropCount.increment();
+			return;
+		}
+		ThreadPool pool = threadLocal_pool.get();
+		push(pool.directs, c, buffer, buffer.capacity(), pool);
+	}
+
+	public static long getBorrowCount() {
+		return borrowCount.sum();
+	}
+
+	/**
+	 *
+	 * @return count of borrows served from a pool
+	 */
+	public static long getReuseCount() {
+		return reuseCount.sum();
+	}
+
+	/**
+	 *
+	 * @return count of borrows that allocated a new buffer
+	 */
+	public static long getAllocateCount() {
+		return allocateCount.sum();
+	}
+
+	public static long getAllocateBytes() {
+		return allocateBytes.sum();
+	}
+
+	public static long getReturnCount() {
+		return returnCount.sum();
+	}
+
+	/**
+	 *
+	 * @return count of returned buffers that were not retained because of size or retention bounds
+	 */
+	public static long getDropCount() {
+		return dropCount.sum();
+	}
+
+	public static long getRetainedBytes() {
+		return retainedBytesTotal.get();
+	}
+
+	public static void writeStatsJSON(JSONWriter json) {
+		json.object();
+		json.key("borrow_count");
+		json.value(getBorrowCount());
+		json.key("reuse_count");
+		json.value(getReuseCount());
+		json.key("allocate_count");
+		json.value(getAllocateCount());
+		json.key("allocate_bytes");
+		json.value(getAllocateBytes());
+		json.key("return_count");
+		json.value(getReturnCount());
+		json.key("drop_count");
+		json.value(getDropCount());
+		json.key("retained_bytes");
+		json.value(getRetainedBytes());
+		json.key("retained_bytes_max");
+		json.value(MAX_RETAINED_BYTES_TOTAL);
+		json.endObject();
+	}
+}
@@ -0,0 +1,118 @@
+package util;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Cooperative cancellation of the work of one request.
+ * The token of the current request is bound to the request thread, long running loops check it per tile, cell or node.
+ * Streams and parallel work capture the token of the creating thread with {@link #current()}.
+ */
+public class CancellationToken {
+
+	/**
+	 * Minimum interval between calls of the probe, isCancelled() is called per tile and should stay cheap.
+	 */
+	private static final long PROBE_INTERVAL_NANOS = 2_000_000;
+
+	public static class CancelledException extends RuntimeException {
+		private static final long serialVersionUID = 7914253311466521389L;
+
+		public CancelledException(String reason) {
+			super("request cancelled: " + reason);
+		}
+	}
+
+	private static final ThreadLocal<CancellationToken> threadLocal_token = new ThreadLocal<CancellationToken>();
+
+	private final BooleanSupplier probe; // nullable
+	private volatile String reason = null;
+	private volatile long nextProbe;
+
+	/**
+	 * 
+	 * @param probe returns true if the work should be cancelled, e.g. client disconnected, nullable
+	 */
+	public CancellationToken(BooleanSupplier probe) {
+		this.probe = probe;
+		this.nextProbe = System.nanoTime() + PROBE_INTERVAL_NANOS;
+	}
+
+	public void cancel(String reason) {
+		if(this.reason == null) {
+			this.reason = reason == null ? "cancelled" : reason;
+		}
+	}
+
+	public boolean isCancelled() {
+		if(reason != null) {
+			return true;
+		}
+		if(probe != null) {
+			long now = System.nanoTime();
+			if(now - nextProbe >= 0) {
+				nextProbe = now + PROBE_INTERVAL_NANOS;
+				if(probe.getAsBoolean()) {
+					cancel("client disconnected");
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 
+	 * @throws CancelledException if cancelled
+	 */
+	public void check() {
+		if(isCancelled()) {
+			throw new CancelledException(reason);
+		}
+	}
+
+	public String getReason() {
+		return reason;
+	}
+
+	/**
+	 * 
+	 * @return token of the request of current thread, nullable
+	 */
+	public static CancellationToken current() {
+		return threadLocal_token.get();
+	}
+
+	/**
+	 * Binds token to current thread.
+	 * @param token nullable
+	 * @return previously bound token, nullable
+	 */
+	public static CancellationToken bind(CancellationToken token) {
+		CancellationToken prev = threadLocal_token.get();
+		if(token == null) {
+			threadLocal_token.remove();
+		} else {
+			threadLocal_token.set(token);
+		}
+		return prev;
+	}
+
+	/**
+	 * 
+	 * @param token nullable
+	 * @throws CancelledException if token is cancelled
+	 */
+	public static void check(CancellationToken token) {
+		if(token != null) {
+			token.check();
+		}
+	}
+
+	/**
+	 * Checks token of current thread.
+	 * @throws CancelledException if cancelled
+	 */
+	public static void checkCurrent() {
+		check(threadLocal_token.get());
+	}
+}
@@ -0,0 +1,144 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable approximate quantile sketch with bounded memory.
+ * Values are collected in levels of buffers of size k, values of level i have weight 2^i.
+ * Full levels are sorted and every second value is promoted to the next level.
+ * Memory is about k * log2(n / k) values for n added values.
+ */
+public class QuantileSketch {
+
+	public static final int DEFAULT_K = 256;
+
+	private final int k;
+	private double[][] levels;
+	private int[] levelSizes;
+	private long count = 0;
+	private boolean oddOffset = false;
+
+	public QuantileSketch() {
+		this(DEFAULT_K);
+	}
+
+	public QuantileSketch(int k) {
+		if(k < 2) {
+			throw new RuntimeException("k needs to be at least 2: " + k);
+		}
+		this.k = k;
+		this.levels = new double[][] {new double[k]};
+		this.levelSizes = new int[1];
+	}
+
+	public void add(double value) {
+		if(levelSizes[0] == k) {
+			compact(0);
+		}
+		levels[0][levelSizes[0]++] = value;
+		count++;
+	}
+
+	/**
+	 * Adds all values of other sketch. Other sketch is not modified.
+	 * @param other
+	 */
+	public void merge(QuantileSketch other) {
+		ensureLevels(other.levels.length);
+		for (int level = 0; level < other.levels.length; level++) {
+			double[] src = other.levels[level];
+			int srcSize = other.levelSizes[level];
+			for (int i = 0; i < srcSize; i++) {
+				if(levelSizes[level] == k) {
+					compact(level);
+				}
+				levels[level][levelSizes[level]++] = src[i];
+			}
+		}
+		count += other.count;
+	}
+
+	/**
+	 *
+	 * @return number of added values
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 *
+	 * @param p probability in range 0 to 1
+	 * @return approximate quantile or NaN if no values
+	 */
+	public double quantile(double p) {
+		int len = 0;
+		for (int level = 0; level < levels.length; level++) {
+			len += levelSizes[level];
+		}
+		if(len == 0) {
+			return Double.NaN;
+		}
+		double[] values = new double[len];
+		long[] weights = new long[len];
+		Integer[] order = new Integer[len];
+		int pos = 0;
+		long totalWeight = 0;
+		for (int level = 0; level < levels.length; level++) {
+			long weight = 1L << level;
+			for (int i = 0; i < levelSizes[level]; i++) {
+				values[pos] = levels[level][i];
+				weights[pos] = weight;
+				order[pos] = pos;
+				pos++;
+				totalWeight += weight;
+			}
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+		double target = p * totalWeight;
+		long cumulativeWeight = 0;
+		for (int i = 0; i < len; i++) {
+			int index = order[i];
+			cumulativeWeight += weights[index];
+			if(cumulativeWeight > target) {
+				return values[index];
+			}
+		}
+		return values[order[len - 1]];
+	}
+
+	private void ensureLevels(int levelCount) {
+		if(levels.length < levelCount) {
+			int prevCount = levels.length;
+			levels = Arrays.copyOf(levels, levelCount);
+			levelSizes = Arrays.copyOf(levelSizes, levelCount);
+			for (int level = prevCount; level < levelCount; level++) {
+				levels[level] = new double[k];
+			}
+		}
+	}
+
+	private void compact(int level) {
+		ensureLevels(level + 2);
+		double[] buf = levels[level];
+		int size = levelSizes[level];
+		int evenSize = size & ~1;
+		if(levelSizes[level + 1] + evenSize / 2 > k) {
+			compact(level + 1);
+		}
+		Arrays.sort(buf, 0, size);
+		double[] dst = levels[level + 1];
+		int dstSize = levelSizes[level + 1];
+		for (int i = oddOffset ? 1 : 0; i < evenSize; i += 2) {
+			dst[dstSize++] = buf[i];
+		}
+		oddOffset = !oddOffset;
+		levelSizes[level + 1] = dstSize;
+		if(evenSize < size) {
+			buf[0] = buf[size - 1];
+			levelSizes[level] = 1;
+		} else {
+			levelSizes[level] = 0;
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server wide sequence of modifications, revisions of different storages and layers are comparable.
+ * Revisions are not persistent, they start again at server start.
+ */
+public final class Revision {
+
+	private static final AtomicLong seq = new AtomicLong(0);
+
+	private Revision() {}
+
+	/**
+	 * 
+	 * @return revision higher than all previous revisions
+	 */
+	public static long next() {
+		return seq.incrementAndGet();
+	}
+}
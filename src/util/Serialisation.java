@@ -88,6 +88,15 @@ public final class Serialisation {
 		}
 	}
 
+	public static void encodeDeltaZigZag(int[] data, int len) {
+		int prev = 0;
+		for (int i = 0; i < len; i++) {
+			int curr = data[i];
+			data[i] = encodeZigZag(curr - prev);
+			prev = curr;
+		}
+	}
+
 	public static int[] encodeDeltaZigZagCopy(int[] data, int len) {
 		int[] result = new int[len];
 		int prev = 0;
@@ -216,6 +225,14 @@ public final class Serialisation {
 		}
 	}
 	
+	public static void decodeDeltaZigZag(int[] data, int len) {
+		int curr = 0;
+		for (int i = 0; i < len; i++) {
+			curr += decodeZigZag(data[i]);
+			data[i] = curr;
+		}
+	}
+
 	public static void decodeDeltaZigZag(short[] data) {
 		short curr = 0;
 		final int SIZE = data.length;
@@ -160,6 +160,36 @@ public class Util {
 		return temp;
 	}
 
+	/**
+	 * reverses rows (y-direction)
+	 * @param data
+	 * @return
+	 */
+	public static byte[][] flipRows(byte[][] data) {
+		final int len = data.length;
+		final int max = len-1;
+		byte[][] temp = new byte[len][];		
+		for (int i = 0; i < len; i++) {
+			temp[i] = data[max-i];
+		}
+		return temp;
+	}
+
+	/**
+	 * reverses rows (y-direction)
+	 * @param data
+	 * @return
+	 */
+	public static int[][] flipRows(int[][] data) {
+		final int len = data.length;
+		final int max = len-1;
+		int[][] temp = new int[len][];		
+		for (int i = 0; i < len; i++) {
+			temp[i] = data[max-i];
+		}
+		return temp;
+	}
+
 	public static Path[] getPaths(Path root) throws IOException {
 		DirectoryStream<Path> dirStream = Files.newDirectoryStream(root);
 		Path[] paths = StreamSupport.stream(dirStream.spliterator(), false)
@@ -257,6 +287,58 @@ public class Util {
 		return r;
 	}
 
+	public static byte[][] arrayToArrayArray(byte[] a, int line, byte r[][]) {
+		int count = a.length;
+		int lines = count/line;
+		if(r==null || r.length!=lines) {
+			return arrayToArrayArray(a, line);
+		}
+		for(int i=0;i<lines;i++) {
+			byte[] row = r[i];
+			if(row==null || row.length!=line) {
+				return arrayToArrayArray(a, line);
+			}
+			System.arraycopy(a, i*line, row, 0, line);
+		}
+		return r;
+	}
+
+	public static byte[][] arrayToArrayArray(byte[] a, int line) {
+		int count = a.length;
+		int lines = count/line;
+		byte[][] r = new byte[lines][line];
+		for(int i=0;i<lines;i++) {
+			System.arraycopy(a, i*line, r[i], 0, line);
+		}
+		return r;
+	}
+
+	public static int[][] arrayToArrayArray(int[] a, int line, int r[][]) {
+		int count = a.length;
+		int lines = count/line;
+		if(r==null || r.length!=lines) {
+			return arrayToArrayArray(a, line);
+		}
+		for(int i=0;i<lines;i++) {
+			int[] row = r[i];
+			if(row==null || row.length!=line) {
+				return arrayToArrayArray(a, line);
+			}
+			System.arraycopy(a, i*line, row, 0, line);
+		}
+		return r;
+	}
+
+	public static int[][] arrayToArrayArray(int[] a, int line) {
+		int count = a.length;
+		int lines = count/line;
+		int[][] r = new int[lines][line];
+		for(int i=0;i<lines;i++) {
+			System.arraycopy(a, i*line, r[i], 0, line);
+		}
+		return r;
+	}
+
 	public static String[] columnTextToColumns(String columnText) {
 		return Arrays.stream(columnText.split(",")).map(s->s.trim()).toArray(String[]::new);
 	}
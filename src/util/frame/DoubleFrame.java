@@ -311,6 +311,21 @@ public class DoubleFrame {
 		return new DoubleFrame(dst, range2d.xmin, range2d.ymin, range2d.xmax, range2d.ymax);
 	}
 
+	public static DoubleFrame ofIntsWithNA(int[][] data, int na, Range2d range2d) {
+		int w = data[0].length;
+		int h = data.length;
+		double[][] dst = new double[h][w];
+		for (int y = 0; y < h; y++) {
+			int[] s = data[y];
+			double[] t = dst[y];
+			for (int x = 0; x < w; x++) {
+				int v = s[x];
+				t[x] = v == na ? Double.NaN : v;
+			}
+		}
+		return new DoubleFrame(dst, range2d.xmin, range2d.ymin, range2d.xmax, range2d.ymax);
+	}
+
 	public static DoubleFrame mean(DoubleFrame frameR, DoubleFrame frameB) {
 		DoubleFrame frameG = DoubleFrame.ofExtent(frameR);
 		double[][] dataR = frameR.data;
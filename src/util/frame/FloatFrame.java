@@ -85,6 +85,21 @@ public class FloatFrame {
 		}
 	}
 
+	public static FloatFrame ofIntsWithNA(int[][] data, int na, Range2d range2d) {
+		int w = data[0].length;
+		int h = data.length;
+		float[][] dst = new float[h][w];
+		for (int y = 0; y < h; y++) {
+			int[] s = data[y];
+			float[] t = dst[y];
+			for (int x = 0; x < w; x++) {
+				int v = s[x];
+				t[x] = v == na ? Float.NaN : v;
+			}
+		}
+		return of(dst, range2d);
+	}
+
 	public static FloatFrame minus(FloatFrame a, FloatFrame b) {
 		FloatFrame c = FloatFrame.ofExtent(a);		
 		for (int y = 0; y < a.height; y++) {
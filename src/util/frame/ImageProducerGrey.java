@@ -5,6 +5,8 @@ import org.apache.logging.log4j.Logger;
 
 import util.Util;
 import util.image.ImageGrey;
+import util.image.LutCache;
+import util.image.ShortLut;
 
 public class ImageProducerGrey extends ImageGrey {
 	@SuppressWarnings("unused")
@@ -57,18 +59,12 @@ public class ImageProducerGrey extends ImageGrey {
 			rangeR=1;
 		}
 
+		ShortLut lut = LutCache.getProducerShort(minR, rangeR, ginv);
 		int pos=0;
 		for(int y=0;y<height;y++) {
 			short[] row = data[y];
 			for(int x=0;x<width;x++) {
-				int c = row[x];
-				if(c!=0) {
-					c = (int) Math.round(255d*Math.pow((float)(c-minR) / rangeR, ginv));
-					if(c>255) {
-						c=255;
-					}
-				}
-				imageBuffer[pos++] = (byte) c;
+				imageBuffer[pos++] = (byte) lut.get(row[x]);
 			}
 		}
 	}
@@ -9,6 +9,9 @@ import org.apache.logging.log4j.Logger;
 import util.Timer;
 import util.Util;
 import util.image.ImageRGBA;
+import util.image.LutCache;
+import util.image.RowBands;
+import util.image.ShortLut;
 
 public class ImageProducerRGB extends ImageRGBA {
 	static final Logger log = LogManager.getLogger();
@@ -146,93 +149,22 @@ public class ImageProducerRGB extends ImageRGBA {
 	}
 
 	private void draw(short[][] dataR, short[][] dataG, short[][] dataB, int minR, int rangeR, int minG, int rangeG, int minB, int rangeB, float ginv) {
-		//draw(dataR, dataG, dataB, minR, rangeR, minG, rangeG, minB, rangeB, ginv, 0, height); // run without parallel	
-
-		int div = ForkJoinPool.commonPool().getParallelism();
-		int part = height/div;
-
-		/*for (int i = 0; i < div; i++) {
-		int ystart = i*part;
-		int yborder = i+1==div?height:ystart+part;
-		draw(dataR, dataG, dataB, minR, rangeR, minG, rangeG, minB, rangeB, ginv, ystart, yborder);
-	    }*/	
-
-		Phaser phaser = new Phaser();
-		phaser.register();
-		ForkJoinPool exe = ForkJoinPool.commonPool();
-
-		for (int i = 0; i < div; i++) {
-			int ystart = i*part;
-			int yborder = i+1==div?height:ystart+part;
-			phaser.register();
-			exe.execute(()->{
-				draw(dataR, dataG, dataB, minR, rangeR, minG, rangeG, minB, rangeB, ginv, ystart, yborder);
-				phaser.arrive();
-			});
-		}
-
-		phaser.arriveAndAwaitAdvance();
-
-		/*log.info("RGB done "+exe.getPoolSize());
-		log.info("PoolSize "+exe.getPoolSize());
-		log.info("ActiveThreadCount "+exe.getActiveThreadCount());
-		log.info("RunningThreadCount "+exe.getRunningThreadCount());
-		log.info("Parallelism "+exe.getParallelism());
-		log.info("QueuedSubmissionCount "+exe.getQueuedSubmissionCount());
-		log.info("StealCount "+exe.getStealCount());
-		log.info("QueuedTaskCount "+exe.getQueuedTaskCount());*/
+		ShortLut lutR = LutCache.getProducerShort(minR, rangeR, ginv);
+		ShortLut lutG = LutCache.getProducerShort(minG, rangeG, ginv);
+		ShortLut lutB = LutCache.getProducerShort(minB, rangeB, ginv);
+		RowBands.drawParallel(height, (ystart, yend) -> draw(dataR, dataG, dataB, lutR, lutG, lutB, ystart, yend + 1));
 	}
 
-	private void draw(short[][] dataR, short[][] dataG, short[][] dataB, int minR, int rangeR, int minG, int rangeG, int minB, int rangeB, float ginv, int ystart, int yborder) {
+	private void draw(short[][] dataR, short[][] dataG, short[][] dataB, ShortLut lutR, ShortLut lutG, ShortLut lutB, int ystart, int yborder) {
 		for(int y=ystart;y<yborder;y++) {
 			short[] rowR = dataR[y];
 			short[] rowG = dataG[y];
 			short[] rowB = dataB[y];
 			int offset = y*width;
 			for(int x=0;x<width;x++) {
-				int r = rowR[x];
-				/*if(r!=0) {
-					r = (r-minR)*255/rangeR;
-				}
-				if(r>255) {
-					r=255;
-				}*/
-				if(r!=0) {
-					r = (int) Math.round(255d*Math.pow((float)(r-minR) / rangeR, ginv));
-					if(r>255) {
-						r=255;
-					}
-				}
-
-
-				int g = rowG[x];
-				/*if(g!=0) {
-					g = (g-minG)*255/rangeG;
-				}
-				if(g>255) {
-					g=255;
-				}*/
-				if(g!=0) {
-					g = (int) Math.round(255d*Math.pow((float)(g-minG) / rangeG, ginv));
-					if(g>255) {
-						g=255;
-					}
-				}
-
-				int b = rowB[x];
-				/*if(b!=0) {
-					b = (b-minB)*255/rangeB;
-				}
-				if(b>255) {
-					b=255;
-				}*/
-				if(b!=0) {
-					b = (int) Math.round(255d*Math.pow((float)(b-minB) / rangeB, ginv));
-					if(b>255) {
-						b=255;
-					}
-				}
-
+				int r = lutR.get(rowR[x]);
+				int g = lutG.get(rowG[x]);
+				int b = lutB.get(rowB[x]);
 				imageBuffer[offset+x] = 0xff000000 | (r<<16) | (g<<8) | b;
 			}
 		}		
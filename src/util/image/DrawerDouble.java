@@ -507,4 +507,80 @@ public class DrawerDouble {
 		}		
 	}
 
+	/**
+	 * Draws intensity of pixels by palette, rows are drawn in parallel bands.
+	 * @param image
+	 * @param data
+	 * @param lut
+	 * @param palette 256 colors, {@link Lut#GREY_PALETTE} for grey
+	 */
+	public static void drawPaletteLutParallel(ImageBufferARGB image, double[][] data, QuantisedLut lut, int[] palette) {
+		RowBands.drawParallel(image.height, (yStart, yEnd) -> drawPaletteLut(image, data, lut, palette, yStart, yEnd));
+	}
+
+	public static void drawPaletteLut(ImageBufferARGB image, double[][] data, QuantisedLut lut, int[] palette, int yStart, int yEnd) {
+		int width = image.width;
+		int yMax = image.height - 1;
+		int[] target = image.data;
+		int pos = (yMax - yEnd) * width;
+		for (int y = yEnd; y >= yStart; y--) {
+			double[] row = data[y];
+			for (int x = 0; x < width; x++) {
+				double v = row[x];
+				target[pos++] = Double.isFinite(v) ? palette[lut.get(v)] : 0; // NA transparent
+			}
+		}
+	}
+
+	public static void drawRGBLutParallel(ImageBufferARGB image, double[][] rdata, double[][] gdata, double[][] bdata, QuantisedLut rlut, QuantisedLut glut, QuantisedLut blut) {
+		RowBands.drawParallel(image.height, (yStart, yEnd) -> drawRGBLut(image, rdata, gdata, bdata, rlut, glut, blut, yStart, yEnd));
+	}
+
+	public static void drawRGBLut(ImageBufferARGB image, double[][] rdata, double[][] gdata, double[][] bdata, QuantisedLut rlut, QuantisedLut glut, QuantisedLut blut, int yStart, int yEnd) {
+		int width = image.width;
+		int yMax = image.height - 1;
+		int[] target = image.data;
+		int pos = (yMax - yEnd) * width;
+		for (int y = yEnd; y >= yStart; y--) {
+			double[] rrow = rdata[y];
+			double[] grow = gdata[y];
+			double[] brow = bdata[y];
+			for (int x = 0; x < width; x++) {
+				double rv = rrow[x];
+				double gv = grow[x];
+				double bv = brow[x];
+				if(Double.isFinite(rv) || Double.isFinite(gv) || Double.isFinite(bv)) {
+					target[pos++] = 0xff000000 | (rlut.get(rv) << 16) | (glut.get(gv) << 8) | blut.get(bv);
+				} else {
+					target[pos++] = 0; // transparent
+				}
+			}
+		}
+	}
+
+	public static void drawRBLutParallel(ImageBufferARGB image, double[][] rdata, double[][] bdata, QuantisedLut rlut, QuantisedLut blut) {
+		RowBands.drawParallel(image.height, (yStart, yEnd) -> drawRBLut(image, rdata, bdata, rlut, blut, yStart, yEnd));
+	}
+
+	public static void drawRBLut(ImageBufferARGB image, double[][] rdata, double[][] bdata, QuantisedLut rlut, QuantisedLut blut, int yStart, int yEnd) {
+		int width = image.width;
+		int yMax = image.height - 1;
+		int[] target = image.data;
+		int pos = (yMax - yEnd) * width;
+		for (int y = yEnd; y >= yStart; y--) {
+			double[] rrow = rdata[y];
+			double[] brow = bdata[y];
+			for (int x = 0; x < width; x++) {
+				double rv = rrow[x];
+				double bv = brow[x];
+				if(Double.isFinite(rv) || Double.isFinite(bv)) {
+					int rp = rlut.get(rv);
+					int bp = blut.get(bv);
+					target[pos++] = 0xff000000 | (rp << 16) | (((rp + bp) >> 1) << 8) | bp;
+				} else {
+					target[pos++] = 0; // transparent
+				}
+			}
+		}
+	}
 }
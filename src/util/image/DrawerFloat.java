@@ -224,4 +224,81 @@ public class DrawerFloat {
 			}
 		}		
 	}
+
+	/**
+	 * Draws intensity of pixels by palette, rows are drawn in parallel bands.
+	 * @param image
+	 * @param data
+	 * @param lut
+	 * @param palette 256 colors, {@link Lut#GREY_PALETTE} for grey
+	 */
+	public static void drawPaletteLutParallel(ImageBufferARGB image, float[][] data, QuantisedLut lut, int[] palette) {
+		RowBands.drawParallel(image.height, (yStart, yEnd) -> drawPaletteLut(image, data, lut, palette, yStart, yEnd));
+	}
+
+	public static void drawPaletteLut(ImageBufferARGB image, float[][] data, QuantisedLut lut, int[] palette, int yStart, int yEnd) {
+		int width = image.width;
+		int yMax = image.height - 1;
+		int[] target = image.data;
+		int pos = (yMax - yEnd) * width;
+		for (int y = yEnd; y >= yStart; y--) {
+			float[] row = data[y];
+			for (int x = 0; x < width; x++) {
+				float v = row[x];
+				target[pos++] = Float.isFinite(v) ? palette[lut.get(v)] : 0; // NA transparent
+			}
+		}
+	}
+
+	public static void drawRGBLutParallel(ImageBufferARGB image, float[][] rdata, float[][] gdata, float[][] bdata, QuantisedLut rlut, QuantisedLut glut, QuantisedLut blut) {
+		RowBands.drawParallel(image.height, (yStart, yEnd) -> drawRGBLut(image, rdata, gdata, bdata, rlut, glut, blut, yStart, yEnd));
+	}
+
+	public static void drawRGBLut(ImageBufferARGB image, float[][] rdata, float[][] gdata, float[][] bdata, QuantisedLut rlut, QuantisedLut glut, QuantisedLut blut, int yStart, int yEnd) {
+		int width = image.width;
+		int yMax = image.height - 1;
+		int[] target = image.data;
+		int pos = (yMax - yEnd) * width;
+		for (int y = yEnd; y >= yStart; y--) {
+			float[] rrow = rdata[y];
+			float[] grow = gdata[y];
+			float[] brow = bdata[y];
+			for (int x = 0; x < width; x++) {
+				float rv = rrow[x];
+				float gv = grow[x];
+				float bv = brow[x];
+				if(Float.isFinite(rv) || Float.isFinite(gv) || Float.isFinite(bv)) {
+					target[pos++] = 0xff000000 | (rlut.get(rv) << 16) | (glut.get(gv) << 8) | blut.get(bv);
+				} else {
+					target[pos++] = 0; // transparent
+				}
+			}
+		}
+	}
+
+	public static void drawRBLutParallel(ImageBufferARGB image, float[][] rdata, float[][] bdata, QuantisedLut rlut, QuantisedLut blut) {
+		RowBands.drawParallel(image.height, (yStart, yEnd) -> drawRBLut(image, rdata, bdata, rlut, blut, yStart, yEnd));
+	}
+
+	public static void drawRBLut(ImageBufferARGB image, float[][] rdata, float[][] bdata, QuantisedLut rlut, QuantisedLut blut, int yStart, int yEnd) {
+		int width = image.width;
+		int yMax = image.height - 1;
+		int[] target = image.data;
+		int pos = (yMax - yEnd) * width;
+		for (int y = yEnd; y >= yStart; y--) {
+			float[] rrow = rdata[y];
+			float[] brow = bdata[y];
+			for (int x = 0; x < width; x++) {
+				float rv = rrow[x];
+				float bv = brow[x];
+				if(Float.isFinite(rv) || Float.isFinite(bv)) {
+					int rp = rlut.get(rv);
+					int bp = blut.get(bv);
+					target[pos++] = 0xff000000 | (rp << 16) | (((rp + bp) >> 1) << 8) | bp;
+				} else {
+					target[pos++] = 0; // transparent
+				}
+			}
+		}
+	}
 }
@@ -480,4 +480,82 @@ public class DrawerShort {
 			}
 		}
 	}
+
+	/**
+	 * Draws intensity of pixels by palette, rows are drawn in parallel bands.
+	 * @param image
+	 * @param data
+	 * @param na
+	 * @param lut
+	 * @param palette 256 colors, {@link Lut#GREY_PALETTE} for grey
+	 */
+	public static void drawPaletteLutParallel(ImageBufferARGB image, short[][] data, short na, ShortLut lut, int[] palette) {
+		RowBands.drawParallel(image.height, (yStart, yEnd) -> drawPaletteLut(image, data, na, lut, palette, yStart, yEnd));
+	}
+
+	public static void drawPaletteLut(ImageBufferARGB image, short[][] data, short na, ShortLut lut, int[] palette, int yStart, int yEnd) {
+		int width = image.width;
+		int yMax = image.height - 1;
+		int[] target = image.data;
+		int pos = (yMax - yEnd) * width;
+		for (int y = yEnd; y >= yStart; y--) {
+			short[] row = data[y];
+			for (int x = 0; x < width; x++) {
+				short v = row[x];
+				target[pos++] = v != na ? palette[lut.get(v)] : 0; // NA transparent
+			}
+		}
+	}
+
+	public static void drawRGBLutParallel(ImageBufferARGB image, short[][] rdata, short[][] gdata, short[][] bdata, short naR, short naG, short naB, ShortLut rlut, ShortLut glut, ShortLut blut) {
+		RowBands.drawParallel(image.height, (yStart, yEnd) -> drawRGBLut(image, rdata, gdata, bdata, naR, naG, naB, rlut, glut, blut, yStart, yEnd));
+	}
+
+	public static void drawRGBLut(ImageBufferARGB image, short[][] rdata, short[][] gdata, short[][] bdata, short naR, short naG, short naB, ShortLut rlut, ShortLut glut, ShortLut blut, int yStart, int yEnd) {
+		int width = image.width;
+		int yMax = image.height - 1;
+		int[] target = image.data;
+		int pos = (yMax - yEnd) * width;
+		for (int y = yEnd; y >= yStart; y--) {
+			short[] rrow = rdata[y];
+			short[] grow = gdata[y];
+			short[] brow = bdata[y];
+			for (int x = 0; x < width; x++) {
+				short rv = rrow[x];
+				short gv = grow[x];
+				short bv = brow[x];
+				if(rv != naR || gv != naG || bv != naB) {
+					target[pos++] = 0xff000000 | (rlut.get(rv) << 16) | (glut.get(gv) << 8) | blut.get(bv);
+				} else {
+					target[pos++] = 0; // transparent
+				}
+			}
+		}
+	}
+
+	public static void drawRBLutParallel(ImageBufferARGB image, short[][] rdata, short[][] bdata, short naR, short naB, ShortLut rlut, ShortLut blut) {
+		RowBands.drawParallel(image.height, (yStart, yEnd) -> drawRBLut(image, rdata, bdata, naR, naB, rlut, blut, yStart, yEnd));
+	}
+
+	public static void drawRBLut(ImageBufferARGB image, short[][] rdata, short[][] bdata, short naR, short naB, ShortLut rlut, ShortLut blut, int yStart, int yEnd) {
+		int width = image.width;
+		int yMax = image.height - 1;
+		int[] target = image.data;
+		int pos = (yMax - yEnd) * width;
+		for (int y = yEnd; y >= yStart; y--) {
+			short[] rrow = rdata[y];
+			short[] brow = bdata[y];
+			for (int x = 0; x < width; x++) {
+				short rv = rrow[x];
+				short bv = brow[x];
+				if(rv != naR || bv != naB) {
+					int rp = rlut.get(rv);
+					int bp = blut.get(bv);
+					target[pos++] = 0xff000000 | (rp << 16) | (((rp + bp) >> 1) << 8) | bp;
+				} else {
+					target[pos++] = 0; // transparent
+				}
+			}
+		}
+	}
 }
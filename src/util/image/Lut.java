@@ -1,6 +1,17 @@
 package util.image;
 
 public class Lut {
+
+	/**
+	 * Opaque grey colors of intensity 0 to 255.
+	 */
+	public static final int[] GREY_PALETTE = new int[256];
+
+	static {
+		for (int p = 0; p < 256; p++) {
+			GREY_PALETTE[p] = 0xff000000 | (p << 16) | (p << 8) | p;
+		}
+	}
 	
 	public static double[] getGammaLUT256d(double min, double max, double gamma) {		
 		double range = max - min;
@@ -0,0 +1,135 @@
+package util.image;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of intensity tables keyed by value range and gamma, so tiles rendered with the same parameters share the table.
+ * Bounded to MAX_ENTRIES least recently used tables.
+ */
+public class LutCache {
+
+	private static final int MAX_ENTRIES = 64;
+
+	private static final int KIND_GAMMA_SHORT = 0;
+	private static final int KIND_GAMMA_QUANTISED = 1;
+	private static final int KIND_PRODUCER_SHORT = 2;
+
+	private static final class Key {
+		final int kind;
+		final double min;
+		final double max;
+		final double gamma;
+
+		Key(int kind, double min, double max, double gamma) {
+			this.kind = kind;
+			this.min = min;
+			this.max = max;
+			this.gamma = gamma;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = kind;
+			h = 31 * h + Double.hashCode(min);
+			h = 31 * h + Double.hashCode(max);
+			h = 31 * h + Double.hashCode(gamma);
+			return h;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj) {
+				return true;
+			}
+			if(!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return kind == other.kind && Double.compare(min, other.min) == 0 && Double.compare(max, other.max) == 0 && Double.compare(gamma, other.gamma) == 0;
+		}
+	}
+
+	private static final LinkedHashMap<Key, Object> cache = new LinkedHashMap<Key, Object>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	private static Object get(Key key) {
+		synchronized (cache) {
+			return cache.get(key);
+		}
+	}
+
+	private static void put(Key key, Object value) {
+		synchronized (cache) {
+			cache.put(key, value);
+		}
+	}
+
+	/**
+	 * Table of Lut.getGammaLUT256s(min, max, gamma).
+	 * @param min
+	 * @param max
+	 * @param gamma
+	 * @return
+	 */
+	public static ShortLut getGammaShort(double min, double max, double gamma) {
+		Key key = new Key(KIND_GAMMA_SHORT, min, max, gamma);
+		ShortLut lut = (ShortLut) get(key);
+		if(lut == null) {
+			lut = new ShortLut(Lut.getGammaLUT256s(min, max, gamma));
+			put(key, lut);
+		}
+		return lut;
+	}
+
+	/**
+	 * Table of Lut.getGammaLUT256d(min, max, gamma).
+	 * @param min
+	 * @param max
+	 * @param gamma
+	 * @return
+	 */
+	public static QuantisedLut getGammaQuantised(double min, double max, double gamma) {
+		Key key = new Key(KIND_GAMMA_QUANTISED, min, max, gamma);
+		QuantisedLut lut = (QuantisedLut) get(key);
+		if(lut == null) {
+			lut = new QuantisedLut(Lut.getGammaLUT256d(min, max, gamma));
+			put(key, lut);
+		}
+		return lut;
+	}
+
+	/**
+	 * Table of the intensity function of ImageProducerGrey and ImageProducerRGB: value 0 maps to 0, others to round(255 * ((v - min) / range)^ginv) limited to 255.
+	 * @param min
+	 * @param range
+	 * @param ginv
+	 * @return
+	 */
+	public static ShortLut getProducerShort(int min, int range, float ginv) {
+		Key key = new Key(KIND_PRODUCER_SHORT, min, range, ginv);
+		ShortLut lut = (ShortLut) get(key);
+		if(lut == null) {
+			byte[] table = new byte[ShortLut.LEN];
+			for (int i = 0; i < ShortLut.LEN; i++) {
+				int c = (short) i;
+				if(c != 0) {
+					c = (int) Math.round(255d*Math.pow((float)(c-min) / range, ginv));
+					if(c > 255) {
+						c = 255;
+					}
+				}
+				table[i] = (byte) c;
+			}
+			lut = new ShortLut(table);
+			put(key, lut);
+		}
+		return lut;
+	}
+}
@@ -0,0 +1,44 @@
+package util.image;
+
+/**
+ * Intensity 0 to 255 of float or double values, quantised in BINS equal bins over the range of a 256 entry LUT.
+ * Replaces the per pixel search in the LUT by one array access, values in a bin at a LUT step may differ by one intensity level.
+ * Values below the LUT range map to 0, values above and NaN map to 255 as in the LUT search.
+ */
+public final class QuantisedLut {
+	public static final int BINS = 65536;
+
+	private final double min;
+	private final double scale;
+	private final byte[] table;
+
+	public QuantisedLut(double[] lut256) {
+		min = lut256[0];
+		double range = lut256[255] - min;
+		scale = range > 0 ? BINS / range : 0;
+		table = new byte[BINS];
+		for (int i = 0; i < BINS; i++) {
+			double v = scale > 0 ? min + (i + 0.5d) / scale : min;
+			int p = Lut.match256d(lut256, v);
+			table[i] = (byte) (p < 0 ? 0 : p);
+		}
+	}
+
+	public int get(double v) {
+		if(v != v) {
+			return 255; // NaN
+		}
+		double q = (v - min) * scale;
+		if(q < 0) {
+			return 0;
+		}
+		if(q >= BINS) {
+			return 255;
+		}
+		return table[(int) q] & 0xff;
+	}
+
+	public int get(float v) {
+		return get((double) v);
+	}
+}
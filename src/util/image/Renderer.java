@@ -15,13 +15,13 @@ public class Renderer {
 
 	public static ImageBufferARGB renderRgbShort(ShortFrame frameR, ShortFrame frameG, ShortFrame frameB, short naR, short naG, short naB, int width, int height, double gamma, double[] range, boolean syncBands) {
 		Timer.start("prep");
-		short[] rlut;
-		short[] glut;
-		short[] blut;
+		ShortLut rlut;
+		ShortLut glut;
+		ShortLut blut;
 		if(syncBands) {
 			int[] syncRange = RangerShort.getRangeSync(new short[][][] {frameR.data, frameG.data, frameB.data}, new short[] {naR, naG, naB}, range);
 			double syncGamma = RangerDouble.getGamma(syncRange, gamma);
-			short[] syncLut = Lut.getGammaLUT256s(syncRange[0], syncRange[1], syncGamma);
+			ShortLut syncLut = LutCache.getGammaShort(syncRange[0], syncRange[1], syncGamma);
 			rlut = syncLut;
 			glut = syncLut;
 			blut = syncLut;
@@ -34,37 +34,37 @@ public class Renderer {
 			double bgamma = RangerDouble.getGamma(brange, gamma);
 			//log.info("brange: "+Arrays.toString(brange));
 			//log.info("gamma "+rgamma+"  "+ggamma+" "+bgamma);
-			rlut = Lut.getGammaLUT256s(rrange[0], rrange[1], rgamma);
-			glut = Lut.getGammaLUT256s(grange[0], grange[1], ggamma);
-			blut = Lut.getGammaLUT256s(brange[0], brange[1], bgamma);
+			rlut = LutCache.getGammaShort(rrange[0], rrange[1], rgamma);
+			glut = LutCache.getGammaShort(grange[0], grange[1], ggamma);
+			blut = LutCache.getGammaShort(brange[0], brange[1], bgamma);
 		}
 		//log.info(Timer.stop("prep"));
 		Timer.start("tonemapping3");
 		ImageBufferARGB imageBufferARGB = new ImageBufferARGB(frameR.width, frameR.height);
-		DrawerShort.drawRGB3Parallel(imageBufferARGB, frameR.data, frameG.data, frameB.data, naR, naG, naB, rlut, glut, blut);
+		DrawerShort.drawRGBLutParallel(imageBufferARGB, frameR.data, frameG.data, frameB.data, naR, naG, naB, rlut, glut, blut);
 		//log.info(Timer.stop("tonemapping3"));
 		ImageBufferARGB scaled = imageBufferARGB.width == width && imageBufferARGB.height == height ? imageBufferARGB : imageBufferARGB.scaled(width, height);
 		return scaled;
 	}
 
 	public static ImageBufferARGB renderRbShort(ShortFrame frameR, ShortFrame frameB, short naR, short naB, int width, int height, double gamma, double[] range, boolean syncBands) {
-		short[] rlut;
-		short[] blut;
+		ShortLut rlut;
+		ShortLut blut;
 		if(syncBands) {
 			int[] syncRange = RangerShort.getRangeSync(new short[][][] {frameR.data, frameB.data}, new short[] {naR, naB}, range);
 			double syncGamma = RangerDouble.getGamma(syncRange, gamma);
-			short[] syncLut = Lut.getGammaLUT256s(syncRange[0], syncRange[1], syncGamma);
+			ShortLut syncLut = LutCache.getGammaShort(syncRange[0], syncRange[1], syncGamma);
 			rlut = syncLut;
 			blut = syncLut;			
 		} else {
 			int[] rrange = RangerShort.getRange(frameR.data, naR, range);
 			int[] brange = RangerShort.getRange(frameB.data, naB, range);
-			rlut = Lut.getGammaLUT256s(rrange[0], rrange[1], RangerDouble.getGamma(rrange, gamma));
-			blut = Lut.getGammaLUT256s(brange[0], brange[1], RangerDouble.getGamma(brange, gamma));
+			rlut = LutCache.getGammaShort(rrange[0], rrange[1], RangerDouble.getGamma(rrange, gamma));
+			blut = LutCache.getGammaShort(brange[0], brange[1], RangerDouble.getGamma(brange, gamma));
 		}
 		ImageBufferARGB imageBufferARGB = new ImageBufferARGB(frameR.width, frameR.height);
 		Timer.start("tonemapping3");
-		DrawerShort.drawRB3Parallel(imageBufferARGB, frameR.data, frameB.data, naR, naB, rlut, blut);
+		DrawerShort.drawRBLutParallel(imageBufferARGB, frameR.data, frameB.data, naR, naB, rlut, blut);
 		log.info(Timer.stop("tonemapping3"));
 		ImageBufferARGB scaled = imageBufferARGB.width == width && imageBufferARGB.height == height ? imageBufferARGB : imageBufferARGB.scaled(width, height);
 		return scaled;
@@ -74,8 +74,8 @@ public class Renderer {
 		int[] irange = RangerShort.getRange(frame.data, na, range);
 		ImageBufferARGB imageBufferARGB = new ImageBufferARGB(frame.width, frame.height);
 		Timer.start("tonemapping3");
-		short[] lut = Lut.getGammaLUT256s(irange[0], irange[1], RangerDouble.getGamma(irange, gamma));
-		DrawerShort.drawGrey3Parallel(imageBufferARGB, frame.data, na, lut);
+		ShortLut lut = LutCache.getGammaShort(irange[0], irange[1], RangerDouble.getGamma(irange, gamma));
+		DrawerShort.drawPaletteLutParallel(imageBufferARGB, frame.data, na, lut, Lut.GREY_PALETTE);
 		//log.info(Timer.stop("tonemapping3"));
 		//convert(imageBufferARGB);
 		ImageBufferARGB scaled = imageBufferARGB.width == width && imageBufferARGB.height == height ? imageBufferARGB : imageBufferARGB.scaled(width, height);
@@ -86,21 +86,21 @@ public class Renderer {
 		int[] irange = RangerShort.getRange(frame.data, na, range);
 		ImageBufferARGB imageBufferARGB = new ImageBufferARGB(frame.width, frame.height);
 		Timer.start("tonemapping3");
-		short[] lut = Lut.getGammaLUT256s(irange[0], irange[1], RangerDouble.getGamma(irange, gamma));
-		DrawerShort.drawPalette3Parallel(imageBufferARGB, frame.data, na, lut, palette);
+		ShortLut lut = LutCache.getGammaShort(irange[0], irange[1], RangerDouble.getGamma(irange, gamma));
+		DrawerShort.drawPaletteLutParallel(imageBufferARGB, frame.data, na, lut, palette);
 		//log.info(Timer.stop("tonemapping3"));
 		ImageBufferARGB scaled = imageBufferARGB.width == width && imageBufferARGB.height == height ? imageBufferARGB : imageBufferARGB.scaled(width, height);
 		return scaled;		
 	}
 
 	public static ImageBufferARGB renderRgbDouble(DoubleFrame frameR, DoubleFrame frameG, DoubleFrame frameB, int width, int height, double gamma, double[] range, boolean syncBands) {
-		double[] rlut;
-		double[] glut;
-		double[] blut;
+		QuantisedLut rlut;
+		QuantisedLut glut;
+		QuantisedLut blut;
 		if(syncBands) {
 			double[] syncRange = RangerDouble.getRangeSync(new double[][][] {frameR.data, frameG.data, frameB.data}, range);
 			double syncGamma = RangerDouble.getGamma(syncRange, gamma);
-			double[] syncLut = Lut.getGammaLUT256d(syncRange[0], syncRange[1], syncGamma);
+			QuantisedLut syncLut = LutCache.getGammaQuantised(syncRange[0], syncRange[1], syncGamma);
 			rlut = syncLut;
 			glut = syncLut;
 			blut = syncLut;
@@ -108,36 +108,36 @@ public class Renderer {
 			double[] rrange = RangerDouble.getRange(frameR.data, range);
 			double[] grange = RangerDouble.getRange(frameG.data, range);
 			double[] brange = RangerDouble.getRange(frameB.data, range);
-			rlut = Lut.getGammaLUT256d(rrange[0], rrange[1], RangerDouble.getGamma(rrange, gamma));
-			glut = Lut.getGammaLUT256d(grange[0], grange[1], RangerDouble.getGamma(grange, gamma));
-			blut = Lut.getGammaLUT256d(brange[0], brange[1], RangerDouble.getGamma(brange, gamma));
+			rlut = LutCache.getGammaQuantised(rrange[0], rrange[1], RangerDouble.getGamma(rrange, gamma));
+			glut = LutCache.getGammaQuantised(grange[0], grange[1], RangerDouble.getGamma(grange, gamma));
+			blut = LutCache.getGammaQuantised(brange[0], brange[1], RangerDouble.getGamma(brange, gamma));
 		}
 		Timer.start("tonemapping3 double");
 		ImageBufferARGB imageBufferARGB = new ImageBufferARGB(frameR.width, frameR.height);
-		DrawerDouble.drawRGB3Parallel(imageBufferARGB, frameR.data, frameG.data, frameB.data, rlut, glut, blut);
+		DrawerDouble.drawRGBLutParallel(imageBufferARGB, frameR.data, frameG.data, frameB.data, rlut, glut, blut);
 		log.info(Timer.stop("tonemapping3 double"));
 		ImageBufferARGB scaled = imageBufferARGB.width == width && imageBufferARGB.height == height ? imageBufferARGB : imageBufferARGB.scaled(width, height);
 		return scaled;
 	}
 
 	public static ImageBufferARGB renderRbDouble(DoubleFrame frameR, DoubleFrame frameB, int width, int height, double gamma, double[] range, boolean syncBands) {
-		double[] rlut;
-		double[] blut;
+		QuantisedLut rlut;
+		QuantisedLut blut;
 		if(syncBands) {
 			double[] syncRange = RangerDouble.getRangeSync(new double[][][] {frameR.data, frameB.data}, range);
 			double syncGamma = RangerDouble.getGamma(syncRange, gamma);
-			double[] syncLut = Lut.getGammaLUT256d(syncRange[0], syncRange[1], syncGamma);
+			QuantisedLut syncLut = LutCache.getGammaQuantised(syncRange[0], syncRange[1], syncGamma);
 			rlut = syncLut;
 			blut = syncLut;
 		} else {
 			double[] rrange = RangerDouble.getRange(frameR.data, range);
 			double[] brange = RangerDouble.getRange(frameB.data, range);
-			rlut = Lut.getGammaLUT256d(rrange[0], rrange[1], RangerDouble.getGamma(rrange, gamma));
-			blut = Lut.getGammaLUT256d(brange[0], brange[1], RangerDouble.getGamma(brange, gamma));
+			rlut = LutCache.getGammaQuantised(rrange[0], rrange[1], RangerDouble.getGamma(rrange, gamma));
+			blut = LutCache.getGammaQuantised(brange[0], brange[1], RangerDouble.getGamma(brange, gamma));
 		}		
 		ImageBufferARGB imageBufferARGB = new ImageBufferARGB(frameR.width, frameR.height);
 		Timer.start("tonemapping3 double");
-		DrawerDouble.drawRB3Parallel(imageBufferARGB, frameR.data, frameB.data, rlut, blut);
+		DrawerDouble.drawRBLutParallel(imageBufferARGB, frameR.data, frameB.data, rlut, blut);
 		log.info(Timer.stop("tonemapping3 double"));
 		ImageBufferARGB scaled = imageBufferARGB.width == width && imageBufferARGB.height == height ? imageBufferARGB : imageBufferARGB.scaled(width, height);
 		return scaled;
@@ -147,8 +147,8 @@ public class Renderer {
 		double[] irange = RangerDouble.getRange(frame.data, range);
 		ImageBufferARGB imageBufferARGB = new ImageBufferARGB(frame.width, frame.height);
 		Timer.start("tonemapping3 double");
-		double[] lut = Lut.getGammaLUT256d(irange[0], irange[1], RangerDouble.getGamma(irange, gamma));
-		DrawerDouble.drawGrey3Parallel(imageBufferARGB, frame.data, lut);
+		QuantisedLut lut = LutCache.getGammaQuantised(irange[0], irange[1], RangerDouble.getGamma(irange, gamma));
+		DrawerDouble.drawPaletteLutParallel(imageBufferARGB, frame.data, lut, Lut.GREY_PALETTE);
 		//log.info(Timer.stop("tonemapping3 double"));
 		ImageBufferARGB scaled = imageBufferARGB.width == width && imageBufferARGB.height == height ? imageBufferARGB : imageBufferARGB.scaled(width, height);
 		return scaled;
@@ -158,21 +158,21 @@ public class Renderer {
 		double[] irange = RangerDouble.getRange(frame.data, range);
 		ImageBufferARGB imageBufferARGB = new ImageBufferARGB(frame.width, frame.height);
 		Timer.start("tonemapping3 double");
-		double[] lut = Lut.getGammaLUT256d(irange[0], irange[1], RangerDouble.getGamma(irange, gamma));
-		DrawerDouble.drawPalette3Parallel(imageBufferARGB, frame.data, lut, palette);
+		QuantisedLut lut = LutCache.getGammaQuantised(irange[0], irange[1], RangerDouble.getGamma(irange, gamma));
+		DrawerDouble.drawPaletteLutParallel(imageBufferARGB, frame.data, lut, palette);
 		log.info(Timer.stop("tonemapping3 double"));
 		ImageBufferARGB scaled = imageBufferARGB.width == width && imageBufferARGB.height == height ? imageBufferARGB : imageBufferARGB.scaled(width, height);
 		return scaled;
 	}
 
 	public static ImageBufferARGB renderRgbFloat(FloatFrame frameR, FloatFrame frameG, FloatFrame frameB, int width, int height, double gamma, double[] range, boolean syncBands) {
-		float[] rlut;
-		float[] glut;
-		float[] blut;
+		QuantisedLut rlut;
+		QuantisedLut glut;
+		QuantisedLut blut;
 		if(syncBands) {
 			double[] syncRange = RangerFloat.getRangeSync(new float[][][] {frameR.data, frameG.data, frameB.data}, range);
 			double syncGamma = RangerDouble.getGamma(syncRange, gamma);
-			float[] syncLut = Lut.getGammaLUT256f(syncRange[0], syncRange[1], syncGamma);
+			QuantisedLut syncLut = LutCache.getGammaQuantised(syncRange[0], syncRange[1], syncGamma);
 			rlut = syncLut;
 			glut = syncLut;
 			blut = syncLut;			 
@@ -180,36 +180,36 @@ public class Renderer {
 			double[] rrange = RangerFloat.getRange(frameR.data, range);
 			double[] grange = RangerFloat.getRange(frameG.data, range);
 			double[] brange = RangerFloat.getRange(frameB.data, range);
-			rlut = Lut.getGammaLUT256f(rrange[0], rrange[1], RangerDouble.getGamma(rrange, gamma));
-			glut = Lut.getGammaLUT256f(grange[0], grange[1], RangerDouble.getGamma(grange, gamma));
-			blut = Lut.getGammaLUT256f(brange[0], brange[1], RangerDouble.getGamma(brange, gamma));
+			rlut = LutCache.getGammaQuantised(rrange[0], rrange[1], RangerDouble.getGamma(rrange, gamma));
+			glut = LutCache.getGammaQuantised(grange[0], grange[1], RangerDouble.getGamma(grange, gamma));
+			blut = LutCache.getGammaQuantised(brange[0], brange[1], RangerDouble.getGamma(brange, gamma));
 		}
 		Timer.start("tonemapping3 float");
 		ImageBufferARGB imageBufferARGB = new ImageBufferARGB(frameR.width, frameR.height);
-		DrawerFloat.drawRGB3Parallel(imageBufferARGB, frameR.data, frameG.data, frameB.data, rlut, glut, blut);
+		DrawerFloat.drawRGBLutParallel(imageBufferARGB, frameR.data, frameG.data, frameB.data, rlut, glut, blut);
 		log.info(Timer.stop("tonemapping3 float"));
 		ImageBufferARGB scaled = imageBufferARGB.width == width && imageBufferARGB.height == height ? imageBufferARGB : imageBufferARGB.scaled(width, height);
 		return scaled;
 	}
 
 	public static ImageBufferARGB renderRbFloat(FloatFrame frameR, FloatFrame frameB, int width, int height, double gamma, double[] range, boolean syncBands) {
-		float[] rlut;
-		float[] blut;
+		QuantisedLut rlut;
+		QuantisedLut blut;
 		if(syncBands) {
 			double[] syncRange = RangerFloat.getRangeSync(new float[][][] {frameR.data, frameB.data}, range);
 			double syncGamma = RangerDouble.getGamma(syncRange, gamma);
-			float[] syncLut = Lut.getGammaLUT256f(syncRange[0], syncRange[1], syncGamma);
+			QuantisedLut syncLut = LutCache.getGammaQuantised(syncRange[0], syncRange[1], syncGamma);
 			rlut = syncLut;
 			blut = syncLut;				
 		} else {
 			double[] rrange = RangerFloat.getRange(frameR.data, range);
 			double[] brange = RangerFloat.getRange(frameB.data, range);
-			rlut = Lut.getGammaLUT256f(rrange[0], rrange[1], RangerDouble.getGamma(rrange, gamma));
-			blut = Lut.getGammaLUT256f(brange[0], brange[1], RangerDouble.getGamma(brange, gamma));
+			rlut = LutCache.getGammaQuantised(rrange[0], rrange[1], RangerDouble.getGamma(rrange, gamma));
+			blut = LutCache.getGammaQuantised(brange[0], brange[1], RangerDouble.getGamma(brange, gamma));
 		}
 		Timer.start("tonemapping3 float");
 		ImageBufferARGB imageBufferARGB = new ImageBufferARGB(frameR.width, frameR.height);
-		DrawerFloat.drawRB3Parallel(imageBufferARGB, frameR.data, frameB.data, rlut, blut);
+		DrawerFloat.drawRBLutParallel(imageBufferARGB, frameR.data, frameB.data, rlut, blut);
 		//log.info(Timer.stop("tonemapping3 float"));
 		ImageBufferARGB scaled = imageBufferARGB.width == width && imageBufferARGB.height == height ? imageBufferARGB : imageBufferARGB.scaled(width, height);
 		return scaled;
@@ -219,8 +219,8 @@ public class Renderer {
 		double[] irange = RangerFloat.getRange(frame.data, range);
 		ImageBufferARGB imageBufferARGB = new ImageBufferARGB(frame.width, frame.height);
 		Timer.start("tonemapping3 float");
-		float[] lut = Lut.getGammaLUT256f(irange[0], irange[1], RangerDouble.getGamma(irange, gamma));
-		DrawerFloat.drawGrey3Parallel(imageBufferARGB, frame.data, lut);
+		QuantisedLut lut = LutCache.getGammaQuantised(irange[0], irange[1], RangerDouble.getGamma(irange, gamma));
+		DrawerFloat.drawPaletteLutParallel(imageBufferARGB, frame.data, lut, Lut.GREY_PALETTE);
 		//log.info(Timer.stop("tonemapping3 float"));
 		ImageBufferARGB scaled = imageBufferARGB.width == width && imageBufferARGB.height == height ? imageBufferARGB : imageBufferARGB.scaled(width, height);
 		return scaled;
@@ -230,8 +230,8 @@ public class Renderer {
 		double[] irange = RangerFloat.getRange(frame.data, range);
 		ImageBufferARGB imageBufferARGB = new ImageBufferARGB(frame.width, frame.height);
 		Timer.start("tonemapping3 float");
-		float[] lut = Lut.getGammaLUT256f(irange[0], irange[1], RangerDouble.getGamma(irange, gamma));
-		DrawerFloat.drawPalette3Parallel(imageBufferARGB, frame.data, lut, palette);
+		QuantisedLut lut = LutCache.getGammaQuantised(irange[0], irange[1], RangerDouble.getGamma(irange, gamma));
+		DrawerFloat.drawPaletteLutParallel(imageBufferARGB, frame.data, lut, palette);
 		//log.info(Timer.stop("tonemapping3 float"));
 		ImageBufferARGB scaled = imageBufferARGB.width == width && imageBufferARGB.height == height ? imageBufferARGB : imageBufferARGB.scaled(width, height);
 		return scaled;
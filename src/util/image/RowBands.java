@@ -0,0 +1,48 @@
+package util.image;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Phaser;
+
+/**
+ * Parallel drawing of images in bands of rows, one band per worker of the common pool.
+ */
+public class RowBands {
+
+	@FunctionalInterface
+	public interface BandDrawer {
+		/**
+		 * Draws rows yStart to yEnd (inclusive).
+		 * @param yStart
+		 * @param yEnd
+		 */
+		void draw(int yStart, int yEnd);
+	}
+
+	public static void drawParallel(int height, BandDrawer drawer) {
+		ForkJoinPool exe = ForkJoinPool.commonPool();
+		int parts = Math.max(1, Math.min(exe.getParallelism(), height));
+		int part = height / parts;
+		Phaser phaser = new Phaser();
+		phaser.register();
+		int yStart = 0;
+		for (int partNr = 1; partNr <= parts; partNr++) {
+			int yEnd = partNr == parts ? height - 1 : yStart + part - 1;
+			final int yStartLocal = yStart;
+			final int yEndLocal = yEnd;
+			if(partNr == parts) {
+				drawer.draw(yStartLocal, yEndLocal); // last band in calling thread
+			} else {
+				phaser.register();
+				exe.execute(()->{
+					try {
+						drawer.draw(yStartLocal, yEndLocal);
+					} finally {
+						phaser.arrive();
+					}
+				});
+			}
+			yStart = yEnd + 1;
+		}
+		phaser.arriveAndAwaitAdvance();
+	}
+}
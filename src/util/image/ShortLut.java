@@ -0,0 +1,34 @@
+package util.image;
+
+/**
+ * Intensity 0 to 255 of every int16 value, replaces the per pixel search in a 256 entry LUT by one array access.
+ * Values below the LUT range map to 0.
+ */
+public final class ShortLut {
+	public static final int LEN = 65536;
+
+	private final byte[] table; // index: value & 0xffff
+
+	public ShortLut(short[] lut256) {
+		table = new byte[LEN];
+		for (int i = 0; i < LEN; i++) {
+			int p = Lut.match256s(lut256, (short) i);
+			table[i] = (byte) (p < 0 ? 0 : p);
+		}
+	}
+
+	/**
+	 * Table filled by intensity function.
+	 * @param table intensity at index value & 0xffff
+	 */
+	ShortLut(byte[] table) {
+		if(table.length != LEN) {
+			throw new RuntimeException("invalid table length " + table.length);
+		}
+		this.table = table;
+	}
+
+	public int get(short v) {
+		return table[v & 0xffff] & 0xff;
+	}
+}
@@ -1,13 +1,240 @@
 package util.raster;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.locationtech.proj4j.BasicCoordinateTransform;
+import org.locationtech.proj4j.CRSFactory;
+import org.locationtech.proj4j.CoordinateReferenceSystem;
+import org.locationtech.proj4j.ProjCoordinate;
+
+/**
+ * Approximate coordinate transformation of map tiles: exact transformation with proj4j at nodes of a coarse grid, bilinear interpolation between the nodes.
+ * Grids are cached per layer CRS, tile CRS, tile bbox and tile size, bounded to MAX_CACHED_GRIDS least recently used grids.
+ */
 public class CrsTransformer {
-	
-	public double[] toCrs(int x, int y) {
-		return new double[]{x, y};
+
+	public static final int GRID_STEP = 16; // tile pixels between grid nodes
+	private static final int MAX_CACHED_GRIDS = 1024;
+
+	private static final CRSFactory CRS_FACTORY = new CRSFactory();
+	private static final ConcurrentHashMap<String, CoordinateReferenceSystem> crsCache = new ConcurrentHashMap<String, CoordinateReferenceSystem>();
+
+	private static final LinkedHashMap<String, Grid> gridCache = new LinkedHashMap<String, Grid>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Grid> eldest) {
+			return size() > MAX_CACHED_GRIDS;
+		}
+	};
+
+	/**
+	 *
+	 * @param code EPSG code like "EPSG:3857" or empty
+	 * @param proj4 used if code is empty
+	 * @return
+	 */
+	public static CoordinateReferenceSystem getCRS(String code, String proj4) {
+		if(code != null && !code.isEmpty()) {
+			return crsCache.computeIfAbsent(code.toUpperCase(), c -> CRS_FACTORY.createFromName(c));
+		}
+		if(proj4 != null && !proj4.isEmpty()) {
+			return crsCache.computeIfAbsent(proj4, p -> CRS_FACTORY.createFromParameters(null, p));
+		}
+		throw new RuntimeException("missing CRS");
 	}
-	
-	public int[] toPixel(double x, double y) {
-		return new int[]{(int) x, (int) y};
+
+	/**
+	 * Transformation grid of a tile: coordinates in layer CRS of tile pixel positions in steps of GRID_STEP.
+	 * Tile pixel position (0, 0) is the upper left corner of the tile.
+	 */
+	public static class Grid {
+		public final int width;
+		public final int height;
+		public final int nx;
+		public final int ny;
+		private final double[] xs; // NaN if not transformable
+		private final double[] ys; // NaN if not transformable
+
+		private Grid(int width, int height, int nx, int ny, double[] xs, double[] ys) {
+			this.width = width;
+			this.height = height;
+			this.nx = nx;
+			this.ny = ny;
+			this.xs = xs;
+			this.ys = ys;
+		}
+
+		/**
+		 *
+		 * @return bounds in layer CRS {xmin, ymin, xmax, ymax} or null if no node is transformable
+		 */
+		public double[] getBounds() {
+			double xmin = Double.POSITIVE_INFINITY;
+			double ymin = Double.POSITIVE_INFINITY;
+			double xmax = Double.NEGATIVE_INFINITY;
+			double ymax = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < xs.length; i++) {
+				double x = xs[i];
+				double y = ys[i];
+				if(Double.isFinite(x) && Double.isFinite(y)) {
+					if(x < xmin) xmin = x;
+					if(y < ymin) ymin = y;
+					if(x > xmax) xmax = x;
+					if(y > ymax) ymax = y;
+				}
+			}
+			return xmin <= xmax ? new double[] {xmin, ymin, xmax, ymax} : null;
+		}
+
+		/**
+		 *
+		 * @return smallest mean distance in layer CRS units of neighbouring tile pixels along x and along y, or NaN
+		 */
+		public double getPixelDistance() {
+			double dx = 0;
+			int cx = 0;
+			double dy = 0;
+			int cy = 0;
+			for (int j = 0; j < ny; j++) {
+				for (int i = 0; i < nx; i++) {
+					int p = j * nx + i;
+					if(i + 1 < nx) {
+						double d = Math.hypot(xs[p + 1] - xs[p], ys[p + 1] - ys[p]);
+						if(Double.isFinite(d)) {
+							dx += d;
+							cx++;
+						}
+					}
+					if(j + 1 < ny) {
+						double d = Math.hypot(xs[p + nx] - xs[p], ys[p + nx] - ys[p]);
+						if(Double.isFinite(d)) {
+							dy += d;
+							cy++;
+						}
+					}
+				}
+			}
+			if(cx == 0 || cy == 0) {
+				return Double.NaN;
+			}
+			return Math.min(dx / cx, dy / cy) / GRID_STEP;
+		}
+
+		/**
+		 * Resamples the tile from a source image by nearest neighbour, pixels without source are set to 0 (transparent).
+		 * Source image pixel position of layer coordinates (x, y) is (x * scaleX + offsetX, y * scaleY + offsetY).
+		 * @param src source image pixels, row by row
+		 * @param srcWidth
+		 * @param srcHeight
+		 * @param scaleX
+		 * @param offsetX
+		 * @param scaleY
+		 * @param offsetY
+		 * @param dst tile pixels, row by row
+		 */
+		public void warp(int[] src, int srcWidth, int srcHeight, double scaleX, double offsetX, double scaleY, double offsetY, int[] dst) {
+			int nodeCount = nx * ny;
+			double[] sx = new double[nodeCount];
+			double[] sy = new double[nodeCount];
+			for (int p = 0; p < nodeCount; p++) {
+				sx[p] = xs[p] * scaleX + offsetX;
+				sy[p] = ys[p] * scaleY + offsetY;
+			}
+			for (int y = 0; y < height; y++) {
+				double gy = (y + 0.5) / GRID_STEP;
+				int j = Math.min((int) gy, ny - 2);
+				double fy = gy - j;
+				int row = j * nx;
+				int dstPos = y * width;
+				for (int x = 0; x < width; x++) {
+					double gx = (x + 0.5) / GRID_STEP;
+					int i = Math.min((int) gx, nx - 2);
+					double fx = gx - i;
+					int p = row + i;
+					double ax = sx[p] + (sx[p + 1] - sx[p]) * fx;
+					double bx = sx[p + nx] + (sx[p + nx + 1] - sx[p + nx]) * fx;
+					double ay = sy[p] + (sy[p + 1] - sy[p]) * fx;
+					double by = sy[p + nx] + (sy[p + nx + 1] - sy[p + nx]) * fx;
+					double px = ax + (bx - ax) * fy;
+					double py = ay + (by - ay) * fy;
+					if(px >= 0 && py >= 0 && px < srcWidth && py < srcHeight) { // false for NaN
+						dst[dstPos + x] = src[((int) py) * srcWidth + ((int) px)];
+					} else {
+						dst[dstPos + x] = 0;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Transforms one point exactly.
+	 * @param srcCrs
+	 * @param dstCrs
+	 * @param x
+	 * @param y
+	 * @return {x, y} in dstCrs
+	 */
+	public static double[] transform(CoordinateReferenceSystem srcCrs, CoordinateReferenceSystem dstCrs, double x, double y) {
+		ProjCoordinate dst = new BasicCoordinateTransform(srcCrs, dstCrs).transform(new ProjCoordinate(x, y), new ProjCoordinate());
+		return new double[] {dst.x, dst.y};
+	}
+
+	/**
+	 * Gets cached or creates transformation grid of a tile.
+	 * @param layerCrs
+	 * @param tileCrs
+	 * @param xmin bbox of tile in tile CRS
+	 * @param ymin
+	 * @param xmax
+	 * @param ymax
+	 * @param width tile width in pixels
+	 * @param height tile height in pixels
+	 * @return
+	 */
+	public static Grid getGrid(CoordinateReferenceSystem layerCrs, CoordinateReferenceSystem tileCrs, double xmin, double ymin, double xmax, double ymax, int width, int height) {
+		String key = layerCrs.getParameterString() + '|' + tileCrs.getParameterString() + '|' + xmin + ',' + ymin + ',' + xmax + ',' + ymax + '|' + width + 'x' + height;
+		synchronized (gridCache) {
+			Grid grid = gridCache.get(key);
+			if(grid != null) {
+				return grid;
+			}
+		}
+		Grid grid = createGrid(layerCrs, tileCrs, xmin, ymin, xmax, ymax, width, height);
+		synchronized (gridCache) {
+			gridCache.put(key, grid);
+		}
+		return grid;
 	}
 
+	private static Grid createGrid(CoordinateReferenceSystem layerCrs, CoordinateReferenceSystem tileCrs, double xmin, double ymin, double xmax, double ymax, int width, int height) {
+		int nx = (width + GRID_STEP - 1) / GRID_STEP + 1;
+		int ny = (height + GRID_STEP - 1) / GRID_STEP + 1;
+		double[] xs = new double[nx * ny];
+		double[] ys = new double[nx * ny];
+		BasicCoordinateTransform transform = new BasicCoordinateTransform(tileCrs, layerCrs); // not thread safe
+		ProjCoordinate src = new ProjCoordinate();
+		ProjCoordinate dst = new ProjCoordinate();
+		double resX = (xmax - xmin) / width;
+		double resY = (ymax - ymin) / height;
+		for (int j = 0; j < ny; j++) {
+			for (int i = 0; i < nx; i++) {
+				int p = j * nx + i;
+				src.x = xmin + i * GRID_STEP * resX;
+				src.y = ymax - j * GRID_STEP * resY;
+				try {
+					transform.transform(src, dst);
+					xs[p] = dst.x;
+					ys[p] = dst.y;
+				} catch(Exception e) { // outside of projection domain
+					xs[p] = Double.NaN;
+					ys[p] = Double.NaN;
+				}
+			}
+		}
+		return new Grid(width, height, nx, ny, xs, ys);
+	}
 }
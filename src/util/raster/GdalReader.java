@@ -274,6 +274,17 @@ public class GdalReader {
 		this.src_size = x_range*y_range;		
 	}
 
+	public String getFilename() {
+		return filename;
+	}
+
+	/**
+	 * Releases GDAL dataset, the reader can not be used afterwards.
+	 */
+	public void close() {
+		dataset.delete();
+	}
+
 	/**
 	 * Get all Data of one band
 	 * @param band index number of band (starting with zero)
@@ -325,6 +336,26 @@ public class GdalReader {
 		return Util.arrayToArrayArrayOfByte(in, x_range,targetData);
 	}
 
+	public byte[][] getDataByte(int bandIndex, byte[][] targetData, int yoff, int ysize) throws IOException {
+		Band band = dataset.GetRasterBand(bandIndex);
+		byte[] in = new byte[x_range * ysize];
+		int result = band.ReadRaster(0, yoff, x_range, ysize, in);
+		if(result!=0) {
+			throw new RuntimeException("read error "+result+"   in "+filename);
+		}
+		return Util.arrayToArrayArray(in, x_range, targetData);
+	}
+
+	public int[][] getDataInt(int bandIndex, int[][] targetData, int yoff, int ysize) throws IOException {
+		Band band = dataset.GetRasterBand(bandIndex);
+		int[] in = new int[x_range * ysize];
+		int result = band.ReadRaster(0, yoff, x_range, ysize, in);
+		if(result!=0) {
+			throw new RuntimeException("read error "+result+"   in "+filename);
+		}
+		return Util.arrayToArrayArray(in, x_range, targetData);
+	}
+
 	public float[][] getDataFloat(int bandIndex, float[][] targetData) throws IOException {
 		Band band = dataset.GetRasterBand(bandIndex);
 		float[] in = new float[src_size];
@@ -5,6 +5,7 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.ShortBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 
@@ -41,8 +42,8 @@ public class Hyperspectral {
 		this.bands = enviHdr.bands;
 		this.header_offset = enviHdr.header_offset;
 		this.interleave = enviHdr.interleave.toLowerCase();
-		this.stride_BIL = this.samples*this.bands*2;
-		this.stride_BSQ = this.samples*2;
+		this.stride_BIL = 2l*this.samples*this.bands;
+		this.stride_BSQ = 2l*this.samples;
 
 
 
@@ -193,6 +194,85 @@ public class Hyperspectral {
 		return data;		
 	}
 
+	/**
+	 * Get lines of all bands, the file region of the lines is memory mapped and read in one pass.
+	 * Supports interleave BSQ, BIL and BIP.
+	 * @param firstLine
+	 * @param lineCount
+	 * @param targetData [band][line][sample], maybe null
+	 * @return targetData filled with data or new array if targetData is null or wrong dimensions
+	 * @throws IOException
+	 */
+	public short[][][] getDataAllBands(int firstLine, int lineCount, short[][][] targetData) throws IOException {
+		if(firstLine < 0 || lineCount < 1 || firstLine + lineCount > lines) {
+			throw new RuntimeException("invalid lines " + firstLine + " " + lineCount);
+		}
+		short[][][] data = targetData;
+		if(data == null || data.length != bands || data[0].length != lineCount || data[0][0].length != samples) {
+			data = new short[bands][lineCount][samples];
+		}
+		ByteOrder byteOrder = enviHdr.byte_order == 1 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+		switch(interleave) {
+		case "bsq": {
+			long bandBytes = 2l * samples * lines;
+			long regionBytes = 2l * samples * lineCount;
+			checkMapSize(regionBytes);
+			for(int band = 0; band < bands; band++) {
+				ShortBuffer shortBuffer = filechannel.map(MapMode.READ_ONLY, header_offset + band * bandBytes + firstLine * stride_BSQ, regionBytes).order(byteOrder).asShortBuffer();
+				short[][] bandData = data[band];
+				for(int y = 0; y < lineCount; y++) {
+					shortBuffer.get(bandData[y]);
+				}
+			}
+			break;
+		}
+		case "bil": {
+			long regionBytes = stride_BIL * lineCount;
+			checkMapSize(regionBytes);
+			ShortBuffer shortBuffer = filechannel.map(MapMode.READ_ONLY, header_offset + firstLine * stride_BIL, regionBytes).order(byteOrder).asShortBuffer();
+			for(int y = 0; y < lineCount; y++) {
+				for(int band = 0; band < bands; band++) {
+					shortBuffer.get(data[band][y]);
+				}
+			}
+			break;
+		}
+		case "bip": {
+			long regionBytes = stride_BIL * lineCount; // same line size as BIL
+			checkMapSize(regionBytes);
+			ShortBuffer shortBuffer = filechannel.map(MapMode.READ_ONLY, header_offset + firstLine * stride_BIL, regionBytes).order(byteOrder).asShortBuffer();
+			short[] line = new short[samples * bands];
+			for(int y = 0; y < lineCount; y++) {
+				shortBuffer.get(line);
+				int pos = 0;
+				for(int x = 0; x < samples; x++) {
+					for(int band = 0; band < bands; band++) {
+						data[band][y][x] = line[pos++];
+					}
+				}
+			}
+			break;
+		}
+		default:
+			throw new RuntimeException("TODO: not implemented "+interleave);
+		}
+		return data;
+	}
+
+	private static void checkMapSize(long bytes) {
+		if(bytes > Integer.MAX_VALUE) {
+			throw new RuntimeException("too many lines for one mapped region: " + bytes + " bytes");
+		}
+	}
+
+	/**
+	 * 
+	 * @return bytes of one line of all bands
+	 */
+	public long getLineBytesAllBands() {
+		return stride_BIL;
+	}
+
 	public int getBandCount() {
 		return bands;
 	}
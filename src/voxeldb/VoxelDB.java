@@ -26,6 +26,7 @@ import griddb.GridDB;
 import griddb.GridDB.ExtendedMeta;
 import rasterunit.Tile;
 import rasterunit.TileKey;
+import util.CancellationToken;
 import util.collections.ReadonlyNavigableSetView;
 import util.yaml.YamlMap;
 import voxeldb.TimeSlice.TimeSliceBuilder;
@@ -313,7 +314,9 @@ public class VoxelDB implements AutoCloseable {
 	}
 
 	public Stream<VoxelCell> getVoxelCells() {
+		CancellationToken token = CancellationToken.current();
 		return griddb.getTileKeys().stream().map(tileKey -> {
+			CancellationToken.check(token);
 			try {
 				return griddb.storage().readTile(tileKey);
 			} catch (IOException e) {
@@ -325,7 +328,9 @@ public class VoxelDB implements AutoCloseable {
 	}
 	
 	public Stream<VoxelCell> getVoxelCells(TimeSlice timeSlice) {
+		CancellationToken token = CancellationToken.current();
 		return griddb.getTileKeysOfT(timeSlice.id).stream().map(tileKey -> {
+			CancellationToken.check(token);
 			try {
 				return griddb.storage().readTile(tileKey);
 			} catch (IOException e) {
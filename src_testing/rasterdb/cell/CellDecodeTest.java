@@ -0,0 +1,105 @@
+package rasterdb.cell;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import rasterdb.tile.TilePixel;
+import rasterdb.tile.TileShort;
+import rasterunit.Tile;
+import rasterunit.TileKey;
+
+public class CellDecodeTest {
+
+	private static final TileKey TILE_KEY = new TileKey(1, 1, 0, 0);
+
+	private static short[][] createPixels(int len, long seed) {
+		Random random = new Random(seed);
+		short[][] pixels = new short[len][len];
+		for(int y = 0; y < len; y++) {
+			for(int x = 0; x < len; x++) {
+				pixels[y][x] = (short) (random.nextInt(2000) - 1000);
+			}
+		}
+		pixels[0][0] = Short.MIN_VALUE;
+		pixels[len - 1][len - 1] = Short.MAX_VALUE;
+		return pixels;
+	}
+
+	/**
+	 * 
+	 * @param count pixels per tile
+	 * @return positions at both sides of FastPFOR block borders and spread over the tile
+	 */
+	private static int[] testPositions(int count) {
+		IntStream borders = IntStream.range(0, count / 256).flatMap(block -> IntStream.of(block * 256, block * 256 + 255));
+		IntStream spread = IntStream.iterate(1, pos -> pos + 61).limit(count / 61);
+		return IntStream.concat(borders, spread).filter(pos -> pos < count).toArray();
+	}
+
+	private static void assertDecPixel(CellInt16 cell, Tile tile) {
+		int[] raw = cell.dec(tile);
+		for(int pos : testPositions(cell.cell_pixel_count)) {
+			assertEquals("pos " + pos, raw[pos], cell.decPixel(tile, pos));
+		}
+	}
+
+	@Test
+	public void cellRoundTrip() {
+		for(int len : new int[] {64, 256}) {
+			CellInt16 cell = new CellInt16(len);
+			short[][] pixels = createPixels(len, len);
+			Tile tile = new Tile(TILE_KEY, cell.getType(), cell.encodeCell(pixels));
+			assertArrayEquals(pixels, cell.decodeCell(tile));
+		}
+	}
+
+	@Test
+	public void cellDecPixel() {
+		for(int len : new int[] {64, 256}) {
+			CellInt16 cell = new CellInt16(len);
+			Tile tile = new Tile(TILE_KEY, cell.getType(), cell.encodeCell(createPixels(len, len)));
+			assertDecPixel(cell, tile);
+		}
+	}
+
+	@Test
+	public void cellDecPixelConst() {
+		CellInt16 cell = new CellInt16(256);
+		Tile tile = Tile.ofConst(TILE_KEY, cell.getType(), -42);
+		assertDecPixel(cell, tile);
+		assertEquals(-42, cell.decPixel(tile, cell.cell_pixel_count - 1));
+	}
+
+	@Test
+	public void tileShortDecodeRawPixel() throws IOException {
+		short[][] pixels = createPixels(TilePixel.PIXELS_PER_ROW, 7);
+		Tile tile = TileShort.encodeTile(TILE_KEY, pixels, (short) 0);
+		short[][] decoded = TileShort.decode(tile);
+		assertArrayEquals(pixels, decoded);
+		for(int pos : testPositions(TilePixel.PIXELS_PER_TILE)) {
+			int y = pos / TilePixel.PIXELS_PER_ROW;
+			int x = pos % TilePixel.PIXELS_PER_ROW;
+			assertEquals("y " + y + " x " + x, decoded[y][x], TileShort.decode_raw_pixel(tile, pos));
+		}
+	}
+
+	@Test
+	public void tileShortDecodeRawPixelConst() throws IOException {
+		short[][] pixels = new short[TilePixel.PIXELS_PER_ROW][TilePixel.PIXELS_PER_ROW];
+		for(short[] row : pixels) {
+			Arrays.fill(row, (short) 17);
+		}
+		Tile tile = TileShort.encodeTile(TILE_KEY, pixels, (short) 0);
+		assertTrue(tile.isConst());
+		assertEquals(17, TileShort.decode_raw_pixel(tile, 0));
+		assertEquals(17, TileShort.decode_raw_pixel(tile, TilePixel.PIXELS_PER_TILE - 1));
+	}
+}
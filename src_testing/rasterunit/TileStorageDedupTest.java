@@ -0,0 +1,158 @@
+package rasterunit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import rasterdb.cell.CellType;
+
+public class TileStorageDedupTest {
+
+	private static final int LEN = 100;
+
+	private Path root;
+
+	@Before
+	public void setUp() throws IOException {
+		root = Files.createTempDirectory("dedup_test");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.walk(root).sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+	}
+
+	private static byte[] createData(long seed) {
+		byte[] data = new byte[LEN];
+		new Random(seed).nextBytes(data);
+		return data;
+	}
+
+	private static void write(TileStorage storage, TileKey key, byte[] data) throws IOException {
+		storage.writeTile(new Tile(key, CellType.INT16, data));
+	}
+
+	private static void assertTile(TileStorage storage, TileKey key, byte[] expected) throws IOException {
+		assertArrayEquals(key.toString(), expected, storage.readTile(key).data);
+	}
+
+	@Test
+	public void dedupOverwriteCompact() throws IOException {
+		byte[] a = createData(1);
+		byte[] b = createData(2);
+		byte[] c = createData(3);
+		byte[] d = createData(4);
+		TileKey k0 = new TileKey(1, 1, 0, 0);
+		TileKey k1 = new TileKey(1, 1, 0, 1);
+		TileKey k2 = new TileKey(1, 1, 0, 2);
+		TileKey k3 = new TileKey(2, 1, 0, 0);
+		TileStorage storage = new TileStorage(new TileStorageConfig(root, "test", TileStorageOption.CREATE, TileStorageOption.DEDUP));
+		try {
+			write(storage, k0, a);
+			write(storage, k1, a); // shares data of k0
+			write(storage, k2, b);
+			write(storage, k3, c);
+			assertEquals(1, storage.getSharedSlotCount());
+			assertEquals(3 * LEN, storage.calculateStorageSize());
+
+			write(storage, k0, d); // data a is still referenced by k1, must not be freed
+			assertTile(storage, k0, d);
+			assertTile(storage, k1, a);
+			assertEquals(0, storage.getSharedSlotCount());
+			assertEquals(4 * LEN, storage.calculateStorageSize());
+			assertEquals(0, storage.calculateInternalFreeSize());
+
+			write(storage, k1, b); // shares data of k2, data a is freed
+			assertEquals(1, storage.getSharedSlotCount());
+			assertEquals(LEN, storage.calculateInternalFreeSize());
+
+			long shrunk = storage.compact(null);
+			assertEquals(LEN, shrunk);
+			assertEquals(3 * LEN, storage.calculateStorageSize());
+			assertEquals(0, storage.calculateInternalFreeSize());
+			assertTile(storage, k0, d);
+			assertTile(storage, k1, b);
+			assertTile(storage, k2, b);
+			assertTile(storage, k3, c);
+		} finally {
+			storage.close();
+		}
+
+		storage = new TileStorage(new TileStorageConfig(root, "test", TileStorageOption.DEDUP));
+		try {
+			assertEquals(4, storage.getTileCount());
+			assertEquals(1, storage.getSharedSlotCount());
+			assertEquals(3 * LEN, storage.calculateStorageSize());
+			assertEquals(0, storage.calculateInternalFreeSize());
+			assertTile(storage, k0, d);
+			assertTile(storage, k1, b);
+			assertTile(storage, k2, b);
+			assertTile(storage, k3, c);
+
+			TileKey k4 = new TileKey(2, 1, 0, 1);
+			write(storage, k4, c); // dedup keys are restored from index
+			assertEquals(3 * LEN, storage.calculateStorageSize());
+			assertEquals(2, storage.getSharedSlotCount());
+
+			storage.removeAllTilesOfTimestamp(1); // data d and b is freed, data c at the end of the tile file is kept
+			assertEquals(1, storage.getSharedSlotCount());
+			assertEquals(3 * LEN, storage.calculateStorageSize());
+			assertEquals(2 * LEN, storage.calculateInternalFreeSize());
+			assertTile(storage, k3, c);
+			assertTile(storage, k4, c);
+		} finally {
+			storage.close();
+		}
+	}
+
+	@Test
+	public void refreshFreeSetSharedSlots() {
+		ArrayList<TileSlot> slots = new ArrayList<TileSlot>();
+		slots.add(new TileSlot(30, 10, CellType.INT16, 1));
+		slots.add(new TileSlot(0, 10, CellType.INT16, 2));
+		slots.add(new TileSlot(30, 10, CellType.INT16, 3)); // shared data of deduplicated tiles
+		slots.add(new TileSlot(30, 10, CellType.INT16, 4)); // shared data of deduplicated tiles
+		slots.add(new TileSlot(12345, 0, CellType.INT16 | Tile.TYPE_CONST_FLAG, 5)); // constant tile, no data
+		ConcurrentSkipListSet<FreeSlot> freeSet = new ConcurrentSkipListSet<FreeSlot>(FreeSlot.LEN_POS_COMPARATOR);
+		long limit = TileStorage.refreshFreeSet(slots.toArray(new TileSlot[0]), freeSet);
+		assertEquals(40, limit);
+		assertEquals(1, freeSet.size());
+		assertEquals(10, freeSet.first().pos);
+		assertEquals(20, freeSet.first().len);
+	}
+
+	@Test
+	public void refreshFreeSetOverlappingSlots() {
+		TileSlot[] slots = new TileSlot[] {
+				new TileSlot(0, 10, CellType.INT16, 1),
+				new TileSlot(5, 10, CellType.INT16, 2),
+		};
+		try {
+			TileStorage.refreshFreeSet(slots, new ConcurrentSkipListSet<FreeSlot>(FreeSlot.LEN_POS_COMPARATOR));
+			fail("overlapping tile slots need to be rejected");
+		} catch(RuntimeException e) {
+			// expected
+		}
+		TileSlot[] sharedOtherLen = new TileSlot[] {
+				new TileSlot(0, 10, CellType.INT16, 1),
+				new TileSlot(0, 20, CellType.INT16, 2),
+		};
+		try {
+			TileStorage.refreshFreeSet(sharedOtherLen, new ConcurrentSkipListSet<FreeSlot>(FreeSlot.LEN_POS_COMPARATOR));
+			fail("tile slots at same position with different length need to be rejected");
+		} catch(RuntimeException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package rasterunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import rasterdb.cell.CellType;
+
+public class TileStorageIndexTest {
+
+	private Path root;
+
+	@Before
+	public void setUp() throws IOException {
+		root = Files.createTempDirectory("index_test");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.walk(root).sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+	}
+
+	private static ConcurrentSkipListMap<TileKey, TileSlot> createMap() {
+		ConcurrentSkipListMap<TileKey, TileSlot> map = new ConcurrentSkipListMap<TileKey, TileSlot>(TileKey.COMPARATOR);
+		TileValid valid = new TileValid(1000, 3, 4, 200, 255);
+		map.put(new TileKey(1, 1, -5, 7), new TileSlot(0, 100, CellType.INT16, 11)); // unknown valid pixels
+		map.put(new TileKey(1, 1, -5, 8), new TileSlot(100, 50, CellType.INT16, 12, valid.count, valid.packBox()));
+		map.put(new TileKey(1, 2, 3, -1), new TileSlot(150, 70, CellType.FLOAT32, 13, 0, 0));
+		map.put(new TileKey(2, 1, 0, 0), new TileSlot(5_000_000_000L, 30, CellType.INT32, 14, 65536, new TileValid(65536, 0, 0, 255, 255).packBox()));
+		map.put(new TileKey(3, 1, 0, 0), new TileSlot(-7 & 0xFFFFFFFFL, 0, CellType.INT16 | Tile.TYPE_CONST_FLAG, 15, 0, 0)); // constant tile, value in pos
+		return map;
+	}
+
+	private static void assertSlots(ConcurrentSkipListMap<TileKey, TileSlot> expected, ConcurrentSkipListMap<TileKey, TileSlot> actual, boolean hasValid) {
+		assertEquals(expected.size(), actual.size());
+		for(Entry<TileKey, TileSlot> e : expected.entrySet()) {
+			TileSlot exp = e.getValue();
+			TileSlot act = actual.get(e.getKey());
+			assertTrue("missing " + e.getKey(), act != null);
+			assertTrue(exp + " != " + act, exp.equalsNoRev(act));
+			if(hasValid) {
+				assertEquals(exp.validCount, act.validCount);
+				assertEquals(exp.validBox, act.validBox);
+			} else {
+				assertTrue(act.getValid().isUnknown());
+			}
+		}
+	}
+
+	@Test
+	public void roundTripVersion3() throws IOException {
+		ConcurrentSkipListMap<TileKey, TileSlot> map = createMap();
+		Path path = root.resolve("v3.idx");
+		TileStorage.writeIndexVersion3(map, path);
+		ConcurrentSkipListMap<TileKey, TileSlot> readMap = new ConcurrentSkipListMap<TileKey, TileSlot>(TileKey.COMPARATOR);
+		HashMap<Long, Long> dedupKeys = new HashMap<Long, Long>();
+		TileStorage.readIndex(path, readMap, dedupKeys);
+		assertSlots(map, readMap, true);
+		assertTrue(dedupKeys.isEmpty());
+		assertEquals(-7, readMap.get(new TileKey(3, 1, 0, 0)).getConstValue());
+		assertEquals(new TileValid(1000, 3, 4, 200, 255).toString(), readMap.get(new TileKey(1, 1, -5, 8)).getValid().toString());
+	}
+
+	@Test
+	public void roundTripVersion4() throws IOException {
+		ConcurrentSkipListMap<TileKey, TileSlot> map = createMap();
+		map.put(new TileKey(4, 1, 0, 0), new TileSlot(100, 50, CellType.INT16, 16, 1000, new TileValid(1000, 3, 4, 200, 255).packBox())); // shares data of tile 1 1 -5 8
+		HashMap<Long, Long> dedupKeys = new HashMap<Long, Long>();
+		dedupKeys.put(100L, 0x1234_5678_9abc_def0L);
+		dedupKeys.put(5_000_000_000L, -3L);
+		Path path = root.resolve("v4.idx");
+		TileStorage.writeIndexVersion4(map, dedupKeys, path);
+		ConcurrentSkipListMap<TileKey, TileSlot> readMap = new ConcurrentSkipListMap<TileKey, TileSlot>(TileKey.COMPARATOR);
+		HashMap<Long, Long> readDedupKeys = new HashMap<Long, Long>();
+		TileStorage.readIndex(path, readMap, readDedupKeys);
+		assertSlots(map, readMap, true);
+		assertEquals(dedupKeys, readDedupKeys);
+	}
+
+	@Test
+	public void roundTripVersion2() throws IOException {
+		ConcurrentSkipListMap<TileKey, TileSlot> map = createMap();
+		Path path = root.resolve("v2.idx");
+		TileStorage.writeIndexVersion2(map, path);
+		ConcurrentSkipListMap<TileKey, TileSlot> readMap = new ConcurrentSkipListMap<TileKey, TileSlot>(TileKey.COMPARATOR);
+		TileStorage.readIndex(path, readMap);
+		assertSlots(map, readMap, false);
+	}
+}
@@ -0,0 +1,79 @@
+package rasterunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class TileValidTest {
+
+	private static void assertValid(TileValid expected, TileValid actual) {
+		assertEquals(expected.count, actual.count);
+		assertEquals(expected.xmin, actual.xmin);
+		assertEquals(expected.ymin, actual.ymin);
+		assertEquals(expected.xmax, actual.xmax);
+		assertEquals(expected.ymax, actual.ymax);
+	}
+
+	@Test
+	public void packBox() {
+		TileValid[] valids = new TileValid[] {
+				new TileValid(1, 0, 0, 0, 0),
+				new TileValid(12, 3, 4, 200, 255),
+				new TileValid(65536, 0, 0, 255, 255),
+				new TileValid(Integer.MAX_VALUE, 0xffff, 0x8000, 0xffff, 0xffff), // max coordinates of 16 bit
+		};
+		for(TileValid valid : valids) {
+			assertValid(valid, TileValid.of(valid.count, valid.packBox()));
+		}
+	}
+
+	@Test
+	public void packUnknownAndEmpty() {
+		assertEquals(0, TileValid.UNKNOWN.packBox());
+		assertEquals(0, TileValid.EMPTY.packBox());
+		assertSame(TileValid.UNKNOWN, TileValid.of(-1, 0));
+		assertSame(TileValid.EMPTY, TileValid.of(0, 0));
+		assertSame(TileValid.EMPTY, TileValid.of(0, new TileValid(1, 1, 2, 3, 4).packBox()));
+	}
+
+	@Test
+	public void ofRaw() {
+		int len = 8;
+		int na = -1;
+		int[] raw = new int[len * len];
+		assertSame(TileValid.EMPTY, TileValid.ofRaw(fill(raw, na), len, na));
+		fill(raw, na);
+		raw[2 * len + 5] = 7;
+		raw[6 * len + 1] = 0;
+		raw[6 * len + 2] = 3;
+		assertValid(new TileValid(3, 1, 2, 5, 6), TileValid.ofRaw(raw, len, na));
+		assertValid(new TileValid(len * len, 0, 0, len - 1, len - 1), TileValid.ofRaw(fill(raw, 0), len, na));
+	}
+
+	@Test
+	public void ofConst() {
+		assertSame(TileValid.EMPTY, TileValid.ofConst(256, true));
+		assertValid(new TileValid(65536, 0, 0, 255, 255), TileValid.ofConst(256, false));
+	}
+
+	@Test
+	public void intersects() {
+		TileValid valid = new TileValid(3, 1, 2, 5, 6);
+		assertTrue(valid.intersects(0, 0, 1, 2));
+		assertTrue(valid.intersects(5, 6, 10, 10));
+		assertFalse(valid.intersects(6, 0, 10, 10));
+		assertFalse(valid.intersects(0, 7, 10, 10));
+		assertTrue(TileValid.UNKNOWN.intersects(0, 0, 0, 0));
+		assertFalse(TileValid.EMPTY.intersects(0, 0, 255, 255));
+	}
+
+	private static int[] fill(int[] raw, int value) {
+		Arrays.fill(raw, value);
+		return raw;
+	}
+}